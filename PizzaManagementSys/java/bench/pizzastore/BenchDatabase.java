@@ -0,0 +1,65 @@
+package pizzastore;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * The PizzaStore every benchmark runs against: one per trial, shared by all
+ * benchmark threads.  Point it at a loaded database with
+ *
+ *    -Dpizzastore.bench.db=pizzamanagement   (default)
+ *    -Dpizzastore.bench.port=5433            (default)
+ *    -Dpizzastore.bench.user=postgres        (default)
+ *    -Dpizzastore.bench.password=            (default $PIZZASTORE_DB_PASSWORD, or empty)
+ *
+ * JMH passes these on to the forked benchmark JVMs.  Orders placed during a
+ * trial are deleted again when it ends, so benchmarks that write leave the
+ * database as they found it.
+ */
+@State(Scope.Benchmark)
+public class BenchDatabase {
+
+   PizzaStore esql;
+   PizzaService service;
+
+   // the first order ID this trial could have created.
+   private int _firstOrderId;
+
+   @Setup(Level.Trial)
+   public void open() throws SQLException {
+      this.esql = new PizzaStore(System.getProperty("pizzastore.bench.db", "pizzamanagement"),
+                                 System.getProperty("pizzastore.bench.port", "5433"),
+                                 System.getProperty("pizzastore.bench.user", "postgres"),
+                                 System.getProperty("pizzastore.bench.password", PizzaStore.password()));
+      this.service = new PizzaService(this.esql);
+      this._firstOrderId = Integer.parseInt(first("SELECT nextval('" + PizzaStore.ORDER_ID_SEQUENCE + "')"));
+   }
+
+   @TearDown(Level.Trial)
+   public void close() throws SQLException {
+      try {
+         // their lines go with them (ON DELETE CASCADE)
+         this.esql.executeUpdate("DELETE FROM FoodOrder WHERE orderID >= ?", this._firstOrderId);
+      } finally {
+         this.esql.cleanup();
+      }
+   }
+
+   /*
+    * Reads the first column of the first row of a query, for picking the
+    * users, stores and items a benchmark works with.
+    */
+   String first(String query) throws SQLException {
+      List<List<String>> rows = this.esql.executeQueryAndReturnResult(query);
+      if (rows.isEmpty()) {
+         throw new IllegalStateException("The benchmark database has no rows for: " + query);
+      }
+      return rows.get(0).get(0).trim();
+   }
+}//end BenchDatabase
@@ -0,0 +1,273 @@
+package pizzastore;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives a running PizzaServer with many concurrent customers and drivers
+ * and reports throughput and latency per endpoint.  Each simulated user is
+ * one thread (a virtual thread on Java 21) that logs in with an account
+ * from users.csv and loops until the run ends:
+ *
+ *    customers  GET /menu, POST /orders, GET /orders/{id}, GET /orders/recent
+ *    drivers    GET /orders/recent, PUT /orders/{id}/status
+ *
+ * Settings, as system properties:
+ *
+ *    -Dload.url=http://localhost:8080   the server
+ *    -Dload.users=../data/users.csv     accounts to log in with
+ *    -Dload.clients=2000                concurrent simulated users
+ *    -Dload.drivers=0.1                 share of them that are drivers
+ *    -Dload.seconds=30                  measured run time, after a 5 s ramp-up
+ *    -Dload.thinkMillis=100             pause between a user's requests
+ *
+ * The run places real orders in the database.
+ */
+public class LoadTest {
+
+   private static final String URL = System.getProperty("load.url", "http://localhost:8080");
+   private static final String USERS = System.getProperty("load.users", "../data/users.csv");
+   private static final int CLIENTS = Integer.getInteger("load.clients", 2000);
+   private static final double DRIVERS = Double.parseDouble(System.getProperty("load.drivers", "0.1"));
+   private static final int SECONDS = Integer.getInteger("load.seconds", 30);
+   private static final int RAMP_SECONDS = 5;
+   private static final long THINK_MILLIS = Long.getLong("load.thinkMillis", 100);
+
+   private final HttpClient _client = HttpClient.newBuilder()
+      .version(HttpClient.Version.HTTP_1_1)
+      .connectTimeout(Duration.ofSeconds(10))
+      .build();
+
+   private final List<String[]> _customers = new ArrayList<String[]>();
+   private final List<String[]> _drivers = new ArrayList<String[]>();
+   private List<String> _items;
+   private List<Integer> _stores;
+
+   private volatile long _measureFrom;
+   private volatile long _measureUntil;
+
+   public static void main(String[] args) throws Exception {
+      new LoadTest().run();
+   }
+
+   private void run() throws Exception {
+      loadAccounts();
+      this._items = new ArrayList<String>();
+      for (Object item : (List<?>) Json.parse(get("/menu", null).body())) {
+         this._items.add((String) ((Map<?, ?>) item).get("itemName"));
+      }
+      this._stores = new ArrayList<Integer>();
+      Map<?, ?> page;
+      do {
+         page = (Map<?, ?>) Json.parse(get("/stores?limit=100&offset=" + this._stores.size(), null).body());
+         for (Object store : (List<?>) page.get("stores")) {
+            this._stores.add(((BigDecimal) ((Map<?, ?>) store).get("storeId")).intValue());
+         }
+      } while (Boolean.TRUE.equals(page.get("hasNext")));
+
+      int drivers = (int) Math.round(CLIENTS * DRIVERS);
+      System.out.printf("%d clients (%d drivers) against %s for %d s after %d s ramp-up, think time %d ms%n",
+                        CLIENTS, drivers, URL, SECONDS, RAMP_SECONDS, THINK_MILLIS);
+
+      long start = System.nanoTime();
+      this._measureFrom = start + TimeUnit.SECONDS.toNanos(RAMP_SECONDS);
+      this._measureUntil = this._measureFrom + TimeUnit.SECONDS.toNanos(SECONDS);
+
+      List<Recorder> recorders = new ArrayList<Recorder>();
+      ExecutorService threads = newThreads();
+      for (int i = 0; i < CLIENTS; i++) {
+         boolean driver = i < drivers;
+         Recorder recorder = new Recorder();
+         recorders.add(recorder);
+         String[] account = driver ? this._drivers.get(i % this._drivers.size())
+                                   : this._customers.get(i % this._customers.size());
+         // spread logins over the ramp-up so they do not all arrive at once
+         long delay = TimeUnit.SECONDS.toMillis(RAMP_SECONDS) * i / CLIENTS;
+         threads.submit(() -> {
+            try {
+               Thread.sleep(delay);
+               simulate(account, driver, recorder);
+            } catch (Exception e) {
+               recorder.errors++;
+            }
+            return null;
+         });
+      }
+      threads.shutdown();
+      threads.awaitTermination(RAMP_SECONDS + SECONDS + 60, TimeUnit.SECONDS);
+
+      report(recorders);
+   }//end run
+
+   /*
+    * One user's session: log in, then loop over that role's requests.
+    */
+   private void simulate(String[] account, boolean driver, Recorder recorder) throws Exception {
+      HttpResponse<String> login = timed(recorder, "POST /login",
+         () -> post("/login", null, Json.write(Map.of("login", account[0], "password", account[1]))));
+      if (login.statusCode() != 200) {
+         recorder.errors++;
+         return;
+      }
+      String token = (String) Json.parseObject(login.body()).get("token");
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+
+      while (System.nanoTime() < this._measureUntil) {
+         if (driver) {
+            HttpResponse<String> recent = timed(recorder, "GET /orders/recent", () -> get("/orders/recent?limit=5", token));
+            List<?> orders = (List<?>) Json.parse(recent.body());
+            if (!orders.isEmpty()) {
+               Object id = ((Map<?, ?>) orders.get(random.nextInt(orders.size()))).get("orderId");
+               String status = random.nextBoolean() ? "complete" : "incomplete";
+               timed(recorder, "PUT /orders/{id}/status",
+                     () -> put("/orders/" + id + "/status", token, Json.write(Map.of("status", status))));
+            }
+         } else {
+            timed(recorder, "GET /menu", () -> get("/menu", token));
+            List<Object> lines = new ArrayList<Object>();
+            int count = 1 + random.nextInt(3);
+            for (int i = 0; i < count; i++) {
+               lines.add(Map.of("itemName", this._items.get(random.nextInt(this._items.size())),
+                                "quantity", 1 + random.nextInt(3)));
+            }
+            int store = this._stores.get(random.nextInt(this._stores.size()));
+            HttpResponse<String> placed = timed(recorder, "POST /orders",
+               () -> post("/orders", token, Json.write(Map.of("storeId", store, "lines", lines))));
+            if (placed.statusCode() == 201) {
+               Object id = Json.parseObject(placed.body()).get("orderId");
+               timed(recorder, "GET /orders/{id}", () -> get("/orders/" + id, token));
+            }
+            timed(recorder, "GET /orders/recent", () -> get("/orders/recent", token));
+         }
+         if (THINK_MILLIS > 0) {
+            Thread.sleep(random.nextLong(THINK_MILLIS * 2 + 1));
+         }
+      }
+      post("/logout", token, "{}");
+   }//end simulate
+
+   @FunctionalInterface
+   private interface Call {
+      HttpResponse<String> send() throws IOException, InterruptedException;
+   }
+
+   private HttpResponse<String> timed(Recorder recorder, String name, Call call) throws Exception {
+      long start = System.nanoTime();
+      HttpResponse<String> response = call.send();
+      long end = System.nanoTime();
+      if (start >= this._measureFrom && end <= this._measureUntil) {
+         recorder.record(name, end - start, response.statusCode() >= 500);
+      }
+      return response;
+   }
+
+   private HttpResponse<String> get(String path, String token) throws IOException, InterruptedException {
+      return send(request(path, token).GET());
+   }
+
+   private HttpResponse<String> post(String path, String token, String body) throws IOException, InterruptedException {
+      return send(request(path, token).POST(HttpRequest.BodyPublishers.ofString(body)));
+   }
+
+   private HttpResponse<String> put(String path, String token, String body) throws IOException, InterruptedException {
+      return send(request(path, token).PUT(HttpRequest.BodyPublishers.ofString(body)));
+   }
+
+   private HttpRequest.Builder request(String path, String token) {
+      HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(URL + path)).timeout(Duration.ofSeconds(30));
+      if (token != null) {
+         builder.header("Authorization", "Bearer " + token);
+      }
+      return builder;
+   }
+
+   private HttpResponse<String> send(HttpRequest.Builder builder) throws IOException, InterruptedException {
+      return this._client.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+   }
+
+   private void loadAccounts() throws IOException {
+      List<String> lines = Files.readAllLines(Paths.get(USERS));
+      for (String line : lines.subList(1, lines.size())) {
+         String[] fields = line.split(",");
+         if (fields.length < 3) {
+            continue;
+         }
+         String role = fields[2].trim().toLowerCase();
+         if (role.equals("customer")) {
+            this._customers.add(fields);
+         } else if (role.equals("driver")) {
+            this._drivers.add(fields);
+         }
+      }
+      if (this._customers.isEmpty() || this._drivers.isEmpty()) {
+         throw new IllegalStateException(USERS + " needs at least one customer and one driver");
+      }
+   }
+
+   private static ExecutorService newThreads() {
+      try {
+         Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+         return (ExecutorService) factory.invoke(null);
+      } catch (ReflectiveOperationException e) {
+         return Executors.newFixedThreadPool(CLIENTS);
+      }
+   }
+
+   private static void report(List<Recorder> recorders) {
+      Map<String, LatencyHistogram> merged = new TreeMap<String, LatencyHistogram>();
+      long errors = 0;
+      long serverErrors = 0;
+      for (Recorder recorder : recorders) {
+         errors += recorder.errors;
+         serverErrors += recorder.serverErrors;
+         for (Map.Entry<String, LatencyHistogram> entry : recorder.latencies.entrySet()) {
+            merged.computeIfAbsent(entry.getKey(), k -> new LatencyHistogram()).add(entry.getValue());
+         }
+      }
+
+      long total = 0;
+      System.out.printf("%n%-26s %9s %9s %9s %9s %9s %9s%n", "endpoint", "requests", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+      for (Map.Entry<String, LatencyHistogram> entry : merged.entrySet()) {
+         LatencyHistogram latencies = entry.getValue();
+         total += latencies.count();
+         System.out.printf("%-26s %9d %9.1f %9.2f %9.2f %9.2f %9.2f%n", entry.getKey(), latencies.count(),
+                           latencies.count() / (double) SECONDS, latencies.percentile(0.50) / 1e6,
+                           latencies.percentile(0.99) / 1e6, latencies.percentile(0.999) / 1e6,
+                           latencies.max() / 1e6);
+      }
+      System.out.printf("%-26s %9d %9.1f%n", "total", total, total / (double) SECONDS);
+      System.out.printf("5xx responses: %d, failed clients: %d%n", serverErrors, errors);
+   }//end report
+
+   /*
+    * Latencies seen by one simulated user; only that user's thread writes it.
+    */
+   private static final class Recorder {
+      final Map<String, LatencyHistogram> latencies = new TreeMap<String, LatencyHistogram>();
+      long errors;
+      long serverErrors;
+
+      void record(String name, long nanos, boolean serverError) {
+         this.latencies.computeIfAbsent(name, k -> new LatencyHistogram()).record(nanos);
+         if (serverError) {
+            this.serverErrors++;
+         }
+      }
+   }
+}//end LoadTest
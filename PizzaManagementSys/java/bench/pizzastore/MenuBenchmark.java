@@ -0,0 +1,76 @@
+package pizzastore;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Menu lookups through MenuCache, with the equivalent query against Items
+ * as the baseline the cache replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MenuBenchmark {
+
+   private String _itemName;
+   private String _type;
+   private long _medianCents;
+
+   @Setup(Level.Trial)
+   public void setUp(BenchDatabase db) throws SQLException {
+      List<MenuItem> byPrice = db.esql.getMenu().snapshot().sortedByPrice(true);
+      if (byPrice.isEmpty()) {
+         throw new IllegalStateException("The benchmark database has no menu items");
+      }
+      MenuItem median = byPrice.get(byPrice.size() / 2);
+      this._itemName = median.name();
+      this._type = median.type();
+      this._medianCents = median.priceCents();
+   }
+
+   @Benchmark
+   public MenuItem cachedFind(BenchDatabase db) throws SQLException {
+      return db.esql.getMenu().snapshot().find(this._itemName);
+   }
+
+   @Benchmark
+   public List<MenuItem> cachedOfType(BenchDatabase db) throws SQLException {
+      return db.esql.getMenu().snapshot().ofType(this._type);
+   }
+
+   @Benchmark
+   public List<MenuItem> cachedAtMost(BenchDatabase db) throws SQLException {
+      return db.esql.getMenu().snapshot().atMost(this._medianCents);
+   }
+
+   @Benchmark
+   public List<MenuItem> cachedSortedByPrice(BenchDatabase db) throws SQLException {
+      return db.esql.getMenu().snapshot().sortedByPrice(false);
+   }
+
+   @Benchmark
+   public List<List<String>> queryFind(BenchDatabase db) throws SQLException {
+      return db.esql.executeQueryAndReturnResult("SELECT * FROM Items WHERE itemName = ?", this._itemName);
+   }
+
+   @Benchmark
+   public List<List<String>> queryOfType(BenchDatabase db) throws SQLException {
+      return db.esql.executeQueryAndReturnResult("SELECT * FROM Items WHERE typeOfItem = ?", this._type);
+   }
+}//end MenuBenchmark
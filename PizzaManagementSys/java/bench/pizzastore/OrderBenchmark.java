@@ -0,0 +1,56 @@
+package pizzastore;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Placing a three-line order through PizzaService.placeOrder: pricing from
+ * the menu cache, the FoodOrder insert, its ItemsInOrder batch and the
+ * commit.
+ * BenchDatabase deletes the orders again when the trial ends.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderBenchmark {
+
+   private static final int LINES = 3;
+
+   private Session _session;
+   private OrderRequest _request;
+
+   @Setup(Level.Trial)
+   public void setUp(BenchDatabase db) throws SQLException {
+      String login = db.first("SELECT login FROM Users WHERE role = 'customer' LIMIT 1");
+      this._session = db.esql.getSessions().open(login, "customer");
+      int storeId = Integer.parseInt(db.first("SELECT storeID FROM Store LIMIT 1"));
+      List<MenuItem> menu = db.service.menu().all();
+      List<OrderRequest.Line> lines = new ArrayList<OrderRequest.Line>();
+      for (int i = 0; i < LINES && i < menu.size(); i++) {
+         lines.add(new OrderRequest.Line(menu.get(i).name(), i + 1));
+      }
+      this._request = new OrderRequest(storeId, lines);
+   }
+
+   @Benchmark
+   public OrderReceipt placeOrder(BenchDatabase db) throws ServiceException, SQLException {
+      return db.service.placeOrder(this._session, this._request);
+   }
+}//end OrderBenchmark
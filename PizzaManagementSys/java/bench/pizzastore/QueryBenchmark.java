@@ -0,0 +1,74 @@
+package pizzastore;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The generic query paths: executeQueryAndReturnResult, which every screen
+ * used to go through, executeQueryAndPrintResult with its table layout, and
+ * wrapText on its own.  Printing goes to a discarding stream so the
+ * terminal is not part of the measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBenchmark {
+
+   private String _login;
+   private String _description;
+   private PrintStream _stdout;
+
+   @Setup(Level.Trial)
+   public void setUp(BenchDatabase db) throws SQLException {
+      this._login = db.first("SELECT login FROM FoodOrder GROUP BY login ORDER BY COUNT(*) DESC LIMIT 1");
+      this._description = db.first("SELECT description FROM Items WHERE description IS NOT NULL "
+                                 + "ORDER BY length(description) DESC LIMIT 1");
+      this._stdout = System.out;
+      System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() {
+      System.setOut(this._stdout);
+   }
+
+   @Benchmark
+   public List<List<String>> returnResultMenu(BenchDatabase db) throws SQLException {
+      return db.esql.executeQueryAndReturnResult("SELECT * FROM Items");
+   }
+
+   @Benchmark
+   public List<List<String>> returnResultOrdersByLogin(BenchDatabase db) throws SQLException {
+      return db.esql.executeQueryAndReturnResult("SELECT * FROM FoodOrder WHERE login = ?", this._login);
+   }
+
+   @Benchmark
+   public int printResultMenu(BenchDatabase db) throws SQLException {
+      return db.esql.executeQueryAndPrintResult("SELECT * FROM Items");
+   }
+
+   @Benchmark
+   @OutputTimeUnit(TimeUnit.MILLISECONDS)
+   public List<String> wrapText(BenchDatabase db) {
+      return db.esql.wrapText(this._description, 20);
+   }
+}//end QueryBenchmark
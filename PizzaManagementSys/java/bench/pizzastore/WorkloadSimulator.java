@@ -0,0 +1,344 @@
+package pizzastore;
+
+import java.lang.reflect.Method;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives PizzaService in-process with a mix of customer, driver and manager
+ * sessions on many threads and reports throughput and latency per
+ * operation.  Unlike LoadTest there is no HTTP in the way, so the numbers
+ * are those of the service, the pool and the database under contention;
+ * run it before and after a change to the order or history paths.
+ *
+ * Each thread plays one role.  It logs in with an account of that role,
+ * runs sim.sessionOps rounds, logs out and starts a new session:
+ *
+ *    customer  viewMenu, placeOrder (every other round), viewRecentOrders,
+ *              viewOrderInfo
+ *    driver    viewRecentOrders, viewOrderInfo, updateOrderStatus
+ *    manager   orderHistory (two pages of one store), viewRecentOrders,
+ *              updateOrderStatus
+ *
+ * Settings, as system properties, plus the pizzastore.bench.* database
+ * settings of BenchDatabase and the usual pizzastore.pool.* bounds:
+ *
+ *    -Dsim.threads=64
+ *    -Dsim.mix=customer:80,driver:15,manager:5   share of threads per role
+ *    -Dsim.seconds=30                            measured run time
+ *    -Dsim.warmupSeconds=5                       run first, not measured
+ *    -Dsim.thinkMillis=0                         pause between operations
+ *    -Dsim.sessionOps=20                         rounds per login
+ *    -Dsim.intake=false                          place orders through OrderIntake
+ *                                                (pizzastore.intake.* settings)
+ *
+ * Latencies go into one LatencyHistogram per thread and operation, merged
+ * at the end.  Orders placed during the run are deleted afterwards.
+ */
+public class WorkloadSimulator {
+
+   private static final int THREADS = Integer.getInteger("sim.threads", 64);
+   private static final String MIX = System.getProperty("sim.mix", "customer:80,driver:15,manager:5");
+   private static final int SECONDS = Integer.getInteger("sim.seconds", 30);
+   private static final int WARMUP_SECONDS = Integer.getInteger("sim.warmupSeconds", 5);
+   private static final long THINK_MILLIS = Long.getLong("sim.thinkMillis", 0);
+   private static final int SESSION_OPS = Integer.getInteger("sim.sessionOps", 20);
+   private static final boolean INTAKE = Boolean.getBoolean("sim.intake");
+
+   // accounts read per role.
+   private static final int ACCOUNTS = 5000;
+
+   private final BenchDatabase _db = new BenchDatabase();
+   private final Map<String, List<String[]>> _accounts = new LinkedHashMap<String, List<String[]>>();
+   private final List<Integer> _stores = new ArrayList<Integer>();
+   private final List<String> _items = new ArrayList<String>();
+
+   private volatile long _measureFrom;
+   private volatile long _measureUntil;
+
+   // group-commit order placement when sim.intake is set.
+   private OrderIntake _intake;
+
+   public static void main(String[] args) throws Exception {
+      WorkloadSimulator simulator = new WorkloadSimulator();
+      simulator._db.open();
+      if (INTAKE) {
+         simulator._intake = new OrderIntake(simulator._db.service);
+      }
+      try {
+         simulator.run();
+      } finally {
+         if (simulator._intake != null) {
+            simulator._intake.close();
+            System.out.println("Order intake: " + simulator._intake.getStats());
+         }
+         simulator._db.close();
+      }
+   }
+
+   private void run() throws Exception {
+      Map<String, Integer> mix = parseMix(MIX);
+      for (String role : mix.keySet()) {
+         List<String[]> accounts = new ArrayList<String[]>();
+         for (List<String> row : this._db.esql.executeQueryAndReturnResult(
+               "SELECT login, password FROM Users WHERE trim(role) = '" + role + "' ORDER BY login LIMIT " + ACCOUNTS)) {
+            accounts.add(new String[] { row.get(0).trim(), row.get(1).trim() });
+         }
+         if (accounts.isEmpty()) {
+            throw new IllegalStateException("The database has no " + role + " accounts");
+         }
+         this._accounts.put(role, accounts);
+      }
+      for (Store store : this._db.service.stores().all()) {
+         this._stores.add(store.storeId());
+      }
+      for (MenuItem item : this._db.service.menu().all()) {
+         this._items.add(item.name());
+      }
+
+      // threads per role in proportion to the mix, at least one for each role named
+      List<String> roles = new ArrayList<String>();
+      int weights = mix.values().stream().mapToInt(Integer::intValue).sum();
+      for (Map.Entry<String, Integer> entry : mix.entrySet()) {
+         int threads = Math.max(1, Math.round((float) THREADS * entry.getValue() / weights));
+         for (int i = 0; i < threads && roles.size() < Math.max(THREADS, mix.size()); i++) {
+            roles.add(entry.getKey());
+         }
+      }
+      System.out.printf("%d threads (%s) for %d s after %d s warm-up, think time %d ms, pool max %d%s%n",
+                        roles.size(), MIX, SECONDS, WARMUP_SECONDS, THINK_MILLIS, PizzaStore.DEFAULT_POOL_MAX,
+                        INTAKE ? ", orders through the intake queue" : "");
+
+      long start = System.nanoTime();
+      this._measureFrom = start + TimeUnit.SECONDS.toNanos(WARMUP_SECONDS);
+      this._measureUntil = this._measureFrom + TimeUnit.SECONDS.toNanos(SECONDS);
+
+      List<Recorder> recorders = new ArrayList<Recorder>();
+      ExecutorService threads = newThreads(roles.size());
+      for (int i = 0; i < roles.size(); i++) {
+         String role = roles.get(i);
+         List<String[]> accounts = this._accounts.get(role);
+         String[] account = accounts.get(i % accounts.size());
+         Recorder recorder = new Recorder();
+         recorders.add(recorder);
+         threads.submit(() -> {
+            try {
+               simulate(role, account, recorder);
+            } catch (Throwable e) {
+               recorder.crashed = e;
+            }
+            return null;
+         });
+      }
+      threads.shutdown();
+      threads.awaitTermination(WARMUP_SECONDS + SECONDS + 60, TimeUnit.SECONDS);
+
+      report(recorders);
+      System.out.println("Connection pool: " + this._db.esql.getPool().getStats());
+      System.out.println();
+      System.out.print(this._db.esql.getMetrics().dump());
+   }//end run
+
+   /*
+    * One thread: sessions of one role, back to back, until the run ends.
+    */
+   private void simulate(String role, String[] account, Recorder recorder) throws Exception {
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      while (System.nanoTime() < this._measureUntil) {
+         Session session = timed(recorder, "login", () -> this._db.service.logIn(account[0], account[1]));
+         if (session == null) {
+            continue;
+         }
+         Integer lastOrder = null;
+         for (int round = 0; round < SESSION_OPS && System.nanoTime() < this._measureUntil; round++) {
+            switch (role) {
+               case "customer":
+                  timed(recorder, "viewMenu", () -> this._db.service.menu().sortedByPrice(random.nextBoolean()));
+                  if (round % 2 == 0) {
+                     OrderReceipt receipt = timed(recorder, "placeOrder",
+                                                  () -> this._intake != null
+                                                        ? this._intake.placeOrder(session, randomOrder(random))
+                                                        : this._db.service.placeOrder(session, randomOrder(random)));
+                     if (receipt != null) {
+                        lastOrder = receipt.orderId();
+                     }
+                  }
+                  OrderColumns mine = timed(recorder, "viewRecentOrders",
+                                            () -> this._db.service.recentOrders(session, null, 5));
+                  Integer ownOrder = mine != null && !mine.isEmpty() ? Integer.valueOf(mine.orderId(random.nextInt(mine.size()))) : lastOrder;
+                  if (ownOrder != null) {
+                     timed(recorder, "viewOrderInfo", () -> this._db.service.order(session, ownOrder));
+                  }
+                  break;
+               case "driver":
+                  OrderColumns recent = timed(recorder, "viewRecentOrders",
+                                              () -> this._db.service.recentOrders(session, null, 20));
+                  if (recent != null && !recent.isEmpty()) {
+                     int orderId = recent.orderId(random.nextInt(recent.size()));
+                     timed(recorder, "viewOrderInfo", () -> this._db.service.order(session, orderId));
+                     timed(recorder, "updateOrderStatus", () -> this._db.service.updateOrderStatus(
+                        session, orderId, random.nextInt(4) == 0 ? "incomplete" : "complete"));
+                  }
+                  break;
+               default:
+                  int storeId = this._stores.get(random.nextInt(this._stores.size()));
+                  timed(recorder, "orderHistory", () -> {
+                     OrderHistoryPager pager = this._db.service.orderHistory(
+                        session, new OrderHistoryPager.Filter(null, storeId, null, null, null), 10);
+                     pager.first();
+                     return pager.next();
+                  });
+                  OrderColumns store = timed(recorder, "viewRecentOrders",
+                                             () -> this._db.service.recentOrders(session, storeId, 5));
+                  if (store != null && !store.isEmpty()) {
+                     int orderId = store.orderId(random.nextInt(store.size()));
+                     timed(recorder, "updateOrderStatus",
+                           () -> this._db.service.updateOrderStatus(session, orderId, "complete"));
+                  }
+                  break;
+            }
+            if (THINK_MILLIS > 0) {
+               Thread.sleep(random.nextLong(THINK_MILLIS * 2 + 1));
+            }
+         }
+         this._db.service.logOut(session);
+      }
+   }//end simulate
+
+   private OrderRequest randomOrder(ThreadLocalRandom random) {
+      List<OrderRequest.Line> lines = new ArrayList<OrderRequest.Line>();
+      int count = 1 + random.nextInt(3);
+      for (int i = 0; i < count; i++) {
+         lines.add(new OrderRequest.Line(this._items.get(random.nextInt(this._items.size())), 1 + random.nextInt(3)));
+      }
+      return new OrderRequest(this._stores.get(random.nextInt(this._stores.size())), lines);
+   }
+
+   @FunctionalInterface
+   private interface Operation<T> {
+      T run() throws ServiceException, SQLException, InterruptedException;
+   }
+
+   /*
+    * Runs and times one operation.  A ServiceException (for example a
+    * store that is closed) or SQLException (for example a pool timeout)
+    * counts as an error and the operation returns null.
+    */
+   private <T> T timed(Recorder recorder, String name, Operation<T> operation) {
+      long start = System.nanoTime();
+      T result = null;
+      boolean failed = false;
+      try {
+         result = operation.run();
+      } catch (ServiceException e) {
+         failed = true;
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         failed = true;
+      } catch (SQLException e) {
+         failed = true;
+         if (recorder.firstFailure == null) {
+            recorder.firstFailure = name + ": " + e.getMessage();
+         }
+      }
+      long end = System.nanoTime();
+      if (start >= this._measureFrom && end <= this._measureUntil) {
+         recorder.record(name, end - start, failed);
+      }
+      return result;
+   }
+
+   private static Map<String, Integer> parseMix(String mix) {
+      Map<String, Integer> weights = new LinkedHashMap<String, Integer>();
+      for (String part : mix.split(",")) {
+         String[] pair = part.trim().split(":");
+         String role = pair[0].trim().toLowerCase();
+         if (!role.equals("customer") && !role.equals("driver") && !role.equals("manager")) {
+            throw new IllegalArgumentException("Unknown role in sim.mix: " + pair[0]);
+         }
+         int weight = pair.length > 1 ? Integer.parseInt(pair[1].trim()) : 1;
+         if (weight > 0) {
+            weights.put(role, weight);
+         }
+      }
+      if (weights.isEmpty()) {
+         throw new IllegalArgumentException("sim.mix names no roles");
+      }
+      return weights;
+   }
+
+   private static ExecutorService newThreads(int count) {
+      try {
+         Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+         return (ExecutorService) factory.invoke(null);
+      } catch (ReflectiveOperationException e) {
+         return Executors.newFixedThreadPool(count);
+      }
+   }
+
+   private static void report(List<Recorder> recorders) {
+      Map<String, LatencyHistogram> merged = new TreeMap<String, LatencyHistogram>();
+      Map<String, Long> errors = new TreeMap<String, Long>();
+      int crashed = 0;
+      String failure = null;
+      for (Recorder recorder : recorders) {
+         if (failure == null) {
+            failure = recorder.firstFailure;
+         }
+         for (Map.Entry<String, LatencyHistogram> entry : recorder.latencies.entrySet()) {
+            merged.computeIfAbsent(entry.getKey(), k -> new LatencyHistogram()).add(entry.getValue());
+         }
+         recorder.errors.forEach((name, count) -> errors.merge(name, count, Long::sum));
+         if (recorder.crashed != null) {
+            if (crashed++ == 0) {
+               recorder.crashed.printStackTrace();
+            }
+         }
+      }
+
+      long total = 0;
+      System.out.printf("%n%-18s %9s %9s %9s %9s %9s %9s %9s %7s%n", "operation", "count", "ops/s",
+                        "mean ms", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "errors");
+      for (Map.Entry<String, LatencyHistogram> entry : merged.entrySet()) {
+         LatencyHistogram latencies = entry.getValue();
+         total += latencies.count();
+         System.out.printf("%-18s %9d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f %7d%n", entry.getKey(), latencies.count(),
+                           latencies.count() / (double) SECONDS, latencies.mean() / 1e6,
+                           latencies.percentile(0.50) / 1e6, latencies.percentile(0.99) / 1e6,
+                           latencies.percentile(0.999) / 1e6, latencies.max() / 1e6,
+                           errors.getOrDefault(entry.getKey(), 0L));
+      }
+      System.out.printf("%-18s %9d %9.1f%n", "total", total, total / (double) SECONDS);
+      if (failure != null) {
+         System.out.println("First database error: " + failure);
+      }
+      if (crashed > 0) {
+         System.out.println(crashed + " threads stopped on an unexpected exception");
+      }
+   }//end report
+
+   /*
+    * Latencies seen by one thread; only that thread writes it.
+    */
+   private static final class Recorder {
+      final Map<String, LatencyHistogram> latencies = new TreeMap<String, LatencyHistogram>();
+      final Map<String, Long> errors = new TreeMap<String, Long>();
+      volatile Throwable crashed;
+      String firstFailure;
+
+      void record(String name, long nanos, boolean failed) {
+         this.latencies.computeIfAbsent(name, k -> new LatencyHistogram()).record(nanos);
+         if (failed) {
+            this.errors.merge(name, 1L, Long::sum);
+         }
+      }
+   }
+}//end WorkloadSimulator
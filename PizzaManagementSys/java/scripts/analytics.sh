@@ -0,0 +1,38 @@
+#!/bin/bash
+# --------------------------------------------------------------------
+# Pizza Management System - Order Analytics Script
+# --------------------------------------------------------------------
+# Streams the orders and their lines out of the database with COPY and
+# prints item co-purchase, demand by store and hour of day, and repeat
+# customer reports, all computed in the JVM.  Given a directory, it reads
+# the CSV files there instead (data/, or an OrderPartitions archive), e.g.
+#    ./analytics.sh
+#    ./analytics.sh /backup/orders
+#    JAVA_OPTS="-Xmx4g -Dpizzastore.analytics.from=2024-01-01" ./analytics.sh
+#
+# The database password is read from PIZZASTORE_DB_PASSWORD (empty if
+# unset), as for every tool here.
+
+# Get current directory (this script's directory)
+DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
+
+# ---- Configuration ----
+DB_NAME="pizzamanagement"
+DB_USER="postgres"
+DB_PORT="5433"
+JDBC_JAR="$DIR/../lib/postgresql-42.7.1.jar"
+
+# ---- Step 1: Compile ----
+echo "Compiling..."
+mvn -B -q -f "$DIR/../pom.xml" compile
+
+if [ $? -ne 0 ]; then
+    echo "❌ Build failed."
+    exit 1
+fi
+
+# ---- Step 2: Run ----
+if [ $# -eq 0 ]; then
+    set -- "$DB_NAME" "$DB_PORT" "$DB_USER"
+fi
+java $JAVA_OPTS -cp "$DIR/../target/classes:$JDBC_JAR" pizzastore.OrderAnalytics "$@"
@@ -0,0 +1,35 @@
+#!/bin/bash
+# --------------------------------------------------------------------
+# Pizza Management System - Benchmark Script
+# --------------------------------------------------------------------
+# Builds the JMH benchmarks and runs them against the local database.
+# Extra arguments go to JMH, e.g.
+#    ./bench.sh MenuBenchmark        run one benchmark class
+#    ./bench.sh -prof gc             also report allocation per operation
+#    ./bench.sh -rf json -rff before.json
+#                                    keep results to compare after a change
+#
+# The database password is read from PIZZASTORE_DB_PASSWORD (empty if
+# unset), as for every tool here.
+
+# Get current directory (this script's directory)
+DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
+
+# ---- Configuration ----
+DB_NAME="pizzamanagement"
+DB_USER="postgres"
+DB_PORT="5433"
+
+# ---- Step 1: Build benchmarks ----
+echo "Building benchmarks..."
+mvn -B -q -f "$DIR/../pom.xml" -Pbench package
+
+if [ $? -ne 0 ]; then
+    echo "❌ Build failed."
+    exit 1
+fi
+
+# ---- Step 2: Run benchmarks ----
+java -Dpizzastore.bench.db="$DB_NAME" -Dpizzastore.bench.port="$DB_PORT" \
+     -Dpizzastore.bench.user="$DB_USER" \
+     -jar "$DIR/../target/benchmarks.jar" "$@"
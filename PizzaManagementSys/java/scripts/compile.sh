@@ -2,6 +2,8 @@
 # --------------------------------------------------------------------
 # Pizza Management System - Compile & Run Script
 # --------------------------------------------------------------------
+# The console takes the database password from PIZZASTORE_DB_PASSWORD,
+# and asks for it when that is unset.
 export JAVA_HOME="$(brew --prefix)/opt/openjdk@17"
 export PATH="$JAVA_HOME/bin:$PATH"
 
@@ -13,11 +15,11 @@ DB_NAME="pizzamanagement"
 DB_USER="postgres"
 DB_PORT="5433"
 JDBC_JAR="$DIR/../lib/postgresql-42.7.1.jar"
-MAIN_CLASS="PizzaStore"
+MAIN_CLASS="pizzastore.PizzaStore"
 
 # ---- Step 1: Compile Java source ----
 echo "Compiling Java source files..."
-javac -d "$DIR/../classes" "$DIR/../src/$MAIN_CLASS.java"
+javac -cp "$JDBC_JAR" -d "$DIR/../classes" "$DIR"/../src/pizzastore/*.java
 
 if [ $? -ne 0 ]; then
     echo "❌ Compilation failed. Please check for syntax errors."
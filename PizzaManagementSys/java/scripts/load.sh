@@ -0,0 +1,37 @@
+#!/bin/bash
+# --------------------------------------------------------------------
+# Pizza Management System - Bulk Load Script
+# --------------------------------------------------------------------
+# Loads the CSVs in a data directory (default ../../data) into the
+# database with parallel COPY.  Tables must already exist; run
+# create_tables.sql first.  Extra JVM settings can be passed in
+# JAVA_OPTS, e.g.
+#    JAVA_OPTS=-Dpizzastore.load.truncate=true ./load.sh /data/big
+#                                    empty the tables and reseed
+#    JAVA_OPTS=-Dpizzastore.load.threads=8 ./load.sh
+#
+# The database password is read from PIZZASTORE_DB_PASSWORD (empty if
+# unset), as for every tool here.
+
+# Get current directory (this script's directory)
+DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
+
+# ---- Configuration ----
+DB_NAME="pizzamanagement"
+DB_USER="postgres"
+DB_PORT="5433"
+JDBC_JAR="$DIR/../lib/postgresql-42.7.1.jar"
+DATA_DIR="${1:-$DIR/../../data}"
+
+# ---- Step 1: Compile ----
+echo "Compiling..."
+mvn -B -q -f "$DIR/../pom.xml" compile
+
+if [ $? -ne 0 ]; then
+    echo "❌ Build failed."
+    exit 1
+fi
+
+# ---- Step 2: Load ----
+java $JAVA_OPTS -cp "$DIR/../target/classes:$JDBC_JAR" pizzastore.BulkLoader \
+     "$DB_NAME" "$DB_PORT" "$DB_USER" "$DATA_DIR"
@@ -0,0 +1,37 @@
+#!/bin/bash
+# --------------------------------------------------------------------
+# Pizza Management System - Order Partition Script
+# --------------------------------------------------------------------
+# Keeps FoodOrder's monthly partitions in shape.  With no arguments it
+# moves any orders out of the default partition into their months and
+# creates the months ahead (PizzaServer also does this once a day).
+# With "archive <yyyy-mm> <dir>" it detaches every month before the
+# given one, writes its orders and order lines to CSV files in <dir>,
+# and drops them from the database, e.g.
+#    ./partitions.sh archive 2023-01 /backup/orders
+#    JAVA_OPTS=-Dpizzastore.partitions.monthsAhead=12 ./partitions.sh
+#
+# The database password is read from PIZZASTORE_DB_PASSWORD (empty if
+# unset), as for every tool here.
+
+# Get current directory (this script's directory)
+DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
+
+# ---- Configuration ----
+DB_NAME="pizzamanagement"
+DB_USER="postgres"
+DB_PORT="5433"
+JDBC_JAR="$DIR/../lib/postgresql-42.7.1.jar"
+
+# ---- Step 1: Compile ----
+echo "Compiling..."
+mvn -B -q -f "$DIR/../pom.xml" compile
+
+if [ $? -ne 0 ]; then
+    echo "❌ Build failed."
+    exit 1
+fi
+
+# ---- Step 2: Run ----
+java $JAVA_OPTS -cp "$DIR/../target/classes:$JDBC_JAR" pizzastore.OrderPartitions \
+     "$DB_NAME" "$DB_PORT" "$DB_USER" "${@:-ensure}"
@@ -0,0 +1,36 @@
+#!/bin/bash
+# --------------------------------------------------------------------
+# Pizza Management System - Sales Rollup Script
+# --------------------------------------------------------------------
+# Checks or rebuilds the sales rollups (SalesByStore, SalesByItem,
+# SalesByHour).  With no arguments it recomputes them from the orders
+# and prints any difference, exiting with 2 if there is one.  With
+# "rebuild" it recomputes and replaces every month still in FoodOrder,
+# for instance after orders were changed by hand:
+#    ./rollups.sh
+#    ./rollups.sh rebuild
+#
+# The database password is read from PIZZASTORE_DB_PASSWORD (empty if
+# unset), as for every tool here.
+
+# Get current directory (this script's directory)
+DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
+
+# ---- Configuration ----
+DB_NAME="pizzamanagement"
+DB_USER="postgres"
+DB_PORT="5433"
+JDBC_JAR="$DIR/../lib/postgresql-42.7.1.jar"
+
+# ---- Step 1: Compile ----
+echo "Compiling..."
+mvn -B -q -f "$DIR/../pom.xml" compile
+
+if [ $? -ne 0 ]; then
+    echo "❌ Build failed."
+    exit 1
+fi
+
+# ---- Step 2: Run ----
+java $JAVA_OPTS -cp "$DIR/../target/classes:$JDBC_JAR" pizzastore.SalesRollups \
+     "$DB_NAME" "$DB_PORT" "$DB_USER" "${@:-check}"
@@ -0,0 +1,635 @@
+package pizzastore;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+
+/**
+ * Loads the data/ CSVs into an existing schema with COPY, replacing
+ * sql/src/load_data.sql for large data sets.
+ *
+ * Tables are loaded in foreign key order, with tables that do not depend
+ * on each other loaded at the same time:
+ *
+ *    1. Users, Items, Store
+ *    2. FavoriteItems, FoodOrder
+ *    3. ItemsInOrder
+ *
+ * Each file is read once by a splitter thread that cuts it into blocks of
+ * whole CSV records (quote aware, so quoted commas and newlines are safe)
+ * and hands them to up to pizzastore.load.threads COPY sessions, each on
+ * its own connection.  Rows can also come from any other Source, such as
+ * DataGenerator, without going through files.  Secondary indexes on the six tables (those from
+ * create_indexes.sql, or any other index that does not back a constraint)
+ * are dropped before the load and rebuilt in parallel afterwards, even if
+ * the load fails.  Primary keys and foreign keys stay in place, so bad data
+ * is still rejected.
+ *
+ * Orders of any month are accepted: default partitions of FoodOrder and
+ * ItemsInOrder are added for the load if needed, and afterwards
+ * OrderPartitions moves their rows into monthly partitions and drops them
+ * again.  Lines from files without an orderTimestamp column, such as the
+ * bundled itemsinorder.csv, are copied into itemsinorder_unstamped first
+ * and stored once the orders are in, each with its order's time.  The
+ * sales rollups are rebuilt at the end, since COPY does not maintain them.
+ *
+ * Settings, as system properties:
+ *
+ *    -Dpizzastore.load.threads=N           COPY sessions per table (default: cores, at least 2)
+ *    -Dpizzastore.load.blockBytes=1048576  size of each block handed to a session
+ *    -Dpizzastore.load.truncate=false      empty the six tables and the rollups first, for a reseed
+ *    -Dpizzastore.load.maintenanceWorkMem=256MB
+ *                                          memory for each index rebuild
+ *    -Dpizzastore.load.progressSeconds=2   how often progress is printed
+ */
+public class BulkLoader {
+
+   static final int THREADS = Integer.getInteger("pizzastore.load.threads",
+                                                 Math.max(2, Runtime.getRuntime().availableProcessors()));
+   static final int BLOCK_BYTES = Integer.getInteger("pizzastore.load.blockBytes", 1 << 20);
+   static final boolean TRUNCATE = Boolean.getBoolean("pizzastore.load.truncate");
+   static final String MAINTENANCE_WORK_MEM = System.getProperty("pizzastore.load.maintenanceWorkMem", "256MB");
+   static final int PROGRESS_SECONDS = Integer.getInteger("pizzastore.load.progressSeconds", 2);
+
+   // blocks waiting for a COPY session, per session.
+   private static final int QUEUE_DEPTH = 4;
+
+   // tells a COPY session its table has no more blocks.
+   private static final byte[] END = new byte[0];
+
+   // tables in load order; tables in the same stage only reference earlier stages.
+   private static final String[][] STAGES = {
+      { "Users", "Items", "Store" },
+      { "FavoriteItems", "FoodOrder" },
+      { "ItemsInOrder" },
+   };
+
+   // where lines that lack their order's time wait for it.
+   static final String UNSTAMPED = "itemsinorder_unstamped";
+
+   private final String _url;
+   private final String _user;
+   private final String _passwd;
+   private final Map<String, Table> _tables = new LinkedHashMap<String, Table>();
+   private final ExecutorService _threads = Executors.newCachedThreadPool(r -> {
+      Thread t = new Thread(r, "bulk-loader");
+      t.setDaemon(true);
+      return t;
+   });
+
+   /**
+    * @param url the JDBC connection URL
+    * @param user the user name used to login to the database
+    * @param passwd the user login password
+    * @param dataDir directory holding users.csv, items.csv, store.csv,
+    *        favoriteitems.csv, foodorder.csv and itemsinorder.csv
+    */
+   public BulkLoader(String url, String user, String passwd, Path dataDir) {
+      this(url, user, passwd, fileSources(dataDir));
+   }
+
+   /**
+    * @param url the JDBC connection URL
+    * @param user the user name used to login to the database
+    * @param passwd the user login password
+    * @param sources the rows of each table, keyed by table name
+    *        (Users, Items, Store, FavoriteItems, FoodOrder, ItemsInOrder)
+    */
+   public BulkLoader(String url, String user, String passwd, Map<String, Source> sources) {
+      this._url = url;
+      this._user = user;
+      this._passwd = passwd;
+      for (String[] stage : STAGES) {
+         for (String name : stage) {
+            Source source = sources.get(name);
+            if (source == null) {
+               throw new IllegalArgumentException("No rows given for " + name);
+            }
+            this._tables.put(name, new Table(name, source));
+         }
+      }
+   }//end BulkLoader
+
+   /**
+    * Produces one table's rows as CSV without a header, in blocks that each
+    * hold only whole records.  Blocks may be loaded in any order and by
+    * different sessions.
+    */
+   public interface Source {
+      /**
+       * @return roughly how many bytes the rows take, used to decide how
+       *         many COPY sessions the table gets
+       * @throws java.io.IOException when the rows cannot be read
+       */
+      long estimatedBytes() throws IOException;
+
+      /**
+       * Hands every block to the sink, blocking while the sessions catch up.
+       */
+      void produce(Sink sink) throws Exception;
+
+      /**
+       * @return the columns each row holds, in order, or null when the rows
+       *         hold every column of the table in table order
+       * @throws java.io.IOException when the rows cannot be read
+       */
+      default List<String> columns() throws IOException {
+         return null;
+      }
+   }
+
+   /**
+    * Receives the blocks of a Source.
+    */
+   public interface Sink {
+      void accept(byte[] block) throws InterruptedException;
+   }
+
+   // each table read from <name>.csv in the data directory.
+   private static Map<String, Source> fileSources(Path dataDir) {
+      Map<String, Source> sources = new LinkedHashMap<String, Source>();
+      for (String[] stage : STAGES) {
+         for (String name : stage) {
+            Path file = dataDir.resolve(name.toLowerCase() + ".csv");
+            sources.put(name, new Source() {
+               @Override
+               public long estimatedBytes() throws IOException {
+                  if (!Files.isReadable(file)) {
+                     throw new IOException("Cannot read " + file);
+                  }
+                  return Files.size(file);
+               }
+
+               @Override
+               public void produce(Sink sink) throws IOException, InterruptedException {
+                  split(file, sink);
+               }
+
+               @Override
+               public List<String> columns() throws IOException {
+                  return header(file);
+               }
+            });
+         }
+      }
+      return sources;
+   }//end fileSources
+
+   /**
+    * Runs the whole load: optional truncate, drop secondary indexes, COPY
+    * every table, rebuild the indexes, split the orders and lines into
+    * monthly partitions, move the order ID sequence past the loaded orders,
+    * store any lines waiting for their order's time and analyze, then
+    * rebuild the sales rollups.
+    *
+    * @throws java.lang.Exception when any table fails to load; tables
+    *         already loaded stay loaded and the indexes are still rebuilt
+    */
+   public void load() throws Exception {
+      for (Table table : this._tables.values()) {
+         table.estimatedBytes = table.source.estimatedBytes();
+         table.columns = table.source.columns();
+      }
+      Table lines = this._tables.get("ItemsInOrder");
+      boolean unstamped = lines.columns != null && !containsIgnoreCase(lines.columns, "orderTimestamp");
+      if (unstamped) {
+         lines.target = UNSTAMPED;
+      }
+
+      long start = System.nanoTime();
+      List<String> indexes;
+      try (Connection conn = PizzaStore.connect(this._url, this._user, this._passwd);
+           Statement stmt = conn.createStatement()) {
+         if (TRUNCATE) {
+            System.out.println("Truncating " + String.join(", ", this._tables.keySet()));
+            // the rollups would otherwise keep the old orders' sales as archived months
+            stmt.execute("TRUNCATE " + String.join(", ", this._tables.keySet()) + ", SalesByStore, SalesByItem, SalesByHour");
+         }
+         indexes = dropIndexes(stmt);
+         if (unstamped) {
+            stmt.execute("DROP TABLE IF EXISTS " + UNSTAMPED);
+            stmt.execute("CREATE UNLOGGED TABLE " + UNSTAMPED + " (LIKE ItemsInOrder)");
+            stmt.execute("ALTER TABLE " + UNSTAMPED + " ALTER COLUMN orderTimestamp DROP NOT NULL");
+         }
+      }
+      OrderPartitions partitions = new OrderPartitions(this._url, this._user, this._passwd);
+      partitions.openDefault();
+
+      ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor(r -> {
+         Thread t = new Thread(r, "bulk-loader-progress");
+         t.setDaemon(true);
+         return t;
+      });
+      progress.scheduleAtFixedRate(this::printProgress, PROGRESS_SECONDS, PROGRESS_SECONDS, TimeUnit.SECONDS);
+      try {
+         for (String[] stage : STAGES) {
+            List<Future<?>> loads = new ArrayList<Future<?>>();
+            for (String name : stage) {
+               Table table = this._tables.get(name);
+               loads.add(this._threads.submit(() -> {
+                  loadTable(table);
+                  return null;
+               }));
+            }
+            waitFor(loads);
+         }
+      } finally {
+         progress.shutdownNow();
+         rebuildIndexes(indexes);
+      }
+
+      // after the rebuild, so each month is picked out of the default partition by index
+      long splitStart = System.nanoTime();
+      List<String> months = partitions.splitDefault();
+      if (!months.isEmpty()) {
+         System.out.printf("Split orders into %d monthly partitions in %.2f s%n", months.size(),
+                           (System.nanoTime() - splitStart) / 1e9);
+      }
+
+      try (Connection conn = PizzaStore.connect(this._url, this._user, this._passwd);
+           Statement stmt = conn.createStatement()) {
+         // new orders continue after the highest loaded ID
+         stmt.execute("SELECT setval('foodorder_orderid_seq', COALESCE(MAX(orderID), 0) + 1, false) FROM FoodOrder");
+         // lines written before unit prices were kept take the current menu price
+         boolean unpriced = lines.columns != null && !containsIgnoreCase(lines.columns, "unitPrice");
+         if (unstamped) {
+            // after the split, so each line goes straight to its month; a
+            // line without its order gets no time and fails the NOT NULL
+            long stampStart = System.nanoTime();
+            int stamped = stmt.executeUpdate(
+               "INSERT INTO ItemsInOrder(orderID, itemName, quantity, unitPrice, orderTimestamp) "
+               + "SELECT l.orderID, l.itemName, l.quantity, " + (unpriced ? "i.price" : "l.unitPrice")
+               + ", f.orderTimestamp FROM " + UNSTAMPED + " l LEFT JOIN FoodOrder f ON f.orderID = l.orderID "
+               + "LEFT JOIN Items i ON i.itemName = l.itemName");
+            stmt.execute("DROP TABLE " + UNSTAMPED);
+            System.out.printf("Stored %,d order lines with their order's time in %.2f s%n", stamped,
+                              (System.nanoTime() - stampStart) / 1e9);
+         } else if (unpriced) {
+            int priced = stmt.executeUpdate("UPDATE ItemsInOrder l SET unitPrice = i.price FROM Items i "
+                                            + "WHERE i.itemName = l.itemName AND l.unitPrice IS NULL");
+            System.out.printf("Priced %,d order lines from the menu%n", priced);
+         }
+         stmt.execute("ANALYZE " + String.join(", ", this._tables.keySet()));
+
+         // COPY bypasses PizzaService, so the sales rollups are summed afresh
+         long rollupStart = System.nanoTime();
+         SalesRollups.rebuild(conn);
+         System.out.printf("Rebuilt the sales rollups in %.2f s%n", (System.nanoTime() - rollupStart) / 1e9);
+      }
+
+      double seconds = (System.nanoTime() - start) / 1e9;
+      long rows = 0;
+      System.out.println();
+      System.out.printf("%-14s %12s %9s %12s %9s%n", "table", "rows", "seconds", "rows/s", "MB/s");
+      for (Table table : this._tables.values()) {
+         rows += table.rows.get();
+         System.out.printf("%-14s %,12d %9.2f %,12.0f %9.1f%n", table.name, table.rows.get(), table.seconds(),
+                           table.rows.get() / table.seconds(), table.bytes.get() / 1e6 / table.seconds());
+      }
+      System.out.printf("%-14s %,12d %9.2f %,12.0f%n", "total", rows, seconds, rows / seconds);
+   }//end load
+
+   /*
+    * Loads one table: this thread produces its blocks while sessions
+    * started on the pool COPY them in.
+    */
+   private void loadTable(Table table) throws Exception {
+      int sessions = (int) Math.max(1, Math.min(THREADS, table.estimatedBytes / BLOCK_BYTES));
+      BlockingQueue<byte[]> blocks = new ArrayBlockingQueue<byte[]>(sessions * QUEUE_DEPTH);
+      table.startNanos = System.nanoTime();
+
+      List<Future<?>> copies = new ArrayList<Future<?>>();
+      for (int i = 0; i < sessions; i++) {
+         copies.add(this._threads.submit(() -> {
+            copy(table, blocks);
+            return null;
+         }));
+      }
+      try {
+         table.source.produce(block -> offer(table, blocks, block));
+         for (int i = 0; i < sessions; i++) {
+            offer(table, blocks, END);
+         }
+      } catch (Exception e) {
+         table.failed = true;
+         throw e;
+      } finally {
+         try {
+            waitFor(copies);
+         } finally {
+            table.endNanos = System.nanoTime();
+         }
+      }
+   }//end loadTable
+
+   /*
+    * The column names on the file's header line, so files written before a
+    * column was added still load; unquoted like COPY's column list expects.
+    */
+   private static List<String> header(Path file) throws IOException {
+      String line;
+      try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+         line = in.readLine();
+      }
+      if (line == null) {
+         throw new IOException(file + " is empty");
+      }
+      List<String> columns = new ArrayList<String>();
+      for (String column : line.split(",")) {
+         column = column.trim().replace("\"", "");
+         if (!column.matches("[A-Za-z_][A-Za-z0-9_]*")) {
+            throw new IOException("Bad column name '" + column + "' in the header of " + file);
+         }
+         columns.add(column);
+      }
+      return columns;
+   }//end header
+
+   /*
+    * Reads the file and queues it as blocks of whole records, skipping the
+    * header.  A newline ends a record unless it is inside double quotes;
+    * a doubled quote inside a quoted field flips the state twice, so it
+    * needs no special case.
+    */
+   private static void split(Path file, Sink sink) throws IOException, InterruptedException {
+      try (InputStream in = Files.newInputStream(file)) {
+         byte[] buf = new byte[BLOCK_BYTES];
+         int len = 0;
+         int scanned = 0;
+         int start = 0;     // first byte not yet queued
+         int end = 0;       // just past the last complete record
+         boolean quoted = false;
+         boolean header = true;
+         int n;
+         while ((n = in.read(buf, len, buf.length - len)) > 0) {
+            len += n;
+            for (; scanned < len; scanned++) {
+               byte b = buf[scanned];
+               if (b == '"') {
+                  quoted = !quoted;
+               } else if (b == '\n' && !quoted) {
+                  end = scanned + 1;
+                  if (header) {
+                     header = false;
+                     start = end;
+                  }
+               }
+            }
+            if (len == buf.length) {
+               if (end > start) {
+                  sink.accept(Arrays.copyOfRange(buf, start, end));
+                  System.arraycopy(buf, end, buf, 0, len - end);
+                  len -= end;
+                  scanned -= end;
+                  start = 0;
+                  end = 0;
+               } else {
+                  // a single record longer than a block
+                  buf = Arrays.copyOf(buf, buf.length * 2);
+               }
+            }
+         }
+         if (!header && len > start) {
+            sink.accept(Arrays.copyOfRange(buf, start, len));
+         }
+      }
+   }//end split
+
+   private static void offer(Table table, BlockingQueue<byte[]> blocks, byte[] block) throws InterruptedException {
+      while (!blocks.offer(block, 100, TimeUnit.MILLISECONDS)) {
+         if (table.failed) {
+            throw new IllegalStateException("Load of " + table.name + " was abandoned");
+         }
+      }
+      table.bytes.addAndGet(block.length);
+   }
+
+   /*
+    * One COPY session: streams blocks from the queue until END.
+    */
+   private void copy(Table table, BlockingQueue<byte[]> blocks) throws Exception {
+      try (Connection conn = PizzaStore.connect(this._url, this._user, this._passwd)) {
+         try (Statement stmt = conn.createStatement()) {
+            // each COPY commits on its own; nothing waits on the WAL flush
+            stmt.execute("SET synchronous_commit TO off");
+         }
+         CopyManager copyManager = conn.unwrap(PGConnection.class).getCopyAPI();
+         String columns = table.columns == null ? "" : "(" + String.join(", ", table.columns) + ")";
+         CopyIn copy = copyManager.copyIn("COPY " + table.target + columns + " FROM STDIN WITH (FORMAT csv)");
+         try {
+            long copied = 0;
+            while (true) {
+               byte[] block = blocks.poll(100, TimeUnit.MILLISECONDS);
+               if (block == END) {
+                  break;
+               }
+               if (table.failed) {
+                  throw new IllegalStateException("Load of " + table.name + " was abandoned");
+               }
+               if (block != null) {
+                  copy.writeToCopy(block, 0, block.length);
+                  long lines = count(block);
+                  copied += lines;
+                  table.rows.addAndGet(lines);
+               }
+            }
+            long rows = copy.endCopy();
+            // the server's count is the authority; the newline count above
+            // only drives progress
+            table.rows.addAndGet(rows - copied);
+         } catch (Exception e) {
+            table.failed = true;
+            if (copy.isActive()) {
+               copy.cancelCopy();
+            }
+            throw e;
+         }
+      }
+   }//end copy
+
+   // newlines in a block, an estimate of its rows for progress reporting.
+   private static long count(byte[] block) {
+      long lines = 0;
+      for (byte b : block) {
+         if (b == '\n') {
+            lines++;
+         }
+      }
+      return lines;
+   }
+
+   /*
+    * Drops every index on the loaded tables that does not back a primary
+    * key or unique constraint and returns the statements that recreate them.
+    */
+   private List<String> dropIndexes(Statement stmt) throws SQLException {
+      List<String> names = new ArrayList<String>();
+      List<String> definitions = new ArrayList<String>();
+      String tables = "'" + String.join("', '", this._tables.keySet()).toLowerCase() + "'";
+      try (ResultSet rs = stmt.executeQuery(
+            "SELECT quote_ident(i.schemaname) || '.' || quote_ident(i.indexname), i.indexdef "
+            + "FROM pg_indexes i "
+            + "WHERE i.schemaname = current_schema() AND i.tablename IN (" + tables + ") "
+            + "AND NOT EXISTS (SELECT 1 FROM pg_constraint c "
+            + "WHERE c.conindid = (quote_ident(i.schemaname) || '.' || quote_ident(i.indexname))::regclass)")) {
+         while (rs.next()) {
+            names.add(rs.getString(1));
+            // a partitioned table's index is listed as ON ONLY, which would
+            // leave the partitions without it
+            definitions.add(rs.getString(2).replace(" ON ONLY ", " ON "));
+         }
+      }
+      for (String name : names) {
+         stmt.execute("DROP INDEX " + name);
+      }
+      if (!names.isEmpty()) {
+         System.out.println("Dropped " + names.size() + " indexes: " + String.join(", ", names));
+      }
+      return definitions;
+   }//end dropIndexes
+
+   /*
+    * Recreates the dropped indexes, each on its own connection.
+    */
+   private void rebuildIndexes(List<String> definitions) throws Exception {
+      if (definitions.isEmpty()) {
+         return;
+      }
+      long start = System.nanoTime();
+      System.out.println("Rebuilding " + definitions.size() + " indexes");
+      List<Future<?>> builds = new ArrayList<Future<?>>();
+      for (String definition : definitions) {
+         builds.add(this._threads.submit(() -> {
+            try (Connection conn = PizzaStore.connect(this._url, this._user, this._passwd);
+                 Statement stmt = conn.createStatement()) {
+               stmt.execute("SET maintenance_work_mem TO '" + MAINTENANCE_WORK_MEM.replace("'", "") + "'");
+               stmt.execute(definition);
+            }
+            return null;
+         }));
+      }
+      waitFor(builds);
+      System.out.printf("Rebuilt indexes in %.2f s%n", (System.nanoTime() - start) / 1e9);
+   }//end rebuildIndexes
+
+   private void printProgress() {
+      StringBuilder line = new StringBuilder();
+      long now = System.nanoTime();
+      for (Table table : this._tables.values()) {
+         if (table.startNanos == 0 || table.endNanos != 0) {
+            continue;
+         }
+         double seconds = (now - table.startNanos) / 1e9;
+         line.append(String.format("  %s %,d rows sent (%,.0f rows/s, %.1f MB)", table.name, table.rows.get(),
+                                   table.rows.get() / seconds, table.bytes.get() / 1e6));
+      }
+      if (line.length() > 0) {
+         System.out.println("Loading" + line);
+      }
+   }//end printProgress
+
+   /*
+    * Waits for every task, then rethrows the first failure.
+    */
+   private static void waitFor(List<Future<?>> tasks) throws Exception {
+      Exception failure = null;
+      for (Future<?> task : tasks) {
+         try {
+            task.get();
+         } catch (ExecutionException e) {
+            if (failure == null) {
+               failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+         }
+      }
+      if (failure != null) {
+         throw failure;
+      }
+   }
+
+   private static boolean containsIgnoreCase(List<String> names, String name) {
+      for (String n : names) {
+         if (n.equalsIgnoreCase(name)) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /*
+    * One table's rows and load counters.
+    */
+   private static final class Table {
+      final String name;
+      final Source source;
+      // the table COPY writes to, normally the table itself
+      String target;
+      long estimatedBytes;
+      List<String> columns;
+      final AtomicLong rows = new AtomicLong();
+      final AtomicLong bytes = new AtomicLong();
+      volatile long startNanos;
+      volatile long endNanos;
+      volatile boolean failed;
+
+      Table(String name, Source source) {
+         this.name = name;
+         this.source = source;
+         this.target = name;
+      }
+
+      double seconds() {
+         return Math.max(1e-3, (this.endNanos - this.startNanos) / 1e9);
+      }
+   }//end Table
+
+   /**
+    * Loads a database from CSV files.  The database password is read from
+    * the PIZZASTORE_DB_PASSWORD environment variable (empty if unset).
+    *
+    * @param args <dbname> <port> <user> [data directory, default ../data]
+    */
+   public static void main(String[] args) throws Exception {
+      if (args.length < 3 || args.length > 4) {
+         System.err.println("Usage: java [-classpath <classpath>] " + BulkLoader.class.getName()
+                            + " <dbname> <port> <user> [data directory]");
+         return;
+      }
+      String url = PizzaStore.url(args[0], args[1]);
+      Path dataDir = Paths.get(args.length == 4 ? args[3] : "../data");
+
+      System.out.printf("Loading %s into %s with up to %d COPY sessions per table%n", dataDir, args[0], THREADS);
+      try {
+         new BulkLoader(url, args[2], PizzaStore.password(), dataDir).load();
+      } catch (Exception e) {
+         System.err.println("Load failed: " + e.getMessage());
+         System.exit(1);
+      }
+   }//end main
+}//end BulkLoader
@@ -0,0 +1,448 @@
+package pizzastore;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded pool of physical PostgreSQL connections.  Every PizzaStore
+ * operation borrows a connection for the duration of one statement (or one
+ * transaction) and gives it back, so many sessions and worker threads can
+ * share a single process.
+ *
+ * Idle connections are validated before they are handed out, and a
+ * background thread closes connections that have sat idle for longer than
+ * the idle timeout while keeping at least minSize connections open.
+ *
+ * The pool state is guarded by a ReentrantLock rather than a monitor so
+ * that virtual threads waiting for a connection release their carrier
+ * thread instead of pinning it.  Threads that have to wait are served in
+ * arrival order: a returned connection goes straight to the longest
+ * waiter, so a thread that keeps releasing and re-borrowing cannot starve
+ * the others.
+ */
+public class ConnectionPool {
+
+   // seconds to wait for the server when validating a borrowed connection.
+   private static final int VALIDATION_TIMEOUT = 2;
+
+   // prepared statements cached per connection; override with -Dpizzastore.statementCacheSize
+   static final int STATEMENT_CACHE_SIZE = Integer.getInteger("pizzastore.statementCacheSize", 64);
+
+   // executions of a statement before the driver switches to a named
+   // server-side prepare; override with -Dpizzastore.prepareThreshold
+   static final int PREPARE_THRESHOLD = Integer.getInteger("pizzastore.prepareThreshold", 3);
+
+   private final String _url;
+   private final Properties _properties;
+   private final int _minSize;
+   private final int _maxSize;
+   private final long _maxWaitNanos;
+   private final long _idleTimeoutNanos;
+
+   private final ReentrantLock _lock = new ReentrantLock();
+
+   // threads waiting in borrow(), oldest first.
+   private final Deque<Waiter> _waiters = new ArrayDeque<Waiter>();
+
+   // idle connections, most recently returned first.
+   private final Deque<PooledConnection> _idle = new ArrayDeque<PooledConnection>();
+
+   // connections that are open, idle or borrowed, plus those being opened.
+   private int _total = 0;
+   private boolean _closed = false;
+
+   // metrics, guarded by _lock.
+   private long _borrowCount = 0;
+   private long _totalWaitNanos = 0;
+   private long _maxWaitObserved = 0;
+   private long _timeoutCount = 0;
+   private long _createdCount = 0;
+   private long _evictedCount = 0;
+   private long _invalidCount = 0;
+
+   // prepared statement cache counters, summed over every connection.
+   private final LongAdder _statementHits = new LongAdder();
+   private final LongAdder _statementMisses = new LongAdder();
+
+   private final ScheduledExecutorService _evictor;
+
+   /**
+    * Creates a new pool and opens minSize connections up front.
+    *
+    * @param url the JDBC connection URL
+    * @param user the user name used to login to the database
+    * @param passwd the user login password
+    * @param minSize number of connections kept open even when idle
+    * @param maxSize upper bound on open connections
+    * @param maxWaitMillis how long borrow() waits for a free connection
+    * @param idleTimeoutMillis how long a connection may sit idle before it is closed
+    * @throws java.sql.SQLException when the initial connections cannot be opened
+    */
+   public ConnectionPool(String url, String user, String passwd, int minSize, int maxSize,
+                         long maxWaitMillis, long idleTimeoutMillis) throws SQLException {
+      if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+         throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+      }
+      this._url = url;
+      this._properties = new Properties();
+      this._properties.setProperty("user", user);
+      this._properties.setProperty("password", passwd);
+      this._properties.setProperty("prepareThreshold", Integer.toString(PREPARE_THRESHOLD));
+      this._minSize = minSize;
+      this._maxSize = maxSize;
+      this._maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+      this._idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+
+      for (int i = 0; i < minSize; i++) {
+         PooledConnection conn = openConnection();
+         this._lock.lock();
+         try {
+            this._total++;
+            this._idle.push(conn);
+         } finally {
+            this._lock.unlock();
+         }
+      }
+
+      this._evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+         Thread t = new Thread(r, "connection-pool-evictor");
+         t.setDaemon(true);
+         return t;
+      });
+      long period = Math.max(1000, idleTimeoutMillis / 2);
+      this._evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+   }//end ConnectionPool
+
+   /**
+    * Borrows a connection, waiting up to maxWaitMillis for one to become
+    * free when the pool is at its maximum size.  The returned connection
+    * has been validated and must be handed back with release().
+    *
+    * @return a usable connection
+    * @throws java.sql.SQLException when no connection became free in time
+    */
+   public PooledConnection borrow() throws SQLException {
+      long start = System.nanoTime();
+      long deadline = start + this._maxWaitNanos;
+      while (true) {
+         PooledConnection conn = null;
+         boolean create = false;
+         this._lock.lock();
+         try {
+            if (this._closed) {
+               throw new SQLException("Connection pool is closed");
+            }
+            // nobody may jump the queue while others are waiting
+            if (this._waiters.isEmpty() && !this._idle.isEmpty()) {
+               conn = this._idle.pop();
+            } else if (this._waiters.isEmpty() && this._total < this._maxSize) {
+               this._total++;
+               create = true;
+            } else {
+               Waiter waiter = await(deadline);
+               conn = waiter.conn;
+               create = conn == null;
+            }
+         } finally {
+            this._lock.unlock();
+         }
+
+         if (create) {
+            try {
+               conn = openConnection();
+            }catch (SQLException e){
+               discard(null);
+               throw e;
+            }//end try
+         }
+         else if (!conn.isValid(VALIDATION_TIMEOUT)) {
+            // the server dropped this one; throw it away and try again.
+            this._lock.lock();
+            try {
+               this._invalidCount++;
+            } finally {
+               this._lock.unlock();
+            }
+            discard(conn);
+            continue;
+         }
+
+         recordWait(System.nanoTime() - start);
+         return conn;
+      }//end while
+   }//end borrow
+
+   /*
+    * Queues the calling thread, holding the lock, until release() hands it
+    * a connection or discard() a free slot.
+    */
+   private Waiter await(long deadline) throws SQLException {
+      Waiter waiter = new Waiter(this._lock.newCondition());
+      this._waiters.add(waiter);
+      try {
+         while (!waiter.served()) {
+            if (this._closed) {
+               throw new SQLException("Connection pool is closed");
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+               this._timeoutCount++;
+               throw new SQLException("Timed out after " + TimeUnit.NANOSECONDS.toMillis(this._maxWaitNanos)
+                                      + " ms waiting for a database connection");
+            }
+            try {
+               waiter.ready.awaitNanos(remaining);
+            }catch (InterruptedException e){
+               Thread.currentThread().interrupt();
+               if (!waiter.served()) {
+                  throw new SQLException("Interrupted while waiting for a database connection");
+               }
+            }//end try
+         }//end while
+         return waiter;
+      } finally {
+         if (!waiter.served()) {
+            this._waiters.remove(waiter);
+         }
+      }
+   }//end await
+
+   /**
+    * Hands a borrowed connection back to the pool.
+    *
+    * @param conn the connection obtained from borrow()
+    */
+   public void release(PooledConnection conn) {
+      if (conn == null) {
+         return;
+      }
+      conn.touch();
+      this._lock.lock();
+      try {
+         if (!this._closed) {
+            Waiter waiter = this._waiters.poll();
+            if (waiter == null) {
+               this._idle.push(conn);
+            } else {
+               waiter.conn = conn;
+               waiter.ready.signal();
+            }
+            return;
+         }
+      } finally {
+         this._lock.unlock();
+      }
+      discard(conn);
+   }//end release
+
+   /**
+    * Closes a borrowed connection that is known to be broken instead of
+    * returning it to the pool.
+    *
+    * @param conn the connection obtained from borrow()
+    */
+   public void invalidate(PooledConnection conn) {
+      discard(conn);
+   }
+
+   /**
+    * Closes every idle connection and refuses further borrows.  Borrowed
+    * connections are closed as they are released.
+    */
+   public void close() {
+      this._evictor.shutdownNow();
+      Deque<PooledConnection> toClose;
+      this._lock.lock();
+      try {
+         this._closed = true;
+         toClose = new ArrayDeque<PooledConnection>(this._idle);
+         this._total -= this._idle.size();
+         this._idle.clear();
+         for (Waiter waiter : this._waiters) {
+            waiter.ready.signal();
+         }
+      } finally {
+         this._lock.unlock();
+      }
+      for (PooledConnection conn : toClose) {
+         conn.close();
+      }
+   }//end close
+
+   /**
+    * @return a snapshot of the pool counters
+    */
+   public Stats getStats() {
+      this._lock.lock();
+      try {
+         return new Stats(this._total - this._idle.size(), this._idle.size(), this._borrowCount,
+                          this._totalWaitNanos, this._maxWaitObserved, this._timeoutCount,
+                          this._createdCount, this._evictedCount, this._invalidCount,
+                          this._statementHits.sum(), this._statementMisses.sum());
+      } finally {
+         this._lock.unlock();
+      }
+   }
+
+   private PooledConnection openConnection() throws SQLException {
+      PooledConnection conn = new PooledConnection(DriverManager.getConnection(this._url, this._properties),
+                                                   STATEMENT_CACHE_SIZE, this._statementHits, this._statementMisses);
+      this._lock.lock();
+      try {
+         this._createdCount++;
+      } finally {
+         this._lock.unlock();
+      }
+      return conn;
+   }
+
+   private void discard(PooledConnection conn) {
+      if (conn != null) {
+         conn.close();
+      }
+      this._lock.lock();
+      try {
+         this._total--;
+         Waiter waiter = this._closed ? null : this._waiters.poll();
+         if (waiter != null) {
+            // the freed slot goes to the longest waiter, which opens a new connection
+            this._total++;
+            waiter.slot = true;
+            waiter.ready.signal();
+         }
+      } finally {
+         this._lock.unlock();
+      }
+   }
+
+   private void recordWait(long waitNanos) {
+      this._lock.lock();
+      try {
+         this._borrowCount++;
+         this._totalWaitNanos += waitNanos;
+         if (waitNanos > this._maxWaitObserved) {
+            this._maxWaitObserved = waitNanos;
+         }
+      } finally {
+         this._lock.unlock();
+      }
+   }
+
+   /**
+    * Closes connections idle for longer than the idle timeout, oldest
+    * first, then tops the pool back up to minSize.
+    */
+   private void evictIdle() {
+      Deque<PooledConnection> expired = new ArrayDeque<PooledConnection>();
+      int missing;
+      this._lock.lock();
+      try {
+         if (this._closed) {
+            return;
+         }
+         long now = System.nanoTime();
+         Iterator<PooledConnection> it = this._idle.descendingIterator();
+         while (it.hasNext() && this._total - expired.size() > this._minSize) {
+            PooledConnection conn = it.next();
+            if (now - conn.getLastUsed() < this._idleTimeoutNanos) {
+               break;
+            }
+            it.remove();
+            expired.add(conn);
+         }
+         this._total -= expired.size();
+         this._evictedCount += expired.size();
+         missing = this._minSize - this._total;
+         this._total += Math.max(0, missing);
+      } finally {
+         this._lock.unlock();
+      }
+      for (PooledConnection conn : expired) {
+         conn.close();
+      }
+      for (int i = 0; i < missing; i++) {
+         try {
+            PooledConnection conn = openConnection();
+            release(conn);
+         }catch (SQLException e){
+            discard(null);
+         }//end try
+      }
+   }//end evictIdle
+
+   /*
+    * A thread blocked in borrow(), and what it was handed.
+    */
+   private static final class Waiter {
+      final Condition ready;
+      PooledConnection conn;
+      boolean slot;
+
+      Waiter(Condition ready) {
+         this.ready = ready;
+      }
+
+      boolean served() {
+         return this.conn != null || this.slot;
+      }
+   }
+
+   /**
+    * Point-in-time view of the pool counters.
+    */
+   public static class Stats {
+      public final int active;
+      public final int idle;
+      public final long borrowCount;
+      public final long totalWaitNanos;
+      public final long maxWaitNanos;
+      public final long timeoutCount;
+      public final long createdCount;
+      public final long evictedCount;
+      public final long invalidCount;
+      public final long statementHits;
+      public final long statementMisses;
+
+      Stats(int active, int idle, long borrowCount, long totalWaitNanos, long maxWaitNanos,
+            long timeoutCount, long createdCount, long evictedCount, long invalidCount,
+            long statementHits, long statementMisses) {
+         this.active = active;
+         this.idle = idle;
+         this.borrowCount = borrowCount;
+         this.totalWaitNanos = totalWaitNanos;
+         this.maxWaitNanos = maxWaitNanos;
+         this.timeoutCount = timeoutCount;
+         this.createdCount = createdCount;
+         this.evictedCount = evictedCount;
+         this.invalidCount = invalidCount;
+         this.statementHits = statementHits;
+         this.statementMisses = statementMisses;
+      }
+
+      /**
+       * @return the mean time borrow() spent waiting, in milliseconds
+       */
+      public double averageWaitMillis() {
+         return borrowCount == 0 ? 0.0 : totalWaitNanos / 1e6 / borrowCount;
+      }
+
+      @Override
+      public String toString() {
+         return String.format("active=%d idle=%d borrows=%d avgWait=%.3fms maxWait=%.3fms timeouts=%d "
+                              + "created=%d evicted=%d invalid=%d stmtHits=%d stmtMisses=%d",
+                              active, idle, borrowCount, averageWaitMillis(), maxWaitNanos / 1e6,
+                              timeoutCount, createdCount, evictedCount, invalidCount,
+                              statementHits, statementMisses);
+      }
+   }//end Stats
+}//end ConnectionPool
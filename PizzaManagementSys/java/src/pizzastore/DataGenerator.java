@@ -0,0 +1,617 @@
+package pizzastore;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+/**
+ * Generates a synthetic data set for the six tables at any scale, either
+ * as CSV files shaped like those in data/ or streamed straight into the
+ * database through BulkLoader.
+ *
+ * The output depends only on the settings and the seed: every chunk of
+ * rows (a range of users or stores, or one day of orders) is built from its
+ * own random stream, so chunks are generated in parallel and the files
+ * come out byte for byte the same whatever the thread count.  Only a few
+ * chunks per thread are in memory at a time.
+ *
+ * The data is skewed the way real traffic is: a few stores take most of
+ * the orders, a few menu items appear on most of them and among most
+ * users' favorites, some customers order far more than others, and orders
+ * cluster on weekends, at lunch and dinner, on the odd spike day and in
+ * short bursts within a day.
+ * Order IDs rise with orderTimestamp, and each order's totalPrice is the
+ * sum of its lines.
+ *
+ * Settings, as system properties:
+ *
+ *    -Dpizzastore.gen.seed=42
+ *    -Dpizzastore.gen.orders=1000000
+ *    -Dpizzastore.gen.users=orders/20 (at least 1000)
+ *    -Dpizzastore.gen.stores=1000
+ *    -Dpizzastore.gen.items=27        the bundled menu, plus numbered variants beyond it
+ *    -Dpizzastore.gen.days=730        days of order history, ending on endDate
+ *    -Dpizzastore.gen.endDate=2024-12-31
+ *    -Dpizzastore.gen.storeSkew=1.1   power-law exponents; 0 is uniform
+ *    -Dpizzastore.gen.itemSkew=1.0
+ *    -Dpizzastore.gen.customerSkew=0.8
+ *    -Dpizzastore.gen.threads=N       default: cores
+ */
+public class DataGenerator {
+
+   // users or stores generated per chunk.
+   private static final int CHUNK_ROWS = 10000;
+
+   // order IDs start after the IDs used by the bundled data.
+   private static final int FIRST_ORDER_ID = 10000;
+
+   // the bundled menu: name, ingredients, type, price in cents, description.
+   private static final Object[][] MENU = {
+      { "Cheese Pizza", "Cheese, Bread, Tomato Sauce", "entree", 999, "a classic!" },
+      { "Pepperoni Pizza", "Cheese, Bread, Tomato Sauce, Pepperoni", "entree", 1099, "a classic!" },
+      { "Hawaiian Pizza", "Cheese, Bread, Tomato Sauce, Pepperoni, Pineapple", "entree", 1199, "a twist on a classic!" },
+      { "Vegetarian Pizza", "Cheese, Bread, Tomato Sauce, Onions, Spinach, Green Peppers", "entree", 1099, "100% vegetarian delight" },
+      { "BBQ Chicken Pizza", "Cheese, Bread, Tomato Sauce, Chicken", "entree", 1199, "chicken lover's delight" },
+      { "Deluxe Pizza", "Extra Cheese, Bread, Premium Tomato Sauce", "entree", 1299, "delicious" },
+      { "Buffalo Chicken Pizza", "Cheese, Bread, Tomato Sauce, Chicken", "entree", 1299, "contains premium buffalo chicken" },
+      { "Pacific Veggie Pizza", "Cheese, Bread, Tomato Sauce, Onions, Anchovies", "entree", 1099, "for the fish lovers" },
+      { "Wisconsin 6-Cheese Pizza", "Cheese, Bread, Tomato Sauce", "entree", 1299, "all types of cheese" },
+      { "Spinach & Feta Pizza", "Cheese, Bread, Tomato Sauce, Spinach, Feta", "entree", 1099, "a customer favorite" },
+      { "Pesto Margherita Pizza", "Cheese, Bread, Tomato Sauce", "entree", 1099, "a classic!" },
+      { "Spicy Chicken Sausage Pizza", "Cheese, Bread, Tomato Sauce, Chicken", "entree", 1099, "a classic!" },
+      { "Meat Lover's Pizza", "Cheese, Bread, Tomato Sauce, Chicken, Bacon", "entree", 1099, "chicken and bacon surprise" },
+      { "Sprite", "High Fructose Corn Syrup, Lemon, Lime", "drinks", 199, "delicious!" },
+      { "Coca-Cola", "High Fructose Corn Syrup", "drinks", 199, "delicious!" },
+      { "Pepsi", "High Fructose Corn Syrup", "drinks", 199, "delicious!" },
+      { "7up", "High Fructose Corn Syrup, Lemon, Lime", "drinks", 199, "delicious!" },
+      { "Lemonade", "Lemon", "drinks", 199, "summer vibes" },
+      { "Water Bottle", "Hydrogen, Oxygen", "drinks", 199, "a classic!" },
+      { "Breadsticks", "Bread", "sides", 399, "premium quality!" },
+      { "Fries", "Potatoes", "sides", 399, "premium quality!" },
+      { "Nachos", "Bread", "sides", 399, "premium quality!" },
+      { "Pasta", "Wheat, Water, Flour", "sides", 399, "premium quality!" },
+      { "Caesar Salad", "Lettuce, Tomatoes, Croutons", "sides", 399, "premium quality!" },
+      { "Brownie", "Chocolate Chips, Flour", "sides", 399, "premium quality!" },
+      { "Ice Cream", "Milk, Sprinkles", "sides", 399, "premium quality!" },
+      { "Chocolate Cake", "Chocolate Chips, Cakemix", "sides", 399, "premium quality!" },
+   };
+
+   private static final String[][] CITIES = {
+      { "San Diego", "California" }, { "Los Angeles", "California" }, { "Riverside", "California" },
+      { "Sacramento", "California" }, { "Houston", "Texas" }, { "Spring", "Texas" }, { "Austin", "Texas" },
+      { "Portland", "Oregon" }, { "Seattle", "Washington" }, { "Phoenix", "Arizona" },
+      { "Denver", "Colorado" }, { "Miami", "Florida" }, { "Orlando", "Florida" }, { "Atlanta", "Georgia" },
+      { "Chicago", "Illinois" }, { "New York City", "New York" }, { "Boston", "Massachusetts" },
+      { "Washington", "District of Columbia" }, { "Birmingham", "Alabama" }, { "Columbus", "Ohio" },
+   };
+
+   private static final String[] STREETS = {
+      "Hallows", "Bunker Hill", "Jenifer", "Golf", "Maple", "Oak", "Pine", "Cedar", "Elm", "Lake",
+      "Hill", "Sunset", "Park", "Main", "Washington", "Jefferson", "Lincoln", "Ridge", "Valley", "River",
+   };
+
+   private static final String[] STREET_KINDS = { "Avenue", "Street", "Center", "Terrace", "Parkway", "Road", "Court" };
+
+   // relative order volume by hour of day: quiet nights, lunch and dinner peaks.
+   private static final double[] HOURS = {
+      0.3, 0.15, 0.1, 0.05, 0.05, 0.1, 0.3, 0.6, 0.8, 0.9, 1.3, 2.6,
+      3.2, 2.2, 1.2, 1.0, 1.4, 2.6, 3.6, 3.3, 2.2, 1.4, 0.9, 0.6,
+   };
+
+   // the highest of HOURS, for rejection sampling.
+   private static final double MAX_HOUR = Arrays.stream(HOURS).max().getAsDouble();
+
+   // how much a burst raises the order rate for its minutes.
+   private static final double BURST = 4.0;
+
+   // relative order volume by day of week, Monday first.
+   private static final double[] WEEKDAYS = { 0.9, 0.85, 0.9, 1.0, 1.35, 1.45, 1.2 };
+
+   // lines per order: 1 to 4, weighted towards small orders.
+   private static final double[] LINE_COUNTS = { 0.45, 0.75, 0.92, 1.0 };
+
+   private final long _seed;
+   private final long _orders;
+   private final int _users;
+   private final int _managers;
+   private final int _drivers;
+   private final int _stores;
+   private final int _items;
+   private final int _days;
+   private final LocalDate _firstDay;
+   private final int _threadCount;
+   private final ExecutorService _threads;
+
+   private final Skew _storeSkew;
+   private final Skew _itemSkew;
+   private final Skew _customerSkew;
+
+   // index of each day's first order; _dayStart[_days] is the order count.
+   private final long[] _dayStart;
+
+   /**
+    * Reads the settings from the pizzastore.gen.* system properties.
+    */
+   public DataGenerator() {
+      this._seed = Long.getLong("pizzastore.gen.seed", 42L);
+      this._orders = Long.getLong("pizzastore.gen.orders", 1000000L);
+      this._users = Integer.getInteger("pizzastore.gen.users", (int) Math.max(1000, Math.min(Integer.MAX_VALUE, this._orders / 20)));
+      this._stores = Integer.getInteger("pizzastore.gen.stores", 1000);
+      this._items = Integer.getInteger("pizzastore.gen.items", MENU.length);
+      this._days = Integer.getInteger("pizzastore.gen.days", 730);
+      this._firstDay = LocalDate.parse(System.getProperty("pizzastore.gen.endDate", "2024-12-31")).minusDays(this._days - 1);
+      this._threadCount = Integer.getInteger("pizzastore.gen.threads", Runtime.getRuntime().availableProcessors());
+      if (this._orders < 0 || this._users < 3 || this._stores < 1 || this._items < 1 || this._days < 1 || this._threadCount < 1) {
+         throw new IllegalArgumentException("Invalid generator settings");
+      }
+
+      this._managers = Math.max(1, this._users / 1000);
+      this._drivers = Math.max(1, this._users / 50);
+      this._storeSkew = new Skew(this._stores, Double.parseDouble(System.getProperty("pizzastore.gen.storeSkew", "1.1")), mix(this._seed, 1, 0));
+      this._itemSkew = new Skew(this._items, Double.parseDouble(System.getProperty("pizzastore.gen.itemSkew", "1.0")), mix(this._seed, 2, 0));
+      this._customerSkew = new Skew(this._users - this._managers - this._drivers,
+                                    Double.parseDouble(System.getProperty("pizzastore.gen.customerSkew", "0.8")), mix(this._seed, 3, 0));
+      this._dayStart = spreadOrders();
+      this._threads = Executors.newFixedThreadPool(this._threadCount, r -> {
+         Thread t = new Thread(r, "data-generator");
+         t.setDaemon(true);
+         return t;
+      });
+   }//end DataGenerator
+
+   /*
+    * Shares the orders out over the days by weekday, a steady growth in
+    * business, day-to-day noise and a few spike days.
+    */
+   private long[] spreadOrders() {
+      double[] weights = new double[this._days];
+      double total = 0;
+      for (int d = 0; d < this._days; d++) {
+         SplittableRandom random = new SplittableRandom(mix(this._seed, 4, d));
+         DayOfWeek weekday = this._firstDay.plusDays(d).getDayOfWeek();
+         double weight = WEEKDAYS[weekday.getValue() - 1] * (1 + 0.5 * d / this._days) * (0.85 + 0.3 * random.nextDouble());
+         if (random.nextDouble() < 0.02) {
+            weight *= 2.5;
+         }
+         weights[d] = weight;
+         total += weight;
+      }
+      long[] start = new long[this._days + 1];
+      double sum = 0;
+      for (int d = 0; d < this._days; d++) {
+         start[d] = Math.round(this._orders * sum / total);
+         sum += weights[d];
+      }
+      start[this._days] = this._orders;
+      return start;
+   }//end spreadOrders
+
+   /**
+    * @return a BulkLoader source for each table, generating the rows as
+    *         the loader asks for them
+    */
+   public Map<String, BulkLoader.Source> sources() {
+      Map<String, BulkLoader.Source> sources = new LinkedHashMap<String, BulkLoader.Source>();
+      sources.put("Users", new Generated(chunks(this._users), 60L * this._users, this::users));
+      sources.put("Items", new Generated(1, 120L * this._items, i -> items()));
+      sources.put("Store", new Generated(chunks(this._stores), 50L * this._stores, this::stores));
+      sources.put("FavoriteItems", new Generated(chunks(this._users), 50L * this._users, this::favorites));
+      sources.put("FoodOrder", new Generated(this._days, 60L * this._orders, d -> day(d, true, false)[0]));
+      sources.put("ItemsInOrder", new Generated(this._days, 60L * this._orders, d -> day(d, false, true)[1]));
+      return sources;
+   }
+
+   /**
+    * Writes users.csv, items.csv, store.csv, favoriteitems.csv,
+    * foodorder.csv and itemsinorder.csv, with the headers of the bundled
+    * files, to a directory.  The lines also carry their unit price and
+    * their order's time, as ItemsInOrder stores them.
+    */
+   public void writeCsv(Path dir) throws Exception {
+      Files.createDirectories(dir);
+      try (OutputStream users = open(dir, "users.csv", "login,password,role,phoneNum");
+           OutputStream items = open(dir, "items.csv", "itemName,\"ingredients\",typeOfItem,price,\"description\"");
+           OutputStream stores = open(dir, "store.csv", "storeID,address,city,state,isOpen,reviewScore");
+           OutputStream favorites = open(dir, "favoriteitems.csv", "login,itemName");
+           OutputStream orders = open(dir, "foodorder.csv", "orderID,login,storeID,totalPrice,\"orderTimestamp\",orderStatus");
+           OutputStream lines = open(dir, "itemsinorder.csv", "orderID,itemName,quantity,unitPrice,\"orderTimestamp\"")) {
+         items.write(items());
+         inOrder(chunks(this._users), this::users, users::write);
+         inOrder(chunks(this._stores), this::stores, stores::write);
+         inOrder(chunks(this._users), this::favorites, favorites::write);
+         long start = System.nanoTime();
+         inOrder(this._days, d -> day(d, true, true), day -> {
+            orders.write(day[0]);
+            lines.write(day[1]);
+         });
+         System.out.printf("Wrote %,d orders in %.1f s%n", this._orders, (System.nanoTime() - start) / 1e9);
+      }
+   }//end writeCsv
+
+   private static OutputStream open(Path dir, String name, String header) throws IOException {
+      OutputStream out = new BufferedOutputStream(Files.newOutputStream(dir.resolve(name)), 1 << 16);
+      out.write((header + "\n").getBytes(StandardCharsets.UTF_8));
+      return out;
+   }
+
+   /**
+    * Stops the generator threads.
+    */
+   public void close() {
+      this._threads.shutdownNow();
+   }
+
+   private static int chunks(int rows) {
+      return (rows + CHUNK_ROWS - 1) / CHUNK_ROWS;
+   }
+
+   /*
+    * Users: a few managers, then drivers, then customers.
+    */
+   private byte[] users(int chunk) {
+      SplittableRandom random = new SplittableRandom(mix(this._seed, 5, chunk));
+      StringBuilder out = new StringBuilder(CHUNK_ROWS * 60);
+      int end = Math.min(this._users, (chunk + 1) * CHUNK_ROWS);
+      for (int u = chunk * CHUNK_ROWS; u < end; u++) {
+         String role = u < this._managers ? "manager" : u < this._managers + this._drivers ? "driver" : "customer";
+         login(out, u).append(',');
+         out.append("pw").append(Long.toString(random.nextLong() & Long.MAX_VALUE, 36)).append(',');
+         out.append(role).append(',');
+         out.append(200 + random.nextInt(800)).append('-').append(200 + random.nextInt(800)).append('-');
+         out.append(1000 + random.nextInt(9000)).append('\n');
+      }
+      return bytes(out);
+   }//end users
+
+   /*
+    * One to three distinct favorites per user, picked with the item skew.
+    */
+   private byte[] favorites(int chunk) {
+      SplittableRandom random = new SplittableRandom(mix(this._seed, 8, chunk));
+      StringBuilder out = new StringBuilder(CHUNK_ROWS * 50);
+      int[] picked = new int[3];
+      int end = Math.min(this._users, (chunk + 1) * CHUNK_ROWS);
+      for (int u = chunk * CHUNK_ROWS; u < end; u++) {
+         int count = Math.min(this._items, 1 + random.nextInt(3));
+         for (int n = 0; n < count; n++) {
+            int item;
+            do {
+               item = this._itemSkew.pick(random);
+            } while (contains(picked, n, item));
+            picked[n] = item;
+            login(out, u).append(',');
+            csv(out, itemName(item)).append('\n');
+         }
+      }
+      return bytes(out);
+   }//end favorites
+
+   private byte[] items() {
+      StringBuilder out = new StringBuilder(this._items * 120);
+      for (int i = 0; i < this._items; i++) {
+         Object[] base = MENU[i % MENU.length];
+         csv(out, itemName(i)).append(',');
+         csv(out, (String) base[1]).append(',');
+         out.append(base[2]).append(',');
+         out.append(Money.format(itemPrice(i))).append(',');
+         csv(out, (String) base[4]).append('\n');
+      }
+      return bytes(out);
+   }
+
+   private byte[] stores(int chunk) {
+      SplittableRandom random = new SplittableRandom(mix(this._seed, 6, chunk));
+      StringBuilder out = new StringBuilder(CHUNK_ROWS * 50);
+      int end = Math.min(this._stores, (chunk + 1) * CHUNK_ROWS);
+      for (int s = chunk * CHUNK_ROWS; s < end; s++) {
+         String[] city = CITIES[random.nextInt(CITIES.length)];
+         out.append(s + 1).append(',');
+         out.append(1 + random.nextInt(99999)).append(' ').append(STREETS[random.nextInt(STREETS.length)]).append(' ');
+         out.append(STREET_KINDS[random.nextInt(STREET_KINDS.length)]).append(',');
+         out.append(city[0]).append(',').append(city[1]).append(',');
+         out.append(random.nextDouble() < 0.9 ? "yes" : "no").append(',');
+         out.append((10 + random.nextInt(41)) / 10.0).append('\n');
+      }
+      return bytes(out);
+   }//end stores
+
+   /*
+    * One day of orders and their lines, in timestamp order.  Both come from
+    * the same random stream so each can be generated without the other
+    * and still match.
+    */
+   private byte[][] day(int d, boolean wantOrders, boolean wantLines) {
+      SplittableRandom random = new SplittableRandom(mix(this._seed, 7, d));
+      int count = (int) (this._dayStart[d + 1] - this._dayStart[d]);
+
+      // a few bursts a day, each lifting the rate for about twenty minutes
+      int[] bursts = new int[1 + random.nextInt(4)];
+      for (int b = 0; b < bursts.length; b++) {
+         bursts[b] = random.nextInt(24 * 60);
+      }
+      int[] seconds = new int[count];
+      for (int o = 0; o < count; o++) {
+         while (true) {
+            int second = random.nextInt(24 * 3600);
+            double weight = HOURS[second / 3600] * (inBurst(bursts, second / 60) ? BURST : 1);
+            if (random.nextDouble() * MAX_HOUR * BURST < weight) {
+               seconds[o] = second;
+               break;
+            }
+         }
+      }
+      Arrays.sort(seconds);
+
+      String date = this._firstDay.plusDays(d).toString();
+      boolean lastDay = d == this._days - 1;
+      StringBuilder orders = new StringBuilder(wantOrders ? count * 64 : 0);
+      StringBuilder lines = new StringBuilder(wantLines ? count * 48 : 0);
+      int[] picked = new int[LINE_COUNTS.length];
+      for (int o = 0; o < count; o++) {
+         long orderId = FIRST_ORDER_ID + this._dayStart[d] + o;
+         int customer = this._managers + this._drivers + this._customerSkew.pick(random);
+         int store = this._storeSkew.pick(random) + 1;
+         int lineCount = Math.min(this._items, pick(LINE_COUNTS, random.nextDouble()) + 1);
+         long total = 0;
+         for (int l = 0; l < lineCount; l++) {
+            int item;
+            do {
+               item = this._itemSkew.pick(random);
+            } while (contains(picked, l, item));
+            picked[l] = item;
+            double q = random.nextDouble();
+            int quantity = q < 0.7 ? 1 : q < 0.92 ? 2 : 3;
+            total += itemPrice(item) * quantity;
+            if (wantLines) {
+               lines.append(orderId).append(',');
+               csv(lines, itemName(item)).append(',').append(quantity).append(',');
+               lines.append(Money.format(itemPrice(item))).append(",\"").append(date).append(' ');
+               time(lines, seconds[o]).append("\"\n");
+            }
+         }
+         // recent orders are still open; almost everything older is done
+         boolean complete = lastDay && seconds[o] > 12 * 3600 ? random.nextDouble() < 0.4 : random.nextDouble() < 0.995;
+         if (wantOrders) {
+            orders.append(orderId).append(',');
+            login(orders, customer).append(',').append(store).append(',');
+            orders.append(Money.format(total)).append(",\"").append(date).append(' ');
+            time(orders, seconds[o]).append("\",").append(complete ? "complete" : "incomplete").append('\n');
+         }
+      }
+      return new byte[][] { wantOrders ? bytes(orders) : null, wantLines ? bytes(lines) : null };
+   }//end day
+
+   private static boolean inBurst(int[] bursts, int minute) {
+      for (int burst : bursts) {
+         if (minute >= burst && minute < burst + 20) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   private static boolean contains(int[] values, int length, int value) {
+      for (int i = 0; i < length; i++) {
+         if (values[i] == value) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   // index of the first cumulative weight above u.
+   private static int pick(double[] cumulative, double u) {
+      int i = 0;
+      while (i < cumulative.length - 1 && u >= cumulative[i]) {
+         i++;
+      }
+      return i;
+   }
+
+   // appends the login of a user, e.g. user0000042.
+   private static StringBuilder login(StringBuilder out, int user) {
+      out.append("user");
+      for (int digits = String.valueOf(user).length(); digits < 7; digits++) {
+         out.append('0');
+      }
+      return out.append(user);
+   }
+
+   private static String itemName(int item) {
+      String name = (String) MENU[item % MENU.length][0];
+      return item < MENU.length ? name : name + " No. " + (item / MENU.length + 1);
+   }
+
+   // variants cost a little more than the bundled item they are based on.
+   private static long itemPrice(int item) {
+      return (Integer) MENU[item % MENU.length][3] + 50L * (item / MENU.length);
+   }
+
+   private static StringBuilder time(StringBuilder out, int second) {
+      int h = second / 3600;
+      int m = second / 60 % 60;
+      int s = second % 60;
+      return out.append((char) ('0' + h / 10)).append((char) ('0' + h % 10)).append(':')
+                .append((char) ('0' + m / 10)).append((char) ('0' + m % 10)).append(':')
+                .append((char) ('0' + s / 10)).append((char) ('0' + s % 10));
+   }
+
+   // appends a CSV field, quoted when it holds a comma, quote or newline.
+   private static StringBuilder csv(StringBuilder out, String value) {
+      if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+         return out.append(value);
+      }
+      return out.append('"').append(value.replace("\"", "\"\"")).append('"');
+   }
+
+   private static byte[] bytes(StringBuilder out) {
+      return out.toString().getBytes(StandardCharsets.UTF_8);
+   }
+
+   // a seed for one chunk of one table, well spread even for adjacent inputs.
+   private static long mix(long seed, int table, long chunk) {
+      long z = seed * 0x9E3779B97F4A7C15L + table * 0xBF58476D1CE4E5B9L + chunk * 0x94D049BB133111EBL;
+      z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+      z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+      return z ^ (z >>> 31);
+   }
+
+   @FunctionalInterface
+   private interface ChunkConsumer<T> {
+      void accept(T chunk) throws Exception;
+   }
+
+   /*
+    * Builds chunks 0..count-1 on the generator threads, a few per thread
+    * ahead, and hands them to the consumer in order.
+    */
+   private <T> void inOrder(int count, IntFunction<T> make, ChunkConsumer<T> consumer) throws Exception {
+      Deque<Future<T>> window = new ArrayDeque<Future<T>>();
+      int next = 0;
+      try {
+         while (next < count || !window.isEmpty()) {
+            while (next < count && window.size() < this._threadCount * 2) {
+               int chunk = next++;
+               window.add(this._threads.submit(() -> make.apply(chunk)));
+            }
+            T chunk;
+            try {
+               chunk = window.poll().get();
+            } catch (ExecutionException e) {
+               throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+            consumer.accept(chunk);
+         }
+      } finally {
+         for (Future<T> pending : window) {
+            pending.cancel(true);
+         }
+      }
+   }//end inOrder
+
+   /*
+    * A table generated chunk by chunk for BulkLoader.
+    */
+   private final class Generated implements BulkLoader.Source {
+      private final int _chunks;
+      private final long _estimatedBytes;
+      private final IntFunction<byte[]> _make;
+
+      Generated(int chunks, long estimatedBytes, IntFunction<byte[]> make) {
+         this._chunks = chunks;
+         this._estimatedBytes = estimatedBytes;
+         this._make = make;
+      }
+
+      @Override
+      public long estimatedBytes() {
+         return this._estimatedBytes;
+      }
+
+      @Override
+      public void produce(BulkLoader.Sink sink) throws Exception {
+         inOrder(this._chunks, this._make, block -> {
+            if (block.length > 0) {
+               sink.accept(block);
+            }
+         });
+      }
+   }//end Generated
+
+   /*
+    * Picks ranks 0..n-1 with probability falling off as a power of the
+    * rank (a continuous Zipf approximation, so no table is needed), then
+    * scatters the ranks over the IDs with a fixed permutation so the
+    * popular rows are not simply the lowest IDs.
+    */
+   private static final class Skew {
+      private final int _n;
+      private final double _s;
+      private final long _stride;
+      private final long _offset;
+
+      Skew(int n, double s, long seed) {
+         this._n = n;
+         this._s = s;
+         long stride = 1 + Math.floorMod(seed, (long) n);
+         while (gcd(stride, n) != 1) {
+            stride++;
+         }
+         this._stride = stride;
+         this._offset = Math.floorMod(seed >>> 17, (long) n);
+      }
+
+      int pick(SplittableRandom random) {
+         double u = random.nextDouble();
+         double x;
+         if (Math.abs(this._s - 1) < 1e-9) {
+            x = Math.pow(this._n + 1, u) - 1;
+         } else {
+            double a = 1 - this._s;
+            x = Math.pow(1 - u + u * Math.pow(this._n + 1, a), 1 / a) - 1;
+         }
+         long rank = Math.min(this._n - 1, (long) x);
+         return (int) ((rank * this._stride + this._offset) % this._n);
+      }
+
+      private static long gcd(long a, long b) {
+         return b == 0 ? a : gcd(b, a % b);
+      }
+   }//end Skew
+
+   /**
+    * Writes a data set to a directory, or streams it into a database.
+    * The database password is read from the PIZZASTORE_DB_PASSWORD
+    * environment variable (empty if unset).
+    *
+    * @param args <output directory>, or <dbname> <port> <user>
+    */
+   public static void main(String[] args) throws Exception {
+      if (args.length != 1 && args.length != 3) {
+         System.err.println("Usage: java [-classpath <classpath>] " + DataGenerator.class.getName()
+                            + " <output directory> | <dbname> <port> <user>");
+         return;
+      }
+      DataGenerator generator = new DataGenerator();
+      System.out.printf("Generating %,d orders, %,d users, %,d stores and %,d items over %d days (seed %d)%n",
+                        generator._orders, generator._users, generator._stores, generator._items,
+                        generator._days, generator._seed);
+      try {
+         if (args.length == 1) {
+            generator.writeCsv(Paths.get(args[0]));
+         } else {
+            String url = PizzaStore.url(args[0], args[1]);
+            String password = PizzaStore.password();
+            // months made up front, so COPY routes each order straight to its month
+            OrderPartitions partitions = new OrderPartitions(url, args[2], password);
+            partitions.splitDefault();
+            partitions.create(YearMonth.from(generator._firstDay),
+                              YearMonth.from(generator._firstDay.plusDays(generator._days - 1)));
+            new BulkLoader(url, args[2], password, generator.sources()).load();
+         }
+      } catch (Exception e) {
+         System.err.println("Generation failed: " + e.getMessage());
+         System.exit(1);
+      } finally {
+         generator.close();
+      }
+   }//end main
+}//end DataGenerator
@@ -0,0 +1,51 @@
+package pizzastore;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * One row of the FoodOrder table.
+ *
+ * @param orderId the order ID
+ * @param login the customer who placed the order
+ * @param storeId the store the order was placed at
+ * @param totalCents the order total in cents
+ * @param orderTimestamp when the order was placed, in epoch milliseconds
+ * @param status the order status with its padding trimmed
+ */
+public record FoodOrder(int orderId, String login, int storeId, long totalCents, long orderTimestamp, String status) {
+
+   // how order times are shown to users.
+   static final DateTimeFormatter TIMESTAMP_FORMAT =
+      DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
+   /**
+    * Reads a row with the FoodOrder columns, e.g. from SELECT * FROM FoodOrder.
+    */
+   public static final RowMapper<FoodOrder> MAPPER = rs -> new FoodOrder(
+      rs.getInt("orderID"),
+      rs.getString("login"),
+      rs.getInt("storeID"),
+      Money.toCents(rs.getBigDecimal("totalPrice")),
+      rs.getTimestamp("orderTimestamp").getTime(),
+      trimStatus(rs.getString("orderStatus")));
+
+   /**
+    * @return the order time formatted for display
+    */
+   public String formattedTimestamp() {
+      return formatTimestamp(this.orderTimestamp);
+   }
+
+   static String formatTimestamp(long epochMillis) {
+      return TIMESTAMP_FORMAT.format(Instant.ofEpochMilli(epochMillis));
+   }
+
+   // orderStatus is char(50), so values come back blank-padded.
+   static String trimStatus(String status) {
+      return status == null ? null : status.trim();
+   }
+}//end FoodOrder
@@ -0,0 +1,287 @@
+package pizzastore;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Just enough JSON for the HTTP front end, so the server needs nothing
+ * beyond the JDK.  parse() reads objects as LinkedHashMap, arrays as
+ * ArrayList, numbers as BigDecimal, and strings, booleans and null as
+ * themselves; write() accepts the same types plus any Number and Iterable.
+ */
+public final class Json {
+
+   private Json() {
+   }
+
+   /**
+    * @param text a complete JSON document
+    * @return the value it holds
+    * @throws IllegalArgumentException when the text is not valid JSON
+    */
+   public static Object parse(String text) {
+      Parser parser = new Parser(text);
+      parser.skipWhitespace();
+      Object value = parser.readValue();
+      parser.skipWhitespace();
+      if (parser._pos != text.length()) {
+         throw parser.error("Unexpected trailing characters");
+      }
+      return value;
+   }
+
+   /**
+    * Like parse, for documents that must be a JSON object.
+    */
+   @SuppressWarnings("unchecked")
+   public static Map<String, Object> parseObject(String text) {
+      Object value = parse(text);
+      if (!(value instanceof Map)) {
+         throw new IllegalArgumentException("Expected a JSON object");
+      }
+      return (Map<String, Object>) value;
+   }
+
+   /**
+    * @return the value as compact JSON text
+    */
+   public static String write(Object value) {
+      StringBuilder out = new StringBuilder(128);
+      write(value, out);
+      return out.toString();
+   }
+
+   private static void write(Object value, StringBuilder out) {
+      if (value == null) {
+         out.append("null");
+      } else if (value instanceof String) {
+         writeString((String) value, out);
+      } else if (value instanceof BigDecimal) {
+         out.append(((BigDecimal) value).toPlainString());
+      } else if (value instanceof Double || value instanceof Float) {
+         double d = ((Number) value).doubleValue();
+         out.append(Double.isFinite(d) ? String.valueOf(d) : "null");
+      } else if (value instanceof Number || value instanceof Boolean) {
+         out.append(value);
+      } else if (value instanceof Map) {
+         out.append('{');
+         boolean first = true;
+         for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+            if (!first) {
+               out.append(',');
+            }
+            first = false;
+            writeString(String.valueOf(entry.getKey()), out);
+            out.append(':');
+            write(entry.getValue(), out);
+         }
+         out.append('}');
+      } else if (value instanceof Iterable) {
+         out.append('[');
+         boolean first = true;
+         for (Object element : (Iterable<?>) value) {
+            if (!first) {
+               out.append(',');
+            }
+            first = false;
+            write(element, out);
+         }
+         out.append(']');
+      } else {
+         throw new IllegalArgumentException("Cannot write " + value.getClass().getName() + " as JSON");
+      }
+   }//end write
+
+   private static void writeString(String s, StringBuilder out) {
+      out.append('"');
+      for (int i = 0; i < s.length(); i++) {
+         char c = s.charAt(i);
+         switch (c) {
+            case '"': out.append("\\\""); break;
+            case '\\': out.append("\\\\"); break;
+            case '\n': out.append("\\n"); break;
+            case '\r': out.append("\\r"); break;
+            case '\t': out.append("\\t"); break;
+            default:
+               if (c < 0x20) {
+                  out.append(String.format("\\u%04x", (int) c));
+               } else {
+                  out.append(c);
+               }
+         }
+      }
+      out.append('"');
+   }//end writeString
+
+   /*
+    * A recursive-descent reader over one document.
+    */
+   private static final class Parser {
+      private final String _text;
+      private int _pos = 0;
+
+      Parser(String text) {
+         this._text = text;
+      }
+
+      Object readValue() {
+         if (this._pos >= this._text.length()) {
+            throw error("Unexpected end of input");
+         }
+         char c = this._text.charAt(this._pos);
+         switch (c) {
+            case '{': return readObject();
+            case '[': return readArray();
+            case '"': return readString();
+            case 't': expect("true"); return Boolean.TRUE;
+            case 'f': expect("false"); return Boolean.FALSE;
+            case 'n': expect("null"); return null;
+            default:
+               if (c == '-' || (c >= '0' && c <= '9')) {
+                  return readNumber();
+               }
+               throw error("Unexpected character '" + c + "'");
+         }
+      }//end readValue
+
+      private Map<String, Object> readObject() {
+         Map<String, Object> object = new LinkedHashMap<String, Object>();
+         this._pos++;
+         skipWhitespace();
+         if (peek() == '}') {
+            this._pos++;
+            return object;
+         }
+         while (true) {
+            skipWhitespace();
+            if (peek() != '"') {
+               throw error("Expected a field name");
+            }
+            String key = readString();
+            skipWhitespace();
+            if (peek() != ':') {
+               throw error("Expected ':'");
+            }
+            this._pos++;
+            skipWhitespace();
+            object.put(key, readValue());
+            skipWhitespace();
+            char c = next();
+            if (c == '}') {
+               return object;
+            }
+            if (c != ',') {
+               throw error("Expected ',' or '}'");
+            }
+         }
+      }//end readObject
+
+      private List<Object> readArray() {
+         List<Object> array = new ArrayList<Object>();
+         this._pos++;
+         skipWhitespace();
+         if (peek() == ']') {
+            this._pos++;
+            return array;
+         }
+         while (true) {
+            skipWhitespace();
+            array.add(readValue());
+            skipWhitespace();
+            char c = next();
+            if (c == ']') {
+               return array;
+            }
+            if (c != ',') {
+               throw error("Expected ',' or ']'");
+            }
+         }
+      }//end readArray
+
+      private String readString() {
+         StringBuilder out = new StringBuilder();
+         this._pos++;
+         while (true) {
+            char c = next();
+            if (c == '"') {
+               return out.toString();
+            }
+            if (c == '\\') {
+               char escaped = next();
+               switch (escaped) {
+                  case '"': out.append('"'); break;
+                  case '\\': out.append('\\'); break;
+                  case '/': out.append('/'); break;
+                  case 'b': out.append('\b'); break;
+                  case 'f': out.append('\f'); break;
+                  case 'n': out.append('\n'); break;
+                  case 'r': out.append('\r'); break;
+                  case 't': out.append('\t'); break;
+                  case 'u':
+                     if (this._pos + 4 > this._text.length()) {
+                        throw error("Truncated \\u escape");
+                     }
+                     try {
+                        out.append((char) Integer.parseInt(this._text.substring(this._pos, this._pos + 4), 16));
+                     } catch (NumberFormatException e) {
+                        throw error("Invalid \\u escape");
+                     }
+                     this._pos += 4;
+                     break;
+                  default:
+                     throw error("Invalid escape '\\" + escaped + "'");
+               }
+            } else if (c < 0x20) {
+               throw error("Control character in string");
+            } else {
+               out.append(c);
+            }
+         }
+      }//end readString
+
+      private BigDecimal readNumber() {
+         int start = this._pos;
+         while (this._pos < this._text.length() && "+-0123456789.eE".indexOf(this._text.charAt(this._pos)) >= 0) {
+            this._pos++;
+         }
+         try {
+            return new BigDecimal(this._text.substring(start, this._pos));
+         } catch (NumberFormatException e) {
+            throw error("Invalid number");
+         }
+      }
+
+      private void expect(String word) {
+         if (!this._text.startsWith(word, this._pos)) {
+            throw error("Expected '" + word + "'");
+         }
+         this._pos += word.length();
+      }
+
+      void skipWhitespace() {
+         while (this._pos < this._text.length() && Character.isWhitespace(this._text.charAt(this._pos))) {
+            this._pos++;
+         }
+      }
+
+      private char peek() {
+         if (this._pos >= this._text.length()) {
+            throw error("Unexpected end of input");
+         }
+         return this._text.charAt(this._pos);
+      }
+
+      private char next() {
+         char c = peek();
+         this._pos++;
+         return c;
+      }
+
+      IllegalArgumentException error(String message) {
+         return new IllegalArgumentException(message + " at position " + this._pos);
+      }
+   }//end Parser
+}//end Json
@@ -0,0 +1,125 @@
+package pizzastore;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size log-linear histogram of latencies in nanoseconds, in the
+ * manner of HdrHistogram: each power of two is split into 64 equal
+ * buckets, so any recorded value is reported to within 1.6% whether it is
+ * a microsecond or an hour.  The memory is fixed (about 30 KB) however
+ * many values are recorded.
+ *
+ * Thread-safe: recording is one atomic increment plus two striped
+ * counters, so many threads can share a histogram; histograms recorded
+ * separately are merged with add().  Reads taken while others record are
+ * not an atomic snapshot but are never off by more than the values
+ * recorded meanwhile.
+ */
+public final class LatencyHistogram {
+
+   // values below 2^SUB_BITS get a bucket each; above that, 2^(SUB_BITS-1) per power of two.
+   private static final int SUB_BITS = 7;
+   private static final int HALF = 1 << (SUB_BITS - 1);
+   private static final int BUCKETS = (64 - SUB_BITS + 1) * HALF;
+
+   private final AtomicLongArray _counts = new AtomicLongArray(BUCKETS);
+   private final LongAdder _count = new LongAdder();
+   private final LongAdder _total = new LongAdder();
+   private final LongAccumulator _max = new LongAccumulator(Math::max, 0);
+
+   /**
+    * @param nanos a latency; negative values are recorded as zero
+    */
+   public void record(long nanos) {
+      long value = Math.max(0, nanos);
+      this._counts.incrementAndGet(index(value));
+      this._count.increment();
+      this._total.add(value);
+      this._max.accumulate(value);
+   }
+
+   /**
+    * Adds every value recorded in another histogram to this one.
+    */
+   public void add(LatencyHistogram other) {
+      for (int i = 0; i < BUCKETS; i++) {
+         long count = other._counts.get(i);
+         if (count != 0) {
+            this._counts.addAndGet(i, count);
+         }
+      }
+      this._count.add(other._count.sum());
+      this._total.add(other._total.sum());
+      this._max.accumulate(other._max.get());
+   }
+
+   /**
+    * Forgets every recorded value.
+    */
+   public void reset() {
+      for (int i = 0; i < BUCKETS; i++) {
+         this._counts.set(i, 0);
+      }
+      this._count.reset();
+      this._total.reset();
+      this._max.reset();
+   }
+
+   public long count() {
+      return this._count.sum();
+   }
+
+   public long total() {
+      return this._total.sum();
+   }
+
+   public long max() {
+      return this._max.get();
+   }
+
+   public double mean() {
+      long count = count();
+      return count == 0 ? 0 : (double) total() / count;
+   }
+
+   /**
+    * @param p the quantile, e.g. 0.99
+    * @return the smallest value that at least p of the recorded values
+    *         do not exceed, to the histogram's precision; zero if empty
+    */
+   public long percentile(double p) {
+      long count = count();
+      if (count == 0) {
+         return 0;
+      }
+      long rank = Math.max(1, (long) Math.ceil(p * count));
+      long seen = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+         seen += this._counts.get(i);
+         if (seen >= rank) {
+            return Math.min(highest(i), max());
+         }
+      }
+      return max();
+   }//end percentile
+
+   private static int index(long value) {
+      if (value < (1L << SUB_BITS)) {
+         return (int) value;
+      }
+      int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+      return (shift << (SUB_BITS - 1)) + (int) (value >>> shift);
+   }
+
+   // the largest value that lands in a bucket.
+   private static long highest(int index) {
+      if (index < (1 << SUB_BITS)) {
+         return index;
+      }
+      int shift = (index >> (SUB_BITS - 1)) - 1;
+      long sub = index - ((long) shift << (SUB_BITS - 1));
+      return ((sub + 1) << shift) - 1;
+   }
+}//end LatencyHistogram
@@ -0,0 +1,177 @@
+package pizzastore;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-process copy of the Items table.  The menu is small and rarely
+ * changes, so it is read once into an immutable snapshot with per-type
+ * buckets and a price-sorted index; browsing the menu and pricing an order
+ * then run without touching the database.
+ *
+ * Writers call invalidate() after changing Items.  The next reader loads a
+ * fresh snapshot, and a load that raced with an invalidation is never
+ * published.  Snapshots also expire after pizzastore.menu.ttlMillis so
+ * edits made outside this process are eventually picked up.
+ */
+public class MenuCache {
+
+   // how long a snapshot may be served before it is reloaded.
+   static final long TTL_MILLIS = Long.getLong("pizzastore.menu.ttlMillis", 60000L);
+
+   private static final String LOAD_QUERY =
+      "SELECT itemName, ingredients, typeOfItem, price, description FROM Items";
+
+   private final PizzaStore _esql;
+
+   private volatile Snapshot _snapshot = null;
+
+   // bumped by every invalidation; a load only publishes if it is unchanged.
+   private long _generation = 0;
+
+   public MenuCache(PizzaStore esql) {
+      this._esql = esql;
+   }
+
+   /**
+    * @return the current menu, loading it from the database if needed
+    * @throws java.sql.SQLException when the menu cannot be loaded
+    */
+   public Snapshot snapshot() throws SQLException {
+      Snapshot current = this._snapshot;
+      if (current != null && !current.isExpired()) {
+         return current;
+      }
+      long generation;
+      synchronized (this) {
+         current = this._snapshot;
+         if (current != null && !current.isExpired()) {
+            return current;
+         }
+         generation = this._generation;
+      }
+
+      Snapshot loaded = load();
+      synchronized (this) {
+         if (generation == this._generation) {
+            this._snapshot = loaded;
+         }
+      }
+      return loaded;
+   }//end snapshot
+
+   /**
+    * Drops the current snapshot; call after any write to Items.
+    */
+   public synchronized void invalidate() {
+      this._generation++;
+      this._snapshot = null;
+   }
+
+   private Snapshot load() throws SQLException {
+      return new Snapshot(this._esql.executeQueryForList(LOAD_QUERY, MenuItem.MAPPER));
+   }
+
+   /**
+    * An immutable view of the menu at one point in time.
+    */
+   public static class Snapshot {
+
+      private final long _loadedAt = System.currentTimeMillis();
+
+      // items in table order, as SELECT * FROM Items returns them.
+      private final List<MenuItem> _items;
+
+      // items ordered by price, then name, with their prices alongside.
+      private final List<MenuItem> _byPrice;
+      private final List<MenuItem> _byPriceDescending;
+      private final long[] _sortedPrices;
+
+      private final Map<String, List<MenuItem>> _byType = new HashMap<String, List<MenuItem>>();
+      private final Map<String, MenuItem> _byName = new HashMap<String, MenuItem>();
+
+      Snapshot(List<MenuItem> items) {
+         this._items = Collections.unmodifiableList(items);
+
+         MenuItem[] sorted = items.toArray(new MenuItem[0]);
+         Arrays.sort(sorted, Comparator.comparingLong(MenuItem::priceCents).thenComparing(MenuItem::name));
+         this._byPrice = Collections.unmodifiableList(Arrays.asList(sorted));
+         List<MenuItem> descending = new ArrayList<MenuItem>(this._byPrice);
+         Collections.reverse(descending);
+         this._byPriceDescending = Collections.unmodifiableList(descending);
+         this._sortedPrices = new long[sorted.length];
+         for (int i = 0; i < sorted.length; i++) {
+            this._sortedPrices[i] = sorted[i].priceCents();
+         }
+
+         for (MenuItem item : items) {
+            this._byType.computeIfAbsent(item.normalizedType(), k -> new ArrayList<MenuItem>()).add(item);
+            this._byName.put(item.name(), item);
+         }
+         for (Map.Entry<String, List<MenuItem>> bucket : this._byType.entrySet()) {
+            bucket.setValue(Collections.unmodifiableList(bucket.getValue()));
+         }
+      }//end Snapshot
+
+      boolean isExpired() {
+         return System.currentTimeMillis() - this._loadedAt > TTL_MILLIS;
+      }
+
+      /**
+       * @return every item in table order
+       */
+      public List<MenuItem> all() {
+         return this._items;
+      }
+
+      /**
+       * @param name the exact item name
+       * @return the item, or null if there is no such item
+       */
+      public MenuItem find(String name) {
+         return this._byName.get(name);
+      }
+
+      /**
+       * @param type an item type such as "entree"; case and padding are ignored
+       * @return the items of that type in table order
+       */
+      public List<MenuItem> ofType(String type) {
+         List<MenuItem> bucket = this._byType.get(MenuItem.normalizeType(type));
+         return bucket != null ? bucket : Collections.<MenuItem>emptyList();
+      }
+
+      /**
+       * @param maxCents the highest price to include, in cents
+       * @return the items priced at or below maxCents, cheapest first
+       */
+      public List<MenuItem> atMost(long maxCents) {
+         // first index whose price is above maxCents
+         int lo = 0;
+         int hi = this._sortedPrices.length;
+         while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (this._sortedPrices[mid] <= maxCents) {
+               lo = mid + 1;
+            } else {
+               hi = mid;
+            }
+         }
+         return this._byPrice.subList(0, lo);
+      }//end atMost
+
+      /**
+       * @param ascending true for cheapest first
+       * @return every item ordered by price
+       */
+      public List<MenuItem> sortedByPrice(boolean ascending) {
+         return ascending ? this._byPrice : this._byPriceDescending;
+      }
+   }//end Snapshot
+}//end MenuCache
@@ -0,0 +1,58 @@
+package pizzastore;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * One row of the Items table.  Prices are held in cents so totals add up
+ * exactly; the text columns are kept as stored so the menu prints the same
+ * way it does when read straight from the database.
+ *
+ * @param name the item name (primary key)
+ * @param ingredients the ingredient list
+ * @param type the item type as stored, e.g. " entree"
+ * @param priceCents the price in cents
+ * @param description the description, may be null
+ */
+public record MenuItem(String name, String ingredients, String type, long priceCents, String description) {
+
+   /**
+    * Reads a row with the Items columns, e.g. from SELECT * FROM Items.
+    */
+   public static final RowMapper<MenuItem> MAPPER = rs -> new MenuItem(
+      rs.getString("itemName"),
+      rs.getString("ingredients"),
+      rs.getString("typeOfItem"),
+      Money.toCents(rs.getBigDecimal("price")),
+      rs.getString("description"));
+
+   // column headers of SELECT * FROM Items, used when printing the menu.
+   public static final List<String> COLUMNS =
+      Arrays.asList("itemname", "ingredients", "typeofitem", "price", "description");
+
+   /**
+    * @return the item type trimmed and lower-cased, e.g. "entree"
+    */
+   public String normalizedType() {
+      return normalizeType(this.type);
+   }
+
+   /**
+    * @return the price as an exact two-digit decimal
+    */
+   public BigDecimal price() {
+      return Money.toDecimal(this.priceCents);
+   }
+
+   /**
+    * @return the row as strings in COLUMNS order
+    */
+   public List<String> toRow() {
+      return Arrays.asList(this.name, this.ingredients, this.type, Money.format(this.priceCents), this.description);
+   }
+
+   static String normalizeType(String type) {
+      return type == null ? "" : type.trim().toLowerCase();
+   }
+}//end MenuItem
@@ -0,0 +1,19 @@
+package pizzastore;
+
+/**
+ * Changes a manager makes to one menu item.  Null fields are left as they
+ * are.
+ *
+ * @param name the new item name
+ * @param ingredients the new ingredient list
+ * @param type the new item type
+ * @param priceCents the new price in cents
+ * @param description the new description
+ */
+public record MenuItemUpdate(String name, String ingredients, String type, Long priceCents, String description) {
+
+   boolean isEmpty() {
+      return this.name == null && this.ingredients == null && this.type == null
+          && this.priceCents == null && this.description == null;
+   }
+}//end MenuItemUpdate
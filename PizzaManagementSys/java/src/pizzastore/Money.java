@@ -0,0 +1,47 @@
+package pizzastore;
+
+import java.math.BigDecimal;
+
+/**
+ * Helpers for money amounts, which this application keeps as a long
+ * number of cents so that totals add up exactly.  The database stores
+ * them as decimal(10,2).
+ */
+public final class Money {
+
+   private Money() {
+   }
+
+   /**
+    * @param amount a decimal amount with at most two fraction digits
+    * @return the amount in cents
+    * @throws java.lang.ArithmeticException when the amount has more than two fraction digits
+    */
+   public static long toCents(BigDecimal amount) {
+      return amount.movePointRight(2).longValueExact();
+   }
+
+   /**
+    * @param amount a decimal amount such as "9.99"
+    * @return the amount in cents
+    */
+   public static long toCents(String amount) {
+      return toCents(new BigDecimal(amount.trim()));
+   }
+
+   /**
+    * @param cents an amount in cents
+    * @return the same amount as an exact two-digit decimal, for binding to SQL
+    */
+   public static BigDecimal toDecimal(long cents) {
+      return BigDecimal.valueOf(cents, 2);
+   }
+
+   /**
+    * @param cents an amount in cents
+    * @return the amount formatted like "9.99"
+    */
+   public static String format(long cents) {
+      return toDecimal(cents).toPlainString();
+   }
+}//end Money
@@ -0,0 +1,11 @@
+package pizzastore;
+
+/**
+ * A customer account to create.
+ *
+ * @param login the login, at most 50 characters
+ * @param password the password, at most 30 characters
+ * @param phoneNum the phone number, at most 20 characters
+ */
+public record NewUser(String login, String password, String phoneNum) {
+}//end NewUser
@@ -0,0 +1,391 @@
+package pizzastore;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * Offline order analytics: item co-purchase, demand by store and hour of
+ * day, and how often customers come back.  Questions like these used to
+ * mean ad-hoc SQL against the primary.  Here they are answered from an
+ * OrderDataset read once with COPY (or from CSV files), so the database
+ * only streams two tables and all the grouping happens in this JVM.
+ *
+ * Each report splits its rows into chunks, sums each chunk into arrays of
+ * its own on a fork/join pool, and adds the arrays up at the end; nothing
+ * is shared while the chunks run, so the scans scale with the cores.
+ *
+ * Settings, as system properties:
+ *
+ *    -Dpizzastore.analytics.threads=N       pool size (default: cores)
+ *    -Dpizzastore.analytics.top=10          lines per report
+ *    -Dpizzastore.analytics.returnDays=30   a next order this soon is a quick return
+ *    -Dpizzastore.analytics.from=yyyy-mm-dd first day to read (default: all)
+ *    -Dpizzastore.analytics.to=yyyy-mm-dd   last day to read (default: all)
+ */
+public class OrderAnalytics implements AutoCloseable {
+
+   static final int THREADS = Integer.getInteger("pizzastore.analytics.threads",
+                                                 Runtime.getRuntime().availableProcessors());
+   static final int TOP = Integer.getInteger("pizzastore.analytics.top", 10);
+   static final int RETURN_DAYS = Integer.getInteger("pizzastore.analytics.returnDays", 30);
+
+   // gaps between orders are counted by day up to this many days, and beyond it together.
+   static final int MAX_GAP_DAYS = 366;
+
+   private static final int HOURS = 24;
+   private static final int MINUTES_PER_DAY = 24 * 60;
+
+   private final OrderDataset _data;
+   private final ForkJoinPool _pool;
+
+   /**
+    * Runs the reports on pizzastore.analytics.threads threads.
+    */
+   public OrderAnalytics(OrderDataset data) {
+      this(data, THREADS);
+   }
+
+   /**
+    * @param threads how many threads the reports run on
+    */
+   public OrderAnalytics(OrderDataset data, int threads) {
+      this._data = data;
+      this._pool = new ForkJoinPool(Math.max(1, threads));
+   }
+
+   /**
+    * Two items bought in the same order.
+    *
+    * @param first the item listed first
+    * @param second the other item
+    * @param orders how many orders include both
+    * @param lift how much more often they are bought together than if
+    *        they were chosen independently; above 1 means they go together
+    */
+   public record ItemPair(String first, String second, long orders, double lift) {
+   }
+
+   /**
+    * The item pairs found together in the most orders, most first.
+    *
+    * @param limit the most pairs to return
+    */
+   public List<ItemPair> itemPairs(int limit) {
+      OrderDataset data = this._data;
+      int items = data.items();
+      // an items x items matrix: [a][b] counts orders with both a < b, [a][a] orders with a
+      int cells = Math.multiplyExact(items, items);
+      long[] counts = aggregate(data.orders(), () -> new long[cells], (together, first, last) -> {
+         for (int o = first; o < last; o++) {
+            int end = data.lineStart(o + 1);
+            for (int l = data.lineStart(o); l < end; l++) {
+               int a = data.item(l);
+               together[a * items + a]++;
+               for (int m = l + 1; m < end; m++) {
+                  int b = data.item(m);
+                  together[Math.min(a, b) * items + Math.max(a, b)]++;
+               }
+            }
+         }
+      }, OrderAnalytics::add);
+
+      List<ItemPair> pairs = new ArrayList<ItemPair>();
+      double orders = data.orders();
+      for (int a = 0; a < items; a++) {
+         for (int b = a + 1; b < items; b++) {
+            long together = counts[a * items + b];
+            if (together > 0) {
+               double expected = counts[a * items + a] / orders * counts[b * items + b];
+               pairs.add(new ItemPair(data.itemName(a), data.itemName(b), together, together / expected));
+            }
+         }
+      }
+      pairs.sort(Comparator.comparingLong(ItemPair::orders).reversed().thenComparing(ItemPair::first));
+      return pairs.subList(0, Math.min(Math.max(limit, 0), pairs.size()));
+   }//end itemPairs
+
+   /**
+    * One store's orders by hour of day.
+    *
+    * @param storeId the store
+    * @param orders its orders
+    * @param revenueCents their total, in cents
+    * @param byHour its orders placed in each hour of the day, from 0:00
+    */
+   public record StoreDemand(int storeId, long orders, long revenueCents, long[] byHour) {
+
+      /**
+       * @return the hour of the day with the most orders
+       */
+      public int peakHour() {
+         int peak = 0;
+         for (int hour = 1; hour < this.byHour.length; hour++) {
+            if (this.byHour[hour] > this.byHour[peak]) {
+               peak = hour;
+            }
+         }
+         return peak;
+      }
+   }//end StoreDemand
+
+   /**
+    * Every store's demand by hour of day, busiest store first.
+    */
+   public List<StoreDemand> demand() {
+      OrderDataset data = this._data;
+      int stores = data.stores();
+      // per store: orders in each hour, then revenue
+      int width = HOURS + 1;
+      long[] sums = aggregate(data.orders(), () -> new long[stores * width], (acc, first, last) -> {
+         for (int o = first; o < last; o++) {
+            int row = data.store(o) * width;
+            acc[row + data.hour(o)]++;
+            acc[row + HOURS] += data.totalCents(o);
+         }
+      }, OrderAnalytics::add);
+
+      List<StoreDemand> demand = new ArrayList<StoreDemand>(stores);
+      for (int s = 0; s < stores; s++) {
+         long[] byHour = Arrays.copyOfRange(sums, s * width, s * width + HOURS);
+         demand.add(new StoreDemand(data.storeId(s), Arrays.stream(byHour).sum(), sums[s * width + HOURS], byHour));
+      }
+      demand.sort(Comparator.comparingLong(StoreDemand::orders).reversed().thenComparingInt(StoreDemand::storeId));
+      return demand;
+   }//end demand
+
+   /**
+    * How customers come back.
+    *
+    * @param customers customers with at least one order
+    * @param repeatCustomers customers with more than one
+    * @param orders orders in all
+    * @param repeatOrders orders placed by repeat customers
+    * @param followUps orders that a later order by the same customer followed
+    * @param quickFollowUps those followed within returnDays days
+    * @param returnDays what counts as quick
+    * @param medianGapDays the median days from an order to the customer's
+    *        next, or -1 if no customer ordered twice
+    */
+   public record Repeats(long customers, long repeatCustomers, long orders, long repeatOrders,
+                         long followUps, long quickFollowUps, int returnDays, int medianGapDays) {
+
+      /**
+       * @return the share of customers who ordered more than once
+       */
+      public double repeatRate() {
+         return this.customers == 0 ? 0 : this.repeatCustomers / (double) this.customers;
+      }
+
+      /**
+       * @return the share of follow-up orders placed within returnDays
+       */
+      public double quickReturnRate() {
+         return this.followUps == 0 ? 0 : this.quickFollowUps / (double) this.followUps;
+      }
+   }//end Repeats
+
+   /**
+    * @param returnDays how soon a next order counts as a quick return
+    */
+   public Repeats repeats(int returnDays) {
+      OrderDataset data = this._data;
+      int customers = data.customers();
+
+      // each customer's order times side by side: start[c] up to start[c + 1]
+      int[] start = new int[customers + 1];
+      for (int o = 0; o < data.orders(); o++) {
+         start[data.customer(o) + 1]++;
+      }
+      for (int c = 0; c < customers; c++) {
+         start[c + 1] += start[c];
+      }
+      int[] minutes = new int[data.orders()];
+      int[] next = Arrays.copyOf(start, customers);
+      for (int o = 0; o < data.orders(); o++) {
+         minutes[next[data.customer(o)]++] = data.minute(o);
+      }
+
+      // customers, repeat customers, repeat orders, quick follow-ups, then follow-ups by gap in days
+      int gaps = 4;
+      long[] sums = aggregate(customers, () -> new long[gaps + MAX_GAP_DAYS + 1], (acc, first, last) -> {
+         for (int c = first; c < last; c++) {
+            int from = start[c];
+            int to = start[c + 1];
+            if (to == from) {
+               continue;
+            }
+            acc[0]++;
+            if (to - from < 2) {
+               continue;
+            }
+            acc[1]++;
+            acc[2] += to - from;
+            Arrays.sort(minutes, from, to);
+            for (int i = from + 1; i < to; i++) {
+               int gap = minutes[i] - minutes[i - 1];
+               if (gap <= returnDays * MINUTES_PER_DAY) {
+                  acc[3]++;
+               }
+               int days = gap / MINUTES_PER_DAY;
+               acc[gaps + Math.min(days, MAX_GAP_DAYS)]++;
+            }
+         }
+      }, OrderAnalytics::add);
+
+      long followUps = 0;
+      for (int d = 0; d <= MAX_GAP_DAYS; d++) {
+         followUps += sums[gaps + d];
+      }
+      int median = -1;
+      for (long seen = 0, d = 0; followUps > 0 && d <= MAX_GAP_DAYS; d++) {
+         seen += sums[gaps + (int) d];
+         if (seen * 2 >= followUps) {
+            median = (int) d;
+            break;
+         }
+      }
+      return new Repeats(sums[0], sums[1], data.orders(), sums[2], followUps, sums[3], returnDays, median);
+   }//end repeats
+
+   /**
+    * Prints every report.
+    */
+   public void report(PrintStream out) {
+      OrderDataset data = this._data;
+
+      long start = System.nanoTime();
+      List<ItemPair> pairs = itemPairs(TOP);
+      out.printf("%nItems bought together (%.0f ms)%n", (System.nanoTime() - start) / 1e6);
+      out.printf("%-30s %-30s %10s %7s%n", "Item", "With", "Orders", "Lift");
+      for (ItemPair pair : pairs) {
+         out.printf("%-30s %-30s %,10d %7.2f%n", pair.first(), pair.second(), pair.orders(), pair.lift());
+      }
+
+      start = System.nanoTime();
+      List<StoreDemand> demand = demand();
+      long[] byHour = new long[HOURS];
+      long orders = 0;
+      for (StoreDemand store : demand) {
+         for (int hour = 0; hour < HOURS; hour++) {
+            byHour[hour] += store.byHour()[hour];
+         }
+         orders += store.orders();
+      }
+      out.printf("%nOrders by hour of day (%.0f ms)%n", (System.nanoTime() - start) / 1e6);
+      for (int hour = 0; hour < HOURS; hour++) {
+         if (byHour[hour] > 0) {
+            out.printf("%02d:00 %,12d %6.1f%%%n", hour, byHour[hour], 100.0 * byHour[hour] / orders);
+         }
+      }
+      out.printf("%nBusiest stores%n");
+      out.printf("%8s %10s %14s %6s %10s%n", "Store", "Orders", "Revenue", "Peak", "At peak");
+      for (StoreDemand store : demand.subList(0, Math.min(TOP, demand.size()))) {
+         int peak = store.peakHour();
+         out.printf("%8d %,10d %14s %02d:00 %9.1f%%%n", store.storeId(), store.orders(),
+                    Money.format(store.revenueCents()), peak, 100.0 * store.byHour()[peak] / store.orders());
+      }
+
+      start = System.nanoTime();
+      Repeats repeats = repeats(RETURN_DAYS);
+      out.printf("%nRepeat customers (%.0f ms)%n", (System.nanoTime() - start) / 1e6);
+      out.printf("Customers:                 %,12d%n", repeats.customers());
+      out.printf("Ordered more than once:    %,12d  %5.1f%%%n", repeats.repeatCustomers(), 100 * repeats.repeatRate());
+      out.printf("Orders by repeat customers:%,12d  %5.1f%%%n", repeats.repeatOrders(),
+                 repeats.orders() == 0 ? 0.0 : 100.0 * repeats.repeatOrders() / repeats.orders());
+      out.printf("Next order within %3d days:%,12d  %5.1f%%%n", repeats.returnDays(), repeats.quickFollowUps(),
+                 100 * repeats.quickReturnRate());
+      out.printf("Median days to next order: %12s%n",
+                 repeats.medianGapDays() < 0 ? "-" : repeats.medianGapDays() == MAX_GAP_DAYS
+                    ? "over " + MAX_GAP_DAYS : String.valueOf(repeats.medianGapDays()));
+   }//end report
+
+   /**
+    * Stops the pool's threads.
+    */
+   @Override
+   public void close() {
+      this._pool.shutdown();
+   }
+
+   /*
+    * Sums rows 0 up to rows in chunks on the pool: each chunk fills a fresh
+    * accumulator, and the accumulators are merged pairwise.
+    */
+   private <A> A aggregate(int rows, Supplier<A> create, Chunk<A> chunk, BinaryOperator<A> merge) {
+      int chunks = Math.max(1, Math.min(rows / 4096, this._pool.getParallelism() * 4));
+      return this._pool.submit(() -> IntStream.range(0, chunks).parallel().mapToObj(c -> {
+         A acc = create.get();
+         chunk.add(acc, (int) ((long) rows * c / chunks), (int) ((long) rows * (c + 1) / chunks));
+         return acc;
+      }).reduce(merge).orElseGet(create)).join();
+   }
+
+   private interface Chunk<A> {
+      void add(A acc, int first, int last);
+   }
+
+   private static long[] add(long[] a, long[] b) {
+      for (int i = 0; i < a.length; i++) {
+         a[i] += b[i];
+      }
+      return a;
+   }
+
+   /**
+    * Reads the orders from a database, or from CSV files, and prints the
+    * reports.  The database password is read from the
+    * PIZZASTORE_DB_PASSWORD environment variable (empty if unset).
+    *
+    * @param args <dbname> <port> <user> | <directory of CSV files>
+    */
+   public static void main(String[] args) throws Exception {
+      boolean files = args.length == 1 && Files.isDirectory(Paths.get(args[0]));
+      if (args.length != 3 && !files) {
+         System.err.println("Usage: java [-classpath <classpath>] " + OrderAnalytics.class.getName()
+                            + " <dbname> <port> <user> | <directory of CSV files>");
+         return;
+      }
+      String from = System.getProperty("pizzastore.analytics.from");
+      String to = System.getProperty("pizzastore.analytics.to");
+      LocalDate first = from == null ? null : LocalDate.parse(from);
+      LocalDate last = to == null ? null : LocalDate.parse(to);
+
+      long start = System.nanoTime();
+      OrderDataset data;
+      try {
+         if (files) {
+            data = OrderDataset.read(Paths.get(args[0]), first, last);
+         } else {
+            data = OrderDataset.load(PizzaStore.url(args[0], args[1]), args[2], PizzaStore.password(), first, last);
+         }
+      } catch (SQLException | IOException e) {
+         System.err.println("Could not read the orders: " + e.getMessage());
+         System.exit(1);
+         return;
+      }
+      double seconds = (System.nanoTime() - start) / 1e9;
+      System.out.printf("Read %,d orders and %,d lines in %.2f s (%,.0f rows/s)%n", data.orders(), data.lines(),
+                        seconds, (data.orders() + data.lines()) / seconds);
+      if (data.unmatchedLines() > 0) {
+         System.out.printf("Left out %,d lines whose order was not read%n", data.unmatchedLines());
+      }
+      System.out.printf("%,d customers, %,d stores, %,d items; %d threads%n",
+                        data.customers(), data.stores(), data.items(), THREADS);
+
+      try (OrderAnalytics analytics = new OrderAnalytics(data)) {
+         analytics.report(System.out);
+      }
+   }//end main
+}//end OrderAnalytics
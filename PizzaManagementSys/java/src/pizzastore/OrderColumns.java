@@ -0,0 +1,174 @@
+package pizzastore;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A column-oriented list of FoodOrder rows.  IDs are kept in int arrays,
+ * totals in cents and timestamps in epoch milliseconds in long arrays, so a
+ * large listing costs a handful of arrays instead of one object (and one
+ * List of Strings) per row.  Status values repeat heavily and are shared.
+ *
+ * Pass an instance to PizzaStore.executeQueryAndStream to fill it from any
+ * query that returns the FoodOrder columns.
+ */
+public class OrderColumns implements RowHandler {
+
+   private int _size = 0;
+   private int[] _orderIds;
+   private int[] _storeIds;
+   private long[] _totalCents;
+   private long[] _timestamps;
+   private String[] _logins;
+   private String[] _statuses;
+
+   // one shared String per distinct status.
+   private final Map<String, String> _statusPool = new HashMap<String, String>();
+
+   public OrderColumns() {
+      this(64);
+   }
+
+   /**
+    * @param capacity the number of rows to allocate room for up front
+    */
+   public OrderColumns(int capacity) {
+      capacity = Math.max(capacity, 1);
+      this._orderIds = new int[capacity];
+      this._storeIds = new int[capacity];
+      this._totalCents = new long[capacity];
+      this._timestamps = new long[capacity];
+      this._logins = new String[capacity];
+      this._statuses = new String[capacity];
+   }
+
+   /**
+    * Appends the FoodOrder row the result set is positioned on.
+    */
+   @Override
+   public void handle(ResultSet rs) throws SQLException {
+      add(rs.getInt("orderID"),
+          rs.getString("login"),
+          rs.getInt("storeID"),
+          Money.toCents(rs.getBigDecimal("totalPrice")),
+          rs.getTimestamp("orderTimestamp").getTime(),
+          rs.getString("orderStatus"));
+   }
+
+   /**
+    * Appends one order.
+    */
+   public void add(int orderId, String login, int storeId, long totalCents, long orderTimestamp, String status) {
+      if (this._size == this._orderIds.length) {
+         grow();
+      }
+      int i = this._size++;
+      this._orderIds[i] = orderId;
+      this._storeIds[i] = storeId;
+      this._totalCents[i] = totalCents;
+      this._timestamps[i] = orderTimestamp;
+      this._logins[i] = login;
+      this._statuses[i] = intern(FoodOrder.trimStatus(status));
+   }
+
+   public int size() {
+      return this._size;
+   }
+
+   public boolean isEmpty() {
+      return this._size == 0;
+   }
+
+   public int orderId(int row) {
+      checkRow(row);
+      return this._orderIds[row];
+   }
+
+   public String login(int row) {
+      checkRow(row);
+      return this._logins[row];
+   }
+
+   public int storeId(int row) {
+      checkRow(row);
+      return this._storeIds[row];
+   }
+
+   public long totalCents(int row) {
+      checkRow(row);
+      return this._totalCents[row];
+   }
+
+   public long orderTimestamp(int row) {
+      checkRow(row);
+      return this._timestamps[row];
+   }
+
+   public String status(int row) {
+      checkRow(row);
+      return this._statuses[row];
+   }
+
+   /**
+    * @return the given row as a record, for callers that need one
+    */
+   public FoodOrder get(int row) {
+      checkRow(row);
+      return new FoodOrder(this._orderIds[row], this._logins[row], this._storeIds[row],
+                           this._totalCents[row], this._timestamps[row], this._statuses[row]);
+   }
+
+   /**
+    * Removes every row but keeps the allocated arrays for reuse.
+    */
+   public void clear() {
+      Arrays.fill(this._logins, 0, this._size, null);
+      Arrays.fill(this._statuses, 0, this._size, null);
+      this._size = 0;
+   }
+
+   /**
+    * Reverses the order of the rows in place.
+    */
+   public void reverse() {
+      for (int i = 0, j = this._size - 1; i < j; i++, j--) {
+         swap(i, j);
+      }
+   }
+
+   private void swap(int i, int j) {
+      int id = this._orderIds[i]; this._orderIds[i] = this._orderIds[j]; this._orderIds[j] = id;
+      int store = this._storeIds[i]; this._storeIds[i] = this._storeIds[j]; this._storeIds[j] = store;
+      long total = this._totalCents[i]; this._totalCents[i] = this._totalCents[j]; this._totalCents[j] = total;
+      long ts = this._timestamps[i]; this._timestamps[i] = this._timestamps[j]; this._timestamps[j] = ts;
+      String login = this._logins[i]; this._logins[i] = this._logins[j]; this._logins[j] = login;
+      String status = this._statuses[i]; this._statuses[i] = this._statuses[j]; this._statuses[j] = status;
+   }
+
+   private void grow() {
+      int capacity = this._orderIds.length * 2;
+      this._orderIds = Arrays.copyOf(this._orderIds, capacity);
+      this._storeIds = Arrays.copyOf(this._storeIds, capacity);
+      this._totalCents = Arrays.copyOf(this._totalCents, capacity);
+      this._timestamps = Arrays.copyOf(this._timestamps, capacity);
+      this._logins = Arrays.copyOf(this._logins, capacity);
+      this._statuses = Arrays.copyOf(this._statuses, capacity);
+   }
+
+   private String intern(String status) {
+      if (status == null) {
+         return null;
+      }
+      String shared = this._statusPool.putIfAbsent(status, status);
+      return shared != null ? shared : status;
+   }
+
+   private void checkRow(int row) {
+      if (row < 0 || row >= this._size) {
+         throw new IndexOutOfBoundsException("Row " + row + " of " + this._size);
+      }
+   }
+}//end OrderColumns
@@ -0,0 +1,875 @@
+package pizzastore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.IntStream;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyInputStream;
+
+/**
+ * Every order and order line of a period, held in memory as primitive
+ * columns for OrderAnalytics.  Logins, stores, items and statuses are
+ * stored as small integer codes into a dictionary of each, timestamps as
+ * minutes since the epoch and money in cents, so an order costs about 30
+ * bytes and a line 12, and a scan over them never touches an object per
+ * row.  Lines are grouped by order: the lines of order i are
+ * lineStart(i) up to lineStart(i + 1).
+ *
+ * load() streams both tables out of the database with COPY, each on its
+ * own connection and both in one exported snapshot, so the lines match the
+ * orders exactly and the server does nothing but read.  Point it at a
+ * replica to keep the work off the primary altogether.  read() takes the
+ * same columns from CSV files instead: the data/ files, or the monthly
+ * files OrderPartitions archive writes.
+ */
+public class OrderDataset {
+
+   // the columns read from each table; files may have others, in any order.
+   private static final String[] ORDER_COLUMNS = { "orderID", "login", "storeID", "totalPrice", "orderTimestamp", "orderStatus" };
+   private static final String[] LINE_COLUMNS = { "orderID", "itemName", "quantity", "unitPrice" };
+
+   private static final int MINUTES_PER_DAY = 24 * 60;
+
+   // orders, in the order they were read.
+   private final int _orders;
+   private final int[] _orderIds;
+   private final int[] _customers;
+   private final int[] _stores;
+   private final long[] _totalCents;
+   private final int[] _minutes;
+   private final byte[] _statuses;
+
+   // lines grouped by order; unitCents is -1 where a line has no price.
+   private final int[] _lineStart;
+   private final int[] _items;
+   private final int[] _quantities;
+   private final int[] _unitCents;
+
+   private final String[] _customerNames;
+   private final int[] _storeIds;
+   private final String[] _itemNames;
+   private final String[] _statusNames;
+
+   // lines whose order was not read, e.g. outside the period.
+   private final long _unmatchedLines;
+
+   private OrderDataset(OrderRows orders, LineRows lines) {
+      this._orders = orders.size;
+      this._orderIds = Arrays.copyOf(orders.orderIds, orders.size);
+      this._customers = Arrays.copyOf(orders.customers, orders.size);
+      this._stores = Arrays.copyOf(orders.stores, orders.size);
+      this._totalCents = Arrays.copyOf(orders.totalCents, orders.size);
+      this._minutes = Arrays.copyOf(orders.minutes, orders.size);
+      this._statuses = Arrays.copyOf(orders.statuses, orders.size);
+      this._customerNames = orders.customers().toArray(new String[0]);
+      this._storeIds = orders.storeIds();
+      this._statusNames = orders.statuses().toArray(new String[0]);
+      this._itemNames = lines.items().toArray(new String[0]);
+
+      // find each line's order by ID, then lay the lines out order by order
+      long[] byId = new long[this._orders];
+      for (int i = 0; i < this._orders; i++) {
+         byId[i] = (long) this._orderIds[i] << 32 | i;
+      }
+      Arrays.parallelSort(byId);
+      int[] owner = new int[lines.size];
+      IntStream.range(0, lines.size).parallel().forEach(l -> owner[l] = find(byId, lines.orderIds[l]));
+
+      this._lineStart = new int[this._orders + 1];
+      long unmatched = 0;
+      for (int l = 0; l < lines.size; l++) {
+         if (owner[l] < 0) {
+            unmatched++;
+         } else {
+            this._lineStart[owner[l] + 1]++;
+         }
+      }
+      for (int i = 0; i < this._orders; i++) {
+         this._lineStart[i + 1] += this._lineStart[i];
+      }
+      int matched = this._lineStart[this._orders];
+      this._items = new int[matched];
+      this._quantities = new int[matched];
+      this._unitCents = new int[matched];
+      int[] next = Arrays.copyOf(this._lineStart, this._orders);
+      for (int l = 0; l < lines.size; l++) {
+         int order = owner[l];
+         if (order >= 0) {
+            int at = next[order]++;
+            this._items[at] = lines.items[l];
+            this._quantities[at] = lines.quantities[l];
+            this._unitCents[at] = lines.unitCents[l];
+         }
+      }
+      this._unmatchedLines = unmatched;
+   }//end OrderDataset
+
+   // the row of the order with this ID, or -1.
+   private static int find(long[] byId, int orderId) {
+      int at = Arrays.binarySearch(byId, (long) orderId << 32);
+      if (at < 0) {
+         at = -at - 1;
+      }
+      return at < byId.length && (int) (byId[at] >>> 32) == orderId ? (int) byId[at] : -1;
+   }
+
+   /**
+    * Streams the orders placed from one day through another, and their
+    * lines, out of the database.
+    *
+    * @param url the JDBC connection URL
+    * @param user the user name used to login to the database
+    * @param passwd the user login password
+    * @param from the first day, or null for no bound
+    * @param to the last day, or null for no bound
+    * @throws java.sql.SQLException when the database cannot be read
+    */
+   public static OrderDataset load(String url, String user, String passwd, LocalDate from, LocalDate to)
+         throws SQLException {
+      String period = period(from, to);
+      // orderStatus is char(50); trimmed, it is a few bytes on the wire instead of fifty
+      String orders = "SELECT orderID, login, storeID, totalPrice, orderTimestamp, rtrim(orderStatus) AS orderStatus "
+                      + "FROM FoodOrder" + period;
+      // lines carry their order's time, so the same period picks them out without a join
+      String lines = "SELECT orderID, itemName, quantity, unitPrice FROM ItemsInOrder" + period;
+
+      try (Connection ordersConn = PizzaStore.connect(url, user, passwd);
+           Connection linesConn = PizzaStore.connect(url, user, passwd)) {
+         ordersConn.setAutoCommit(false);
+         linesConn.setAutoCommit(false);
+         try (Statement first = ordersConn.createStatement(); Statement second = linesConn.createStatement()) {
+            first.execute("SET TRANSACTION ISOLATION LEVEL REPEATABLE READ, READ ONLY");
+            String snapshot;
+            try (ResultSet rs = first.executeQuery("SELECT pg_export_snapshot()")) {
+               rs.next();
+               snapshot = rs.getString(1);
+            }
+            second.execute("SET TRANSACTION ISOLATION LEVEL REPEATABLE READ, READ ONLY");
+            second.execute("SET TRANSACTION SNAPSHOT '" + snapshot + "'");
+         }
+         CompletableFuture<LineRows> lineRows = inBackground(() -> copy(linesConn, lines, new LineRows()));
+         OrderRows orderRows = new OrderRows(null, null);
+         copy(ordersConn, orders, orderRows);
+         OrderDataset dataset = new OrderDataset(orderRows, join(lineRows));
+         ordersConn.commit();
+         linesConn.commit();
+         return dataset;
+      } catch (IOException e) {
+         throw new SQLException("Could not read the COPY output: " + e.getMessage(), e);
+      }
+   }//end load
+
+   /**
+    * Reads the orders placed from one day through another, and their
+    * lines, from CSV files with a header line: foodorder.csv and
+    * itemsinorder.csv as in data/, and any foodorder_pYYYYMM.csv and
+    * itemsinorder_pYYYYMM.csv written by OrderPartitions archive.
+    *
+    * @param dir the directory holding the files
+    * @param from the first day, or null for no bound
+    * @param to the last day, or null for no bound
+    * @throws java.io.IOException when a file cannot be read or lacks a column
+    */
+   public static OrderDataset read(Path dir, LocalDate from, LocalDate to) throws IOException {
+      List<Path> orderFiles = files(dir, "foodorder");
+      List<Path> lineFiles = files(dir, "itemsinorder");
+      if (orderFiles.isEmpty()) {
+         throw new IOException("No foodorder CSV files in " + dir);
+      }
+      CompletableFuture<LineRows> lineRows = inBackground(() -> {
+         LineRows rows = new LineRows();
+         for (Path file : lineFiles) {
+            read(file, rows);
+         }
+         return rows;
+      });
+      OrderRows orderRows = new OrderRows(from, to);
+      for (Path file : orderFiles) {
+         read(file, orderRows);
+      }
+      try {
+         return new OrderDataset(orderRows, join(lineRows));
+      } catch (SQLException e) {
+         // files never raise one
+         throw new IllegalStateException(e);
+      }
+   }//end read
+
+   private static List<Path> files(Path dir, String table) throws IOException {
+      List<Path> files = new ArrayList<Path>();
+      try (DirectoryStream<Path> listing = Files.newDirectoryStream(dir, table + "{,_p[0-9][0-9][0-9][0-9][0-9][0-9]}.csv")) {
+         for (Path file : listing) {
+            files.add(file);
+         }
+      }
+      files.sort(null);
+      return files;
+   }
+
+   // " WHERE ..." bounding orderTimestamp to the days given, or "".
+   private static String period(LocalDate from, LocalDate to) {
+      List<String> bounds = new ArrayList<String>();
+      if (from != null) {
+         bounds.add("orderTimestamp >= '" + from + "'");
+      }
+      if (to != null) {
+         bounds.add("orderTimestamp < '" + to.plusDays(1) + "'");
+      }
+      return bounds.isEmpty() ? "" : " WHERE " + String.join(" AND ", bounds);
+   }
+
+   private static <R extends Rows> R copy(Connection conn, String query, R rows) throws SQLException, IOException {
+      try (InputStream in = new PGCopyInputStream(conn.unwrap(PGConnection.class),
+                                                   "COPY (" + query + ") TO STDOUT WITH (FORMAT csv, HEADER)")) {
+         rows.readAll(new CsvReader(in), "COPY of " + query);
+      }
+      return rows;
+   }
+
+   private static void read(Path file, Rows rows) throws IOException {
+      try (InputStream in = Files.newInputStream(file)) {
+         rows.readAll(new CsvReader(in), file.toString());
+      }
+   }
+
+   /*
+    * Reads one table on a thread of its own while the caller reads the
+    * other; the reading blocks on I/O, so it stays off the fork/join pool.
+    */
+   private static <T> CompletableFuture<T> inBackground(Reader<T> reader) {
+      CompletableFuture<T> rows = new CompletableFuture<T>();
+      Thread thread = new Thread(() -> {
+         try {
+            rows.complete(reader.read());
+         } catch (Exception | Error e) {
+            rows.completeExceptionally(e);
+         }
+      }, "order-dataset");
+      thread.setDaemon(true);
+      thread.start();
+      return rows;
+   }
+
+   private interface Reader<T> {
+      T read() throws SQLException, IOException;
+   }
+
+   // waits for rows read on another thread, rethrowing what stopped them.
+   private static <T> T join(CompletableFuture<T> rows) throws SQLException, IOException {
+      try {
+         return rows.join();
+      } catch (CompletionException e) {
+         Throwable cause = e.getCause();
+         if (cause instanceof SQLException) {
+            throw (SQLException) cause;
+         }
+         if (cause instanceof IOException) {
+            throw (IOException) cause;
+         }
+         throw e;
+      }
+   }
+
+   /**
+    * @return the number of orders
+    */
+   public int orders() {
+      return this._orders;
+   }
+
+   /**
+    * @return the number of lines, over all orders
+    */
+   public int lines() {
+      return this._items.length;
+   }
+
+   /**
+    * @return lines read whose order was not, e.g. because it lies outside
+    *         the period; they are left out
+    */
+   public long unmatchedLines() {
+      return this._unmatchedLines;
+   }
+
+   public int orderId(int order) {
+      return this._orderIds[order];
+   }
+
+   /**
+    * @return the customer's code, below customers()
+    */
+   public int customer(int order) {
+      return this._customers[order];
+   }
+
+   /**
+    * @return the store's code, below stores()
+    */
+   public int store(int order) {
+      return this._stores[order];
+   }
+
+   public long totalCents(int order) {
+      return this._totalCents[order];
+   }
+
+   /**
+    * @return when the order was placed, in minutes since 1970-01-01 00:00
+    *         of the same (local) clock as orderTimestamp
+    */
+   public int minute(int order) {
+      return this._minutes[order];
+   }
+
+   /**
+    * @return the hour of the day the order was placed, 0 to 23
+    */
+   public int hour(int order) {
+      return Math.floorMod(this._minutes[order], MINUTES_PER_DAY) / 60;
+   }
+
+   /**
+    * @return the status's code, below statuses()
+    */
+   public int status(int order) {
+      return this._statuses[order];
+   }
+
+   /**
+    * @return the first of the order's lines; they run up to lineStart(order + 1)
+    */
+   public int lineStart(int order) {
+      return this._lineStart[order];
+   }
+
+   /**
+    * @return the item's code, below items()
+    */
+   public int item(int line) {
+      return this._items[line];
+   }
+
+   public int quantity(int line) {
+      return this._quantities[line];
+   }
+
+   /**
+    * @return the price of one item on the line in cents, or -1 for a line
+    *         loaded without a price
+    */
+   public int unitCents(int line) {
+      return this._unitCents[line];
+   }
+
+   /**
+    * @return how many customers, stores, items and statuses the codes cover
+    */
+   public int customers() {
+      return this._customerNames.length;
+   }
+
+   public int stores() {
+      return this._storeIds.length;
+   }
+
+   public int items() {
+      return this._itemNames.length;
+   }
+
+   public int statuses() {
+      return this._statusNames.length;
+   }
+
+   public String customerName(int customer) {
+      return this._customerNames[customer];
+   }
+
+   public int storeId(int store) {
+      return this._storeIds[store];
+   }
+
+   public String itemName(int item) {
+      return this._itemNames[item];
+   }
+
+   public String statusName(int status) {
+      return this._statusNames[status];
+   }
+
+   /*
+    * Rows of one table being read: finds its columns on the header line,
+    * then appends one record at a time.
+    */
+   private abstract static class Rows {
+      int size = 0;
+      private final String[] _wanted;
+
+      Rows(String[] wanted) {
+         this._wanted = wanted;
+      }
+
+      void readAll(CsvReader in, String source) throws IOException {
+         if (!in.next()) {
+            throw new IOException(source + " is empty");
+         }
+         int[] columns = new int[this._wanted.length];
+         Arrays.fill(columns, -1);
+         for (int f = 0; f < in.fields(); f++) {
+            for (int c = 0; c < this._wanted.length; c++) {
+               if (in.string(f).trim().equalsIgnoreCase(this._wanted[c])) {
+                  columns[c] = f;
+               }
+            }
+         }
+         for (int c = 0; c < this._wanted.length; c++) {
+            if (columns[c] < 0 && !optional(c)) {
+               throw new IOException(source + " has no " + this._wanted[c] + " column");
+            }
+         }
+         while (in.next()) {
+            try {
+               add(in, columns);
+            } catch (RuntimeException e) {
+               throw new IOException("Bad record " + in.record() + " of " + source + ": " + e.getMessage(), e);
+            }
+         }
+      }
+
+      boolean optional(int column) {
+         return false;
+      }
+
+      abstract void add(CsvReader in, int[] columns);
+   }//end Rows
+
+   /*
+    * Orders as they are read, with their dictionaries; orders outside
+    * the period, if one is given, are skipped.
+    */
+   private static final class OrderRows extends Rows {
+      int[] orderIds = new int[1024];
+      int[] customers = new int[1024];
+      int[] stores = new int[1024];
+      long[] totalCents = new long[1024];
+      int[] minutes = new int[1024];
+      byte[] statuses = new byte[1024];
+
+      private final Dictionary _customerCodes = new Dictionary();
+      private final Dictionary _storeCodes = new Dictionary();
+      private final Dictionary _statusCodes = new Dictionary();
+      private final byte[] _storeId = new byte[4];
+      private final int _fromMinute;
+      private final int _toMinute;
+
+      OrderRows(LocalDate from, LocalDate to) {
+         super(ORDER_COLUMNS);
+         this._fromMinute = from == null ? Integer.MIN_VALUE : (int) (from.toEpochDay() * MINUTES_PER_DAY);
+         this._toMinute = to == null ? Integer.MAX_VALUE : (int) (to.plusDays(1).toEpochDay() * MINUTES_PER_DAY);
+      }
+
+      @Override
+      void add(CsvReader in, int[] c) {
+         int minute = in.minute(c[4]);
+         if (minute < this._fromMinute || minute >= this._toMinute) {
+            return;
+         }
+         if (this.size == this.orderIds.length) {
+            int capacity = this.size * 2;
+            this.orderIds = Arrays.copyOf(this.orderIds, capacity);
+            this.customers = Arrays.copyOf(this.customers, capacity);
+            this.stores = Arrays.copyOf(this.stores, capacity);
+            this.totalCents = Arrays.copyOf(this.totalCents, capacity);
+            this.minutes = Arrays.copyOf(this.minutes, capacity);
+            this.statuses = Arrays.copyOf(this.statuses, capacity);
+         }
+         int i = this.size++;
+         this.orderIds[i] = in.integer(c[0]);
+         this.customers[i] = in.code(c[1], this._customerCodes);
+         int storeId = in.integer(c[2]);
+         for (int b = 0; b < 4; b++) {
+            this._storeId[b] = (byte) (storeId >>> (8 * b));
+         }
+         this.stores[i] = this._storeCodes.code(this._storeId, 0, 4);
+         this.totalCents[i] = in.cents(c[3]);
+         this.minutes[i] = minute;
+         // padded to char(50) in files exported straight from the table
+         int code = in.trimmedCode(c[5], this._statusCodes);
+         if (code > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("More than " + (Byte.MAX_VALUE + 1) + " order statuses");
+         }
+         this.statuses[i] = (byte) code;
+      }
+
+      List<String> customers() {
+         return this._customerCodes.names();
+      }
+
+      List<String> statuses() {
+         return this._statusCodes.names();
+      }
+
+      int[] storeIds() {
+         int[] ids = new int[this._storeCodes.size()];
+         for (int code = 0; code < ids.length; code++) {
+            byte[] id = this._storeCodes.value(code);
+            for (int b = 0; b < 4; b++) {
+               ids[code] |= (id[b] & 0xff) << (8 * b);
+            }
+         }
+         return ids;
+      }
+   }//end OrderRows
+
+   /*
+    * Lines as they are read, still keyed by order ID.
+    */
+   private static final class LineRows extends Rows {
+      int[] orderIds = new int[1024];
+      int[] items = new int[1024];
+      int[] quantities = new int[1024];
+      int[] unitCents = new int[1024];
+
+      private final Dictionary _itemCodes = new Dictionary();
+
+      LineRows() {
+         super(LINE_COLUMNS);
+      }
+
+      @Override
+      boolean optional(int column) {
+         // data/itemsinorder.csv predates unitPrice
+         return column == 3;
+      }
+
+      @Override
+      void add(CsvReader in, int[] c) {
+         if (this.size == this.orderIds.length) {
+            int capacity = this.size * 2;
+            this.orderIds = Arrays.copyOf(this.orderIds, capacity);
+            this.items = Arrays.copyOf(this.items, capacity);
+            this.quantities = Arrays.copyOf(this.quantities, capacity);
+            this.unitCents = Arrays.copyOf(this.unitCents, capacity);
+         }
+         int i = this.size++;
+         this.orderIds[i] = in.integer(c[0]);
+         this.items[i] = in.code(c[1], this._itemCodes);
+         this.quantities[i] = in.integer(c[2]);
+         this.unitCents[i] = c[3] < 0 || in.isNull(c[3]) ? -1 : Math.toIntExact(in.cents(c[3]));
+      }
+
+      List<String> items() {
+         return this._itemCodes.names();
+      }
+   }//end LineRows
+
+   /*
+    * Hands out the codes 0, 1, 2 ... to distinct values.  Values are looked
+    * up straight from the bytes of the record, so a value seen before costs
+    * a hash and a compare rather than a String.
+    */
+   private static final class Dictionary {
+      private byte[][] _values = new byte[16][];
+      private int[] _hashes = new int[16];
+      // open addressing: each slot holds a code plus one, or 0 when empty
+      private int[] _slots = new int[64];
+      private int _size = 0;
+
+      int code(byte[] bytes, int from, int to) {
+         int hash = 1;
+         for (int i = from; i < to; i++) {
+            hash = 31 * hash + bytes[i];
+         }
+         int mask = this._slots.length - 1;
+         for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+            int code = this._slots[slot] - 1;
+            if (code < 0) {
+               return add(Arrays.copyOfRange(bytes, from, to), hash, slot);
+            }
+            if (this._hashes[code] == hash && Arrays.equals(this._values[code], 0, this._values[code].length,
+                                                            bytes, from, to)) {
+               return code;
+            }
+         }
+      }//end code
+
+      private int add(byte[] value, int hash, int slot) {
+         int code = this._size++;
+         if (code == this._values.length) {
+            this._values = Arrays.copyOf(this._values, code * 2);
+            this._hashes = Arrays.copyOf(this._hashes, code * 2);
+         }
+         this._values[code] = value;
+         this._hashes[code] = hash;
+         this._slots[slot] = code + 1;
+         if (this._size * 2 > this._slots.length) {
+            // rehash into twice the slots, keeping the table at most half full
+            this._slots = new int[this._slots.length * 2];
+            int mask = this._slots.length - 1;
+            for (int c = 0; c < this._size; c++) {
+               int s = mix(this._hashes[c]) & mask;
+               while (this._slots[s] != 0) {
+                  s = (s + 1) & mask;
+               }
+               this._slots[s] = c + 1;
+            }
+         }
+         return code;
+      }//end add
+
+      private static int mix(int hash) {
+         hash *= 0x9E3779B9;
+         return hash ^ (hash >>> 16);
+      }
+
+      int size() {
+         return this._size;
+      }
+
+      byte[] value(int code) {
+         return this._values[code];
+      }
+
+      // the values as text, by code.
+      List<String> names() {
+         String[] names = new String[this._size];
+         for (int code = 0; code < this._size; code++) {
+            names[code] = new String(this._values[code], StandardCharsets.UTF_8);
+         }
+         return Arrays.asList(names);
+      }
+   }//end Dictionary
+
+   /*
+    * Reads CSV as COPY writes it, one record at a time, and parses fields
+    * straight from the bytes.  A double quote starts a quoted field, where
+    * commas and newlines are data and "" is a quote; an empty unquoted
+    * field is null.
+    */
+   static final class CsvReader {
+      private final InputStream _in;
+      private final byte[] _buffer = new byte[1 << 16];
+      private int _position = 0;
+      private int _limit = 0;
+      private long _record = 0;
+
+      // the current record's field bytes, unquoted, one after another.
+      private byte[] _bytes = new byte[256];
+      private int[] _ends = new int[16];
+      private boolean[] _quoted = new boolean[16];
+      private int _fields;
+
+      CsvReader(InputStream in) {
+         this._in = in;
+      }
+
+      // the next byte, or -1 at the end of the input.
+      private int read() throws IOException {
+         if (this._position == this._limit) {
+            int read = this._in.read(this._buffer, 0, this._buffer.length);
+            if (read <= 0) {
+               return -1;
+            }
+            this._position = 0;
+            this._limit = read;
+         }
+         return this._buffer[this._position++] & 0xff;
+      }
+
+      /**
+       * Reads the next record.
+       *
+       * @return false at the end of the input
+       */
+      boolean next() throws IOException {
+         int b = read();
+         if (b < 0) {
+            return false;
+         }
+         this._fields = 0;
+         int len = 0;
+         boolean quoted = false;
+         boolean wasQuoted = false;
+         while (true) {
+            if (quoted) {
+               if (b < 0) {
+                  throw new IOException("Unterminated quoted field in record " + (this._record + 1));
+               }
+               if (b == '"') {
+                  b = read();
+                  if (b != '"') {
+                     quoted = false;
+                     continue;
+                  }
+               }
+            } else if (b == '"') {
+               quoted = true;
+               wasQuoted = true;
+               b = read();
+               continue;
+            } else if (b == ',' || b == '\n' || b < 0) {
+               endField(len, wasQuoted);
+               wasQuoted = false;
+               if (b != ',') {
+                  break;
+               }
+               b = read();
+               continue;
+            } else if (b == '\r') {
+               b = read();
+               continue;
+            }
+            if (len == this._bytes.length) {
+               this._bytes = Arrays.copyOf(this._bytes, len * 2);
+            }
+            this._bytes[len++] = (byte) b;
+            b = read();
+         }
+         this._record++;
+         return true;
+      }//end next
+
+      private void endField(int len, boolean quoted) {
+         if (this._fields == this._ends.length) {
+            this._ends = Arrays.copyOf(this._ends, this._fields * 2);
+            this._quoted = Arrays.copyOf(this._quoted, this._fields * 2);
+         }
+         this._ends[this._fields] = len;
+         this._quoted[this._fields] = quoted;
+         this._fields++;
+      }
+
+      long record() {
+         return this._record;
+      }
+
+      int fields() {
+         return this._fields;
+      }
+
+      private int start(int field) {
+         if (field >= this._fields) {
+            throw new IllegalArgumentException("only " + this._fields + " fields");
+         }
+         return field == 0 ? 0 : this._ends[field - 1];
+      }
+
+      boolean isNull(int field) {
+         return start(field) == this._ends[field] && !this._quoted[field];
+      }
+
+      int code(int field, Dictionary codes) {
+         return codes.code(this._bytes, start(field), this._ends[field]);
+      }
+
+      // the code of the field without the spaces around it.
+      int trimmedCode(int field, Dictionary codes) {
+         int from = start(field);
+         int to = this._ends[field];
+         while (from < to && this._bytes[from] == ' ') {
+            from++;
+         }
+         while (to > from && this._bytes[to - 1] == ' ') {
+            to--;
+         }
+         return codes.code(this._bytes, from, to);
+      }
+
+      String string(int field) {
+         int start = start(field);
+         return new String(this._bytes, start, this._ends[field] - start, StandardCharsets.UTF_8);
+      }
+
+      int integer(int field) {
+         return Math.toIntExact(number(field, false));
+      }
+
+      // a decimal such as 12.5 in hundredths, i.e. cents.
+      long cents(int field) {
+         return number(field, true);
+      }
+
+      private long number(int field, boolean cents) {
+         int at = start(field);
+         int end = this._ends[field];
+         while (at < end && this._bytes[at] == ' ') {
+            at++;
+         }
+         boolean negative = at < end && this._bytes[at] == '-';
+         if (negative || (at < end && this._bytes[at] == '+')) {
+            at++;
+         }
+         long value = 0;
+         int digits = 0;
+         int decimals = -1;
+         for (; at < end && this._bytes[at] != ' '; at++) {
+            byte b = this._bytes[at];
+            if (b == '.' && cents && decimals < 0) {
+               decimals = 0;
+            } else if (b >= '0' && b <= '9') {
+               if (decimals < 2) {
+                  value = Math.addExact(Math.multiplyExact(value, 10), b - '0');
+                  if (decimals >= 0) {
+                     decimals++;
+                  }
+               } else if (decimals == 2 && b >= '5') {
+                  // a third decimal, which numeric(10,2) never has, rounds
+                  value++;
+                  decimals++;
+               }
+               digits++;
+            } else {
+               throw new IllegalArgumentException("'" + string(field) + "' is not a number");
+            }
+         }
+         if (digits == 0) {
+            throw new IllegalArgumentException("'" + string(field) + "' is not a number");
+         }
+         if (cents) {
+            for (int d = Math.max(decimals, 0); d < 2; d++) {
+               value *= 10;
+            }
+         }
+         return negative ? -value : value;
+      }//end number
+
+      // a timestamp such as 2024-03-01 18:05:59.123 as minutes since the epoch.
+      int minute(int field) {
+         int at = start(field);
+         int len = this._ends[field] - at;
+         if (len < 16 || this._bytes[at + 4] != '-' || this._bytes[at + 7] != '-'
+             || (this._bytes[at + 10] != ' ' && this._bytes[at + 10] != 'T') || this._bytes[at + 13] != ':') {
+            throw new IllegalArgumentException("'" + string(field) + "' is not a timestamp");
+         }
+         long day = LocalDate.of(digits(at, 4), digits(at + 5, 2), digits(at + 8, 2)).toEpochDay();
+         return Math.toIntExact(day * MINUTES_PER_DAY + digits(at + 11, 2) * 60 + digits(at + 14, 2));
+      }
+
+      private int digits(int at, int count) {
+         int value = 0;
+         for (int i = at; i < at + count; i++) {
+            int d = this._bytes[i] - '0';
+            if (d < 0 || d > 9) {
+               throw new IllegalArgumentException("bad digit in a timestamp");
+            }
+            value = value * 10 + d;
+         }
+         return value;
+      }
+   }//end CsvReader
+}//end OrderDataset
@@ -0,0 +1,23 @@
+package pizzastore;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An order with its lines and the menu entries of the items on them, as
+ * read by PizzaService.orderDetail and orderDetails.
+ *
+ * @param order the FoodOrder row
+ * @param lines the order's ItemsInOrder rows, by item name
+ * @param items the items on the lines by name, as they are on the menu now
+ */
+public record OrderDetail(FoodOrder order, List<OrderLine> lines, Map<String, MenuItem> items) {
+
+   /**
+    * @param itemName an item on one of the lines
+    * @return the item's menu entry
+    */
+   public MenuItem item(String itemName) {
+      return this.items.get(itemName);
+   }
+}//end OrderDetail
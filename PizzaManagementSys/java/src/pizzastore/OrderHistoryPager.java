@@ -0,0 +1,290 @@
+package pizzastore;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pages through FoodOrder newest first using keyset pagination on
+ * (orderTimestamp, orderID).  Each page seeks past the boundary row of the
+ * previous one instead of using OFFSET, so a page costs the same index range
+ * scan however deep into the history it is and however large the table
+ * grows.  See the foodorder_*_time indexes in sql/src/create_indexes.sql.
+ * FoodOrder is partitioned by month (see OrderPartitions).  A query with
+ * no lower time bound makes the planner consider every month ever kept, so
+ * each page is looked for in widening time windows away from its key,
+ * first the month next to it, then the year, then everything; a page
+ * usually fills in the first window, and so stays the same cost however
+ * many years of orders are kept.
+ *
+ * A pager is a cursor for one user's browsing and is not thread-safe.
+ */
+public class OrderHistoryPager {
+
+   // orders per page; override with -Dpizzastore.pageSize
+   static final int DEFAULT_PAGE_SIZE = Integer.getInteger("pizzastore.pageSize", 10);
+
+   private static final String SELECT = "SELECT * FROM FoodOrder";
+   private static final String NEWEST_FIRST = " ORDER BY orderTimestamp DESC, orderID DESC LIMIT ?";
+   private static final String OLDEST_FIRST = " ORDER BY orderTimestamp ASC, orderID ASC LIMIT ?";
+
+   // the widening windows a page is looked for in, past the last one the search is unbounded.
+   private static final long[] WINDOW_DAYS = { 31, 366 };
+
+   private final PizzaStore _esql;
+   private final Filter _filter;
+   private final int _pageSize;
+
+   // the current page, newest first, and the keys of its first and last rows.
+   private OrderColumns _page = new OrderColumns();
+   private Timestamp _firstTimestamp;
+   private int _firstOrderId;
+   private Timestamp _lastTimestamp;
+   private int _lastOrderId;
+   private boolean _hasNewer = false;
+   private boolean _hasOlder = false;
+
+   /**
+    * @param esql the database to read from
+    * @param filter restricts which orders are listed
+    * @param pageSize the number of orders per page
+    */
+   public OrderHistoryPager(PizzaStore esql, Filter filter, int pageSize) {
+      if (pageSize < 1) {
+         throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+      }
+      this._esql = esql;
+      this._filter = filter;
+      this._pageSize = pageSize;
+   }
+
+   /**
+    * Loads the page with the newest matching orders.
+    *
+    * @return the page, newest first
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public OrderColumns first() throws SQLException {
+      load(null, 0, false);
+      this._hasNewer = false;
+      return this._page;
+   }
+
+   /**
+    * Loads the page of orders just older than the current page.  The
+    * current page is kept if there is nothing older.
+    *
+    * @return the page, newest first
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public OrderColumns next() throws SQLException {
+      if (!this._hasOlder) {
+         return this._page;
+      }
+      load(this._lastTimestamp, this._lastOrderId, false);
+      this._hasNewer = true;
+      return this._page;
+   }
+
+   /**
+    * Loads the page of orders just newer than the current page.  The
+    * current page is kept if there is nothing newer.
+    *
+    * @return the page, newest first
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public OrderColumns previous() throws SQLException {
+      if (!this._hasNewer) {
+         return this._page;
+      }
+      load(this._firstTimestamp, this._firstOrderId, true);
+      this._hasOlder = true;
+      return this._page;
+   }
+
+   /**
+    * Reads the newest matching orders in one query, without keeping a
+    * cursor; this is the "recent orders" lookup.
+    *
+    * @param esql the database to read from
+    * @param filter restricts which orders are listed
+    * @param limit the most orders to return
+    * @return the orders, newest first
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public static OrderColumns latest(PizzaStore esql, Filter filter, int limit) throws SQLException {
+      OrderColumns orders = new OrderColumns(limit);
+      fetch(esql, filter, null, 0, false, limit, orders);
+      return orders;
+   }//end latest
+
+   public boolean hasNext() {
+      return this._hasOlder;
+   }
+
+   public boolean hasPrevious() {
+      return this._hasNewer;
+   }
+
+   /*
+    * Fetches one page past the given key.  One extra row is requested to
+    * learn whether anything lies beyond the page.
+    */
+   private void load(Timestamp keyTimestamp, int keyOrderId, boolean newer) throws SQLException {
+      OrderColumns page = new OrderColumns(this._pageSize + 1);
+      List<Timestamp> keys = new ArrayList<Timestamp>(this._pageSize + 1);
+      fetch(this._esql, this._filter, keyTimestamp, keyOrderId, newer, this._pageSize + 1, rs -> {
+         page.handle(rs);
+         keys.add(rs.getTimestamp("orderTimestamp"));
+      });
+
+      boolean more = page.size() > this._pageSize;
+      if (more) {
+         // drop the probe row; it is the last one fetched
+         OrderColumns trimmed = new OrderColumns(this._pageSize);
+         for (int i = 0; i < this._pageSize; i++) {
+            trimmed.add(page.orderId(i), page.login(i), page.storeId(i), page.totalCents(i),
+                        page.orderTimestamp(i), page.status(i));
+         }
+         this._page = trimmed;
+         keys.remove(keys.size() - 1);
+      } else {
+         this._page = page;
+      }
+      if (newer) {
+         this._page.reverse();
+         Collections.reverse(keys);
+         this._hasNewer = more;
+      } else {
+         this._hasOlder = more;
+      }
+
+      if (!this._page.isEmpty()) {
+         this._firstTimestamp = keys.get(0);
+         this._firstOrderId = this._page.orderId(0);
+         this._lastTimestamp = keys.get(keys.size() - 1);
+         this._lastOrderId = this._page.orderId(this._page.size() - 1);
+      }
+   }//end load
+
+   /*
+    * Streams up to limit orders past the key (or from the newest, when
+    * there is no key) to the handler, in page order.  Each query is bounded
+    * to one window, so the planner only opens the months inside it; the
+    * windows do not overlap and move away from the key, so the rows arrive
+    * in order across them.
+    */
+   private static void fetch(PizzaStore esql, Filter filter, Timestamp keyTimestamp, int keyOrderId,
+                             boolean newer, int limit, RowHandler handler) throws SQLException {
+      long anchor = keyTimestamp != null ? keyTimestamp.getTime()
+                  : filter.to != null ? filter.to.getTime() : System.currentTimeMillis();
+      int fetched = 0;
+      for (int step = 0; step <= WINDOW_DAYS.length && fetched < limit; step++) {
+         // the window's edges; null is unbounded
+         Timestamp near = step == 0 ? null : window(anchor, WINDOW_DAYS[step - 1], newer);
+         Timestamp far = step == WINDOW_DAYS.length ? null : window(anchor, WINDOW_DAYS[step], newer);
+         boolean last = far == null;
+         if (!newer && far != null && filter.from != null && !far.after(filter.from)) {
+            // the filter's own start is the nearer bound, and nothing lies past it
+            far = null;
+            last = true;
+         }
+
+         StringBuilder sql = new StringBuilder(SELECT);
+         List<Object> params = new ArrayList<Object>();
+         filter.appendTo(sql, params);
+         boolean filtered = !params.isEmpty();
+         List<String> conditions = new ArrayList<String>();
+         if (keyTimestamp != null) {
+            // the plain bound on orderTimestamp lets the planner skip the
+            // monthly partitions past the key, which the row comparison alone does not
+            conditions.add(newer ? "orderTimestamp >= ? AND (orderTimestamp, orderID) > (?, ?)"
+                                 : "orderTimestamp <= ? AND (orderTimestamp, orderID) < (?, ?)");
+            params.add(keyTimestamp);
+            params.add(keyTimestamp);
+            params.add(keyOrderId);
+         }
+         if (near != null) {
+            conditions.add(newer ? "orderTimestamp >= ?" : "orderTimestamp < ?");
+            params.add(near);
+         }
+         if (far != null) {
+            conditions.add(newer ? "orderTimestamp < ?" : "orderTimestamp >= ?");
+            params.add(far);
+         }
+         if (!conditions.isEmpty()) {
+            sql.append(filtered ? " AND " : " WHERE ");
+            sql.append(String.join(" AND ", conditions));
+         }
+         sql.append(newer ? OLDEST_FIRST : NEWEST_FIRST);
+         params.add(limit - fetched);
+         fetched += esql.executeQueryAndStream(sql.toString(), handler, params.toArray());
+         if (last) {
+            break;
+         }
+      }
+   }//end fetch
+
+   // the time the given number of days from the anchor, in the paging direction.
+   private static Timestamp window(long anchor, long days, boolean newer) {
+      long offset = TimeUnit.DAYS.toMillis(days);
+      return new Timestamp(newer ? anchor + offset : anchor - offset);
+   }
+
+   /**
+    * Which orders to list.  Null fields do not filter.
+    */
+   public static class Filter {
+      public final String login;
+      public final Integer storeId;
+      public final String status;
+      public final Timestamp from;
+      public final Timestamp to;
+
+      /**
+       * @param login only orders placed by this user
+       * @param storeId only orders placed at this store
+       * @param status only orders with this status, e.g. "complete"
+       * @param from only orders placed at or after this time
+       * @param to only orders placed before this time
+       */
+      public Filter(String login, Integer storeId, String status, Timestamp from, Timestamp to) {
+         this.login = login;
+         this.storeId = storeId;
+         this.status = status;
+         this.from = from;
+         this.to = to;
+      }
+
+      void appendTo(StringBuilder sql, List<Object> params) {
+         List<String> conditions = new ArrayList<String>();
+         if (this.login != null) {
+            conditions.add("login = ?");
+            params.add(this.login);
+         }
+         if (this.storeId != null) {
+            conditions.add("storeID = ?");
+            params.add(this.storeId);
+         }
+         if (this.status != null) {
+            // compare as char(50) so the orderStatus index stays usable
+            conditions.add("orderStatus = CAST(? AS char(50))");
+            params.add(this.status);
+         }
+         if (this.from != null) {
+            conditions.add("orderTimestamp >= ?");
+            params.add(this.from);
+         }
+         if (this.to != null) {
+            conditions.add("orderTimestamp < ?");
+            params.add(this.to);
+         }
+         if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+         }
+      }
+   }//end Filter
+}//end OrderHistoryPager
@@ -0,0 +1,306 @@
+package pizzastore;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Asynchronous order placement with group commit.  submit() checks an
+ * order on the caller's thread, queues it, and returns a future;
+ * background writers take orders off the queue in batches and store and
+ * price each batch in one statement, so a burst of orders shares one
+ * commit (and one WAL flush) instead of paying for one each.  Every
+ * future completes only after the statement holding its order has
+ * committed, so an acknowledged order is as durable as one placed with
+ * PizzaService.placeOrder.
+ *
+ * A writer takes whatever is queued, up to BATCH_SIZE orders, waiting up
+ * to LINGER_MILLIS for more when the queue runs dry.  When the queue holds
+ * CAPACITY orders, submit() waits up to OFFER_MILLIS for room and then
+ * refuses the order as UNAVAILABLE, so overload shows up as fast refusals
+ * rather than unbounded memory and latency.
+ *
+ * If a batch fails on a constraint, e.g. one order names a store that
+ * does not exist, it is rolled back and its orders are stored one at a
+ * time, so only the bad order fails.
+ *
+ * placeOrder() waits at most CONFIRM_MILLIS for its order's commit and
+ * then reports UNAVAILABLE; the order may still be stored afterwards.
+ */
+public class OrderIntake implements AutoCloseable {
+
+   // the most orders stored per transaction; -Dpizzastore.intake.batchSize
+   static final int BATCH_SIZE = Integer.getInteger("pizzastore.intake.batchSize", 64);
+
+   // how long a writer waits for a batch to fill; -Dpizzastore.intake.lingerMillis
+   static final long LINGER_MILLIS = Long.getLong("pizzastore.intake.lingerMillis", 1);
+
+   // orders queued before submit() blocks; -Dpizzastore.intake.capacity
+   static final int CAPACITY = Integer.getInteger("pizzastore.intake.capacity", 4096);
+
+   // how long submit() waits for room in a full queue; -Dpizzastore.intake.offerMillis
+   static final long OFFER_MILLIS = Long.getLong("pizzastore.intake.offerMillis", 1000);
+
+   // writer threads, each committing its own batches; -Dpizzastore.intake.writers
+   static final int WRITERS = Integer.getInteger("pizzastore.intake.writers", 1);
+
+   // how long placeOrder() waits for its order to commit; -Dpizzastore.intake.confirmMillis
+   static final long CONFIRM_MILLIS = Long.getLong("pizzastore.intake.confirmMillis", 30000);
+
+   private final PizzaService _service;
+   private final int _batchSize;
+   private final long _lingerNanos;
+   private final BlockingQueue<Pending> _queue;
+   private final List<Thread> _writers = new ArrayList<Thread>();
+   private volatile boolean _closed;
+
+   private final LongAdder _orders = new LongAdder();
+   private final LongAdder _batches = new LongAdder();
+   private final LongAdder _fallbacks = new LongAdder();
+   private final LongAdder _refused = new LongAdder();
+
+   /**
+    * Starts an intake with the pizzastore.intake.* settings.
+    */
+   public OrderIntake(PizzaService service) {
+      this(service, BATCH_SIZE, LINGER_MILLIS, CAPACITY, WRITERS);
+   }
+
+   /**
+    * Starts the writer threads.
+    *
+    * @param batchSize the most orders stored per transaction
+    * @param lingerMillis how long a writer waits for a batch to fill
+    * @param capacity orders queued before submit() blocks
+    * @param writers writer threads, each with its own connection while it writes
+    */
+   public OrderIntake(PizzaService service, int batchSize, long lingerMillis, int capacity, int writers) {
+      this._service = service;
+      this._batchSize = Math.max(1, batchSize);
+      this._lingerNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, lingerMillis));
+      this._queue = new ArrayBlockingQueue<Pending>(Math.max(1, capacity));
+      for (int i = 0; i < Math.max(1, writers); i++) {
+         Thread writer = new Thread(this::drain, "order-intake-" + i);
+         writer.setDaemon(true);
+         writer.start();
+         this._writers.add(writer);
+      }
+   }//end OrderIntake
+
+   /**
+    * Checks an order and queues it for storing.
+    *
+    * @return a future completed with the receipt once the order is
+    *         committed, or with the ServiceException or SQLException that
+    *         stopped it
+    * @throws ServiceException when the order is empty, names an unknown
+    *         item, has a quantity below one, or the queue stays full
+    * @throws java.sql.SQLException when the menu cannot be loaded
+    * @throws InterruptedException when interrupted waiting for room
+    */
+   public CompletableFuture<OrderReceipt> submit(Session session, OrderRequest request)
+         throws ServiceException, SQLException, InterruptedException {
+      if (this._closed) {
+         throw unavailable();
+      }
+      Pending pending = new Pending(this._service.check(session, request));
+      if (!this._queue.offer(pending, OFFER_MILLIS, TimeUnit.MILLISECONDS)) {
+         this._refused.increment();
+         throw unavailable();
+      }
+      // close() may have run between the check above and the offer, after
+      // the writers and its own sweep of the queue were done.  Whoever
+      // removes the order from the queue completes it: a writer, close(),
+      // or this.
+      if (this._closed && this._queue.remove(pending)) {
+         throw unavailable();
+      }
+      return pending.future;
+   }//end submit
+
+   /**
+    * Places an order through the queue and waits for it to be committed.
+    *
+    * @return the new order
+    * @throws ServiceException as PizzaService.placeOrder, or when the queue
+    *         stays full or the commit takes longer than CONFIRM_MILLIS
+    * @throws java.sql.SQLException when the database fails
+    * @throws InterruptedException when interrupted while waiting
+    */
+   public OrderReceipt placeOrder(Session session, OrderRequest request)
+         throws ServiceException, SQLException, InterruptedException {
+      try {
+         return submit(session, request).get(CONFIRM_MILLIS, TimeUnit.MILLISECONDS);
+      } catch (TimeoutException e) {
+         throw new ServiceException(ServiceException.Reason.UNAVAILABLE,
+                                    "Your order was not confirmed in time; check your recent orders before trying again.",
+                                    e);
+      } catch (ExecutionException e) {
+         Throwable cause = e.getCause();
+         if (cause instanceof ServiceException) {
+            throw (ServiceException) cause;
+         }
+         if (cause instanceof SQLException) {
+            throw (SQLException) cause;
+         }
+         if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+         }
+         throw new IllegalStateException(cause);
+      }
+   }//end placeOrder
+
+   /**
+    * Stops taking orders, stores those already queued, and stops the writers.
+    */
+   @Override
+   public void close() {
+      this._closed = true;
+      for (Thread writer : this._writers) {
+         try {
+            writer.join();
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+         }
+      }
+      // orders that slipped in while the writers were exiting
+      Pending pending;
+      while ((pending = this._queue.poll()) != null) {
+         pending.future.completeExceptionally(unavailable());
+      }
+   }//end close
+
+   /**
+    * @return orders stored, transactions used, batches retried one order
+    *         at a time, and orders refused because the queue was full
+    */
+   public String getStats() {
+      long orders = this._orders.sum();
+      long batches = this._batches.sum();
+      return String.format("orders=%d batches=%d avgBatch=%.1f fallbacks=%d refused=%d queued=%d",
+                           orders, batches, batches == 0 ? 0.0 : orders / (double) batches,
+                           this._fallbacks.sum(), this._refused.sum(), this._queue.size());
+   }
+
+   /*
+    * One writer: take a batch, store it, complete its futures, repeat
+    * until closed and the queue is empty.
+    */
+   private void drain() {
+      List<Pending> batch = new ArrayList<Pending>(this._batchSize);
+      while (true) {
+         try {
+            Pending first = this._queue.poll(100, TimeUnit.MILLISECONDS);
+            if (first == null) {
+               if (this._closed && this._queue.isEmpty()) {
+                  return;
+               }
+               continue;
+            }
+            batch.add(first);
+            fill(batch);
+         } catch (InterruptedException e) {
+            this._queue.drainTo(batch, this._batchSize - batch.size());
+            write(batch);
+            return;
+         }
+         write(batch);
+         batch.clear();
+      }
+   }//end drain
+
+   // tops the batch up from the queue, lingering for stragglers.
+   private void fill(List<Pending> batch) throws InterruptedException {
+      this._queue.drainTo(batch, this._batchSize - batch.size());
+      long deadline = System.nanoTime() + this._lingerNanos;
+      while (batch.size() < this._batchSize) {
+         long remaining = deadline - System.nanoTime();
+         if (remaining <= 0) {
+            return;
+         }
+         Pending next = this._queue.poll(remaining, TimeUnit.NANOSECONDS);
+         if (next == null) {
+            return;
+         }
+         batch.add(next);
+         this._queue.drainTo(batch, this._batchSize - batch.size());
+      }
+   }//end fill
+
+   private void write(List<Pending> batch) {
+      if (batch.isEmpty()) {
+         return;
+      }
+      List<OrderReceipt> receipts;
+      try {
+         receipts = storeAll(batch);
+      } catch (SQLException e) {
+         if (!PizzaService.isConstraintViolation(e)) {
+            for (Pending pending : batch) {
+               pending.future.completeExceptionally(e);
+            }
+            return;
+         }
+         // one bad order must not sink the others
+         this._fallbacks.increment();
+         for (Pending pending : batch) {
+            storeOne(pending);
+         }
+         return;
+      } catch (RuntimeException e) {
+         for (Pending pending : batch) {
+            pending.future.completeExceptionally(e);
+         }
+         return;
+      }
+      this._batches.increment();
+      this._orders.add(batch.size());
+      for (int i = 0; i < batch.size(); i++) {
+         batch.get(i).future.complete(receipts.get(i));
+      }
+   }//end write
+
+   // stores the whole batch with PizzaService.insert: one statement, one commit.
+   private List<OrderReceipt> storeAll(List<Pending> batch) throws SQLException {
+      List<PizzaService.CheckedOrder> orders = new ArrayList<PizzaService.CheckedOrder>(batch.size());
+      for (Pending pending : batch) {
+         orders.add(pending.order);
+      }
+      return this._service.insert(orders);
+   }
+
+   private void storeOne(Pending pending) {
+      try {
+         pending.future.complete(this._service.store(pending.order));
+         this._batches.increment();
+         this._orders.increment();
+      } catch (ServiceException | SQLException | RuntimeException e) {
+         pending.future.completeExceptionally(e);
+      }
+   }
+
+   private static ServiceException unavailable() {
+      return new ServiceException(ServiceException.Reason.UNAVAILABLE,
+                                  "Too many orders are waiting; please try again shortly.");
+   }
+
+   /*
+    * A queued order and the future its caller is holding.
+    */
+   private static final class Pending {
+      final PizzaService.CheckedOrder order;
+      final CompletableFuture<OrderReceipt> future = new CompletableFuture<OrderReceipt>();
+
+      Pending(PizzaService.CheckedOrder order) {
+         this.order = order;
+      }
+   }
+}//end OrderIntake
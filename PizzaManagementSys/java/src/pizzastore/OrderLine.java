@@ -0,0 +1,44 @@
+package pizzastore;
+
+import java.math.BigDecimal;
+
+/**
+ * One row of the ItemsInOrder table.
+ *
+ * @param orderId the order the line belongs to
+ * @param itemName the item ordered
+ * @param quantity how many of the item were ordered
+ * @param unitPriceCents the price of one item when the order was placed,
+ *        in cents, or NO_PRICE for lines loaded without one
+ */
+public record OrderLine(int orderId, String itemName, int quantity, long unitPriceCents) {
+
+   // the unit price of a line that has none.
+   public static final long NO_PRICE = -1;
+
+   /**
+    * Reads a row with the ItemsInOrder columns.
+    */
+   public static final RowMapper<OrderLine> MAPPER = rs -> {
+      BigDecimal unitPrice = rs.getBigDecimal("unitPrice");
+      return new OrderLine(
+         rs.getInt("orderID"),
+         rs.getString("itemName"),
+         rs.getInt("quantity"),
+         unitPrice == null ? NO_PRICE : Money.toCents(unitPrice));
+   };
+
+   /**
+    * @return true if the line has a unit price
+    */
+   public boolean hasUnitPrice() {
+      return this.unitPriceCents != NO_PRICE;
+   }
+
+   /**
+    * @return the unit price times the quantity, in cents
+    */
+   public long totalCents() {
+      return Math.multiplyExact(this.unitPriceCents, (long) this.quantity);
+   }
+}//end OrderLine
@@ -0,0 +1,436 @@
+package pizzastore;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+/**
+ * Maintains the monthly partitions of FoodOrder and ItemsInOrder, which
+ * are both range partitioned on orderTimestamp (see
+ * sql/src/create_tables.sql).  Each month lives in a pair of tables,
+ * foodorder_pYYYYMM and itemsinorder_pYYYYMM, so history reads that are
+ * bounded in time only touch the months they cover, and old months can be
+ * taken out whole instead of deleted row by row.  Every month always has
+ * both tables.
+ *
+ * ensure() moves any rows sitting in the catch-all default partitions
+ * into monthly partitions of their own and drops them, then creates the
+ * partitions from the current month through
+ * pizzastore.partitions.monthsAhead months ahead.  The default partitions exist so
+ * that a fresh schema can be loaded with plain COPY (load_data.sql or
+ * BulkLoader) before any month is known; once they are gone the planner can
+ * read the months in order and stop early.  PizzaServer runs ensure() at
+ * start and daily after.
+ *
+ * archive(before, dir) takes out every month before the given one: it
+ * detaches the month's lines and then its orders, exports both as CSV
+ * files in the data/ format (foodorder_pYYYYMM.csv and
+ * itemsinorder_pYYYYMM.csv, reloadable with BulkLoader), and only then
+ * drops the two tables.  A run that stops half way is finished by the
+ * next one, since detached months are picked up too.
+ *
+ * Settings, as system properties:
+ *
+ *    -Dpizzastore.partitions.monthsAhead=3   future months kept ready
+ */
+public class OrderPartitions {
+
+   static final int MONTHS_AHEAD = Integer.getInteger("pizzastore.partitions.monthsAhead", 3);
+
+   static final String DEFAULT_PARTITION = "foodorder_default";
+   static final String LINES_DEFAULT_PARTITION = "itemsinorder_default";
+
+   // the detached default partitions while their rows are moved to their months.
+   static final String UNSPLIT = "foodorder_unsplit";
+   static final String LINES_UNSPLIT = "itemsinorder_unsplit";
+
+   // the foreign key from ItemsInOrder to FoodOrder, which detached lines keep.
+   private static final String LINES_ORDER_KEY = "itemsinorder_order";
+
+   private static final Pattern MONTHLY = Pattern.compile("(?:foodorder|itemsinorder)_p(\\d{4})(\\d{2})");
+   private static final DateTimeFormatter BOUND = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+   private final String _url;
+   private final String _user;
+   private final String _passwd;
+
+   /**
+    * @param url the JDBC connection URL
+    * @param user the user name used to login to the database
+    * @param passwd the user login password
+    */
+   public OrderPartitions(String url, String user, String passwd) {
+      this._url = url;
+      this._user = user;
+      this._passwd = passwd;
+   }
+
+   /**
+    * Empties and drops the default partitions, then creates the partitions
+    * for the current month and MONTHS_AHEAD months after it.
+    *
+    * @return the partitions created
+    * @throws java.sql.SQLException when a partition cannot be created
+    */
+   public List<String> ensure() throws SQLException {
+      YearMonth now = YearMonth.now();
+      List<String> created = splitDefault();
+      created.addAll(create(now, now.plusMonths(MONTHS_AHEAD)));
+      return created;
+   }//end ensure
+
+   /**
+    * Creates the empty monthly partitions from one month through another
+    * that do not exist yet.  DataGenerator calls this before loading so
+    * rows go straight to their month.
+    *
+    * @return the partitions created
+    * @throws java.sql.SQLException when a partition cannot be created, e.g.
+    *         because the default partition already holds rows of that month
+    */
+   public List<String> create(YearMonth from, YearMonth to) throws SQLException {
+      List<String> created = new ArrayList<String>();
+      try (Connection conn = PizzaStore.connect(this._url, this._user, this._passwd);
+           Statement stmt = conn.createStatement()) {
+         TreeSet<YearMonth> orders = months(conn, "FoodOrder", true);
+         TreeSet<YearMonth> lines = months(conn, "ItemsInOrder", true);
+         for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+            if (!orders.contains(month)) {
+               stmt.execute("CREATE TABLE " + name(month) + " PARTITION OF FoodOrder FOR VALUES " + bounds(month));
+               created.add(name(month));
+            }
+            if (!lines.contains(month)) {
+               stmt.execute("CREATE TABLE " + linesName(month) + " PARTITION OF ItemsInOrder FOR VALUES " + bounds(month));
+               created.add(linesName(month));
+            }
+         }
+      }
+      return created;
+   }//end create
+
+   /**
+    * Moves every row of the default partitions into its monthly partition,
+    * creating the months as needed, and drops the default partitions.
+    * Months that have orders but no lines table, as in a database
+    * partitioned before the lines were, get an empty one.
+    *
+    * The default partitions are detached first, lines before orders since
+    * the lines refer to the orders, and renamed foodorder_unsplit and
+    * itemsinorder_unsplit, so attaching a month does not have to scan them
+    * for rows of that month.  Each month's orders and lines are moved in
+    * one transaction, newest month first, since new orders for a month that
+    * has no partition yet fail until it is moved.  If a run stops early,
+    * the next one carries on from the unsplit tables.
+    *
+    * @return the partitions created
+    * @throws java.sql.SQLException when a partition cannot be created
+    */
+   public List<String> splitDefault() throws SQLException {
+      List<String> created = new ArrayList<String>();
+      try (Connection conn = PizzaStore.connect(this._url, this._user, this._passwd)) {
+         if (exists(conn, LINES_DEFAULT_PARTITION)) {
+            inTransaction(conn, stmt -> {
+               stmt.execute("ALTER TABLE ItemsInOrder DETACH PARTITION " + LINES_DEFAULT_PARTITION);
+               // the lines wait here while their orders are out of FoodOrder too
+               stmt.execute("ALTER TABLE " + LINES_DEFAULT_PARTITION + " DROP CONSTRAINT IF EXISTS " + LINES_ORDER_KEY);
+               merge(conn, stmt, LINES_DEFAULT_PARTITION, LINES_UNSPLIT);
+            });
+         }
+         if (exists(conn, DEFAULT_PARTITION)) {
+            inTransaction(conn, stmt -> {
+               stmt.execute("ALTER TABLE FoodOrder DETACH PARTITION " + DEFAULT_PARTITION);
+               merge(conn, stmt, DEFAULT_PARTITION, UNSPLIT);
+            });
+         }
+
+         boolean orders = exists(conn, UNSPLIT);
+         boolean lines = exists(conn, LINES_UNSPLIT);
+         List<String> unsplit = new ArrayList<String>();
+         if (orders) {
+            unsplit.add("SELECT orderTimestamp FROM " + UNSPLIT);
+         }
+         if (lines) {
+            unsplit.add("SELECT orderTimestamp FROM " + LINES_UNSPLIT);
+         }
+         List<YearMonth> months = new ArrayList<YearMonth>();
+         if (!unsplit.isEmpty()) {
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT DISTINCT date_trunc('month', orderTimestamp)::date FROM ("
+                                                  + String.join(" UNION ALL ", unsplit) + ") t ORDER BY 1 DESC")) {
+               while (rs.next()) {
+                  months.add(YearMonth.from(rs.getDate(1).toLocalDate()));
+               }
+            }
+         }
+         TreeSet<YearMonth> attachedOrders = months(conn, "FoodOrder", true);
+         TreeSet<YearMonth> attachedLines = months(conn, "ItemsInOrder", true);
+         for (YearMonth month : months) {
+            inTransaction(conn, stmt -> {
+               // orders first, so the lines find them
+               if (orders) {
+                  move(stmt, month, UNSPLIT, "FoodOrder", name(month), attachedOrders.contains(month));
+               } else if (!attachedOrders.contains(month)) {
+                  stmt.execute("CREATE TABLE " + name(month) + " PARTITION OF FoodOrder FOR VALUES " + bounds(month));
+               }
+               if (lines) {
+                  move(stmt, month, LINES_UNSPLIT, "ItemsInOrder", linesName(month), attachedLines.contains(month));
+               } else if (!attachedLines.contains(month)) {
+                  stmt.execute("CREATE TABLE " + linesName(month) + " PARTITION OF ItemsInOrder FOR VALUES " + bounds(month));
+               }
+            });
+            if (!attachedOrders.contains(month)) {
+               created.add(name(month));
+            }
+            if (!attachedLines.contains(month)) {
+               created.add(linesName(month));
+            }
+         }
+         try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS " + LINES_UNSPLIT + ", " + UNSPLIT);
+            TreeSet<YearMonth> unpaired = months(conn, "FoodOrder", true);
+            unpaired.removeAll(months(conn, "ItemsInOrder", true));
+            for (YearMonth month : unpaired) {
+               stmt.execute("CREATE TABLE " + linesName(month) + " PARTITION OF ItemsInOrder FOR VALUES " + bounds(month));
+               created.add(linesName(month));
+            }
+         }
+      }
+      return created;
+   }//end splitDefault
+
+   /*
+    * Renames a detached default partition to its unsplit table, or adds its
+    * rows to the one a stopped run left behind.
+    */
+   private static void merge(Connection conn, Statement stmt, String table, String unsplit) throws SQLException {
+      if (exists(conn, unsplit)) {
+         stmt.execute("INSERT INTO " + unsplit + " SELECT * FROM " + table);
+         stmt.execute("DROP TABLE " + table);
+      } else {
+         stmt.execute("ALTER TABLE " + table + " RENAME TO " + unsplit);
+      }
+   }
+
+   /*
+    * Moves one month's rows out of an unsplit table into their partition,
+    * which is created, filled and only then attached when it is new, so
+    * ATTACH builds its indexes and checks its keys in one go.
+    */
+   private static void move(Statement stmt, YearMonth month, String unsplit, String parent, String table,
+                            boolean attached) throws SQLException {
+      String moved = "WITH moved AS (DELETE FROM " + unsplit + " WHERE orderTimestamp >= '" + first(month)
+                     + "' AND orderTimestamp < '" + first(month.plusMonths(1)) + "' RETURNING *) ";
+      if (attached) {
+         stmt.execute(moved + "INSERT INTO " + parent + " SELECT * FROM moved");
+      } else {
+         stmt.execute("CREATE TABLE " + table + " (LIKE " + parent + " INCLUDING DEFAULTS)");
+         stmt.execute(moved + "INSERT INTO " + table + " SELECT * FROM moved");
+         stmt.execute("ALTER TABLE " + parent + " ATTACH PARTITION " + table + " FOR VALUES " + bounds(month));
+      }
+   }//end move
+
+   /**
+    * Adds back empty default partitions so that orders and lines from any
+    * month can be loaded; BulkLoader does this before loading orders and
+    * calls splitDefault() afterwards.
+    *
+    * @throws java.sql.SQLException when a partition cannot be created
+    */
+   public void openDefault() throws SQLException {
+      try (Connection conn = PizzaStore.connect(this._url, this._user, this._passwd);
+           Statement stmt = conn.createStatement()) {
+         stmt.execute("CREATE TABLE IF NOT EXISTS " + DEFAULT_PARTITION + " PARTITION OF FoodOrder DEFAULT");
+         stmt.execute("CREATE TABLE IF NOT EXISTS " + LINES_DEFAULT_PARTITION + " PARTITION OF ItemsInOrder DEFAULT");
+      }
+   }
+
+   /**
+    * Takes every month before the given one out of FoodOrder and
+    * ItemsInOrder: detaches its lines and orders, writes them to CSV files
+    * in dir, then drops both tables.
+    *
+    * @param before the first month to keep
+    * @param dir where the CSV files are written; created if missing
+    * @return the files written
+    * @throws java.sql.SQLException when a partition cannot be detached or dropped
+    * @throws java.io.IOException when a file cannot be written; the
+    *         partitions are then left detached but not dropped
+    */
+   public List<Path> archive(YearMonth before, Path dir) throws SQLException, IOException {
+      Files.createDirectories(dir);
+      List<Path> files = new ArrayList<Path>();
+      try (Connection conn = PizzaStore.connect(this._url, this._user, this._passwd)) {
+         TreeSet<YearMonth> attachedOrders = months(conn, "FoodOrder", true);
+         TreeSet<YearMonth> attachedLines = months(conn, "ItemsInOrder", true);
+         // months detached by an earlier run that did not finish are archived too
+         for (YearMonth month : months(conn, null, false).headSet(before)) {
+            String orders = name(month);
+            String lines = linesName(month);
+            try (Statement stmt = conn.createStatement()) {
+               // the lines go first: a month of orders cannot leave while lines refer to it
+               if (attachedLines.contains(month)) {
+                  stmt.execute("ALTER TABLE ItemsInOrder DETACH PARTITION " + lines);
+               }
+               if (attachedOrders.contains(month)) {
+                  stmt.execute("ALTER TABLE FoodOrder DETACH PARTITION " + orders);
+               }
+            }
+            int[] counts = new int[2];
+            if (exists(conn, orders)) {
+               files.add(export(conn, "COPY " + orders + " TO STDOUT WITH (FORMAT csv, HEADER)",
+                                dir.resolve(orders + ".csv")));
+               counts[0] = count(conn, orders);
+            }
+            if (exists(conn, lines)) {
+               files.add(export(conn, "COPY " + lines + " TO STDOUT WITH (FORMAT csv, HEADER)",
+                                dir.resolve(lines + ".csv")));
+               counts[1] = count(conn, lines);
+            }
+            inTransaction(conn, stmt -> stmt.execute("DROP TABLE IF EXISTS " + lines + ", " + orders));
+            System.out.printf("Archived %s: %,d orders, %,d lines%n", month, counts[0], counts[1]);
+         }
+      }
+      return files;
+   }//end archive
+
+   @FunctionalInterface
+   private interface Work {
+      void run(Statement stmt) throws SQLException;
+   }
+
+   private static void inTransaction(Connection conn, Work work) throws SQLException {
+      conn.setAutoCommit(false);
+      try (Statement stmt = conn.createStatement()) {
+         work.run(stmt);
+         conn.commit();
+      } catch (SQLException | RuntimeException e) {
+         conn.rollback();
+         throw e;
+      } finally {
+         conn.setAutoCommit(true);
+      }
+   }//end inTransaction
+
+   // FOR VALUES clause of one month's partition.
+   private static String bounds(YearMonth month) {
+      return "FROM ('" + first(month) + "') TO ('" + first(month.plusMonths(1)) + "')";
+   }
+
+   private static String first(YearMonth month) {
+      return month.atDay(1).format(BOUND);
+   }
+
+   /*
+    * The months with a partition table: those attached to the given parent
+    * table, or every foodorder_pYYYYMM and itemsinorder_pYYYYMM table
+    * whether attached or not.
+    */
+   private static TreeSet<YearMonth> months(Connection conn, String parent, boolean attachedOnly) throws SQLException {
+      String sql = attachedOnly
+         ? "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+           + "WHERE i.inhparent = '" + parent.toLowerCase() + "'::regclass"
+         : "SELECT tablename FROM pg_tables WHERE schemaname = current_schema() "
+           + "AND (tablename LIKE 'foodorder\\_p%' OR tablename LIKE 'itemsinorder\\_p%')";
+      TreeSet<YearMonth> months = new TreeSet<YearMonth>();
+      try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+         while (rs.next()) {
+            Matcher m = MONTHLY.matcher(rs.getString(1));
+            if (m.matches()) {
+               months.add(YearMonth.of(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2))));
+            }
+         }
+      }
+      return months;
+   }//end months
+
+   /*
+    * Runs a COPY ... TO STDOUT into a file, via a temporary file that is
+    * synced and renamed so a finished export is never half written.
+    */
+   private static Path export(Connection conn, String copy, Path file) throws SQLException, IOException {
+      Path partial = file.resolveSibling(file.getFileName() + ".partial");
+      CopyManager copier = conn.unwrap(PGConnection.class).getCopyAPI();
+      try (FileOutputStream out = new FileOutputStream(partial.toFile())) {
+         copier.copyOut(copy, out);
+         out.getFD().sync();
+      }
+      Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      return file;
+   }//end export
+
+   private static boolean exists(Connection conn, String table) throws SQLException {
+      try (PreparedStatement stmt = conn.prepareStatement("SELECT to_regclass(?) IS NOT NULL")) {
+         stmt.setString(1, table);
+         try (ResultSet rs = stmt.executeQuery()) {
+            return rs.next() && rs.getBoolean(1);
+         }
+      }
+   }
+
+   private static int count(Connection conn, String table) throws SQLException {
+      try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("SELECT count(*) FROM " + table)) {
+         rs.next();
+         return rs.getInt(1);
+      }
+   }
+
+   static String name(YearMonth month) {
+      return String.format("foodorder_p%04d%02d", month.getYear(), month.getMonthValue());
+   }
+
+   static String linesName(YearMonth month) {
+      return String.format("itemsinorder_p%04d%02d", month.getYear(), month.getMonthValue());
+   }
+
+   /**
+    * Creates the coming months' partitions, or archives old ones.  The
+    * database password is read from the PIZZASTORE_DB_PASSWORD environment
+    * variable (empty if unset).
+    *
+    * @param args <dbname> <port> <user> [ensure | archive <first month to keep, yyyy-mm> <directory>]
+    */
+   public static void main(String[] args) throws Exception {
+      boolean ensure = args.length == 3 || (args.length == 4 && args[3].equals("ensure"));
+      boolean archive = args.length == 6 && args[3].equals("archive");
+      if (!ensure && !archive) {
+         System.err.println("Usage: java [-classpath <classpath>] " + OrderPartitions.class.getName()
+                            + " <dbname> <port> <user> [ensure | archive <first month to keep, yyyy-mm> <directory>]");
+         return;
+      }
+      String url = PizzaStore.url(args[0], args[1]);
+      OrderPartitions partitions = new OrderPartitions(url, args[2], PizzaStore.password());
+      try {
+         if (ensure) {
+            List<String> created = partitions.ensure();
+            System.out.println(created.isEmpty() ? "All partitions present"
+                                                 : "Created " + created.size() + " partitions: " + String.join(", ", created));
+         } else {
+            YearMonth before = YearMonth.parse(args[4]);
+            List<Path> files = partitions.archive(before, Paths.get(args[5]));
+            System.out.println(files.isEmpty() ? "Nothing before " + before + " to archive"
+                                               : "Wrote " + files.size() + " files to " + args[5]);
+         }
+      } catch (SQLException | IOException e) {
+         System.err.println("Partition maintenance failed: " + e.getMessage());
+         System.exit(1);
+      }
+   }//end main
+}//end OrderPartitions
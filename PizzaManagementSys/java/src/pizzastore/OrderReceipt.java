@@ -0,0 +1,15 @@
+package pizzastore;
+
+import java.util.List;
+
+/**
+ * The result of placing an order.
+ *
+ * @param orderId the ID of the new order
+ * @param storeId the store it was placed at
+ * @param totalCents the order total in cents, as stored: the sum of the lines
+ * @param lines one line per distinct item, as stored in ItemsInOrder, with
+ *        the unit prices the order was placed at
+ */
+public record OrderReceipt(int orderId, int storeId, long totalCents, List<OrderLine> lines) {
+}//end OrderReceipt
@@ -0,0 +1,23 @@
+package pizzastore;
+
+import java.util.List;
+
+/**
+ * An order a customer wants to place.
+ *
+ * @param storeId the store to order from
+ * @param lines the items and quantities; the same item may appear more than once
+ */
+public record OrderRequest(int storeId, List<Line> lines) {
+
+   public OrderRequest {
+      lines = List.copyOf(lines);
+   }
+
+   /**
+    * @param itemName the exact menu item name
+    * @param quantity how many of the item, at least one
+    */
+   public record Line(String itemName, int quantity) {
+   }
+}//end OrderRequest
@@ -0,0 +1,836 @@
+package pizzastore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An HTTP/JSON front end to PizzaService built on the JDK's own HTTP
+ * server.  Each request runs on its own virtual thread when the JVM has
+ * them (Java 21 and later), so thousands of slow clients cost little more
+ * than their sockets; on older JVMs a fixed pool of platform threads is
+ * used instead.  Database work is bounded by the connection pool, not by
+ * the number of clients.
+ *
+ * Endpoints (bodies and responses are JSON):
+ *
+ *    POST /login                 {"login", "password"} -> {"token", "login", "role"}
+ *    POST /logout                ends the caller's session
+ *    POST /users                 {"login", "password", "phoneNum"} creates a customer
+ *    GET  /menu                  ?type=entree  ?maxPrice=9.99  ?sort=asc|desc
+ *    GET  /menu/{item}/favoredBy ?after=login&limit=  managers only; logins by name
+ *    GET  /favorites             the caller's favorite item names
+ *    PUT  /favorites             {"itemNames": [...]} replaces them
+ *    GET  /stores                ?city=&state=&open=true|false&minReviewScore=&offset=&limit=
+ *                                -> {"stores", "offset", "total", "hasNext"}, by store ID
+ *    PUT  /stores/{id}/open      {"isOpen": true} managers only
+ *    POST /orders                {"storeId", "lines": [{"itemName", "quantity"}]}
+ *    POST /orders/favorites      {"storeId"} one of each favorite; storeId optional,
+ *                                defaulting to the store of the last order
+ *    POST /orders/repeat         {"storeId"} the last order again; storeId optional
+ *    GET  /orders/recent         ?storeId=&limit=   newest first
+ *    GET  /orders/{id}           the order with its lines and their item types
+ *    PUT  /orders/{id}/status    {"status": "complete", "expectedStatus": "incomplete"}  (expected optional)
+ *    POST /orders/status         {"orderIds": [...], "status", "expectedStatus"} -> one outcome per order
+ *    GET  /reports/sales/stores  ?from=yyyy-mm&to=yyyy-mm&limit=  managers only; best first
+ *    GET  /reports/sales/items   ?from=yyyy-mm&to=yyyy-mm  managers only; best first
+ *    GET  /reports/sales/hours   ?from=yyyy-mm-dd&to=yyyy-mm-dd  managers only; by hour of day
+ *    GET  /metrics               managers only; per-query timings as plain text
+ *
+ * Every endpoint but login, sign-up, menu and store lookup needs the header
+ * "Authorization: Bearer <token>" with the token returned by /login.
+ * Refusals come back as {"error": message} with a 4xx status, or 503 when
+ * the order intake queue (-Dpizzastore.intake=true) is full.
+ */
+public class PizzaServer {
+
+   // pending connections the listener queues; override with -Dpizzastore.http.backlog
+   static final int BACKLOG = Integer.getInteger("pizzastore.http.backlog", 4096);
+
+   // request threads when virtual threads are unavailable; -Dpizzastore.http.threads
+   static final int FALLBACK_THREADS = Integer.getInteger("pizzastore.http.threads", 200);
+
+   // how long a token stays valid without use; -Dpizzastore.http.sessionIdleMillis
+   static final long SESSION_IDLE_MILLIS = Long.getLong("pizzastore.http.sessionIdleMillis", 30 * 60 * 1000L);
+
+   // the most orders /orders/recent returns.
+   static final int MAX_RECENT = 100;
+
+   // logins per /menu/{item}/favoredBy page by default.
+   static final int FAVORED_BY_PAGE = 100;
+
+   // stores per /stores page by default, and the most one page may hold.
+   static final int STORES_PAGE = 20;
+   static final int MAX_STORES_PAGE = 100;
+
+   private static final int UNPROCESSABLE = 422;
+
+   static {
+      // The JDK server writes headers and body separately; with Nagle's
+      // algorithm on, each small response then waits out the client's
+      // delayed ACK (~40 ms).  Read once, when the first server is created.
+      if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+         System.setProperty("sun.net.httpserver.nodelay", "true");
+      }
+   }
+
+   private final PizzaService _service;
+   // group-commit order placement, or null to place each order in its own transaction
+   private final OrderIntake _intake;
+   private final HttpServer _server;
+   private final ExecutorService _executor;
+   private final ScheduledExecutorService _sweeper;
+   private final SecureRandom _random = new SecureRandom();
+
+   // signed-in callers by bearer token.
+   private final Map<String, Login> _logins = new ConcurrentHashMap<String, Login>();
+
+   /**
+    * Binds the server; call start() to begin serving.
+    *
+    * @param service the operations to expose
+    * @param port the TCP port to listen on, or 0 for any free port
+    * @throws java.io.IOException when the port cannot be bound
+    */
+   public PizzaServer(PizzaService service, int port) throws IOException {
+      this(service, null, port);
+   }
+
+   /**
+    * Binds the server, placing orders through the given intake queue.
+    *
+    * @param service the operations to expose
+    * @param intake group-commit order placement, or null for none
+    * @param port the TCP port to listen on, or 0 for any free port
+    * @throws java.io.IOException when the port cannot be bound
+    */
+   public PizzaServer(PizzaService service, OrderIntake intake, int port) throws IOException {
+      this._service = service;
+      this._intake = intake;
+      this._server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+      this._executor = newRequestExecutor();
+      this._server.setExecutor(this._executor);
+      this._server.createContext("/login", exchange -> handle(exchange, false, this::login));
+      this._server.createContext("/logout", exchange -> handle(exchange, true, this::logout));
+      this._server.createContext("/users", exchange -> handle(exchange, false, this::users));
+      this._server.createContext("/menu", exchange -> handle(exchange, false, this::menu));
+      this._server.createContext("/favorites", exchange -> handle(exchange, true, this::favorites));
+      this._server.createContext("/stores", exchange -> handle(exchange, false, this::stores));
+      this._server.createContext("/orders", exchange -> handle(exchange, true, this::orders));
+      this._server.createContext("/reports", exchange -> handle(exchange, true, this::reports));
+      this._server.createContext("/metrics", exchange -> handle(exchange, true, this::metrics));
+
+      this._sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+         Thread t = new Thread(r, "http-session-sweeper");
+         t.setDaemon(true);
+         return t;
+      });
+      long period = Math.max(1000, SESSION_IDLE_MILLIS / 4);
+      this._sweeper.scheduleWithFixedDelay(this::expireIdle, period, period, TimeUnit.MILLISECONDS);
+   }//end PizzaServer
+
+   public void start() {
+      this._server.start();
+   }
+
+   /**
+    * Stops accepting requests, waits up to delaySeconds for those in
+    * flight, and signs every caller out.
+    */
+   public void stop(int delaySeconds) {
+      this._server.stop(delaySeconds);
+      this._executor.shutdown();
+      this._sweeper.shutdownNow();
+      for (Login login : this._logins.values()) {
+         this._service.logOut(login.session);
+      }
+      this._logins.clear();
+   }//end stop
+
+   /**
+    * @return the port the server is listening on
+    */
+   public int getPort() {
+      return this._server.getAddress().getPort();
+   }
+
+   /**
+    * @return the executor requests run on: one virtual thread per request
+    *         where the JVM supports it, otherwise a fixed thread pool
+    */
+   static ExecutorService newRequestExecutor() {
+      try {
+         // Executors.newVirtualThreadPerTaskExecutor exists from Java 21 on;
+         // looked up reflectively so the build still targets Java 17.
+         Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+         return (ExecutorService) factory.invoke(null);
+      } catch (ReflectiveOperationException e) {
+         return Executors.newFixedThreadPool(FALLBACK_THREADS);
+      }
+   }
+
+   /*
+    * Endpoints
+    */
+
+   private Object login(Request request) throws Exception {
+      request.requireMethod("POST");
+      Map<String, Object> body = request.body();
+      Session session = this._service.logIn(string(body, "login"), string(body, "password"));
+      String token = newToken();
+      this._logins.put(token, new Login(session));
+      Map<String, Object> result = new LinkedHashMap<String, Object>();
+      result.put("token", token);
+      result.put("login", session.getLogin());
+      result.put("role", session.getRole());
+      return result;
+   }//end login
+
+   private Object logout(Request request) throws Exception {
+      request.requireMethod("POST");
+      Login login = this._logins.remove(request.token);
+      if (login != null) {
+         this._service.logOut(login.session);
+      }
+      return Map.of("loggedOut", true);
+   }
+
+   private Object users(Request request) throws Exception {
+      request.requireMethod("POST");
+      Map<String, Object> body = request.body();
+      this._service.createUser(new NewUser(string(body, "login"), string(body, "password"), string(body, "phoneNum")));
+      request.status = 201;
+      return Map.of("login", string(body, "login"));
+   }
+
+   private Object menu(Request request) throws Exception {
+      request.requireMethod("GET");
+      String[] parts = request.path.split("/");
+      // "", "menu", ...
+      if (parts.length == 4 && parts[3].equals("favoredBy")) {
+         request.authenticate();
+         String limit = request.query("limit");
+         return this._service.favoredBy(request.session, parts[2], request.query("after"),
+                                        limit == null ? FAVORED_BY_PAGE : integer(limit, "limit"));
+      }
+      if (parts.length != 2) {
+         throw new HttpError(404, "Not found: " + request.path);
+      }
+      MenuCache.Snapshot menu = this._service.menu();
+      List<MenuItem> items;
+      String type = request.query("type");
+      String maxPrice = request.query("maxPrice");
+      String sort = request.query("sort");
+      if (type != null) {
+         items = menu.ofType(type);
+      } else if (maxPrice != null) {
+         try {
+            items = menu.atMost(Money.toCents(maxPrice));
+         } catch (ArithmeticException e) {
+            throw new HttpError(400, "'maxPrice' must be an amount in cents precision");
+         }
+      } else if (sort != null) {
+         items = menu.sortedByPrice(!"desc".equalsIgnoreCase(sort));
+      } else {
+         items = menu.all();
+      }
+      List<Object> result = new ArrayList<Object>(items.size());
+      for (MenuItem item : items) {
+         result.add(toJson(item));
+      }
+      return result;
+   }//end menu
+
+   private Object favorites(Request request) throws Exception {
+      if (!request.path.equals("/favorites")) {
+         throw new HttpError(404, "Not found: " + request.path);
+      }
+      if ("PUT".equals(request.exchange.getRequestMethod())) {
+         Object rawNames = request.body().get("itemNames");
+         if (!(rawNames instanceof List)) {
+            throw new HttpError(400, "'itemNames' must be an array");
+         }
+         List<String> names = new ArrayList<String>();
+         for (Object raw : (List<?>) rawNames) {
+            if (!(raw instanceof String)) {
+               throw new HttpError(400, "Each item name must be a string");
+            }
+            names.add((String) raw);
+         }
+         return this._service.updateProfile(request.session, ProfileUpdate.favoriteItems(names)).favoriteItems();
+      }
+      request.requireMethod("GET");
+      return this._service.favorites(request.session);
+   }//end favorites
+
+   private Object stores(Request request) throws Exception {
+      String[] parts = request.path.split("/");
+      // "", "stores", ...
+      if (parts.length == 4 && parts[3].equals("open")) {
+         request.requireMethod("PUT");
+         request.authenticate();
+         Map<String, Object> body = request.body();
+         if (!(body.get("isOpen") instanceof Boolean)) {
+            throw new HttpError(400, "'isOpen' must be true or false");
+         }
+         return toJson(this._service.updateStoreOpen(request.session, integer(parts[2], "store ID"),
+                                                     (Boolean) body.get("isOpen")));
+      }
+      if (parts.length != 2) {
+         throw new HttpError(404, "Not found: " + request.path);
+      }
+      request.requireMethod("GET");
+      String open = request.query("open");
+      String minScore = request.query("minReviewScore");
+      String offset = request.query("offset");
+      String limit = request.query("limit");
+      StoreDirectory.Filter filter = new StoreDirectory.Filter(request.query("city"), request.query("state"),
+         open == null ? null : Boolean.valueOf(open),
+         minScore == null ? null : Double.valueOf(minScore));
+      StoreDirectory.Page page = this._service.stores().find(filter,
+         offset == null ? 0 : Math.max(integer(offset, "offset"), 0),
+         limit == null ? STORES_PAGE : Math.min(Math.max(integer(limit, "limit"), 1), MAX_STORES_PAGE));
+
+      List<Object> stores = new ArrayList<Object>(page.stores().size());
+      for (Store store : page.stores()) {
+         stores.add(toJson(store));
+      }
+      Map<String, Object> result = new LinkedHashMap<String, Object>();
+      result.put("stores", stores);
+      result.put("offset", page.offset());
+      result.put("total", page.total());
+      result.put("hasNext", page.hasNext());
+      return result;
+   }//end stores
+
+   private Object orders(Request request) throws Exception {
+      String[] parts = request.path.split("/");
+      // "", "orders", ...
+      if (parts.length == 2) {
+         request.requireMethod("POST");
+         return placeOrder(request);
+      }
+      if (parts.length == 3 && parts[2].equals("recent")) {
+         request.requireMethod("GET");
+         String store = request.query("storeId");
+         String limit = request.query("limit");
+         int n = limit == null ? PizzaStore.RECENT_ORDERS : Math.min(Math.max(integer(limit, "limit"), 1), MAX_RECENT);
+         OrderColumns orders = this._service.recentOrders(request.session,
+                                                          store == null ? null : integer(store, "storeId"), n);
+         List<Object> result = new ArrayList<Object>(orders.size());
+         for (int i = 0; i < orders.size(); i++) {
+            result.add(toJson(orders.get(i)));
+         }
+         return result;
+      }
+      if (parts.length == 3 && parts[2].equals("status")) {
+         request.requireMethod("POST");
+         return updateStatuses(request);
+      }
+      if (parts.length == 3 && (parts[2].equals("favorites") || parts[2].equals("repeat"))) {
+         request.requireMethod("POST");
+         Map<String, Object> body = request.body();
+         Integer storeId = body.get("storeId") == null ? null : number(body, "storeId");
+         OrderRequest order = parts[2].equals("favorites") ? this._service.favoritesOrder(request.session, storeId)
+                                                          : this._service.lastOrder(request.session, storeId);
+         return receipt(request, place(request, order));
+      }
+      if (parts.length == 3) {
+         request.requireMethod("GET");
+         return toJson(this._service.orderDetail(request.session, integer(parts[2], "order ID")));
+      }
+      if (parts.length == 4 && parts[3].equals("status")) {
+         request.requireMethod("PUT");
+         int orderId = integer(parts[2], "order ID");
+         Map<String, Object> body = request.body();
+         return toJson(this._service.updateOrderStatus(request.session, orderId, optionalString(body, "expectedStatus"),
+                                                       string(body, "status")));
+      }
+      throw new HttpError(404, "Not found: " + request.path);
+   }//end orders
+
+   private Object updateStatuses(Request request) throws Exception {
+      Map<String, Object> body = request.body();
+      Object rawIds = body.get("orderIds");
+      if (!(rawIds instanceof List)) {
+         throw new HttpError(400, "'orderIds' must be an array");
+      }
+      List<Integer> orderIds = new ArrayList<Integer>();
+      for (Object raw : (List<?>) rawIds) {
+         if (!(raw instanceof BigDecimal)) {
+            throw new HttpError(400, "Each order ID must be a number");
+         }
+         try {
+            orderIds.add(((BigDecimal) raw).intValueExact());
+         } catch (ArithmeticException e) {
+            throw new HttpError(400, "Invalid order ID: " + raw);
+         }
+      }
+      List<StatusChange> changes = this._service.updateOrderStatuses(request.session, orderIds,
+                                                                     optionalString(body, "expectedStatus"),
+                                                                     string(body, "status"));
+      List<Object> result = new ArrayList<Object>(changes.size());
+      for (StatusChange change : changes) {
+         Map<String, Object> json = new LinkedHashMap<String, Object>();
+         json.put("orderId", change.orderId());
+         json.put("outcome", change.outcome().name().toLowerCase());
+         json.put("previousStatus", change.previousStatus());
+         result.add(json);
+      }
+      return result;
+   }//end updateStatuses
+
+   private Object reports(Request request) throws Exception {
+      request.requireMethod("GET");
+      String[] parts = request.path.split("/");
+      // "", "reports", "sales", ...
+      if (parts.length != 4 || !parts[2].equals("sales")) {
+         throw new HttpError(404, "Not found: " + request.path);
+      }
+      String from = request.query("from");
+      String to = request.query("to");
+      List<SalesTotals> totals;
+      try {
+         switch (parts[3]) {
+            case "stores": {
+               String limit = request.query("limit");
+               totals = this._service.salesByStore(request.session,
+                  from == null ? null : YearMonth.parse(from), to == null ? null : YearMonth.parse(to),
+                  limit == null ? STORES_PAGE : integer(limit, "limit"));
+               break;
+            }
+            case "items":
+               totals = this._service.salesByItem(request.session,
+                  from == null ? null : YearMonth.parse(from), to == null ? null : YearMonth.parse(to));
+               break;
+            case "hours":
+               totals = this._service.salesByHour(request.session,
+                  from == null ? null : LocalDate.parse(from), to == null ? null : LocalDate.parse(to));
+               break;
+            default:
+               throw new HttpError(404, "Not found: " + request.path);
+         }
+      } catch (DateTimeParseException e) {
+         throw new HttpError(400, "Invalid date: " + e.getParsedString());
+      }
+
+      List<Object> result = new ArrayList<Object>(totals.size());
+      for (SalesTotals line : totals) {
+         Map<String, Object> json = new LinkedHashMap<String, Object>();
+         json.put("key", line.key());
+         json.put("orders", line.orders());
+         if (parts[3].equals("items")) {
+            json.put("quantity", line.quantity());
+         }
+         json.put("revenueCents", line.revenueCents());
+         json.put("completedOrders", line.completedOrders());
+         json.put("completedRevenueCents", line.completedRevenueCents());
+         result.add(json);
+      }
+      return result;
+   }//end reports
+
+   private Object metrics(Request request) throws Exception {
+      request.requireMethod("GET");
+      if (!request.session.isManager()) {
+         throw new HttpError(403, "Only managers can read metrics");
+      }
+      PizzaStore store = this._service.getStore();
+      return new PlainText("Connection pool: " + store.getPool().getStats() + "\n\n" + store.getMetrics().dump());
+   }//end metrics
+
+   private Object placeOrder(Request request) throws Exception {
+      Map<String, Object> body = request.body();
+      Object rawLines = body.get("lines");
+      if (!(rawLines instanceof List)) {
+         throw new HttpError(400, "'lines' must be an array");
+      }
+      List<OrderRequest.Line> lines = new ArrayList<OrderRequest.Line>();
+      for (Object raw : (List<?>) rawLines) {
+         if (!(raw instanceof Map)) {
+            throw new HttpError(400, "Each line must be an object");
+         }
+         @SuppressWarnings("unchecked")
+         Map<String, Object> line = (Map<String, Object>) raw;
+         lines.add(new OrderRequest.Line(string(line, "itemName"), number(line, "quantity")));
+      }
+      return receipt(request, place(request, new OrderRequest(number(body, "storeId"), lines)));
+   }//end placeOrder
+
+   // through the intake queue when there is one.
+   private OrderReceipt place(Request request, OrderRequest order) throws Exception {
+      return this._intake != null ? this._intake.placeOrder(request.session, order)
+                                  : this._service.placeOrder(request.session, order);
+   }
+
+   private static Object receipt(Request request, OrderReceipt receipt) {
+      Map<String, Object> result = new LinkedHashMap<String, Object>();
+      result.put("orderId", receipt.orderId());
+      result.put("storeId", receipt.storeId());
+      result.put("totalCents", receipt.totalCents());
+      result.put("total", Money.format(receipt.totalCents()));
+      List<Object> jsonLines = new ArrayList<Object>();
+      for (OrderLine line : receipt.lines()) {
+         Map<String, Object> json = new LinkedHashMap<String, Object>();
+         json.put("itemName", line.itemName());
+         json.put("quantity", line.quantity());
+         json.put("unitPriceCents", line.unitPriceCents());
+         json.put("unitPrice", Money.format(line.unitPriceCents()));
+         jsonLines.add(json);
+      }
+      result.put("lines", jsonLines);
+      request.status = 201;
+      return result;
+   }//end receipt
+
+   /*
+    * Request handling
+    */
+
+   @FunctionalInterface
+   private interface Endpoint {
+      Object handle(Request request) throws Exception;
+   }
+
+   /*
+    * Runs one endpoint and writes its result or error as JSON.
+    */
+   private void handle(HttpExchange exchange, boolean authenticated, Endpoint endpoint) throws IOException {
+      int status;
+      Object body;
+      try {
+         Request request = new Request(exchange);
+         if (authenticated) {
+            request.authenticate();
+         }
+         body = endpoint.handle(request);
+         status = request.status;
+      } catch (HttpError e) {
+         status = e.status;
+         body = Map.of("error", e.getMessage());
+      } catch (ServiceException e) {
+         status = statusOf(e.getReason());
+         body = Map.of("error", e.getMessage());
+      } catch (IllegalArgumentException e) {
+         // malformed JSON, numbers or prices
+         status = 400;
+         body = Map.of("error", String.valueOf(e.getMessage()));
+      } catch (SQLException e) {
+         if (PizzaService.isConcurrencyFailure(e)) {
+            status = 409;
+            body = Map.of("error", "Another change got in the way; please try again.");
+         } else {
+            System.err.println("Database error on " + exchange.getRequestMethod() + " "
+                               + exchange.getRequestURI() + ": " + e.getMessage());
+            status = 500;
+            body = Map.of("error", "Database error");
+         }
+      } catch (Exception e) {
+         e.printStackTrace();
+         status = 500;
+         body = Map.of("error", "Internal error");
+      }
+
+      byte[] bytes;
+      if (body instanceof PlainText) {
+         bytes = ((PlainText) body).text().getBytes(StandardCharsets.UTF_8);
+         exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+      } else {
+         bytes = Json.write(body).getBytes(StandardCharsets.UTF_8);
+         exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+      }
+      exchange.sendResponseHeaders(status, bytes.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+         out.write(bytes);
+      }
+   }//end handle
+
+   static int statusOf(ServiceException.Reason reason) {
+      switch (reason) {
+         case INVALID_CREDENTIALS: return 401;
+         case FORBIDDEN: return 403;
+         case NOT_FOUND: return 404;
+         case CONFLICT: return 409;
+         case INVALID_REQUEST: return UNPROCESSABLE;
+         case UNAVAILABLE: return 503;
+         default: return 400;
+      }
+   }
+
+   private String newToken() {
+      byte[] bytes = new byte[24];
+      this._random.nextBytes(bytes);
+      return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+   }
+
+   /*
+    * Signs out callers whose token has not been used for SESSION_IDLE_MILLIS.
+    */
+   private void expireIdle() {
+      long cutoff = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(SESSION_IDLE_MILLIS);
+      Iterator<Map.Entry<String, Login>> it = this._logins.entrySet().iterator();
+      while (it.hasNext()) {
+         Login login = it.next().getValue();
+         if (login.lastUsed - cutoff < 0) {
+            it.remove();
+            this._service.logOut(login.session);
+         }
+      }
+   }
+
+   private static Map<String, Object> toJson(MenuItem item) {
+      Map<String, Object> json = new LinkedHashMap<String, Object>();
+      json.put("itemName", item.name());
+      json.put("ingredients", item.ingredients() == null ? null : item.ingredients().trim());
+      json.put("type", item.normalizedType());
+      json.put("priceCents", item.priceCents());
+      json.put("price", Money.format(item.priceCents()));
+      json.put("description", item.description() == null ? null : item.description().trim());
+      return json;
+   }
+
+   private static Map<String, Object> toJson(Store store) {
+      Map<String, Object> json = new LinkedHashMap<String, Object>();
+      json.put("storeId", store.storeId());
+      json.put("address", store.address());
+      json.put("city", store.city());
+      json.put("state", store.state());
+      json.put("isOpen", store.isOpen());
+      json.put("reviewScore", store.hasReviews() ? store.reviewScore() : null);
+      return json;
+   }
+
+   private static Map<String, Object> toJson(OrderDetail detail) {
+      Map<String, Object> json = toJson(detail.order());
+      List<Object> lines = new ArrayList<Object>(detail.lines().size());
+      for (OrderLine line : detail.lines()) {
+         Map<String, Object> jsonLine = new LinkedHashMap<String, Object>();
+         MenuItem item = detail.item(line.itemName());
+         jsonLine.put("itemName", line.itemName());
+         jsonLine.put("type", item == null ? null : item.normalizedType());
+         jsonLine.put("quantity", line.quantity());
+         jsonLine.put("unitPriceCents", line.hasUnitPrice() ? line.unitPriceCents() : null);
+         jsonLine.put("unitPrice", line.hasUnitPrice() ? Money.format(line.unitPriceCents()) : null);
+         lines.add(jsonLine);
+      }
+      json.put("lines", lines);
+      return json;
+   }
+
+   private static Map<String, Object> toJson(FoodOrder order) {
+      Map<String, Object> json = new LinkedHashMap<String, Object>();
+      json.put("orderId", order.orderId());
+      json.put("login", order.login());
+      json.put("storeId", order.storeId());
+      json.put("totalCents", order.totalCents());
+      json.put("total", Money.format(order.totalCents()));
+      json.put("orderTimestamp", order.formattedTimestamp());
+      json.put("status", order.status());
+      return json;
+   }
+
+   private static String string(Map<String, Object> body, String field) throws HttpError {
+      Object value = body.get(field);
+      if (!(value instanceof String)) {
+         throw new HttpError(400, "'" + field + "' must be a string");
+      }
+      return (String) value;
+   }
+
+   private static String optionalString(Map<String, Object> body, String field) throws HttpError {
+      return body.get(field) == null ? null : string(body, field);
+   }
+
+   private static int number(Map<String, Object> body, String field) throws HttpError {
+      Object value = body.get(field);
+      if (!(value instanceof BigDecimal)) {
+         throw new HttpError(400, "'" + field + "' must be a number");
+      }
+      try {
+         return ((BigDecimal) value).intValueExact();
+      } catch (ArithmeticException e) {
+         throw new HttpError(400, "'" + field + "' must be a whole number");
+      }
+   }
+
+   private static int integer(String text, String what) throws HttpError {
+      try {
+         return Integer.parseInt(text);
+      } catch (NumberFormatException e) {
+         throw new HttpError(400, "Invalid " + what + ": " + text);
+      }
+   }
+
+   /*
+    * A signed-in caller and when their token was last used.
+    */
+   private static final class Login {
+      final Session session;
+      volatile long lastUsed = System.nanoTime();
+
+      Login(Session session) {
+         this.session = session;
+      }
+   }
+
+   /*
+    * An endpoint result sent as text/plain rather than JSON.
+    */
+   private record PlainText(String text) {
+   }
+
+   /*
+    * A refusal decided by the HTTP layer itself, e.g. a bad path or body.
+    */
+   private static final class HttpError extends Exception {
+      private static final long serialVersionUID = 1L;
+
+      final int status;
+
+      HttpError(int status, String message) {
+         super(message);
+         this.status = status;
+      }
+   }
+
+   /*
+    * One exchange as the endpoints see it.
+    */
+   private final class Request {
+      final HttpExchange exchange;
+      final String path;
+      final Map<String, String> query;
+      String token;
+      Session session;
+      int status = 200;
+
+      Request(HttpExchange exchange) {
+         this.exchange = exchange;
+         this.path = exchange.getRequestURI().getPath();
+         this.query = parseQuery(exchange.getRequestURI().getRawQuery());
+      }
+
+      void authenticate() throws HttpError {
+         String header = this.exchange.getRequestHeaders().getFirst("Authorization");
+         if (header == null || !header.startsWith("Bearer ")) {
+            throw new HttpError(401, "Log in first");
+         }
+         this.token = header.substring("Bearer ".length()).trim();
+         Login login = PizzaServer.this._logins.get(this.token);
+         if (login == null) {
+            throw new HttpError(401, "Your session has expired; log in again");
+         }
+         login.lastUsed = System.nanoTime();
+         this.session = login.session;
+      }
+
+      void requireMethod(String method) throws HttpError {
+         if (!method.equals(this.exchange.getRequestMethod())) {
+            this.exchange.getResponseHeaders().set("Allow", method);
+            throw new HttpError(405, this.exchange.getRequestMethod() + " is not allowed on " + this.path);
+         }
+      }
+
+      String query(String name) {
+         return this.query.get(name);
+      }
+
+      Map<String, Object> body() throws IOException {
+         try (InputStream in = this.exchange.getRequestBody()) {
+            return Json.parseObject(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+         }
+      }
+   }//end Request
+
+   private static Map<String, String> parseQuery(String rawQuery) {
+      Map<String, String> query = new HashMap<String, String>();
+      if (rawQuery == null || rawQuery.isEmpty()) {
+         return query;
+      }
+      for (String pair : rawQuery.split("&")) {
+         int eq = pair.indexOf('=');
+         String name = eq < 0 ? pair : pair.substring(0, eq);
+         String value = eq < 0 ? "" : pair.substring(eq + 1);
+         query.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+      }
+      return query;
+   }
+
+   /**
+    * Starts the server against the given database.  The database password
+    * is read from the PIZZASTORE_DB_PASSWORD environment variable (empty if
+    * unset); pool bounds come from the usual pizzastore.pool.* properties.
+    *
+    * @param args <dbname> <port> <user> [http port]
+    */
+   public static void main(String[] args) throws Exception {
+      if (args.length < 3 || args.length > 4) {
+         System.err.println("Usage: java [-classpath <classpath>] " + PizzaServer.class.getName()
+                            + " <dbname> <port> <user> [http port]");
+         return;
+      }
+      String password = PizzaStore.password();
+      int httpPort = args.length == 4 ? Integer.parseInt(args[3]) : Integer.getInteger("pizzastore.http.port", 8080);
+
+      PizzaStore esql = new PizzaStore(args[0], args[1], args[2], password);
+      esql.getMetrics().registerMBeans();
+
+      // new orders need this month's partition; keep the next few ready
+      OrderPartitions partitions = new OrderPartitions(PizzaStore.url(args[0], args[1]), args[2], password);
+      ScheduledExecutorService maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+         Thread t = new Thread(r, "order-partitions");
+         t.setDaemon(true);
+         return t;
+      });
+      maintenance.scheduleWithFixedDelay(() -> {
+         try {
+            List<String> created = partitions.ensure();
+            if (!created.isEmpty()) {
+               System.out.println("Created order partitions: " + String.join(", ", created));
+            }
+         } catch (SQLException e) {
+            System.err.println("Order partition maintenance failed: " + e.getMessage());
+         }
+      }, 0, 1, TimeUnit.DAYS);
+      PizzaService service = new PizzaService(esql);
+      // -Dpizzastore.intake=true places orders through the group-commit queue
+      OrderIntake intake = Boolean.getBoolean("pizzastore.intake") ? new OrderIntake(service) : null;
+      PizzaServer server = new PizzaServer(service, intake, httpPort);
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+         server.stop(1);
+         if (intake != null) {
+            intake.close();
+            System.out.println("Order intake: " + intake.getStats());
+         }
+         System.out.println("Connection pool: " + esql.getPool().getStats());
+         esql.cleanup();
+      }));
+      server.start();
+      System.out.println("Serving on http://localhost:" + server.getPort() + "/");
+   }//end main
+}//end PizzaServer
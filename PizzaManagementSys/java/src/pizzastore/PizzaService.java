@@ -0,0 +1,1259 @@
+package pizzastore;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The operations of the pizza store, independent of how they are invoked.
+ * Each method takes the caller's Session and typed arguments, checks what
+ * the caller's role allows, and returns typed results; nothing here reads
+ * from or writes to the terminal.  Refusals are reported as
+ * ServiceException with a user-facing message.
+ *
+ * A PizzaService holds no per-caller state: connections come from the
+ * PizzaStore pool, transactions are pinned to the calling thread, and the
+ * menu cache and session registry are shared safely, so one instance can
+ * serve any number of concurrent callers.
+ */
+public class PizzaService {
+
+   static final Set<String> ROLES = Set.of("customer", "driver", "manager");
+   static final Set<String> ORDER_STATUSES = Set.of("complete", "incomplete");
+
+   // the most orders one bulk status update may name.
+   static final int MAX_BULK_ORDERS = 1000;
+
+   // tries of a statement that keeps losing deadlocks or serialization races.
+   static final int CONCURRENCY_ATTEMPTS = 3;
+
+   // the most stores one sales report lists.
+   static final int MAX_REPORT_STORES = 1000;
+
+   /*
+    * An order named by its ID alone may be in any month, and a lookup with
+    * no bound on orderTimestamp plans and locks every monthly partition.
+    * Such lookups look back this many days from now first, then further,
+    * and only then everywhere, much as OrderHistoryPager does for pages;
+    * orders are mostly looked up while they are recent, so the first
+    * window usually holds them.
+    */
+   private static final long[] LOOKUP_DAYS = { 31, 366 };
+
+   // the widths of the Users columns, checked before writing.
+   private static final int MAX_LOGIN = 50;
+   private static final int MAX_PASSWORD = 30;
+   private static final int MAX_PHONE = 20;
+
+   // the most favorite items one user may keep.
+   static final int MAX_FAVORITES = 20;
+
+   // the most logins one favoredBy page lists.
+   static final int MAX_FAVORED_BY = 1000;
+
+   /*
+    * What UserProfile.MAPPER reads, for Users aliased u: the user's
+    * favorites are gathered from FavoriteItems by its primary key.
+    */
+   private static final String PROFILE_COLUMNS =
+      "u.login, u.role, u.phoneNum, " +
+      "ARRAY(SELECT f.itemName FROM FavoriteItems f WHERE f.login = u.login ORDER BY f.itemName) AS favoriteItems";
+
+   private final PizzaStore _esql;
+
+   public PizzaService(PizzaStore esql) {
+      this._esql = esql;
+   }
+
+   /**
+    * @return the database this service runs against
+    */
+   public PizzaStore getStore() {
+      return this._esql;
+   }
+
+   /*
+    * Users
+    */
+
+   /**
+    * Creates a customer account.
+    *
+    * @throws ServiceException when a field is missing or too long, or the login is taken
+    * @throws java.sql.SQLException when the database fails
+    */
+   public void createUser(NewUser user) throws ServiceException, SQLException {
+      String login = required("Username", user.login(), MAX_LOGIN);
+      String password = required("Password", user.password(), MAX_PASSWORD);
+      String phone = required("Phone number", user.phoneNum(), MAX_PHONE);
+      try {
+         this._esql.executeUpdate(
+            "INSERT INTO Users(login, password, role, phoneNum) VALUES (?, ?, 'customer', ?)",
+            login, password, phone);
+      } catch (SQLException e) {
+         throw conflictOr(e, "The username '" + login + "' is already taken.");
+      }
+   }//end createUser
+
+   /**
+    * Checks a user's credentials and opens a session for them.
+    *
+    * @return the new session
+    * @throws ServiceException when the credentials do not match a user
+    * @throws java.sql.SQLException when the database fails
+    */
+   public Session logIn(String login, String password) throws ServiceException, SQLException {
+      UserProfile user = this._esql.executeQueryForObject(
+         "SELECT " + PROFILE_COLUMNS + " FROM Users u WHERE u.login = ? AND u.password = ?",
+         UserProfile.MAPPER, login, password);
+      if (user == null) {
+         throw new ServiceException(ServiceException.Reason.INVALID_CREDENTIALS, "Invalid login!");
+      }
+      return this._esql.getSessions().open(user.login(), user.role());
+   }//end logIn
+
+   public void logOut(Session session) {
+      this._esql.getSessions().close(session);
+   }
+
+   /**
+    * @return the caller's own profile
+    * @throws ServiceException when the user no longer exists
+    * @throws java.sql.SQLException when the database fails
+    */
+   public UserProfile profile(Session session) throws ServiceException, SQLException {
+      UserProfile profile = this._esql.executeQueryForObject(
+         "SELECT " + PROFILE_COLUMNS + " FROM Users u WHERE u.login = ?", UserProfile.MAPPER, session.getLogin());
+      if (profile == null) {
+         throw notFound("User '" + session.getLogin() + "' not found.");
+      }
+      return profile;
+   }//end profile
+
+   /**
+    * Changes the caller's own password, phone number or favorite items.
+    * New favorites replace the old ones; each must be on the menu.  The
+    * whole change is one transaction.
+    *
+    * @return the profile after the change
+    * @throws ServiceException when nothing is changed, a field is too long,
+    *         or a favorite is not on the menu or one too many
+    * @throws java.sql.SQLException when the database fails
+    */
+   public UserProfile updateProfile(Session session, ProfileUpdate update) throws ServiceException, SQLException {
+      List<String> columns = new ArrayList<String>();
+      List<Object> params = new ArrayList<Object>();
+      if (update.password() != null) {
+         columns.add("password = ?");
+         params.add(required("Password", update.password(), MAX_PASSWORD));
+      }
+      if (update.phoneNum() != null) {
+         columns.add("phoneNum = ?");
+         params.add(required("Phone number", update.phoneNum(), MAX_PHONE));
+      }
+      if (columns.isEmpty() && update.favoriteItems() == null) {
+         throw invalid("Nothing to update.");
+      }
+      params.add(session.getLogin());
+      if (update.favoriteItems() == null) {
+         UserProfile profile = this._esql.executeQueryForObject(
+            "UPDATE Users u SET " + String.join(", ", columns) + " WHERE u.login = ? RETURNING " + PROFILE_COLUMNS,
+            UserProfile.MAPPER, params.toArray());
+         if (profile == null) {
+            throw notFound("User '" + session.getLogin() + "' not found.");
+         }
+         return profile;
+      }
+
+      // A statement under READ COMMITTED sees the favorites as of its own
+      // start, even if it then waits for the user's row, so one statement
+      // locking the row and replacing the favorites could keep another
+      // update's items.  Lock (or update) the row first, and replace the
+      // favorites in a second statement that sees what the last holder
+      // of the lock committed.
+      String[] items = favoriteItems(update.favoriteItems());
+      List<String> favorites = new ArrayList<String>(Arrays.asList(items));
+      Collections.sort(favorites);
+      String user = columns.isEmpty()
+         ? "SELECT login, role, phoneNum FROM Users WHERE login = ? FOR UPDATE"
+         : "UPDATE Users SET " + String.join(", ", columns) + " WHERE login = ? RETURNING login, role, phoneNum";
+      this._esql.beginTransaction();
+      try {
+         UserProfile profile = this._esql.executeQueryForObject(user, rs -> new UserProfile(
+            rs.getString("login"), Session.normalizeRole(rs.getString("role")), favorites, rs.getString("phoneNum")),
+            params.toArray());
+         if (profile == null) {
+            throw notFound("User '" + session.getLogin() + "' not found.");
+         }
+         try {
+            this._esql.executeUpdate(
+               "WITH wanted AS (SELECT unnest(?::varchar[]) AS itemName), " +
+               "removed AS (DELETE FROM FavoriteItems f " +
+                           "WHERE f.login = ? AND f.itemName NOT IN (SELECT itemName FROM wanted)) " +
+               "INSERT INTO FavoriteItems(login, itemName) SELECT ?, itemName FROM wanted ON CONFLICT DO NOTHING",
+               items, session.getLogin(), session.getLogin());
+         } catch (SQLException e) {
+            throw conflictOr(e, "A favorite item has just left the menu; please try again.");
+         }
+         this._esql.commitTransaction();
+         return profile;
+      } finally {
+         this._esql.rollbackTransaction();
+      }
+   }//end updateProfile
+
+   // menu names for favorites as entered: known items only, each once.
+   private String[] favoriteItems(List<String> names) throws ServiceException, SQLException {
+      MenuCache.Snapshot menu = menu();
+      Set<String> items = new LinkedHashSet<String>();
+      for (String name : names) {
+         MenuItem item = menu.find(name == null ? null : name.trim());
+         if (item == null) {
+            throw invalid("Item '" + name + "' not found! Please enter a valid item name.");
+         }
+         items.add(item.name());
+      }
+      if (items.size() > MAX_FAVORITES) {
+         throw invalid("You can keep at most " + MAX_FAVORITES + " favorite items.");
+      }
+      return items.toArray(new String[0]);
+   }//end favoriteItems
+
+   /**
+    * Changes another user's login; managers only.  Open sessions of that
+    * user follow the change.
+    *
+    * @throws ServiceException when the caller is not a manager, the user does
+    *         not exist, or the new login is taken
+    * @throws java.sql.SQLException when the database fails
+    */
+   public void renameUser(Session session, String currentLogin, String newLogin) throws ServiceException, SQLException {
+      requireManager(session, "Sorry, you are not authorized to update user login or role.");
+      String login = required("New login", newLogin, MAX_LOGIN);
+      int updated;
+      try {
+         updated = this._esql.executeUpdate("UPDATE Users SET login = ? WHERE login = ?", login, currentLogin);
+      } catch (SQLException e) {
+         throw conflictOr(e, "Cannot rename '" + currentLogin + "' to '" + login
+                             + "': the login is taken or the user has orders.");
+      }
+      if (updated == 0) {
+         throw notFound("User '" + currentLogin + "' not found.");
+      }
+      this._esql.getSessions().rename(currentLogin, login);
+   }//end renameUser
+
+   /**
+    * Changes another user's role; managers only.  Open sessions of that
+    * user get the new role immediately.
+    *
+    * @param role one of customer, driver or manager
+    * @throws ServiceException when the caller is not a manager, the role is
+    *         unknown, or the user does not exist
+    * @throws java.sql.SQLException when the database fails
+    */
+   public void changeRole(Session session, String login, String role) throws ServiceException, SQLException {
+      requireManager(session, "Sorry, you are not authorized to update user login or role.");
+      String normalized = Session.normalizeRole(role);
+      if (!ROLES.contains(normalized)) {
+         throw invalid("Unknown role '" + role + "'. Choose one of customer, driver or manager.");
+      }
+      int updated = this._esql.executeUpdate("UPDATE Users SET role = ? WHERE login = ?", normalized, login);
+      if (updated == 0) {
+         throw notFound("User '" + login + "' not found.");
+      }
+      this._esql.getSessions().updateRole(login, normalized);
+   }//end changeRole
+
+   /*
+    * Menu
+    */
+
+   /**
+    * @return the current menu; browse it with all, ofType, atMost and sortedByPrice
+    * @throws java.sql.SQLException when the menu cannot be loaded
+    */
+   public MenuCache.Snapshot menu() throws SQLException {
+      return this._esql.getMenu().snapshot();
+   }
+
+   /**
+    * @return the menu item with exactly this name
+    * @throws ServiceException when there is no such item
+    * @throws java.sql.SQLException when the menu cannot be loaded
+    */
+   public MenuItem menuItem(String itemName) throws ServiceException, SQLException {
+      MenuItem item = menu().find(itemName);
+      if (item == null) {
+         throw notFound("Item '" + itemName + "' not found.");
+      }
+      return item;
+   }//end menuItem
+
+   /**
+    * Adds an item to the menu; managers only.
+    *
+    * @throws ServiceException when the caller is not a manager, the price is
+    *         negative, or an item of that name exists
+    * @throws java.sql.SQLException when the database fails
+    */
+   public MenuItem addMenuItem(Session session, MenuItem item) throws ServiceException, SQLException {
+      requireManager(session, "Sorry, you are not authorized to update the menu.");
+      if (item.priceCents() < 0) {
+         throw invalid("The price cannot be negative.");
+      }
+      try {
+         this._esql.executeUpdate(
+            "INSERT INTO Items(itemName, ingredients, typeOfItem, price, description) VALUES (?, ?, ?, ?, ?)",
+            item.name(), item.ingredients(), item.type(), item.price(), item.description());
+      } catch (SQLException e) {
+         throw conflictOr(e, "An item named '" + item.name() + "' already exists.");
+      } finally {
+         this._esql.getMenu().invalidate();
+      }
+      return item;
+   }//end addMenuItem
+
+   /**
+    * Changes fields of a menu item; managers only.
+    *
+    * @return the item after the change
+    * @throws ServiceException when the caller is not a manager, the item does
+    *         not exist, or the change clashes with another item or past orders
+    * @throws java.sql.SQLException when the database fails
+    */
+   public MenuItem updateMenuItem(Session session, String itemName, MenuItemUpdate update)
+         throws ServiceException, SQLException {
+      requireManager(session, "Sorry, you are not authorized to update the menu.");
+      List<String> columns = new ArrayList<String>();
+      List<Object> params = new ArrayList<Object>();
+      if (update.name() != null) {
+         columns.add("itemName = ?");
+         params.add(update.name());
+      }
+      if (update.ingredients() != null) {
+         columns.add("ingredients = ?");
+         params.add(update.ingredients());
+      }
+      if (update.type() != null) {
+         columns.add("typeOfItem = ?");
+         params.add(update.type());
+      }
+      if (update.priceCents() != null) {
+         if (update.priceCents() < 0) {
+            throw invalid("The price cannot be negative.");
+         }
+         columns.add("price = ?");
+         params.add(Money.toDecimal(update.priceCents()));
+      }
+      if (update.description() != null) {
+         columns.add("description = ?");
+         params.add(update.description());
+      }
+      if (columns.isEmpty()) {
+         throw invalid("Nothing to update.");
+      }
+      params.add(itemName);
+
+      MenuItem updated;
+      try {
+         updated = this._esql.executeQueryForObject(
+            "UPDATE Items SET " + String.join(", ", columns) + " WHERE itemName = ? RETURNING *",
+            MenuItem.MAPPER, params.toArray());
+      } catch (SQLException e) {
+         throw conflictOr(e, "Cannot rename '" + itemName + "': the name is taken or the item has been ordered.");
+      } finally {
+         this._esql.getMenu().invalidate();
+      }
+      if (updated == null) {
+         throw notFound("Item '" + itemName + "' not found.");
+      }
+      return updated;
+   }//end updateMenuItem
+
+   /*
+    * Stores
+    */
+
+   /**
+    * @return the current stores; look them up with all, get and find
+    * @throws java.sql.SQLException when the stores cannot be loaded
+    */
+   public StoreDirectory.Snapshot stores() throws SQLException {
+      return this._esql.getStoreDirectory().snapshot();
+   }
+
+   /**
+    * Opens or closes a store; managers only.
+    *
+    * @return the store after the change
+    * @throws ServiceException when the caller is not a manager or the store does not exist
+    * @throws java.sql.SQLException when the database fails
+    */
+   public Store updateStoreOpen(Session session, int storeId, boolean open) throws ServiceException, SQLException {
+      requireManager(session, "Sorry, you are not authorized to update stores.");
+      Store updated;
+      try {
+         updated = this._esql.executeQueryForObject(
+            "UPDATE Store SET isOpen = ? WHERE storeID = ? RETURNING storeID, address, city, state, isOpen, reviewScore",
+            Store.MAPPER, open ? "yes" : "no", storeId);
+      } finally {
+         this._esql.getStoreDirectory().invalidate();
+      }
+      if (updated == null) {
+         throw notFound("Store " + storeId + " does not exist.");
+      }
+      return updated;
+   }//end updateStoreOpen
+
+   /*
+    * Favorites
+    */
+
+   /**
+    * @return the caller's favorite items, in name order
+    * @throws java.sql.SQLException when the database fails
+    */
+   public List<String> favorites(Session session) throws SQLException {
+      return this._esql.executeQueryForList(
+         "SELECT itemName FROM FavoriteItems WHERE login = ? ORDER BY itemName",
+         rs -> rs.getString(1), session.getLogin());
+   }
+
+   /**
+    * Lists the users who have an item among their favorites, e.g. to tell
+    * them about a change to it; managers only.  Pages by login: pass the
+    * last login of a page to get the next one.
+    *
+    * @param afterLogin only logins after this one, or null to start at the first
+    * @param limit the most logins to return
+    * @throws ServiceException when the caller is not a manager or the item does not exist
+    * @throws java.sql.SQLException when the database fails
+    */
+   public List<String> favoredBy(Session session, String itemName, String afterLogin, int limit)
+         throws ServiceException, SQLException {
+      requireManager(session, "Sorry, you are not authorized to see who favors an item.");
+      String item = menuItem(itemName).name();
+      return this._esql.executeQueryForList(
+         "SELECT login FROM FavoriteItems WHERE itemName = ? AND login > ? ORDER BY login LIMIT ?",
+         rs -> rs.getString(1), item, afterLogin == null ? "" : afterLogin,
+         Math.min(Math.max(limit, 1), MAX_FAVORED_BY));
+   }//end favoredBy
+
+   /**
+    * Counts the users who have an item among their favorites; managers only.
+    *
+    * @throws ServiceException when the caller is not a manager
+    * @throws java.sql.SQLException when the database fails
+    */
+   public long favoriteCount(Session session, String itemName) throws ServiceException, SQLException {
+      requireManager(session, "Sorry, you are not authorized to see who favors an item.");
+      return this._esql.executeQueryForObject(
+         "SELECT count(*) FROM FavoriteItems WHERE itemName = ?", rs -> rs.getLong(1), itemName);
+   }
+
+   /*
+    * Orders
+    */
+
+   /**
+    * Checks an order against the menu and stores it with all of its lines
+    * in one statement that prices it from Items.  Repeats of an item are
+    * merged into one line.
+    *
+    * @return the new order, with the total and unit prices it was stored with
+    * @throws ServiceException when the order is empty, names an unknown item,
+    *         has a quantity below one, or names an unknown store
+    * @throws java.sql.SQLException when the database fails
+    */
+   public OrderReceipt placeOrder(Session session, OrderRequest request) throws ServiceException, SQLException {
+      return store(check(session, request));
+   }//end placeOrder
+
+   /**
+    * Orders one of each of the caller's favorite items.
+    *
+    * @param storeId the store to order from, or null for the store of the
+    *        caller's last order
+    * @return the new order
+    * @throws ServiceException as favoritesOrder and placeOrder
+    * @throws java.sql.SQLException when the database fails
+    */
+   public OrderReceipt placeFavorites(Session session, Integer storeId) throws ServiceException, SQLException {
+      return placeOrder(session, favoritesOrder(session, storeId));
+   }
+
+   /**
+    * Orders the same items and quantities as the caller's last order.
+    *
+    * @param storeId the store to order from, or null for the same store
+    * @return the new order
+    * @throws ServiceException as lastOrder and placeOrder
+    * @throws java.sql.SQLException when the database fails
+    */
+   public OrderReceipt repeatLastOrder(Session session, Integer storeId) throws ServiceException, SQLException {
+      return placeOrder(session, lastOrder(session, storeId));
+   }
+
+   /**
+    * Builds an order of one of each of the caller's favorite items, in one
+    * query; the store of the last order is only looked up when no store is
+    * given.  Place it with placeOrder or OrderIntake.
+    *
+    * @param storeId the store to order from, or null for the store of the
+    *        caller's last order
+    * @throws ServiceException when the caller has no favorites, or no store
+    *         is given and they have never ordered
+    * @throws java.sql.SQLException when the database fails
+    */
+   public OrderRequest favoritesOrder(Session session, Integer storeId) throws ServiceException, SQLException {
+      List<OrderRequest.Line> lines = new ArrayList<OrderRequest.Line>();
+      Integer[] store = { storeId };
+      // coalesce does not evaluate the last-order lookup when a store is given.
+      this._esql.executeQueryAndStream(
+         "SELECT coalesce(?::integer, (SELECT storeID FROM FoodOrder WHERE login = ? " +
+                                      "ORDER BY orderTimestamp DESC, orderID DESC LIMIT 1)) AS storeID, f.itemName " +
+         "FROM FavoriteItems f WHERE f.login = ? ORDER BY f.itemName",
+         rs -> {
+            store[0] = (Integer) rs.getObject(1);
+            lines.add(new OrderRequest.Line(rs.getString(2), 1));
+         },
+         storeId, session.getLogin(), session.getLogin());
+      if (lines.isEmpty()) {
+         throw invalid("You have no favorite items yet. Add some to your profile first.");
+      }
+      if (store[0] == null) {
+         throw invalid("Please choose a store: you have no previous order to take one from.");
+      }
+      return new OrderRequest(store[0], lines);
+   }//end favoritesOrder
+
+   /**
+    * Builds an order of the same items and quantities as the caller's last
+    * order, read in one query.  Place it with placeOrder or OrderIntake.
+    *
+    * @param storeId the store to order from, or null for the same store
+    * @throws ServiceException when the caller has never ordered
+    * @throws java.sql.SQLException when the database fails
+    */
+   public OrderRequest lastOrder(Session session, Integer storeId) throws ServiceException, SQLException {
+      List<OrderRequest.Line> lines = new ArrayList<OrderRequest.Line>();
+      Integer[] store = { storeId };
+      this._esql.executeQueryAndStream(
+         "SELECT o.storeID, l.itemName, l.quantity " +
+         "FROM (SELECT orderID, orderTimestamp, storeID FROM FoodOrder WHERE login = ? " +
+               "ORDER BY orderTimestamp DESC, orderID DESC LIMIT 1) o " +
+         "JOIN ItemsInOrder l ON l.orderID = o.orderID AND l.orderTimestamp = o.orderTimestamp ORDER BY l.itemName",
+         rs -> {
+            if (store[0] == null) {
+               store[0] = rs.getInt(1);
+            }
+            lines.add(new OrderRequest.Line(rs.getString(2), rs.getInt(3)));
+         },
+         session.getLogin());
+      if (lines.isEmpty()) {
+         throw notFound("You have no previous order to repeat.");
+      }
+      return new OrderRequest(store[0], lines);
+   }//end lastOrder
+
+   /**
+    * Checks an order against the menu without touching the database;
+    * OrderIntake does this on the caller's thread so that bad orders are
+    * refused before they are queued.  Prices are not taken from the menu
+    * here: the statement that stores the order reads them from Items.
+    *
+    * @throws ServiceException when the order is empty, names an unknown item,
+    *         or has a quantity below one
+    * @throws java.sql.SQLException when the menu cannot be loaded
+    */
+   CheckedOrder check(Session session, OrderRequest request) throws ServiceException, SQLException {
+      if (request.lines().isEmpty()) {
+         throw invalid("No items were added to the order.");
+      }
+      MenuCache.Snapshot menu = menu();
+      Map<String, Integer> quantities = new LinkedHashMap<String, Integer>();
+      for (OrderRequest.Line line : request.lines()) {
+         MenuItem item = menu.find(line.itemName());
+         if (item == null) {
+            throw invalid("Item '" + line.itemName() + "' not found! Please enter a valid item name.");
+         }
+         if (line.quantity() < 1) {
+            throw invalid("The quantity of '" + line.itemName() + "' must be at least 1.");
+         }
+         // ItemsInOrder holds one line per item, so repeats add to it.
+         quantities.merge(item.name(), line.quantity(), Integer::sum);
+      }
+      return new CheckedOrder(session.getLogin(), request.storeId(), quantities);
+   }//end check
+
+   /**
+    * Stores one checked order with all of its lines.
+    *
+    * @throws ServiceException when the store does not exist, or an item has
+    *         left the menu since the order was checked
+    * @throws java.sql.SQLException when the database fails
+    */
+   OrderReceipt store(CheckedOrder order) throws ServiceException, SQLException {
+      try {
+         return insert(List.of(order)).get(0);
+      } catch (SQLException e) {
+         if (isConstraintViolation(e)) {
+            throw refused(order, e);
+         }
+         throw e;
+      }
+   }//end store
+
+   /**
+    * Stores orders and their lines in a single statement, so it commits as
+    * one unit and costs one round trip however many orders there are.  The
+    * same statement adds the orders to the sales rollups, so like a status
+    * update it can lose a deadlock on them, and is then run again.  Each
+    * line's unitPrice is read from Items by that statement, and each total
+    * is the exact decimal sum of its lines, so the total and the lines
+    * always agree, even when a price changes while the order is placed.
+    *
+    * @return one receipt per order, in the same order
+    * @throws java.sql.SQLException when the database fails; a constraint
+    *         violation, e.g. an unknown store, stores none of the orders
+    */
+   List<OrderReceipt> insert(List<CheckedOrder> orders) throws SQLException {
+      int lineCount = 0;
+      for (CheckedOrder order : orders) {
+         lineCount += order.quantities().size();
+      }
+      String[] logins = new String[orders.size()];
+      int[] storeIds = new int[orders.size()];
+      int[] lineOrders = new int[lineCount];
+      String[] itemNames = new String[lineCount];
+      int[] quantities = new int[lineCount];
+      int l = 0;
+      for (int k = 0; k < orders.size(); k++) {
+         CheckedOrder order = orders.get(k);
+         logins[k] = order.login();
+         storeIds[k] = order.storeId();
+         for (Map.Entry<String, Integer> entry : order.quantities().entrySet()) {
+            lineOrders[l] = k + 1;
+            itemNames[l] = entry.getKey();
+            quantities[l] = entry.getValue();
+            l++;
+         }
+      }
+
+      // k numbers the orders from 1.  Each order and its lines share one
+      // orderTimestamp, the key of their months.  An item missing from
+      // Items leaves its unitPrice null.  sum() would skip it, so the
+      // total is made null instead, which fails the NOT NULL on
+      // totalPrice; together with the foreign key on the line's itemName,
+      // nothing is stored.
+      List<OrderReceipt> receipts = new ArrayList<OrderReceipt>(orders.size());
+      List<OrderLine> lines = new ArrayList<OrderLine>();
+      long[] totals = new long[orders.size()];
+      int[] ids = new int[orders.size()];
+      repeatConcurrencyFailures(() -> {
+         lines.clear();
+         return this._esql.executeQueryAndStream(
+            "WITH orders AS (SELECT o.k, o.login, o.storeID, nextval('" + PizzaStore.ORDER_ID_SEQUENCE + "')::integer AS orderID, " +
+                            "NOW()::timestamp AS orderTimestamp " +
+                            "FROM unnest(?::varchar[], ?::integer[]) WITH ORDINALITY AS o(login, storeID, k)), " +
+            "lines AS (SELECT orders.orderID, orders.orderTimestamp, l.k, l.pos, l.itemName, l.quantity, i.price AS unitPrice " +
+                      "FROM unnest(?::integer[], ?::varchar[], ?::integer[]) WITH ORDINALITY AS l(k, itemName, quantity, pos) " +
+                      "JOIN orders ON orders.k = l.k LEFT JOIN Items i ON i.itemName = l.itemName), " +
+            "stored AS (INSERT INTO ItemsInOrder(orderID, itemName, quantity, unitPrice, orderTimestamp) " +
+                       "SELECT orderID, itemName, quantity, unitPrice, orderTimestamp FROM lines), " +
+            "placed AS (INSERT INTO FoodOrder(orderID, login, storeID, totalPrice, orderTimestamp, orderStatus) " +
+                       "SELECT orders.orderID, orders.login, orders.storeID, t.total, orders.orderTimestamp, 'incomplete' " +
+                       "FROM orders JOIN (SELECT k, CASE WHEN bool_and(unitPrice IS NOT NULL) " +
+                                               "THEN sum(unitPrice * quantity) END AS total FROM lines GROUP BY k) t ON t.k = orders.k " +
+                       "RETURNING orderID, storeID, totalPrice, orderTimestamp), " +
+            "sold AS (SELECT orderID, storeID, orderTimestamp, totalPrice, 1 AS placed, 0 AS completed FROM placed), " +
+            SalesRollups.maintain("sold", "lines") + " " +
+            "SELECT lines.k, lines.orderID, placed.totalPrice, lines.itemName, lines.quantity, lines.unitPrice " +
+            "FROM lines JOIN placed ON placed.orderID = lines.orderID ORDER BY lines.k, lines.pos",
+            rs -> {
+               int k = rs.getInt(1) - 1;
+               ids[k] = rs.getInt(2);
+               totals[k] = Money.toCents(rs.getBigDecimal(3));
+               lines.add(new OrderLine(ids[k], rs.getString(4), rs.getInt(5), Money.toCents(rs.getBigDecimal(6))));
+            },
+            logins, storeIds, lineOrders, itemNames, quantities);
+      });
+
+      int from = 0;
+      for (int k = 0; k < orders.size(); k++) {
+         int to = from + orders.get(k).quantities().size();
+         receipts.add(new OrderReceipt(ids[k], orders.get(k).storeId(), totals[k],
+                                       List.copyOf(lines.subList(from, to))));
+         from = to;
+      }
+      return receipts;
+   }//end insert
+
+   /*
+    * Explains a constraint violation on storing an order: either an item
+    * left the menu after the order was checked, or the store is unknown.
+    */
+   ServiceException refused(CheckedOrder order, SQLException e) throws SQLException {
+      MenuCache menu = this._esql.getMenu();
+      menu.invalidate();
+      for (String itemName : order.quantities().keySet()) {
+         if (menu.snapshot().find(itemName) == null) {
+            return new ServiceException(ServiceException.Reason.INVALID_REQUEST,
+                                        "Item '" + itemName + "' is no longer on the menu.", e);
+         }
+      }
+      return unknownStore(order.storeId(), e);
+   }
+
+   static ServiceException unknownStore(int storeId, Throwable cause) {
+      return new ServiceException(ServiceException.Reason.INVALID_REQUEST,
+                                  "Store " + storeId + " does not exist.", cause);
+   }
+
+   /**
+    * An order that passed the menu checks, ready to be stored and priced.
+    *
+    * @param quantities item name to quantity, one entry per ItemsInOrder row
+    */
+   record CheckedOrder(String login, int storeId, Map<String, Integer> quantities) {
+   }
+
+   /**
+    * Looks up one order.  Customers may only see their own orders.  The
+    * order is looked for in the recent months first (see LOOKUP_DAYS).
+    *
+    * @throws ServiceException when the order does not exist or is not the caller's
+    * @throws java.sql.SQLException when the database fails
+    */
+   public FoodOrder order(Session session, int orderId) throws ServiceException, SQLException {
+      if (!session.isStaff()) {
+         FoodOrder order = lookBack(since -> this._esql.executeQueryForObject(
+            "SELECT * FROM FoodOrder WHERE orderID = ? AND login = ?" + since("orderTimestamp", since),
+            FoodOrder.MAPPER, withSince(since, orderId, session.getLogin())));
+         if (order == null) {
+            throw new ServiceException(ServiceException.Reason.FORBIDDEN,
+                                       "Sorry, you are not authorized to view this order.");
+         }
+         return order;
+      }
+      FoodOrder order = lookBack(since -> this._esql.executeQueryForObject(
+         "SELECT * FROM FoodOrder WHERE orderID = ?" + since("orderTimestamp", since),
+         FoodOrder.MAPPER, withSince(since, orderId)));
+      if (order == null) {
+         throw notFound("Order ID " + orderId + " not found.");
+      }
+      return order;
+   }//end order
+
+   /**
+    * Looks up one order with its lines.  Customers may only see their own
+    * orders.  Two queries: the order, then its lines.
+    *
+    * @throws ServiceException when the order does not exist or is not the caller's
+    * @throws java.sql.SQLException when the database fails
+    */
+   public OrderDetail orderDetail(Session session, int orderId) throws ServiceException, SQLException {
+      return orderDetails(List.of(order(session, orderId))).get(0);
+   }
+
+   /**
+    * Reads the lines of orders the caller has already been allowed to see,
+    * e.g. a page of history, in one query however many orders there are,
+    * with the menu entries of their items joined in.  Only the months from
+    * the oldest order to the newest are read.
+    *
+    * @return one detail per order, in the same order
+    * @throws java.sql.SQLException when the database fails
+    */
+   public List<OrderDetail> orderDetails(List<FoodOrder> orders) throws SQLException {
+      if (orders.isEmpty()) {
+         return List.of();
+      }
+      int[] ids = new int[orders.size()];
+      long oldest = Long.MAX_VALUE;
+      long newest = Long.MIN_VALUE;
+      for (int i = 0; i < ids.length; i++) {
+         ids[i] = orders.get(i).orderId();
+         oldest = Math.min(oldest, orders.get(i).orderTimestamp());
+         newest = Math.max(newest, orders.get(i).orderTimestamp());
+      }
+      Map<Integer, List<OrderLine>> lines = new HashMap<Integer, List<OrderLine>>();
+      Map<String, MenuItem> items = new HashMap<String, MenuItem>();
+      // the orders' times are whole milliseconds while orderTimestamp keeps
+      // microseconds, so the lines are bounded by a range rather than matched
+      this._esql.executeQueryAndStream(
+         "SELECT l.orderID, l.itemName, l.quantity, l.unitPrice, i.ingredients, i.typeOfItem, i.price, i.description " +
+         "FROM ItemsInOrder l JOIN Items i ON i.itemName = l.itemName " +
+         "WHERE l.orderID = ANY(?::integer[]) AND l.orderTimestamp >= ? AND l.orderTimestamp < ? " +
+         "ORDER BY l.orderID, l.itemName",
+         rs -> {
+            OrderLine line = OrderLine.MAPPER.map(rs);
+            lines.computeIfAbsent(line.orderId(), k -> new ArrayList<OrderLine>()).add(line);
+            if (!items.containsKey(line.itemName())) {
+               items.put(line.itemName(), MenuItem.MAPPER.map(rs));
+            }
+         },
+         ids, new Timestamp(oldest), new Timestamp(newest + 1));
+
+      Map<String, MenuItem> menu = Collections.unmodifiableMap(items);
+      List<OrderDetail> details = new ArrayList<OrderDetail>(orders.size());
+      for (FoodOrder order : orders) {
+         List<OrderLine> own = lines.get(order.orderId());
+         details.add(new OrderDetail(order, own == null ? List.of() : Collections.unmodifiableList(own), menu));
+      }
+      return details;
+   }//end orderDetails
+
+   /**
+    * Like orderDetails(List), for a page of history.
+    */
+   public List<OrderDetail> orderDetails(OrderColumns orders) throws SQLException {
+      List<FoodOrder> list = new ArrayList<FoodOrder>(orders.size());
+      for (int i = 0; i < orders.size(); i++) {
+         list.add(orders.get(i));
+      }
+      return orderDetails(list);
+   }
+
+   /**
+    * Opens a cursor over the order history, newest first.  Customers only
+    * ever see their own orders, whatever the filter says; staff see every
+    * order that matches it.
+    *
+    * @return a pager for this caller; call first() to load the first page
+    */
+   public OrderHistoryPager orderHistory(Session session, OrderHistoryPager.Filter filter, int pageSize) {
+      return new OrderHistoryPager(this._esql, restrict(session, filter), pageSize);
+   }
+
+   /**
+    * Reads the newest orders.  Customers get their own orders; staff get
+    * every order, or one store's when storeId is given.
+    *
+    * @param storeId only orders placed at this store, or null for every store
+    * @param limit the most orders to return
+    * @throws java.sql.SQLException when the database fails
+    */
+   public OrderColumns recentOrders(Session session, Integer storeId, int limit) throws SQLException {
+      OrderHistoryPager.Filter filter = new OrderHistoryPager.Filter(null, storeId, null, null, null);
+      return OrderHistoryPager.latest(this._esql, restrict(session, filter), limit);
+   }
+
+   /**
+    * Sets the status of an order; drivers and managers only.
+    *
+    * @param status complete or incomplete
+    * @return the order after the change
+    * @throws ServiceException when the caller is not staff, the status is
+    *         unknown, or the order does not exist
+    * @throws java.sql.SQLException when the database fails
+    */
+   public FoodOrder updateOrderStatus(Session session, int orderId, String status)
+         throws ServiceException, SQLException {
+      return updateOrderStatus(session, orderId, null, status);
+   }
+
+   /**
+    * Moves an order from one status to another; drivers and managers only.
+    * The check and the change are one conditional UPDATE, so two staff
+    * members racing on the same order cannot both succeed, and the usual
+    * case, a recent order, costs a single round trip.
+    *
+    * @param expected the status the order must have now, or null for any
+    * @param status complete or incomplete
+    * @return the order after the change
+    * @throws ServiceException when the caller is not staff, a status is
+    *         unknown, the order does not exist, its status is not the
+    *         expected one, or it keeps clashing with other updates
+    * @throws java.sql.SQLException when the database fails
+    */
+   public FoodOrder updateOrderStatus(Session session, int orderId, String expected, String status)
+         throws ServiceException, SQLException {
+      requireStaff(session);
+      String normalized = orderStatus(status);
+      String from = expected == null ? null : orderStatus(expected);
+      // FOR UPDATE makes the previous status the one the UPDATE overwrites,
+      // so the rollups move by exactly this change; joining on the
+      // timestamp too lets the UPDATE visit only the order's month.  The
+      // order's status comes back even when it is not the expected one, so
+      // a refusal can say why without a second look.
+      StatusUpdate update = retryConcurrencyFailures(() -> lookBack(since -> this._esql.executeQueryForObject(
+         "WITH current AS (SELECT orderID, orderTimestamp, trim(orderStatus) AS status FROM FoodOrder " +
+                          "WHERE orderID = ?" + since("orderTimestamp", since) + " FOR UPDATE), " +
+         "updated AS (UPDATE FoodOrder f SET orderStatus = ? FROM current c " +
+                     "WHERE f.orderID = c.orderID AND f.orderTimestamp = c.orderTimestamp" +
+                     since("f.orderTimestamp", since) + (from == null ? "" : " AND c.status = ?") +
+                     " RETURNING f.*, c.status AS previous), " +
+         statusRollups(since) + " SELECT c.status AS currentStatus, u.* FROM current c LEFT JOIN updated u ON true",
+         rs -> new StatusUpdate(rs.getString("orderID") == null ? null : FoodOrder.MAPPER.map(rs),
+                                rs.getString("currentStatus")),
+         from == null ? statusParams(since, orderId, normalized) : statusParams(since, orderId, normalized, from))));
+      if (update == null) {
+         throw notFound("Order ID " + orderId + " not found.");
+      }
+      if (update.order() == null) {
+         throw new ServiceException(ServiceException.Reason.CONFLICT,
+                                    "Order ID " + orderId + " is " + update.status() + ", not " + from + ".");
+      }
+      return update.order();
+   }//end updateOrderStatus
+
+   /*
+    * What a single status update found: the order after the change, or
+    * null when its status was not the expected one, and its status before.
+    */
+   private record StatusUpdate(FoodOrder order, String status) {
+   }
+
+   /**
+    * Sets the status of many orders at once; drivers and managers only.
+    * Every order is locked, checked and changed by one statement, so the
+    * whole list is applied atomically, and each order's outcome is
+    * reported rather than the first problem aborting the rest.  The
+    * statement only changes anything once every order is inside its
+    * window (see LOOKUP_DAYS), so a list of recent orders costs a single
+    * round trip and an older or unknown order costs one per window.
+    *
+    * @param orderIds the orders to change, at most MAX_BULK_ORDERS; repeats are ignored
+    * @param expected the status each order must have now, or null for any
+    * @param status complete or incomplete
+    * @return one outcome per distinct order ID, in the order given
+    * @throws ServiceException when the caller is not staff, a status is
+    *         unknown, the list is empty or too long, or the orders keep
+    *         clashing with other updates
+    * @throws java.sql.SQLException when the database fails
+    */
+   public List<StatusChange> updateOrderStatuses(Session session, List<Integer> orderIds, String expected,
+                                                 String status) throws ServiceException, SQLException {
+      requireStaff(session);
+      String normalized = orderStatus(status);
+      String from = expected == null ? null : orderStatus(expected);
+      Set<Integer> distinct = new LinkedHashSet<Integer>(orderIds);
+      if (distinct.isEmpty()) {
+         throw invalid("Enter at least one order ID.");
+      }
+      if (distinct.size() > MAX_BULK_ORDERS) {
+         throw invalid("At most " + MAX_BULK_ORDERS + " orders can be updated at once.");
+      }
+      int[] ids = new int[distinct.size()];
+      int n = 0;
+      for (Integer id : distinct) {
+         ids[n++] = id;
+      }
+
+      // FOR UPDATE makes the checked status the one the UPDATE overwrites,
+      // even when another session changes an order in between.  Rows are
+      // locked in orderID order, so two bulk updates sharing orders queue
+      // behind each other instead of deadlocking.
+      Map<Integer, StatusChange> changes = new HashMap<Integer, StatusChange>();
+      List<StatusChange> applied = retryConcurrencyFailures(() -> lookBack(since -> {
+         List<StatusChange> found = this._esql.executeQueryForList(
+            "WITH requested AS (SELECT DISTINCT unnest(?::integer[]) AS orderID), " +
+            "current AS (SELECT f.orderID, f.orderTimestamp, trim(f.orderStatus) AS status " +
+                        "FROM FoodOrder f JOIN requested r ON r.orderID = f.orderID" +
+                        (since == null ? "" : " WHERE f.orderTimestamp >= ?") +
+                        " ORDER BY f.orderID FOR UPDATE OF f), " +
+            "updated AS (UPDATE FoodOrder f SET orderStatus = ? FROM current c " +
+                        "WHERE f.orderID = c.orderID AND f.orderTimestamp = c.orderTimestamp" +
+                        since("f.orderTimestamp", since) + " AND c.status IS DISTINCT FROM ? " +
+                        "AND (?::text IS NULL OR c.status = ?::text)" +
+                        (since == null ? "" : " AND (SELECT count(*) FROM current) = (SELECT count(*) FROM requested)") +
+                        " RETURNING f.*, c.status AS previous), " +
+            statusRollups(since) + " " +
+            "SELECT r.orderID, c.status, u.orderID IS NOT NULL AS updated " +
+            "FROM requested r LEFT JOIN current c ON c.orderID = r.orderID " +
+            "LEFT JOIN updated u ON u.orderID = r.orderID",
+            rs -> statusChange(rs.getInt(1), rs.getString(2), rs.getBoolean(3), normalized),
+            statusParams(since, ids, normalized, normalized, from, from));
+         // an order outside the window left everything unchanged
+         for (StatusChange change : found) {
+            if (since != null && change.outcome() == StatusChange.Outcome.NOT_FOUND) {
+               return null;
+            }
+         }
+         return found;
+      }));
+      for (StatusChange change : applied) {
+         changes.put(change.orderId(), change);
+      }
+      List<StatusChange> result = new ArrayList<StatusChange>(distinct.size());
+      for (Integer id : distinct) {
+         result.add(changes.get(id));
+      }
+      return result;
+   }//end updateOrderStatuses
+
+   /*
+    * Ends a status update's WITH list: moves the orders in "updated" (its
+    * rows, with their previous status) into or out of the completed sales.
+    * Their lines are read from the same window as the orders.
+    */
+   private static String statusRollups(Timestamp since) {
+      return "flipped AS (SELECT orderID, storeID, orderTimestamp, totalPrice, 0 AS placed, " +
+                         "CASE WHEN orderStatus = 'complete' THEN 1 ELSE -1 END AS completed FROM updated " +
+                         "WHERE (orderStatus = 'complete') <> coalesce(previous = 'complete', false)), " +
+             SalesRollups.maintain("flipped", since == null ? "ItemsInOrder"
+                                                            : "(SELECT * FROM ItemsInOrder WHERE orderTimestamp >= ?)");
+   }
+
+   /*
+    * The parameters of a status update in the order its SQL names them:
+    * the orders, the window on current, the new status, the window on
+    * updated, the checks, and the window on the lines in statusRollups.
+    */
+   private static Object[] statusParams(Timestamp since, Object orders, String status, Object... checks) {
+      List<Object> params = new ArrayList<Object>();
+      params.add(orders);
+      if (since != null) {
+         params.add(since);
+      }
+      params.add(status);
+      if (since != null) {
+         params.add(since);
+      }
+      params.addAll(Arrays.asList(checks));
+      if (since != null) {
+         params.add(since);
+      }
+      return params.toArray();
+   }
+
+   private static StatusChange statusChange(int orderId, String previous, boolean updated, String status) {
+      StatusChange.Outcome outcome;
+      if (updated) {
+         outcome = StatusChange.Outcome.UPDATED;
+      } else if (previous == null) {
+         outcome = StatusChange.Outcome.NOT_FOUND;
+      } else if (previous.equals(status)) {
+         outcome = StatusChange.Outcome.UNCHANGED;
+      } else {
+         outcome = StatusChange.Outcome.CONFLICT;
+      }
+      return new StatusChange(orderId, outcome, previous);
+   }
+
+   /*
+    * Sales reports
+    */
+
+   /**
+    * Sales per store, best first; managers only.  Reads only the sales
+    * rollups.
+    *
+    * @param from the first month, or null for no bound
+    * @param to the last month, or null for no bound
+    * @param limit the most stores to list
+    * @throws ServiceException when the caller is not a manager
+    * @throws java.sql.SQLException when the database fails
+    */
+   public List<SalesTotals> salesByStore(Session session, YearMonth from, YearMonth to, int limit)
+         throws ServiceException, SQLException {
+      requireManager(session, "Sorry, you are not authorized to view sales reports.");
+      return this._esql.executeQueryForList(
+         "SELECT storeID::text AS key, sum(orders) AS orders, 0 AS quantity, sum(revenue) AS revenue, " +
+         "sum(completedOrders) AS completedOrders, sum(completedRevenue) AS completedRevenue " +
+         "FROM SalesByStore WHERE month BETWEEN ? AND ? " +
+         "GROUP BY storeID ORDER BY sum(revenue) DESC, storeID LIMIT ?",
+         SalesTotals.MAPPER, firstDay(from, LocalDate.MIN), firstDay(to, LocalDate.MAX),
+         Math.min(Math.max(limit, 1), MAX_REPORT_STORES));
+   }//end salesByStore
+
+   /**
+    * Sales per menu item, best first; managers only.  Reads only the sales
+    * rollups.
+    *
+    * @param from the first month, or null for no bound
+    * @param to the last month, or null for no bound
+    * @throws ServiceException when the caller is not a manager
+    * @throws java.sql.SQLException when the database fails
+    */
+   public List<SalesTotals> salesByItem(Session session, YearMonth from, YearMonth to)
+         throws ServiceException, SQLException {
+      requireManager(session, "Sorry, you are not authorized to view sales reports.");
+      return this._esql.executeQueryForList(
+         "SELECT itemName AS key, sum(orders) AS orders, sum(quantity) AS quantity, sum(revenue) AS revenue, " +
+         "sum(completedOrders) AS completedOrders, sum(completedRevenue) AS completedRevenue " +
+         "FROM SalesByItem WHERE month BETWEEN ? AND ? " +
+         "GROUP BY itemName ORDER BY sum(revenue) DESC, itemName",
+         SalesTotals.MAPPER, firstDay(from, LocalDate.MIN), firstDay(to, LocalDate.MAX));
+   }//end salesByItem
+
+   /**
+    * Sales per hour of the day, over all stores and the given days;
+    * managers only.  Reads only the sales rollups.
+    *
+    * @param from the first day, or null for no bound
+    * @param to the last day, or null for no bound
+    * @return one line per hour that had orders, "00:00" to "23:00"
+    * @throws ServiceException when the caller is not a manager
+    * @throws java.sql.SQLException when the database fails
+    */
+   public List<SalesTotals> salesByHour(Session session, LocalDate from, LocalDate to)
+         throws ServiceException, SQLException {
+      requireManager(session, "Sorry, you are not authorized to view sales reports.");
+      return this._esql.executeQueryForList(
+         "SELECT to_char(hour, 'HH24:00') AS key, sum(orders) AS orders, 0 AS quantity, sum(revenue) AS revenue, " +
+         "sum(completedOrders) AS completedOrders, sum(completedRevenue) AS completedRevenue " +
+         "FROM SalesByHour WHERE hour >= ? AND hour < ? GROUP BY 1 ORDER BY 1",
+         SalesTotals.MAPPER, from == null ? LocalDate.MIN : from, to == null ? LocalDate.MAX : to.plusDays(1));
+   }//end salesByHour
+
+   // a month bound as the date the rollups key it by.
+   private static LocalDate firstDay(YearMonth month, LocalDate unbounded) {
+      return month == null ? unbounded : month.atDay(1);
+   }
+
+   /*
+    * Helpers
+    */
+
+   private static OrderHistoryPager.Filter restrict(Session session, OrderHistoryPager.Filter filter) {
+      if (session.isStaff()) {
+         return filter;
+      }
+      return new OrderHistoryPager.Filter(session.getLogin(), filter.storeId, filter.status, filter.from, filter.to);
+   }
+
+   private static void requireStaff(Session session) throws ServiceException {
+      if (!session.isStaff()) {
+         throw new ServiceException(ServiceException.Reason.FORBIDDEN,
+                                    "Sorry, you are not authorized to update the status of an order.");
+      }
+   }
+
+   private static String orderStatus(String status) throws ServiceException {
+      String normalized = status == null ? "" : status.trim().toLowerCase();
+      if (!ORDER_STATUSES.contains(normalized)) {
+         throw invalid("Invalid status. Please enter 'complete' or 'incomplete'.");
+      }
+      return normalized;
+   }
+
+   private static void requireManager(Session session, String message) throws ServiceException {
+      if (!session.isManager()) {
+         throw new ServiceException(ServiceException.Reason.FORBIDDEN, message);
+      }
+   }
+
+   private static String required(String field, String value, int maxLength) throws ServiceException {
+      if (value == null || value.trim().isEmpty()) {
+         throw invalid(field + " is required.");
+      }
+      if (value.length() > maxLength) {
+         throw invalid(field + " must be at most " + maxLength + " characters.");
+      }
+      return value;
+   }
+
+   @FunctionalInterface
+   private interface Lookup<T> {
+      // the result, or null when the window does not hold it; since is null for no bound
+      T find(Timestamp since) throws SQLException;
+   }
+
+   /*
+    * Runs a lookup of orders named by ID in the LOOKUP_DAYS windows, each
+    * reaching further back from now than the last, until one finds what
+    * it looks for; the last run is unbounded.
+    */
+   private static <T> T lookBack(Lookup<T> lookup) throws SQLException {
+      long now = System.currentTimeMillis();
+      for (long days : LOOKUP_DAYS) {
+         T found = lookup.find(new Timestamp(now - TimeUnit.DAYS.toMillis(days)));
+         if (found != null) {
+            return found;
+         }
+      }
+      return lookup.find(null);
+   }//end lookBack
+
+   // " AND column >= ?" for a window's bound, or "" for none.
+   private static String since(String column, Timestamp since) {
+      return since == null ? "" : " AND " + column + " >= ?";
+   }
+
+   // the parameters with a window's bound added last, if there is one.
+   private static Object[] withSince(Timestamp since, Object... params) {
+      if (since == null) {
+         return params;
+      }
+      Object[] all = Arrays.copyOf(params, params.length + 1);
+      all[params.length] = since;
+      return all;
+   }
+
+   @FunctionalInterface
+   private interface Attempt<T> {
+      T run() throws SQLException;
+   }
+
+   /*
+    * Runs autocommit statements, again if one lost a deadlock or a
+    * serialization race: the database rolled it back whole, and those
+    * before it changed nothing, so the attempt can simply be repeated.
+    * Gives up after CONCURRENCY_ATTEMPTS tries with the last failure.
+    */
+   private static <T> T repeatConcurrencyFailures(Attempt<T> attempt) throws SQLException {
+      for (int tries = 1; ; tries++) {
+         try {
+            return attempt.run();
+         } catch (SQLException e) {
+            if (!isConcurrencyFailure(e) || tries == CONCURRENCY_ATTEMPTS) {
+               throw e;
+            }
+         }
+      }
+   }//end repeatConcurrencyFailures
+
+   /*
+    * Like repeatConcurrencyFailures, giving up with CONFLICT.
+    */
+   private static <T> T retryConcurrencyFailures(Attempt<T> attempt) throws ServiceException, SQLException {
+      try {
+         return repeatConcurrencyFailures(attempt);
+      } catch (SQLException e) {
+         if (isConcurrencyFailure(e)) {
+            throw new ServiceException(ServiceException.Reason.CONFLICT,
+                                       "These orders are being changed by someone else; please try again.", e);
+         }
+         throw e;
+      }
+   }//end retryConcurrencyFailures
+
+   // SQLSTATE 40001 is a serialization failure and 40P01 a deadlock.
+   static boolean isConcurrencyFailure(SQLException e) {
+      return "40001".equals(e.getSQLState()) || "40P01".equals(e.getSQLState());
+   }
+
+   // SQLSTATE class 23 covers unique, foreign key and other constraint violations.
+   static boolean isConstraintViolation(SQLException e) {
+      return e.getSQLState() != null && e.getSQLState().startsWith("23");
+   }
+
+   private static SQLException conflictOr(SQLException e, String message) throws ServiceException {
+      if (isConstraintViolation(e)) {
+         throw new ServiceException(ServiceException.Reason.CONFLICT, message, e);
+      }
+      return e;
+   }
+
+   private static ServiceException notFound(String message) {
+      return new ServiceException(ServiceException.Reason.NOT_FOUND, message);
+   }
+
+   private static ServiceException invalid(String message) {
+      return new ServiceException(ServiceException.Reason.INVALID_REQUEST, message);
+   }
+}//end PizzaService
@@ -0,0 +1,1821 @@
+package pizzastore;
+
+import java.sql.DriverManager;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.io.File;
+import java.io.FileReader;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.lang.Math;
+
+/**
+ * This class defines a simple embedded SQL utility class that is designed to
+ * work with PostgreSQL JDBC drivers.
+ *
+ */
+public class PizzaStore {
+
+   // default bounds for the connection pool; override with -Dpizzastore.pool.*
+   static final int DEFAULT_POOL_MIN = Integer.getInteger("pizzastore.pool.min", 2);
+   static final int DEFAULT_POOL_MAX = Integer.getInteger("pizzastore.pool.max", 16);
+   static final long DEFAULT_POOL_WAIT = Long.getLong("pizzastore.pool.maxWaitMillis", 5000L);
+   static final long DEFAULT_POOL_IDLE = Long.getLong("pizzastore.pool.idleTimeoutMillis", 300000L);
+
+   // sequence handing out FoodOrder.orderID values.
+   static final String ORDER_ID_SEQUENCE = "foodorder_orderid_seq";
+
+   // environment variable every tool reads the database password from.
+   static final String PASSWORD_VARIABLE = "PIZZASTORE_DB_PASSWORD";
+
+   // rows fetched per round trip by executeQueryAndStream; override with -Dpizzastore.fetchSize
+   static final int STREAM_FETCH_SIZE = Integer.getInteger("pizzastore.fetchSize", 500);
+
+   // how many orders "View Past 5 Order IDs" lists.
+   static final int RECENT_ORDERS = 5;
+
+   // how many stores the sales report by store lists.
+   static final int SALES_REPORT_STORES = 20;
+
+   // bound to the parameterized execute methods when a query takes no parameters.
+   private static final Object[] NO_PARAMS = new Object[0];
+
+   // pool of physical database connections shared by every session.
+   private ConnectionPool _pool = null;
+
+   // open sessions of signed-in users, by login.
+   private final SessionRegistry _sessions = new SessionRegistry();
+
+   // in-process copy of the Items table.
+   private final MenuCache _menu = new MenuCache(this);
+   private final StoreDirectory _stores = new StoreDirectory(this);
+
+   // timings and counts of every statement, by query shape.
+   private final QueryMetrics _metrics = new QueryMetrics();
+
+   // connection pinned to the calling thread between beginTransaction and
+   // commitTransaction/rollbackTransaction.
+   private final ThreadLocal<PooledConnection> _transaction = new ThreadLocal<PooledConnection>();
+
+   // handling the keyboard inputs through a BufferedReader
+   // This variable can be global for convenience.
+   static BufferedReader in = new BufferedReader(
+                                new InputStreamReader(System.in));
+
+   /**
+    * Creates a new instance of PizzaStore with the default pool bounds
+    *
+    * @param hostname the MySQL or PostgreSQL server hostname
+    * @param database the name of the database
+    * @param username the user name used to login to the database
+    * @param password the user login password
+    * @throws java.sql.SQLException when failed to make a connection.
+    */
+   public PizzaStore(String dbname, String dbport, String user, String passwd) throws SQLException {
+      this(dbname, dbport, user, passwd, DEFAULT_POOL_MIN, DEFAULT_POOL_MAX);
+   }//end PizzaStore
+
+   /**
+    * Creates a new instance of PizzaStore backed by a pool of between
+    * minPoolSize and maxPoolSize physical connections.
+    *
+    * @param dbname the name of the database
+    * @param dbport the PostgreSQL server port
+    * @param user the user name used to login to the database
+    * @param passwd the user login password
+    * @param minPoolSize connections kept open even when idle
+    * @param maxPoolSize upper bound on open connections
+    * @throws java.sql.SQLException when failed to make a connection.
+    */
+   public PizzaStore(String dbname, String dbport, String user, String passwd,
+                     int minPoolSize, int maxPoolSize) throws SQLException {
+
+      System.out.print("Connecting to database...");
+      try{
+         // constructs the connection URL
+         String url = url(dbname, dbport);
+         System.out.println ("Connection URL: " + url + "\n");
+
+         // open the initial physical connections
+         this._pool = new ConnectionPool(url, user, passwd, minPoolSize, maxPoolSize,
+                                         DEFAULT_POOL_WAIT, DEFAULT_POOL_IDLE);
+         System.out.println("Done");
+      }catch (Exception e){
+         System.err.println("Error - Unable to Connect to Database: " + e.getMessage() );
+         System.out.println("Make sure you started postgres on this machine");
+         System.exit(-1);
+      }//end catch
+   }//end PizzaStore
+
+   /**
+    * @param dbname the name of the database
+    * @param dbport the PostgreSQL server port
+    * @return the JDBC URL of a database on this machine
+    */
+   public static String url(String dbname, String dbport) {
+      return "jdbc:postgresql://localhost:" + dbport + "/" + dbname;
+   }
+
+   /**
+    * @return the database password from the PIZZASTORE_DB_PASSWORD
+    *         environment variable, empty if unset
+    */
+   public static String password() {
+      return System.getenv().getOrDefault(PASSWORD_VARIABLE, "");
+   }
+
+   /**
+    * Opens a connection of its own, outside any pool, for the tools that
+    * load, split and check the tables.
+    *
+    * @param url the JDBC connection URL
+    * @param user the user name used to login to the database
+    * @param passwd the user login password
+    * @throws java.sql.SQLException when failed to make a connection.
+    */
+   public static Connection connect(String url, String user, String passwd) throws SQLException {
+      return DriverManager.getConnection(url, user, passwd);
+   }
+
+   /**
+    * @return the sessions of every user signed in through this instance
+    */
+   public SessionRegistry getSessions() {
+      return this._sessions;
+   }
+
+   /**
+    * @return the cached menu shared by every session of this instance
+    */
+   public MenuCache getMenu() {
+      return this._menu;
+   }
+
+   /**
+    * @return the cached stores shared by every session of this instance
+    */
+   public StoreDirectory getStoreDirectory() {
+      return this._stores;
+   }
+
+   /**
+    * @return the connection pool shared by every session of this instance
+    */
+   public ConnectionPool getPool() {
+      return this._pool;
+   }
+
+   /**
+    * @return the per-query-shape metrics of every statement run through
+    *         this instance
+    */
+   public QueryMetrics getMetrics() {
+      return this._metrics;
+   }
+
+   /**
+    * Method to execute an update SQL statement.  Update SQL instructions
+    * includes CREATE, INSERT, UPDATE, DELETE, and DROP.
+    *
+    * @param sql the input SQL string
+    * @throws java.sql.SQLException when update failed
+    */
+   public void executeUpdate (String sql) throws SQLException {
+      executeUpdate (sql, NO_PARAMS);
+   }//end executeUpdate
+
+   /**
+    * Parameterized variant of executeUpdate.  The statement is taken from
+    * the statement cache of the borrowed connection, so each SQL shape is
+    * parsed once per connection rather than once per call.
+    *
+    * @param sql the input SQL string with ? placeholders
+    * @param params the values bound to the placeholders, in order
+    * @return the number of rows affected
+    * @throws java.sql.SQLException when update failed
+    */
+   public int executeUpdate (String sql, Object... params) throws SQLException {
+      PooledConnection conn = acquire();
+      long start = System.nanoTime();
+      int rowCount = 0;
+      boolean failed = true;
+      try {
+         PreparedStatement stmt = conn.prepare(sql);
+         bind(stmt, params);
+         rowCount = stmt.executeUpdate();
+         failed = false;
+         return rowCount;
+      } finally {
+         this._metrics.record(sql, System.nanoTime() - start, rowCount, failed);
+         giveBack(conn);
+      }
+   }//end executeUpdate
+
+   /**
+    * Method to execute an input query SQL instruction (i.e. SELECT).  This
+    * method issues the query to the DBMS and outputs the results to
+    * standard out.
+    *
+    * @param query the input query string
+    * @return the number of rows returned
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public int executeQueryAndPrintResult(String query) throws SQLException {
+      return executeQueryAndPrintResult(query, NO_PARAMS);
+   }//end executeQueryAndPrintResult
+
+   /**
+    * Parameterized variant of executeQueryAndPrintResult.
+    *
+    * @param query the input query string with ? placeholders
+    * @param params the values bound to the placeholders, in order
+    * @return the number of rows returned
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public int executeQueryAndPrintResult(String query, Object... params) throws SQLException {
+      PooledConnection conn = acquire();
+      long start = System.nanoTime();
+      int rowCount = 0;
+      boolean failed = true;
+      try {
+         PreparedStatement stmt = conn.prepare(query);
+         bind(stmt, params);
+         ResultSet rs = stmt.executeQuery();
+         rowCount = printResult(rs);
+         rs.close();
+         failed = false;
+         return rowCount;
+      } finally {
+         this._metrics.record(query, System.nanoTime() - start, rowCount, failed);
+         giveBack(conn);
+      }
+   }//end executeQueryAndPrintResult
+
+   /*
+    * Prints every row of the result set as a table with wrapped cells.
+    */
+   private int printResult(ResultSet rs) throws SQLException {
+
+      ResultSetMetaData rsmd = rs.getMetaData();
+      int numCol = rsmd.getColumnCount();
+      int rowCount = 0;
+
+      List<String> columns = new ArrayList<String>();
+      for (int i = 1; i <= numCol; i++) {
+        columns.add(rsmd.getColumnName(i));
+      }
+      int[] colWidths = columnWidths(columns);
+      String divider = printHeader(columns, colWidths);
+
+      List<String> cells = new ArrayList<String>();
+      while (rs.next()){
+         cells.clear();
+         for (int i = 1; i <= numCol; i++){
+            cells.add(rs.getString(i));
+         }
+         printRow(cells, colWidths, divider);
+         rowCount++;
+      }
+      return rowCount;
+   }//end printResult
+
+   /**
+    * Prints rows that are already in memory in the same table layout as
+    * executeQueryAndPrintResult.
+    *
+    * @param columns the column headers
+    * @param rows the records to print, one value per column
+    * @return the number of rows printed
+    */
+   public int printTable(List<String> columns, List<List<String>> rows) {
+      int[] colWidths = columnWidths(columns);
+      String divider = printHeader(columns, colWidths);
+      for (List<String> row : rows) {
+         printRow(row, colWidths, divider);
+      }
+      return rows.size();
+   }//end printTable
+
+   private int[] columnWidths(List<String> columns) {
+      int defaultWidth = 35;
+      int[] colWidths = new int[columns.size()];
+
+      for (int i = 0; i < columns.size(); i++) {
+        colWidths[i] = Math.max(columns.get(i).length(), defaultWidth);
+      }
+      return colWidths;
+   }
+
+   /*
+    * Prints the header line and the divider below it; returns the divider.
+    */
+   private String printHeader(List<String> columns, int[] colWidths) {
+      StringBuilder header = new StringBuilder();
+      header.append("|");
+      for (int i = 0; i < columns.size(); i++) {
+        header.append(String.format(" %-" + colWidths[i] + "s |", columns.get(i)));
+      }
+      System.out.println(header.toString());
+
+      StringBuilder divider = new StringBuilder();
+      divider.append("+");
+      for (int i = 0; i < columns.size(); i++) {
+        for (int j = 0; j < colWidths[i] + 2; j++) { 
+            divider.append("-");
+        }
+        divider.append("+");
+      }
+
+      System.out.println(divider.toString());
+      return divider.toString();
+   }
+
+   /*
+    * Prints one record, wrapping cells wider than their column.
+    */
+   private void printRow(List<String> cells, int[] colWidths, String divider) {
+      int numCol = colWidths.length;
+      List<List<String>> wrappedCells = new ArrayList<>();
+      int maxLines = 0; 
+      for (int i = 0; i < numCol; i++){
+         String cell = cells.get(i);
+         if (cell == null) {
+             cell = "";
+         }
+         List<String> wrapped = wrapText(cell, colWidths[i]);
+         wrappedCells.add(wrapped);
+         if (wrapped.size() > maxLines) {
+             maxLines = wrapped.size();
+         }
+      }
+
+      for (int line = 0; line < maxLines; line++){
+         StringBuilder rowBuilder = new StringBuilder();
+         rowBuilder.append("|");
+         for (int i = 0; i < numCol; i++){
+             String cellLine = "";
+   
+             if (line < wrappedCells.get(i).size()){
+                 cellLine = wrappedCells.get(i).get(line);
+             }
+             rowBuilder.append(String.format(" %-" + colWidths[i] + "s |", cellLine));
+         }
+         System.out.println(rowBuilder.toString());
+      }
+     
+      System.out.println(divider);
+   }//end printRow
+
+   /**
+   * Helper method that splits the given text into a list of strings,
+   * each with a maximum length of the specified width.
+   */
+   public List<String> wrapText(String text, int width) {
+      List<String> lines = new ArrayList<>();
+      int start = 0;
+      while (start < text.length()) {
+        int end = Math.min(start + width, text.length());
+        lines.add(text.substring(start, end));
+        start += width;
+      }
+
+      return lines;
+   }
+
+   /**
+    * Method to execute an input query SQL instruction (i.e. SELECT).  This
+    * method issues the query to the DBMS and returns the results as
+    * a list of records. Each record in turn is a list of attribute values
+    *
+    * @param query the input query string
+    * @return the query result as a list of records
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public List<List<String>> executeQueryAndReturnResult (String query) throws SQLException {
+      return executeQueryAndReturnResult (query, NO_PARAMS);
+   }//end executeQueryAndReturnResult
+
+   /**
+    * Parameterized variant of executeQueryAndReturnResult.
+    *
+    * @param query the input query string with ? placeholders
+    * @param params the values bound to the placeholders, in order
+    * @return the query result as a list of records
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public List<List<String>> executeQueryAndReturnResult (String query, Object... params) throws SQLException {
+      PooledConnection conn = acquire();
+      long start = System.nanoTime();
+      int rowCount = 0;
+      boolean failed = true;
+      try {
+         PreparedStatement stmt = conn.prepare(query);
+         bind(stmt, params);
+         ResultSet rs = stmt.executeQuery();
+         List<List<String>> result = collectResult(rs);
+         rs.close();
+         rowCount = result.size();
+         failed = false;
+         return result;
+      } finally {
+         this._metrics.record(query, System.nanoTime() - start, rowCount, failed);
+         giveBack(conn);
+      }
+   }//end executeQueryAndReturnResult
+
+   /**
+    * Method to execute an input query SQL instruction (i.e. SELECT) and
+    * hand each row to a callback as it arrives, instead of collecting the
+    * whole result first.  Rows are fetched through a server-side cursor,
+    * STREAM_FETCH_SIZE at a time, so memory stays bounded no matter how
+    * many rows match.  Cursor fetching needs autocommit off; outside a
+    * transaction the query runs in its own read-only transaction.
+    *
+    * @param query the input query string with ? placeholders
+    * @param handler called once per row
+    * @param params the values bound to the placeholders, in order
+    * @return the number of rows returned
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public int executeQueryAndStream (String query, RowHandler handler, Object... params) throws SQLException {
+      PooledConnection conn = acquire();
+      Connection connection = conn.getConnection();
+      // asked of the ThreadLocal, not the connection, which may be broken
+      boolean ownTransaction = conn != this._transaction.get();
+      long start = System.nanoTime();
+      int rowCount = 0;
+      boolean failed = true;
+      Exception error = null;
+      try {
+         if (ownTransaction) {
+            connection.setAutoCommit(false);
+         }
+         PreparedStatement stmt = conn.prepare(query);
+         bind(stmt, params);
+         stmt.setFetchSize(STREAM_FETCH_SIZE);
+         ResultSet rs = stmt.executeQuery();
+         try {
+            while (rs.next()) {
+               handler.handle(rs);
+               rowCount++;
+            }
+         } finally {
+            rs.close();
+            stmt.setFetchSize(0);
+         }
+         if (ownTransaction) {
+            connection.commit();
+         }
+         failed = false;
+         return rowCount;
+      } catch (SQLException | RuntimeException e) {
+         if (ownTransaction) {
+            try {
+               connection.rollback();
+            } catch (SQLException rollback) {
+               e.addSuppressed(rollback);
+            }
+         }
+         error = e;
+         throw e;
+      } finally {
+         this._metrics.record(query, System.nanoTime() - start, rowCount, failed);
+         if (ownTransaction) {
+            try {
+               connection.setAutoCommit(true);
+            } catch (SQLException reset) {
+               // a broken connection is dropped, so its pool slot is freed
+               // rather than lost, and the error that broke it goes up
+               if (error != null) {
+                  error.addSuppressed(reset);
+               }
+               this._pool.invalidate(conn);
+               conn = null;
+            }
+         }
+         if (conn != null) {
+            giveBack(conn);
+         }
+      }
+   }//end executeQueryAndStream
+
+   /**
+    * Method to execute an input query SQL instruction (i.e. SELECT) and
+    * return each row as a typed record, e.g. FoodOrder.MAPPER or
+    * MenuItem.MAPPER, instead of a list of strings.
+    *
+    * @param query the input query string with ? placeholders
+    * @param mapper converts the current row into a record
+    * @param params the values bound to the placeholders, in order
+    * @return one record per row, in result order
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public <T> List<T> executeQueryForList (String query, RowMapper<T> mapper, Object... params) throws SQLException {
+      PooledConnection conn = acquire();
+      long start = System.nanoTime();
+      List<T> result = new ArrayList<T>();
+      boolean failed = true;
+      try {
+         PreparedStatement stmt = conn.prepare(query);
+         bind(stmt, params);
+         ResultSet rs = stmt.executeQuery();
+         try {
+            while (rs.next()) {
+               result.add(mapper.map(rs));
+            }
+         } finally {
+            rs.close();
+         }
+         failed = false;
+         return result;
+      } finally {
+         this._metrics.record(query, System.nanoTime() - start, result.size(), failed);
+         giveBack(conn);
+      }
+   }//end executeQueryForList
+
+   /**
+    * Like executeQueryForList, for queries that return at most one row.
+    *
+    * @param query the input query string with ? placeholders
+    * @param mapper converts the row into a record
+    * @param params the values bound to the placeholders, in order
+    * @return the record for the first row, or null if there were no rows
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public <T> T executeQueryForObject (String query, RowMapper<T> mapper, Object... params) throws SQLException {
+      PooledConnection conn = acquire();
+      long start = System.nanoTime();
+      T result = null;
+      boolean failed = true;
+      try {
+         PreparedStatement stmt = conn.prepare(query);
+         bind(stmt, params);
+         ResultSet rs = stmt.executeQuery();
+         try {
+            if (rs.next()) {
+               result = mapper.map(rs);
+            }
+         } finally {
+            rs.close();
+         }
+         failed = false;
+         return result;
+      } finally {
+         this._metrics.record(query, System.nanoTime() - start, result == null ? 0 : 1, failed);
+         giveBack(conn);
+      }
+   }//end executeQueryForObject
+
+   /*
+    * Copies every row of the result set into a list of string records.
+    */
+   private List<List<String>> collectResult (ResultSet rs) throws SQLException {
+      /*
+       ** obtains the metadata object for the returned result set.  The metadata
+       ** contains row and column info.
+       */
+      ResultSetMetaData rsmd = rs.getMetaData ();
+      int numCol = rsmd.getColumnCount ();
+
+      // iterates through the result set and saves the data returned by the query.
+      List<List<String>> result  = new ArrayList<List<String>>();
+      while (rs.next()){
+        List<String> record = new ArrayList<String>();
+		for (int i=1; i<=numCol; ++i)
+			record.add(rs.getString (i));
+        result.add(record);
+      }//end while
+      return result;
+   }//end collectResult
+
+   /**
+    * Method to execute an input query SQL instruction (i.e. SELECT).  This
+    * method issues the query to the DBMS and returns the number of results
+    *
+    * @param query the input query string
+    * @return the number of rows returned
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public int executeQuery (String query) throws SQLException {
+       return executeQuery (query, NO_PARAMS);
+   }//end executeQuery
+
+   /**
+    * Parameterized variant of executeQuery.
+    *
+    * @param query the input query string with ? placeholders
+    * @param params the values bound to the placeholders, in order
+    * @return the number of rows returned
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public int executeQuery (String query, Object... params) throws SQLException {
+       PooledConnection conn = acquire();
+       long start = System.nanoTime();
+       int rowCount = 0;
+       boolean failed = true;
+       try {
+          PreparedStatement stmt = conn.prepare(query);
+          bind(stmt, params);
+          ResultSet rs = stmt.executeQuery();
+          rowCount = countRows(rs);
+          rs.close();
+          failed = false;
+          return rowCount;
+       } finally {
+          this._metrics.record(query, System.nanoTime() - start, rowCount, failed);
+          giveBack(conn);
+       }
+   }//end executeQuery
+
+   /*
+    * Counts the rows of the result set.
+    */
+   private int countRows (ResultSet rs) throws SQLException {
+       int rowCount = 0;
+
+       // iterates through the result set and count nuber of results.
+       while (rs.next()){
+          rowCount++;
+       }//end while
+       return rowCount;
+   }//end countRows
+
+   /*
+    * Binds the parameters of a prepared statement in order.
+    */
+   private static void bind (PreparedStatement stmt, Object[] params) throws SQLException {
+      for (int i = 0; i < params.length; i++) {
+         stmt.setObject(i + 1, params[i]);
+      }
+   }//end bind
+
+   /**
+    * Starts a transaction on the calling thread.  Until commitTransaction
+    * or rollbackTransaction is called, every execute method invoked from
+    * this thread runs on the same connection with autocommit off.
+    *
+    * @throws java.sql.SQLException when a connection cannot be obtained
+    */
+   public void beginTransaction() throws SQLException {
+      if (this._transaction.get() != null) {
+         throw new SQLException("A transaction is already open on this thread");
+      }
+      PooledConnection conn = this._pool.borrow();
+      try {
+         conn.getConnection().setAutoCommit(false);
+      } catch (SQLException e) {
+         this._pool.invalidate(conn);
+         throw e;
+      }
+      this._transaction.set(conn);
+   }//end beginTransaction
+
+   /**
+    * Commits the transaction opened by beginTransaction on this thread
+    * and returns its connection to the pool.
+    *
+    * @throws java.sql.SQLException when the commit failed; the transaction is rolled back
+    */
+   public void commitTransaction() throws SQLException {
+      PooledConnection conn = endTransaction();
+      long start = System.nanoTime();
+      try {
+         conn.getConnection().commit();
+         conn.getConnection().setAutoCommit(true);
+      } catch (SQLException e) {
+         this._metrics.record("COMMIT", System.nanoTime() - start, 0, true);
+         this._pool.invalidate(conn);
+         throw e;
+      }
+      this._metrics.record("COMMIT", System.nanoTime() - start, 0, false);
+      this._pool.release(conn);
+   }//end commitTransaction
+
+   /**
+    * Rolls back the transaction opened by beginTransaction on this thread,
+    * if any, and returns its connection to the pool.
+    */
+   public void rollbackTransaction() {
+      PooledConnection conn = this._transaction.get();
+      if (conn == null) {
+         return;
+      }
+      this._transaction.remove();
+      try {
+         conn.getConnection().rollback();
+         conn.getConnection().setAutoCommit(true);
+         this._pool.release(conn);
+      } catch (SQLException e) {
+         this._pool.invalidate(conn);
+      }
+   }//end rollbackTransaction
+
+   private PooledConnection endTransaction() throws SQLException {
+      PooledConnection conn = this._transaction.get();
+      if (conn == null) {
+         throw new SQLException("No transaction is open on this thread");
+      }
+      this._transaction.remove();
+      return conn;
+   }
+
+   /*
+    * Returns the connection of the open transaction on this thread, or
+    * borrows one from the pool for a single statement.
+    */
+   private PooledConnection acquire() throws SQLException {
+      PooledConnection conn = this._transaction.get();
+      return conn != null ? conn : this._pool.borrow();
+   }
+
+   /*
+    * Counterpart of acquire: connections pinned to a transaction stay
+    * with the thread until it commits or rolls back.
+    */
+   private void giveBack(PooledConnection conn) {
+      if (conn != this._transaction.get()) {
+         this._pool.release(conn);
+      }
+   }
+
+   /**
+    * Method to fetch the last value from sequence. This
+    * method issues the query to the DBMS and returns the current
+    * value of sequence used for autogenerated keys.  currval is per
+    * session, so call this inside a transaction (see beginTransaction) to
+    * read the value produced by an earlier nextval on the same connection.
+    *
+    * @param sequence name of the DB sequence
+    * @return current value of a sequence
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public int getCurrSeqVal(String sequence) throws SQLException {
+	PooledConnection conn = acquire();
+	long start = System.nanoTime();
+	boolean failed = true;
+	try {
+		PreparedStatement stmt = conn.prepare ("Select currval(?::regclass)");
+		stmt.setString (1, sequence);
+
+		ResultSet rs = stmt.executeQuery ();
+		try {
+			failed = false;
+			if (rs.next())
+				return rs.getInt(1);
+			return -1;
+		} finally {
+			rs.close();
+		}
+	} finally {
+		this._metrics.record("Select currval(?::regclass)", System.nanoTime() - start, 1, failed);
+		giveBack(conn);
+	}
+   }
+
+   /**
+    * Method to close every pooled physical connection.
+    */
+   public void cleanup(){
+      if (this._pool != null){
+         this._pool.close ();
+      }//end if
+   }//end cleanup
+
+   /**
+    * The main execution method
+    *
+    * @param args the command line arguments this inclues the <mysql|pgsql> <login file>
+    */
+   public static void main (String[] args) {
+      if (args.length != 3) {
+         System.err.println (
+            "Usage: " +
+            "java [-classpath <classpath>] " +
+            PizzaStore.class.getName () +
+            " <dbname> <port> <user>");
+         return;
+      }//end if
+
+      Greeting();
+      PizzaStore esql = null;
+      try{
+         // use postgres JDBC driver.
+         Class.forName ("org.postgresql.Driver").newInstance ();
+         // instantiate the PizzaStore object and creates a physical
+         // connection.
+         String dbname = args[0];
+         String dbport = args[1];
+         String user = args[2];
+
+         // the same variable as every other tool; asked for when unset
+         String password = System.getenv(PASSWORD_VARIABLE);
+         if (password == null) {
+            System.out.print("Enter password: ");
+            password = in.readLine();
+         }
+
+         esql = new PizzaStore (dbname, dbport, user, password);
+         // the console is one client of the service; every screen below
+         // only reads input, calls it and prints the result.
+         PizzaService service = new PizzaService(esql);
+
+         boolean keepon = true;
+         while(keepon) {
+            // These are sample SQL statements
+            System.out.println("MAIN MENU");
+            System.out.println("---------");
+            System.out.println("1. Create user");
+            System.out.println("2. Log in");
+            System.out.println("0. < EXIT");
+            Session authorisedUser = null;
+            switch (readChoice()){
+               case 1: CreateUser(service); break;
+               case 2: authorisedUser = LogIn(service); break;
+               case 0: keepon = false; break;
+               default : System.out.println("Unrecognized choice!"); break;
+            }//end switch
+            if (authorisedUser != null) {
+              boolean usermenu = true;
+              while(usermenu) {
+                System.out.println("MAIN MENU");
+                System.out.println("---------");
+                System.out.println("1. View Profile");
+                System.out.println("2. Update Profile");
+                System.out.println("3. View Menu");
+                System.out.println("4. Place Order"); //make sure user specifies which store
+                System.out.println("5. View Full Order ID History");
+                System.out.println("6. View Past 5 Order IDs");
+                System.out.println("7. View Order Information"); //user should specify orderID and then be able to see detailed information about the order
+                System.out.println("8. View Stores"); 
+
+                //**the following functionalities should only be able to be used by drivers & managers**
+                System.out.println("9. Update Order Status");
+
+                //**the following functionalities should ony be able to be used by managers**
+                System.out.println("10. Update Menu");
+                System.out.println("11. Update User");
+                System.out.println("12. View Sales Reports");
+
+                System.out.println("13. Reorder Favorites or Last Order");
+
+                System.out.println(".........................");
+                System.out.println("0. Log out");
+                switch (readChoice()){
+                   case 1: viewProfile(service, authorisedUser); break;
+                   case 2: updateProfile(service, authorisedUser); break;
+                   case 3: viewMenu(service); break;
+                   case 4: placeOrder(service, authorisedUser); break;
+                   case 5: viewAllOrders(service, authorisedUser); break;
+                   case 6: viewRecentOrders(service, authorisedUser); break;
+                   case 7: viewOrderInfo(service, authorisedUser); break;
+                   case 8: viewStores(service); break;
+                   case 9: updateOrderStatus(service, authorisedUser); break;
+                   case 10: updateMenu(service, authorisedUser); break;
+                   case 11: updateUser(service, authorisedUser); break;
+                   case 12: viewSalesReports(service, authorisedUser); break;
+                   case 13: reorder(service, authorisedUser); break;
+
+
+
+                   case 0: usermenu = false; service.logOut(authorisedUser); break;
+                   default : System.out.println("Unrecognized choice!"); break;
+                }
+              }
+            }
+         }//end while
+      }catch(Exception e) {
+         System.err.println (e.getMessage ());
+         e.printStackTrace();
+      }finally{
+         // make sure to cleanup the created table and close the connection.
+         try{
+            if(esql != null) {
+               System.out.println("Connection pool: " + esql.getPool().getStats());
+               System.out.print("Disconnecting from database...");
+               esql.cleanup ();
+               System.out.println("Done\n\nBye !");
+            }//end if
+         }catch (Exception e) {
+            // ignored.
+         }//end try
+      }//end try
+   }//end main
+
+   public static void Greeting(){
+      System.out.println(
+         "\n\n*******************************************************\n" +
+         "              User Interface      	               \n" +
+         "*******************************************************\n");
+   }//end Greeting
+
+   /*
+    * Reads the users choice given from the keyboard
+    * @int
+    **/
+   public static int readChoice() {
+      int input;
+      // returns only if a correct value is given.
+      do {
+         System.out.print("Please make your choice: ");
+         try { // read the integer, parse it and break.
+            input = Integer.parseInt(in.readLine());
+            break;
+         }catch (Exception e) {
+            System.out.println("Your input is invalid!");
+            continue;
+         }//end try
+      }while (true);
+      return input;
+   }//end readChoice
+
+   /*
+    * Creates a new user
+    **/
+   public static void CreateUser(PizzaService service){
+
+      try {
+
+         System.out.print("Create Username: ");
+         String login = in.readLine();
+         System.out.print("Create Password: ");
+         String password = in.readLine();
+         System.out.print("Enter your phone number: ");
+         String phone = in.readLine();
+
+         service.createUser(new NewUser(login, password, phone));
+         System.out.println("User created successfully!");
+      
+      } catch(Exception e) {
+
+         System.err.println(e.getMessage());
+      }
+   }//end CreateUser
+
+
+   /*
+    * Check log in credentials for an existing user
+    * @return the session of the signed-in user, or null if the credentials do not match
+    **/
+   public static Session LogIn(PizzaService service){
+      
+      try {
+
+         System.out.print("Enter your username: ");
+         String username = in.readLine();
+         System.out.print("Enter your password: ");
+         String password = in.readLine();
+
+         Session session = service.logIn(username, password);
+         System.out.println("Login Successful! Welcome " + username);
+         return session;
+      }
+
+      catch(ServiceException e) {
+
+         System.out.println(e.getMessage());
+      }
+
+      catch(Exception e) {
+
+         System.err.println(e.getMessage());
+
+      }
+
+      return null;
+      
+   }//end
+
+// Rest of the functions definition go in here
+
+   public static void viewProfile(PizzaService service, Session session) {
+      
+      try {
+         printProfile(service, service.profile(session));
+      }
+
+      catch (Exception e) {
+         
+         System.err.println(e.getMessage());
+      }
+   }//end viewProfile
+
+   public static void updateProfile(PizzaService service, Session session) {
+
+      try {
+         System.out.println ("Update Profile Menu");
+         System.out.println ("1. Change Password");
+         System.out.println ("2. Change Phone Number");
+         System.out.println ("3. Change Favorite Item");
+         System.out.println ("4. Exit");
+
+         int choice = readChoice();
+
+         switch(choice) {
+
+            case 1: 
+
+               System.out.println ("Enter your new password: ");
+               String newPassword = in.readLine();
+
+               UserProfile profile = service.updateProfile(session, ProfileUpdate.password(newPassword));
+
+               System.out.println ("Password changed successsfully!");
+               printProfile(service, profile);
+
+               break;
+
+            case 2: 
+
+               System.out.println ("Enter your new phone number ");
+               String newPhone = in.readLine();
+
+               UserProfile profile2 = service.updateProfile(session, ProfileUpdate.phoneNum(newPhone));
+
+               System.out.println ("Phone number changed successsfully!");
+               printProfile(service, profile2);
+
+               break;
+
+            case 3:
+
+               System.out.println ("Enter your new favorite items (separate by comma, or leave empty to clear): ");
+               String newFavorite = in.readLine();
+               List<String> favorites = new ArrayList<String>();
+               for (String name : newFavorite.split(",")) {
+                  if (!name.trim().isEmpty()) {
+                     favorites.add(name.trim());
+                  }
+               }
+
+               UserProfile profile3 = service.updateProfile(session, ProfileUpdate.favoriteItems(favorites));
+
+               System.out.println ("Favorite Items changed successsfully!");
+               printProfile(service, profile3);
+
+               break;
+
+            case 4:
+
+               System.out.println ("Returning to main menu...");
+
+               break;
+
+            default:
+
+               System.out.println ("Invalid choice! Please choose agian");
+
+         }
+      }
+
+      catch (Exception e) {
+         
+         System.err.println(e.getMessage());
+      }
+
+   }//end updateProfile
+
+   /*
+    * Prints a profile in the layout of SELECT * FROM Users, without the
+    * password and with the favorites joined in.
+    */
+   private static void printProfile(PizzaService service, UserProfile profile) {
+      List<List<String>> rows = new ArrayList<List<String>>();
+      rows.add(Arrays.asList(profile.login(), profile.role(), String.join(", ", profile.favoriteItems()),
+                             profile.phoneNum()));
+      service.getStore().printTable(Arrays.asList("login", "role", "favoriteitems", "phonenum"), rows);
+   }//end printProfile
+
+   public static void updateUser(PizzaService service, Session session) {
+
+      try {
+
+         if (!session.isManager()) {
+
+            System.out.println("\nSorry, you are not authorized to update user login or role.\n");
+
+            return;
+         }
+
+         System.out.println ("Manager Update Profile");
+         System.out.println ("1. Update user login");
+         System.out.println ("2. Update user role");
+         System.out.println ("3. Exit");
+
+         int choice = readChoice();
+
+         switch(choice) {
+
+            case 1: 
+
+               System.out.println("Enter the current login of the user to update: ");
+               String currentLogin = in.readLine();
+
+               System.out.println("Enter the new login: ");
+               String newLogin = in.readLine();
+
+               service.renameUser(session, currentLogin, newLogin);
+
+               System.out.println("User login updated successfully from '" + currentLogin + "' to '" + newLogin + "'");
+
+               break;
+
+            case 2:
+
+               System.out.println("Enter the current login of the user to update the role: ");
+               String login = in.readLine();
+
+               System.out.println("Enter the new role: ");
+               String newRole = in.readLine();
+
+               service.changeRole(session, login, newRole);
+
+               System.out.println("User role updated successfully to '" + newRole + "'");
+
+               break;
+
+            case 3:
+               
+               System.out.println ("Returning to main menu...");
+
+               break;
+
+            default:
+
+               System.out.println ("Invalid choice! Please choose agian");
+         }
+      }
+
+      catch (Exception e) {
+         
+         System.err.println(e.getMessage());
+      }
+   }//end updateUser
+
+   public static void viewMenu(PizzaService service) {
+
+      try {
+
+         System.out.println ("View Menu");
+         System.out.println ("1. View all items");
+         System.out.println ("2. Filter items by type");
+         System.out.println ("3. Filter items by price");
+         System.out.println ("4. Sort items by price (lowest to highest)");
+         System.out.println ("5. Sort items by price (highest to lowest)");
+         System.out.println ("6. Exit");
+
+         int choice = readChoice();
+
+         switch(choice) {
+
+            case 1:
+
+               printItems(service, service.menu().all());
+
+               break;
+
+            case 2:
+               System.out.println ("Choose Item type");
+               System.out.println ("1. Entrees");
+               System.out.println ("2. Drinks");
+               System.out.println ("3. Sides");
+
+               int typeChoice = readChoice();
+
+               switch(typeChoice) {
+
+                  case 1:
+
+                     printItems(service, service.menu().ofType("entree"));
+
+                     break;
+
+                  case 2:
+
+                     printItems(service, service.menu().ofType("drinks"));
+
+                     break;
+
+                  case 3:
+
+                     printItems(service, service.menu().ofType("sides"));
+
+                     break;
+               }
+
+               break;
+            
+            case 3: 
+
+               System.out.println ("Enter the maximum price: ");
+
+               long maxCents = new BigDecimal(in.readLine().trim()).movePointRight(2)
+                                                                  .setScale(0, RoundingMode.FLOOR).longValueExact();
+
+               printItems(service, service.menu().atMost(maxCents));
+
+               break;
+
+            case 4: 
+
+               printItems(service, service.menu().sortedByPrice(true));
+
+               break;
+
+            case 5: 
+
+               printItems(service, service.menu().sortedByPrice(false));
+
+               break;
+
+            case 6: 
+
+               System.out.println ("Returning to main menu ...");
+
+               break;
+
+            default:
+
+               System.out.println ("Invalid choice! Please choose agian");
+               
+         }
+
+      }
+
+      catch (Exception e) {
+         
+         System.err.println(e.getMessage());
+      }
+   }//end viewMenu
+
+   /*
+    * Prints menu items in the same layout as SELECT * FROM Items.
+    */
+   private static void printItems(PizzaService service, List<MenuItem> items) {
+      List<List<String>> rows = new ArrayList<List<String>>(items.size());
+      for (MenuItem item : items) {
+         rows.add(item.toRow());
+      }
+      service.getStore().printTable(MenuItem.COLUMNS, rows);
+   }//end printItems
+
+   public static void viewAllOrders(PizzaService service, Session session) {
+    try {
+         // customers page through their own orders; staff may narrow them down first
+         OrderHistoryPager.Filter filter = session.isStaff()
+            ? readOrderFilter()
+            : new OrderHistoryPager.Filter(null, null, null, null, null);
+         OrderHistoryPager pager = service.orderHistory(session, filter, OrderHistoryPager.DEFAULT_PAGE_SIZE);
+         browseOrders(service, pager, session.isStaff() ? "No orders match." : "You have no previous orders.");
+    } catch (Exception e) {
+        System.err.println(e.getMessage());
+    }
+   }//end viewAllOrders
+
+   /*
+    * Asks staff how to narrow the order history; Enter skips a field.
+    */
+   private static OrderHistoryPager.Filter readOrderFilter() throws IOException {
+      System.out.print("\tStore ID (Enter for all stores): ");
+      String store = in.readLine().trim();
+      System.out.print("\tOrder status (Enter for any status): ");
+      String status = in.readLine().trim().toLowerCase();
+      System.out.print("\tFrom date yyyy-mm-dd (Enter for no start): ");
+      String from = in.readLine().trim();
+      System.out.print("\tTo date yyyy-mm-dd, inclusive (Enter for no end): ");
+      String to = in.readLine().trim();
+
+      return new OrderHistoryPager.Filter(null,
+         store.isEmpty() ? null : Integer.valueOf(store),
+         status.isEmpty() ? null : status,
+         from.isEmpty() ? null : Timestamp.valueOf(LocalDate.parse(from).atStartOfDay()),
+         to.isEmpty() ? null : Timestamp.valueOf(LocalDate.parse(to).plusDays(1).atStartOfDay()));
+   }//end readOrderFilter
+
+   /*
+    * Shows the pager's orders one page at a time, newest first.
+    */
+   private static void browseOrders(PizzaService service, OrderHistoryPager pager, String emptyMessage) throws Exception {
+      OrderColumns page = pager.first();
+      if (page.isEmpty()) {
+         System.out.println(emptyMessage);
+         return;
+      }
+      while (true) {
+         System.out.println("Order History:");
+         System.out.println("--------------------------------------------------");
+         // the whole page's lines in one query
+         for (OrderDetail detail : service.orderDetails(page)) {
+            printOrder(detail);
+         }
+         if (!pager.hasNext() && !pager.hasPrevious()) {
+            return;
+         }
+         String options = (pager.hasNext() ? "n = next page, " : "")
+                        + (pager.hasPrevious() ? "p = previous page, " : "") + "Enter = done: ";
+         System.out.print(options);
+         String choice = in.readLine();
+         if (choice == null) {
+            return;
+         }
+         choice = choice.trim().toLowerCase();
+         if (choice.equals("n") && pager.hasNext()) {
+            page = pager.next();
+         } else if (choice.equals("p") && pager.hasPrevious()) {
+            page = pager.previous();
+         } else if (choice.isEmpty() || choice.equals("q")) {
+            return;
+         }
+      }
+   }//end browseOrders
+
+   /*
+    * Prints one order in the layout shared by the order screens.
+    */
+   private static void printOrder(OrderDetail detail) {
+      FoodOrder order = detail.order();
+      System.out.println("Order ID: " + order.orderId());
+      System.out.println("User: " + order.login());
+      System.out.println("Store ID: " + order.storeId());  
+      System.out.println("Items:");
+      for (OrderLine line : detail.lines()) {
+         MenuItem item = detail.item(line.itemName());
+         String type = item == null ? "" : " (" + item.normalizedType() + ")";
+         System.out.println("  " + line.quantity() + " x " + line.itemName() + type
+                            + (line.hasUnitPrice() ? " @ $" + Money.format(line.unitPriceCents())
+                                                     + " = $" + Money.format(line.totalCents()) : ""));
+      }
+      System.out.println("Total Price: $" + Money.format(order.totalCents()));  
+      System.out.println("Order Date and Time: " + order.formattedTimestamp());
+      System.out.println("Order Status: " + order.status());
+      System.out.println("--------------------------------------------------");
+   }//end printOrder
+
+   public static void placeOrder(PizzaService service, Session session) {
+    try {
+        System.out.println("Enter the store ID where you want to place your order: ");
+        int storeID = Integer.parseInt(in.readLine());
+
+        List<OrderRequest.Line> lines = new ArrayList<OrderRequest.Line>();
+
+        while (true) {
+            System.out.println("Enter item name or hit enter to finish: ");
+            String itemName = in.readLine().trim();
+            if (itemName.equalsIgnoreCase("done") || itemName.equalsIgnoreCase("")) break;
+
+            if (service.menu().find(itemName) == null) {
+                System.out.println("Item not found! Please enter a valid item name.");
+                continue;
+            }
+
+            System.out.println("Enter quantity: ");
+            int quantity = Integer.parseInt(in.readLine());
+            lines.add(new OrderRequest.Line(itemName, quantity));
+        }
+
+        if (lines.isEmpty()) {
+            System.out.println("No items were added to the order. Cancelling order.");
+            return;
+        }
+
+        printReceipt(service.placeOrder(session, new OrderRequest(storeID, lines)));
+
+    } catch (Exception e) {
+        System.err.println("Error placing order: " + e.getMessage());
+    }
+   }//end placeOrder
+
+   /*
+    * Places an order of the user's favorites, or a repeat of their last
+    * order, in one step.
+    */
+   public static void reorder(PizzaService service, Session session) {
+      try {
+         System.out.println("1. Order one of each of my favorite items");
+         System.out.println("2. Repeat my last order");
+         int choice = readChoice();
+         if (choice != 1 && choice != 2) {
+            System.out.println("Invalid choice! Cancelling order.");
+            return;
+         }
+         System.out.println("Enter the store ID, or hit enter for the store of your last order: ");
+         String store = in.readLine().trim();
+         Integer storeId = store.isEmpty() ? null : Integer.valueOf(store);
+
+         printReceipt(choice == 1 ? service.placeFavorites(session, storeId)
+                                  : service.repeatLastOrder(session, storeId));
+      } catch (Exception e) {
+         System.err.println("Error placing order: " + e.getMessage());
+      }
+   }//end reorder
+
+   private static void printReceipt(OrderReceipt receipt) {
+      System.out.println("Order placed successfully! Order ID: " + receipt.orderId() + " at store " + receipt.storeId());
+      for (OrderLine line : receipt.lines()) {
+         System.out.println("  " + line.quantity() + " x " + line.itemName() + " @ $" + Money.format(line.unitPriceCents())
+                            + " = $" + Money.format(line.totalCents()));
+      }
+      System.out.println("Total Price: $" + Money.format(receipt.totalCents()));
+   }//end printReceipt
+
+   public static void viewRecentOrders(PizzaService service, Session session) {
+      try {
+         Integer storeId = null;
+         if (session.isStaff()) {
+           System.out.print("\tStore ID (Enter for all stores): ");
+           String store = in.readLine().trim();
+           storeId = store.isEmpty() ? null : Integer.valueOf(store);
+         }
+
+        OrderColumns orders = service.recentOrders(session, storeId, RECENT_ORDERS);
+        if (orders.isEmpty()) {
+            System.out.println("You have no previous orders.");
+            return;
+        }
+        System.out.println("Order History:");
+        for (OrderDetail detail : service.orderDetails(orders)) {
+            printOrder(detail);
+        }
+      } catch (Exception e) {
+        System.err.println(e.getMessage());
+      }
+   }//end viewRecentOrder
+   
+   public static void viewOrderInfo(PizzaService service, Session session) {
+      try {
+         System.out.println("Enter the ID of the order you'd like to view: "); 
+         int orderNum = Integer.parseInt(in.readLine());
+
+         printOrder(service.orderDetail(session, orderNum));
+      } catch (ServiceException e) {
+         System.out.println("\n" + e.getMessage() + "\n");
+      } catch (Exception e) {
+         System.err.println("Error: " + e.getMessage());
+      }
+      
+   }//end viewOrderInfo
+
+   public static void updateOrderStatus(PizzaService service, Session session) {
+      try {
+         if (!session.isStaff()) {
+            System.out.println("\nSorry, you are not authorized to update the status of an order.\n");
+            return;
+         }
+         System.out.println("Enter the ID of the order you'd like to update, or several IDs separated by commas: ");
+         List<Integer> orderNums = new ArrayList<Integer>();
+         for (String id : in.readLine().split(",")) {
+            if (!id.trim().isEmpty()) {
+               orderNums.add(Integer.parseInt(id.trim()));
+            }
+         }
+         if (orderNums.isEmpty()) {
+            System.out.println("Update cancelled.");
+            return;
+         }
+
+         String currentStatus = null;
+         if (orderNums.size() == 1) {
+            FoodOrder order = service.order(session, orderNums.get(0));
+            currentStatus = order.status();
+            System.out.println("Current Order Status: " + currentStatus);
+         }
+
+         String newStatus;
+        while (true) {
+            System.out.print("Enter the new status (complete, incomplete) or press Enter to exit: ");
+            newStatus = in.readLine().trim().toLowerCase();
+
+            if (newStatus.isEmpty()) {
+                System.out.println("Update cancelled.");
+                return;
+            } else if (PizzaService.ORDER_STATUSES.contains(newStatus)) {
+                break; // Valid input, exit loop
+            } else {
+                System.out.println("Invalid status. Please enter 'complete' or 'incomplete'.");
+            }
+        }
+         if (orderNums.size() == 1) {
+            // only if nobody changed it since it was shown
+            service.updateOrderStatus(session, orderNums.get(0), currentStatus, newStatus);
+            System.out.println("Order ID " + orderNums.get(0) + " status updated successfully to: " + newStatus);
+            return;
+         }
+         int updated = 0;
+         for (StatusChange change : service.updateOrderStatuses(session, orderNums, null, newStatus)) {
+            switch (change.outcome()) {
+               case UPDATED:
+                  updated++;
+                  System.out.println("Order ID " + change.orderId() + ": " + change.previousStatus() + " -> " + newStatus);
+                  break;
+               case UNCHANGED:
+                  System.out.println("Order ID " + change.orderId() + ": already " + newStatus);
+                  break;
+               case NOT_FOUND:
+                  System.out.println("Order ID " + change.orderId() + " not found.");
+                  break;
+               default:
+                  System.out.println("Order ID " + change.orderId() + ": not updated, status is " + change.previousStatus());
+                  break;
+            }
+         }
+         System.out.println(updated + " order(s) updated to: " + newStatus);
+      } catch (ServiceException e) {
+         System.out.println(e.getMessage());
+      } catch (Exception e) {
+         System.err.println(e.getMessage());
+      }
+   }
+
+   public static void viewStores(PizzaService service) {
+    try {
+        StoreDirectory.Filter filter = readStoreFilter();
+        StoreDirectory.Snapshot stores = service.stores();
+        int offset = 0;
+        while (true) {
+            StoreDirectory.Page page = stores.find(filter, offset, OrderHistoryPager.DEFAULT_PAGE_SIZE);
+            if (page.total() == 0) {
+                System.out.println("No stores available.");
+                return;
+            }
+
+            // Display store details
+            System.out.println("\nAvailable Stores (" + (page.offset() + 1) + "-" + (page.offset() + page.stores().size())
+                               + " of " + page.total() + "):");
+            System.out.println("--------------------------------------------------");
+            for (Store store : page.stores()) {
+                System.out.println("Store ID: " + store.storeId());
+                System.out.println("Address: " + store.address() + ", " + store.city() + ", " + store.state());
+                System.out.println("Open Status: " + store.isOpen());
+                System.out.println("Review Score: " + (store.hasReviews() ? BigDecimal.valueOf(store.reviewScore()).stripTrailingZeros().toPlainString() : "No reviews yet"));
+                System.out.println("--------------------------------------------------");
+            }
+            if (!page.hasNext() && page.offset() == 0) {
+                return;
+            }
+            String options = (page.hasNext() ? "n = next page, " : "")
+                           + (page.offset() > 0 ? "p = previous page, " : "") + "Enter = done: ";
+            System.out.print(options);
+            String choice = in.readLine();
+            if (choice == null) {
+                return;
+            }
+            choice = choice.trim().toLowerCase();
+            if (choice.equals("n") && page.hasNext()) {
+                offset = page.offset() + page.stores().size();
+            } else if (choice.equals("p") && page.offset() > 0) {
+                offset = Math.max(page.offset() - OrderHistoryPager.DEFAULT_PAGE_SIZE, 0);
+            } else {
+                return;
+            }
+        }
+    } catch (Exception e) {
+        System.err.println("Error: " + e.getMessage());
+    }
+   }//end viewStores
+
+   /*
+    * Asks how to narrow the store list; Enter skips a field.
+    */
+   private static StoreDirectory.Filter readStoreFilter() throws IOException {
+      System.out.print("\tCity (Enter for any city): ");
+      String city = in.readLine().trim();
+      System.out.print("\tState (Enter for any state): ");
+      String state = in.readLine().trim();
+      System.out.print("\tOpen stores only? (y/N): ");
+      String open = in.readLine().trim().toLowerCase();
+      System.out.print("\tMinimum review score (Enter for any): ");
+      String score = in.readLine().trim();
+
+      return new StoreDirectory.Filter(
+         city.isEmpty() ? null : city,
+         state.isEmpty() ? null : state,
+         open.startsWith("y") ? Boolean.TRUE : null,
+         score.isEmpty() ? null : Double.valueOf(score));
+   }//end readStoreFilter
+   
+   public static void updateMenu(PizzaService service, Session session) {
+
+      try {
+
+         if (!session.isManager()) {
+
+            System.out.println("\nSorry, you are not authorized to update the menu.\n");
+
+            return;
+         }
+
+         System.out.println ("1. Insert new item");
+         System.out.println ("2. Update existing item");
+
+         int input = readChoice();
+
+         switch(input) {
+
+            case 1:
+
+               System.out.println ("Enter item name: ");
+               String name = in.readLine();
+
+               System.out.println ("Enter item ingredients: ");
+               String ingredients = in.readLine();
+
+               System.out.println ("Enter item type: ");
+               String type = in.readLine();
+
+               System.out.println ("Enter item price: ");
+               String price = in.readLine();
+
+               System.out.println ("Enter item description: ");
+               String descr = in.readLine();
+
+               service.addMenuItem(session, new MenuItem(name, ingredients, type, Money.toCents(price.trim()), descr));
+               System.out.println("Item created successfully!");
+
+               break;
+
+            case 2:
+
+               System.out.println ("Enter the item name to update: ");
+
+               String itemName = in.readLine();
+
+               printItems(service, Arrays.asList(service.menuItem(itemName)));
+
+               System.out.println ("Choose item information to update");
+               System.out.println ("1. Item Name");
+               System.out.println ("2. Ingredients");
+               System.out.println ("3. Item Type");
+               System.out.println ("4. Price");
+               System.out.println ("5. Description");
+               System.out.println ("6. Exit");
+         
+               int choice = readChoice();
+
+               MenuItemUpdate update;
+               String field;
+               String value;
+
+               switch(choice) {
+
+                  case 1: 
+
+                     System.out.println ("Enter new item name");
+                     value = in.readLine();
+                     update = new MenuItemUpdate(value, null, null, null, null);
+                     field = "name";
+
+                     break;
+
+                  case 2: 
+
+                     System.out.println ("Enter new ingredients");
+                     value = in.readLine();
+                     update = new MenuItemUpdate(null, value, null, null, null);
+                     field = "ingredients";
+
+                     break;
+
+                  case 3: 
+
+                     System.out.println ("Enter new item type");
+                     value = in.readLine();
+                     update = new MenuItemUpdate(null, null, value, null, null);
+                     field = "type";
+
+                     break;
+
+                  case 4: 
+
+                     System.out.println ("Enter new price");
+                     value = in.readLine();
+                     update = new MenuItemUpdate(null, null, null, Money.toCents(value.trim()), null);
+                     field = "price";
+
+                     break;
+
+                  case 5: 
+
+                     System.out.println ("Enter new description");
+                     value = in.readLine();
+                     update = new MenuItemUpdate(null, null, null, null, value);
+                     field = "description";
+
+                     break;
+
+                  case 6: 
+
+                     System.out.println ("Returning to main menu...");
+
+                     return;
+
+                  default:
+
+                     System.out.println ("Invalid choice! Please choose agian");
+
+                     return;
+                  }
+
+               MenuItem updated = service.updateMenuItem(session, itemName, update);
+               System.out.println ("Item " + field + " successfully updated to '" + value + "'");
+               printItems(service, Arrays.asList(updated));
+               long favoredBy = service.favoriteCount(session, updated.name());
+               if (favoredBy > 0) {
+                  System.out.println (favoredBy + " customer(s) have '" + updated.name() + "' among their favorites.");
+               }
+
+               break;
+            }
+         }
+
+      catch (Exception e) {
+         System.err.println(e.getMessage());
+      }
+   }//end updateMenu
+
+   public static void viewSalesReports(PizzaService service, Session session) {
+      try {
+         if (!session.isManager()) {
+            System.out.println("\nSorry, you are not authorized to view sales reports.\n");
+            return;
+         }
+         System.out.println("1. Sales by store");
+         System.out.println("2. Sales by item");
+         System.out.println("3. Sales by hour of day");
+         int choice = readChoice();
+         if (choice < 1 || choice > 3) {
+            System.out.println("Unrecognized choice!");
+            return;
+         }
+
+         // the rollups are kept per month for stores and items, per hour otherwise
+         List<SalesTotals> totals;
+         String keyColumn;
+         if (choice == 3) {
+            System.out.print("\tFrom date yyyy-mm-dd (Enter for no start): ");
+            String from = in.readLine().trim();
+            System.out.print("\tTo date yyyy-mm-dd, inclusive (Enter for no end): ");
+            String to = in.readLine().trim();
+            totals = service.salesByHour(session, from.isEmpty() ? null : LocalDate.parse(from),
+                                         to.isEmpty() ? null : LocalDate.parse(to));
+            keyColumn = "Hour";
+         } else {
+            System.out.print("\tFrom month yyyy-mm (Enter for no start): ");
+            String from = in.readLine().trim();
+            System.out.print("\tTo month yyyy-mm, inclusive (Enter for no end): ");
+            String to = in.readLine().trim();
+            YearMonth first = from.isEmpty() ? null : YearMonth.parse(from);
+            YearMonth last = to.isEmpty() ? null : YearMonth.parse(to);
+            if (choice == 1) {
+               totals = service.salesByStore(session, first, last, SALES_REPORT_STORES);
+               keyColumn = "Store ID";
+            } else {
+               totals = service.salesByItem(session, first, last);
+               keyColumn = "Item";
+            }
+         }
+         if (totals.isEmpty()) {
+            System.out.println("No sales in that period.");
+            return;
+         }
+         if (choice == 1) {
+            System.out.println("Top " + totals.size() + " stores by revenue:");
+         }
+
+         List<List<String>> rows = new ArrayList<List<String>>(totals.size());
+         for (SalesTotals line : totals) {
+            List<String> row = new ArrayList<String>();
+            row.add(line.key());
+            row.add(Long.toString(line.orders()));
+            if (choice == 2) {
+               row.add(Long.toString(line.quantity()));
+            }
+            row.add("$" + Money.format(line.revenueCents()));
+            row.add(Long.toString(line.completedOrders()));
+            row.add("$" + Money.format(line.completedRevenueCents()));
+            rows.add(row);
+         }
+         List<String> columns = choice == 2
+            ? Arrays.asList(keyColumn, "Orders", "Quantity", "Revenue", "Completed", "Completed Revenue")
+            : Arrays.asList(keyColumn, "Orders", "Revenue", "Completed", "Completed Revenue");
+         service.getStore().printTable(columns, rows);
+      } catch (ServiceException e) {
+         System.out.println("\n" + e.getMessage() + "\n");
+      } catch (Exception e) {
+         System.err.println("Error: " + e.getMessage());
+      }
+   }//end viewSalesReports
+
+}
+
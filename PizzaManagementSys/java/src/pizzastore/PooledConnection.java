@@ -0,0 +1,126 @@
+package pizzastore;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A physical database connection owned by a ConnectionPool.  The pool
+ * hands these out to callers and takes them back when they are done;
+ * callers should never close the underlying connection themselves.
+ *
+ * Each connection keeps an LRU cache of the PreparedStatements issued on
+ * it, keyed by SQL text, so identical query shapes are parsed once per
+ * connection and, after the driver's prepareThreshold executions, planned
+ * once on the server as a named statement.
+ */
+public class PooledConnection {
+
+   // reference to physical database connection.
+   private final Connection _connection;
+
+   // last time (System.nanoTime) the connection was returned to the pool.
+   private long _lastUsed;
+
+   // prepared statements on this connection, least recently used first.
+   private final Map<String, PreparedStatement> _statements;
+
+   // cache hit/miss counters shared with the owning pool.
+   private final LongAdder _cacheHits;
+   private final LongAdder _cacheMisses;
+
+   PooledConnection(Connection connection, int statementCacheSize, LongAdder cacheHits, LongAdder cacheMisses) {
+      this._connection = connection;
+      this._cacheHits = cacheHits;
+      this._cacheMisses = cacheMisses;
+      this._lastUsed = System.nanoTime();
+      this._statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+         @Override
+         protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+            if (size() <= statementCacheSize) {
+               return false;
+            }
+            closeQuietly(eldest.getValue());
+            return true;
+         }
+      };
+   }//end PooledConnection
+
+   /**
+    * @return the underlying physical connection
+    */
+   public Connection getConnection() {
+      return this._connection;
+   }
+
+   /**
+    * Returns the cached PreparedStatement for the given SQL text, preparing
+    * it on first use.  The statement stays owned by the cache: callers
+    * close their ResultSets but must not close the statement.
+    *
+    * @param sql the parameterized SQL text
+    * @return a prepared statement with its parameters cleared
+    * @throws java.sql.SQLException when the statement cannot be prepared
+    */
+   public PreparedStatement prepare(String sql) throws SQLException {
+      PreparedStatement stmt = this._statements.get(sql);
+      if (stmt != null && !stmt.isClosed()) {
+         this._cacheHits.increment();
+         stmt.clearParameters();
+         return stmt;
+      }
+      this._cacheMisses.increment();
+      stmt = this._connection.prepareStatement(sql);
+      this._statements.put(sql, stmt);
+      return stmt;
+   }//end prepare
+
+   long getLastUsed() {
+      return this._lastUsed;
+   }
+
+   void touch() {
+      this._lastUsed = System.nanoTime();
+   }
+
+   /**
+    * Checks that the server still answers on this connection.
+    *
+    * @param timeoutSeconds how long to wait for the server to answer
+    * @return true if the connection can still be used
+    */
+   boolean isValid(int timeoutSeconds) {
+      try {
+         return !this._connection.isClosed() && this._connection.isValid(timeoutSeconds);
+      }catch (SQLException e){
+         return false;
+      }//end try
+   }
+
+   /**
+    * Closes the cached statements and the physical connection, ignoring
+    * any error.
+    */
+   void close() {
+      for (PreparedStatement stmt : this._statements.values()) {
+         closeQuietly(stmt);
+      }
+      this._statements.clear();
+      try{
+         this._connection.close();
+      }catch (SQLException e){
+         // ignored.
+      }//end try
+   }//end close
+
+   private static void closeQuietly(PreparedStatement stmt) {
+      try{
+         stmt.close();
+      }catch (SQLException e){
+         // ignored.
+      }//end try
+   }
+}//end PooledConnection
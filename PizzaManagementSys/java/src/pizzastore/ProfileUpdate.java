@@ -0,0 +1,31 @@
+package pizzastore;
+
+import java.util.List;
+
+/**
+ * Changes a user makes to their own profile.  Null fields are left as
+ * they are.
+ *
+ * @param password the new password
+ * @param phoneNum the new phone number
+ * @param favoriteItems the menu items that replace the user's favorites;
+ *        empty to clear them
+ */
+public record ProfileUpdate(String password, String phoneNum, List<String> favoriteItems) {
+
+   public ProfileUpdate {
+      favoriteItems = favoriteItems == null ? null : List.copyOf(favoriteItems);
+   }
+
+   public static ProfileUpdate password(String password) {
+      return new ProfileUpdate(password, null, null);
+   }
+
+   public static ProfileUpdate phoneNum(String phoneNum) {
+      return new ProfileUpdate(null, phoneNum, null);
+   }
+
+   public static ProfileUpdate favoriteItems(List<String> favoriteItems) {
+      return new ProfileUpdate(null, null, favoriteItems);
+   }
+}//end ProfileUpdate
@@ -0,0 +1,316 @@
+package pizzastore;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Timing, row and error counts for every statement PizzaStore runs,
+ * grouped by query shape: the SQL with whitespace collapsed and literal
+ * values (and IN lists of them) replaced by ?, so the same query with
+ * different values counts once.  Statements slower than the slow-query
+ * threshold are written to standard error, as their shape only, since
+ * bound values may hold passwords.
+ *
+ * The numbers can be read three ways: shapes() for code, dump() as a
+ * text table (served by PizzaServer at GET /metrics), and over JMX once
+ * registerMBeans() has been called, as one pizzastore:type=QueryMetrics
+ * bean with the dump, reset and threshold, and one
+ * pizzastore:type=Query,name=... bean per shape.
+ *
+ * Recording costs a map lookup on the SQL text plus a histogram update;
+ * each SQL text is normalized only the first time it is seen.
+ */
+public class QueryMetrics implements QueryMetricsMXBean {
+
+   // statements slower than this are logged; -Dpizzastore.slowQueryMillis, negative disables
+   static final long SLOW_QUERY_MILLIS = Long.getLong("pizzastore.slowQueryMillis", 500L);
+
+   // distinct shapes tracked before the rest are counted together; -Dpizzastore.metrics.maxShapes
+   static final int MAX_SHAPES = Integer.getInteger("pizzastore.metrics.maxShapes", 500);
+
+   // the shape used for statements beyond MAX_SHAPES.
+   static final String OTHER = "(other)";
+
+   private static final Pattern IN_LIST = Pattern.compile("\\(\\s*\\?(\\s*,\\s*\\?)+\\s*\\)");
+
+   // stats by exact SQL text, the fast path; bounded so ad hoc SQL cannot grow it forever.
+   private final ConcurrentHashMap<String, Shape> _bySql = new ConcurrentHashMap<String, Shape>();
+
+   // stats by normalized shape.
+   private final ConcurrentHashMap<String, Shape> _byShape = new ConcurrentHashMap<String, Shape>();
+
+   private volatile long _slowNanos = SLOW_QUERY_MILLIS < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(SLOW_QUERY_MILLIS);
+
+   // where per-shape beans are registered, once registerMBeans has been called.
+   private volatile MBeanServer _mbeans;
+
+   /**
+    * Records one statement.
+    *
+    * @param sql the SQL text as sent, with ? placeholders or literals
+    * @param nanos how long it took, including reading the rows
+    * @param rows rows returned or affected
+    * @param failed whether it threw
+    */
+   public void record(String sql, long nanos, long rows, boolean failed) {
+      Shape shape = shape(sql);
+      shape.latency.record(nanos);
+      shape.rows.add(rows);
+      if (failed) {
+         shape.errors.increment();
+      }
+      long slow = this._slowNanos;
+      if (slow >= 0 && nanos >= slow) {
+         System.err.printf("%s slow query %.1f ms, %d rows%s: %s%n", Instant.now(), nanos / 1e6, rows,
+                           failed ? ", failed" : "", shape.sql);
+      }
+   }//end record
+
+   /**
+    * @return the stats of the shape the SQL text belongs to
+    */
+   public Shape shape(String sql) {
+      Shape shape = this._bySql.get(sql);
+      if (shape != null) {
+         return shape;
+      }
+      String normalized = normalize(sql);
+      shape = this._byShape.get(normalized);
+      if (shape == null) {
+         if (this._byShape.size() >= MAX_SHAPES) {
+            normalized = OTHER;
+         }
+         shape = this._byShape.computeIfAbsent(normalized, Shape::new);
+         register(shape);
+      }
+      if (this._bySql.size() < MAX_SHAPES * 4) {
+         this._bySql.putIfAbsent(sql, shape);
+      }
+      return shape;
+   }//end shape
+
+   /**
+    * @return every shape seen so far, most total time first
+    */
+   public List<Shape> shapes() {
+      List<Shape> shapes = new ArrayList<Shape>(this._byShape.values());
+      shapes.sort(Comparator.comparingLong((Shape s) -> s.latency.total()).reversed());
+      return shapes;
+   }
+
+   @Override
+   public int getShapeCount() {
+      return this._byShape.size();
+   }
+
+   @Override
+   public long getSlowQueryMillis() {
+      long slow = this._slowNanos;
+      return slow < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(slow);
+   }
+
+   @Override
+   public void setSlowQueryMillis(long millis) {
+      this._slowNanos = millis < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(millis);
+   }
+
+   /**
+    * @return every shape as a text table, most total time first
+    */
+   @Override
+   public String dump() {
+      StringBuilder out = new StringBuilder();
+      out.append(String.format("%10s %7s %11s %11s %9s %9s %9s %9s %9s  %s%n", "calls", "errors", "rows",
+                               "total ms", "mean ms", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "query"));
+      for (Shape shape : shapes()) {
+         out.append(String.format("%10d %7d %11d %11.1f %9.3f %9.3f %9.3f %9.3f %9.3f  %s%n", shape.getCalls(),
+                                  shape.getErrors(), shape.getRows(), shape.getTotalMillis(), shape.getMeanMillis(),
+                                  shape.getP50Millis(), shape.getP99Millis(), shape.getP999Millis(),
+                                  shape.getMaxMillis(), shape.sql));
+      }
+      return out.toString();
+   }//end dump
+
+   /**
+    * Zeroes every counter; the shapes themselves are kept.
+    */
+   @Override
+   public void reset() {
+      for (Shape shape : this._byShape.values()) {
+         shape.latency.reset();
+         shape.rows.reset();
+         shape.errors.reset();
+      }
+   }
+
+   /**
+    * Publishes the registry and every shape, now and as they appear, on
+    * the platform MBean server.  Call once per process; PizzaServer does.
+    *
+    * @throws javax.management.JMException when the beans cannot be registered
+    */
+   public void registerMBeans() throws JMException {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      server.registerMBean(this, new ObjectName("pizzastore:type=QueryMetrics"));
+      this._mbeans = server;
+      for (Shape shape : this._byShape.values()) {
+         register(shape);
+      }
+   }
+
+   private void register(Shape shape) {
+      MBeanServer server = this._mbeans;
+      if (server == null) {
+         return;
+      }
+      try {
+         ObjectName name = new ObjectName("pizzastore:type=Query,name=" + ObjectName.quote(abbreviate(shape.sql, 200)));
+         synchronized (shape) {
+            if (!server.isRegistered(name)) {
+               server.registerMBean(shape, name);
+            }
+         }
+      } catch (JMException e) {
+         // two shapes sharing a 200 character prefix: the first keeps the name
+      }
+   }//end register
+
+   /**
+    * Reduces SQL text to its shape: runs of whitespace become one space,
+    * string and number literals become ?, and lists of ? in parentheses
+    * become a single (?).  Quoted identifiers are kept.
+    */
+   static String normalize(String sql) {
+      StringBuilder out = new StringBuilder(sql.length());
+      int n = sql.length();
+      int i = 0;
+      while (i < n) {
+         char c = sql.charAt(i);
+         if (Character.isWhitespace(c)) {
+            while (i < n && Character.isWhitespace(sql.charAt(i))) {
+               i++;
+            }
+            if (out.length() > 0 && i < n) {
+               out.append(' ');
+            }
+         } else if (c == '\'') {
+            // a string literal; '' inside it is an escaped quote
+            i++;
+            while (i < n) {
+               if (sql.charAt(i) == '\'') {
+                  if (i + 1 < n && sql.charAt(i + 1) == '\'') {
+                     i += 2;
+                     continue;
+                  }
+                  i++;
+                  break;
+               }
+               i++;
+            }
+            out.append('?');
+         } else if (c == '"') {
+            int end = sql.indexOf('"', i + 1);
+            end = end < 0 ? n : end + 1;
+            out.append(sql, i, end);
+            i = end;
+         } else if (Character.isDigit(c) && !partOfWord(out)) {
+            while (i < n && (Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+               i++;
+            }
+            out.append('?');
+         } else {
+            out.append(c);
+            i++;
+         }
+      }
+      return IN_LIST.matcher(out).replaceAll("(?)");
+   }//end normalize
+
+   // whether the text so far ends inside an identifier, e.g. the 1 of item1.
+   private static boolean partOfWord(StringBuilder out) {
+      if (out.length() == 0) {
+         return false;
+      }
+      char last = out.charAt(out.length() - 1);
+      return Character.isLetterOrDigit(last) || last == '_' || last == '$';
+   }
+
+   private static String abbreviate(String text, int max) {
+      return text.length() <= max ? text : text.substring(0, max - 3) + "...";
+   }
+
+   /**
+    * The counters of one query shape.
+    */
+   public static final class Shape implements QueryShapeMXBean {
+      final String sql;
+      final LatencyHistogram latency = new LatencyHistogram();
+      final LongAdder rows = new LongAdder();
+      final LongAdder errors = new LongAdder();
+
+      Shape(String sql) {
+         this.sql = sql;
+      }
+
+      @Override
+      public String getSql() {
+         return this.sql;
+      }
+
+      @Override
+      public long getCalls() {
+         return this.latency.count();
+      }
+
+      @Override
+      public long getErrors() {
+         return this.errors.sum();
+      }
+
+      @Override
+      public long getRows() {
+         return this.rows.sum();
+      }
+
+      @Override
+      public double getTotalMillis() {
+         return this.latency.total() / 1e6;
+      }
+
+      @Override
+      public double getMeanMillis() {
+         return this.latency.mean() / 1e6;
+      }
+
+      @Override
+      public double getP50Millis() {
+         return this.latency.percentile(0.50) / 1e6;
+      }
+
+      @Override
+      public double getP99Millis() {
+         return this.latency.percentile(0.99) / 1e6;
+      }
+
+      @Override
+      public double getP999Millis() {
+         return this.latency.percentile(0.999) / 1e6;
+      }
+
+      @Override
+      public double getMaxMillis() {
+         return this.latency.max() / 1e6;
+      }
+   }//end Shape
+}//end QueryMetrics
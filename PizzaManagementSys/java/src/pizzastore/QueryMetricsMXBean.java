@@ -0,0 +1,32 @@
+package pizzastore;
+
+/**
+ * The JMX view of a QueryMetrics registry.
+ */
+public interface QueryMetricsMXBean {
+
+   /**
+    * @return how many distinct query shapes have been seen
+    */
+   int getShapeCount();
+
+   /**
+    * @return the slow-query threshold in milliseconds, or -1 when disabled
+    */
+   long getSlowQueryMillis();
+
+   /**
+    * @param millis the new slow-query threshold; negative disables the log
+    */
+   void setSlowQueryMillis(long millis);
+
+   /**
+    * @return every shape as a text table, most total time first
+    */
+   String dump();
+
+   /**
+    * Zeroes every counter.
+    */
+   void reset();
+}//end QueryMetricsMXBean
@@ -0,0 +1,35 @@
+package pizzastore;
+
+/**
+ * The JMX view of one query shape in QueryMetrics.  Latencies cover
+ * executing the statement and reading its rows, not waiting for a pooled
+ * connection.
+ */
+public interface QueryShapeMXBean {
+
+   /**
+    * @return the normalized SQL
+    */
+   String getSql();
+
+   long getCalls();
+
+   long getErrors();
+
+   /**
+    * @return rows returned or affected, summed over every call
+    */
+   long getRows();
+
+   double getTotalMillis();
+
+   double getMeanMillis();
+
+   double getP50Millis();
+
+   double getP99Millis();
+
+   double getP999Millis();
+
+   double getMaxMillis();
+}//end QueryShapeMXBean
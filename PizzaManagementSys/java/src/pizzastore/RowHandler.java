@@ -0,0 +1,19 @@
+package pizzastore;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Callback used by PizzaStore.executeQueryAndStream.  It is invoked once per
+ * row with the result set positioned on that row; it must read the row it
+ * needs and must not move the cursor or keep the result set.
+ */
+@FunctionalInterface
+public interface RowHandler {
+
+   /**
+    * @param rs the result set positioned on the current row
+    * @throws java.sql.SQLException when reading the row fails
+    */
+   void handle(ResultSet rs) throws SQLException;
+}//end RowHandler
@@ -0,0 +1,21 @@
+package pizzastore;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps the row a result set is positioned on to a typed record.  Used by
+ * PizzaStore.executeQueryForList and executeQueryForObject.
+ *
+ * @param <T> the record type produced for each row
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+
+   /**
+    * @param rs the result set positioned on the current row
+    * @return the record for that row
+    * @throws java.sql.SQLException when reading the row fails
+    */
+   T map(ResultSet rs) throws SQLException;
+}//end RowMapper
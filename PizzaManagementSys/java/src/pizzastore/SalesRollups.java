@@ -0,0 +1,315 @@
+package pizzastore;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the sales rollup tables (see sql/src/create_tables.sql) and checks
+ * them against the orders they summarize:
+ *
+ *    SalesByStore   one row per store and month
+ *    SalesByItem    one row per item and month
+ *    SalesByHour    one row per hour across all stores
+ *
+ * Each row holds the orders placed, their revenue, and how many of them
+ * (and how much revenue) are complete, so manager reports read a few
+ * hundred rollup rows instead of scanning FoodOrder and ItemsInOrder.
+ *
+ * The rollups are kept current by the statements that change orders:
+ * PizzaService stores an order, or changes its status, in one statement
+ * that ends with maintain(), which adds that statement's changes to the
+ * three tables.  They commit or roll back together, so a report never
+ * sees an order without its sales or the other way round.  Loads that
+ * bypass PizzaService (BulkLoader, load_data.sql) rebuild the rollups
+ * afterwards instead.
+ *
+ * Every order bumps the row for its hour, and most bump the rows for the
+ * few popular items, so those rows are split into SLOTS slots: each
+ * connection writes to the slot pg_backend_pid() picks and reports add the
+ * slots up.  Concurrent orders then rarely wait on each other's row locks
+ * until commit.  Store rows are spread over many stores already.
+ *
+ * Months before the oldest order left in FoodOrder are taken to have been
+ * archived (see OrderPartitions.archive): their rollups are kept, so
+ * reports still cover them, and check() and rebuild() leave them alone.
+ *
+ * Settings, as system properties:
+ *
+ *    -Dpizzastore.rollups.slots=8   slots per hour and item row
+ */
+public class SalesRollups {
+
+   static final int SLOTS = Integer.getInteger("pizzastore.rollups.slots", 8);
+
+   // the first month still held in FoodOrder; null when it is empty.
+   private static final String LIVE_FROM =
+      "(SELECT date_trunc('month', min(orderTimestamp))::date FROM FoodOrder)";
+
+   // the rollups recomputed from the orders, for months from LIVE_FROM on.
+   static final String STORE_TOTALS =
+      "SELECT storeID, date_trunc('month', orderTimestamp)::date AS month, count(*) AS orders, " +
+      "sum(totalPrice) AS revenue, count(*) FILTER (WHERE orderStatus = 'complete') AS completedOrders, " +
+      "coalesce(sum(totalPrice) FILTER (WHERE orderStatus = 'complete'), 0) AS completedRevenue " +
+      "FROM FoodOrder GROUP BY 1, 2";
+
+   static final String HOUR_TOTALS =
+      "SELECT date_trunc('hour', orderTimestamp) AS hour, count(*) AS orders, " +
+      "sum(totalPrice) AS revenue, count(*) FILTER (WHERE orderStatus = 'complete') AS completedOrders, " +
+      "coalesce(sum(totalPrice) FILTER (WHERE orderStatus = 'complete'), 0) AS completedRevenue " +
+      "FROM FoodOrder GROUP BY 1";
+
+   static final String ITEM_TOTALS =
+      "SELECT l.itemName, date_trunc('month', f.orderTimestamp)::date AS month, count(*) AS orders, " +
+      "sum(l.quantity) AS quantity, coalesce(sum(l.quantity * l.unitPrice), 0) AS revenue, " +
+      "count(*) FILTER (WHERE f.orderStatus = 'complete') AS completedOrders, " +
+      "coalesce(sum(l.quantity * l.unitPrice) FILTER (WHERE f.orderStatus = 'complete'), 0) AS completedRevenue " +
+      "FROM ItemsInOrder l JOIN FoodOrder f ON f.orderID = l.orderID AND f.orderTimestamp = l.orderTimestamp GROUP BY 1, 2";
+
+   // lines and orders share their months, so ITEM_TOTALS can join them a month at a time.
+   private static final String MONTH_BY_MONTH = "SET LOCAL enable_partitionwise_join = on";
+
+   private static final String[] REBUILD = {
+      // no order can change the rollups until this transaction commits
+      "LOCK TABLE SalesByStore, SalesByItem, SalesByHour IN EXCLUSIVE MODE",
+      MONTH_BY_MONTH,
+      "DELETE FROM SalesByStore WHERE month >= " + LIVE_FROM,
+      "DELETE FROM SalesByItem WHERE month >= " + LIVE_FROM,
+      "DELETE FROM SalesByHour WHERE hour >= " + LIVE_FROM,
+      "INSERT INTO SalesByStore(storeID, month, orders, revenue, completedOrders, completedRevenue) " + STORE_TOTALS,
+      "INSERT INTO SalesByItem(itemName, month, slot, orders, quantity, revenue, completedOrders, completedRevenue) " +
+         "SELECT itemName, month, 0, orders, quantity, revenue, completedOrders, completedRevenue " +
+         "FROM (" + ITEM_TOTALS + ") t",
+      "INSERT INTO SalesByHour(hour, slot, orders, revenue, completedOrders, completedRevenue) " +
+         "SELECT hour, 0, orders, revenue, completedOrders, completedRevenue FROM (" + HOUR_TOTALS + ") t",
+   };
+
+   private final String _url;
+   private final String _user;
+   private final String _passwd;
+
+   /**
+    * @param url the JDBC connection URL
+    * @param user the user name used to login to the database
+    * @param passwd the user login password
+    */
+   public SalesRollups(String url, String user, String passwd) {
+      this._url = url;
+      this._user = user;
+      this._passwd = passwd;
+   }
+
+   /**
+    * The common table expressions that add one statement's order changes
+    * to the rollups, for the end of a WITH list.
+    *
+    * @param orders a CTE of the changed orders, with orderID, storeID,
+    *        orderTimestamp, totalPrice, placed (1 for a new order, else 0)
+    *        and completed (1 when it became complete, -1 when it stopped
+    *        being complete, else 0)
+    * @param lines the lines of those orders, with their orderTimestamp: a
+    *        CTE, or ItemsInOrder itself (or a subquery of it) when the lines
+    *        are already stored
+    * @return "salesByStore AS (...), salesByItem AS (...), salesByHour AS (...)"
+    */
+   static String maintain(String orders, String lines) {
+      // Each upsert takes its rows sorted by key, so two statements lock
+      // one table's rows in the same order.  PostgreSQL does not fix the
+      // order in which the three run, though, so two statements can still
+      // deadlock across tables; order placement and status updates retry
+      // when that happens.
+      String slot = "pg_backend_pid() % " + SLOTS;
+      return
+         "salesByStore AS (INSERT INTO SalesByStore AS s (storeID, month, orders, revenue, completedOrders, completedRevenue) " +
+            "SELECT storeID, date_trunc('month', orderTimestamp)::date, sum(placed), sum(placed * totalPrice), " +
+            "sum(completed), sum(completed * totalPrice) " +
+            "FROM " + orders + " GROUP BY 1, 2 ORDER BY 1, 2 " +
+            "ON CONFLICT (storeID, month) DO UPDATE SET orders = s.orders + EXCLUDED.orders, " +
+            "revenue = s.revenue + EXCLUDED.revenue, completedOrders = s.completedOrders + EXCLUDED.completedOrders, " +
+            "completedRevenue = s.completedRevenue + EXCLUDED.completedRevenue), " +
+         "salesByItem AS (INSERT INTO SalesByItem AS s (itemName, month, slot, orders, quantity, revenue, completedOrders, completedRevenue) " +
+            "SELECT l.itemName, date_trunc('month', o.orderTimestamp)::date, " + slot + ", sum(o.placed), " +
+            "sum(o.placed * l.quantity), coalesce(sum(o.placed * l.quantity * l.unitPrice), 0), " +
+            "sum(o.completed), coalesce(sum(o.completed * l.quantity * l.unitPrice), 0) " +
+            "FROM " + lines + " l JOIN " + orders + " o ON o.orderID = l.orderID AND o.orderTimestamp = l.orderTimestamp " +
+            "GROUP BY 1, 2 ORDER BY 1, 2 " +
+            "ON CONFLICT (itemName, month, slot) DO UPDATE SET orders = s.orders + EXCLUDED.orders, " +
+            "quantity = s.quantity + EXCLUDED.quantity, revenue = s.revenue + EXCLUDED.revenue, " +
+            "completedOrders = s.completedOrders + EXCLUDED.completedOrders, " +
+            "completedRevenue = s.completedRevenue + EXCLUDED.completedRevenue), " +
+         "salesByHour AS (INSERT INTO SalesByHour AS s (hour, slot, orders, revenue, completedOrders, completedRevenue) " +
+            "SELECT date_trunc('hour', orderTimestamp), " + slot + ", sum(placed), sum(placed * totalPrice), " +
+            "sum(completed), sum(completed * totalPrice) " +
+            "FROM " + orders + " GROUP BY 1 ORDER BY 1 " +
+            "ON CONFLICT (hour, slot) DO UPDATE SET orders = s.orders + EXCLUDED.orders, " +
+            "revenue = s.revenue + EXCLUDED.revenue, completedOrders = s.completedOrders + EXCLUDED.completedOrders, " +
+            "completedRevenue = s.completedRevenue + EXCLUDED.completedRevenue)";
+   }//end maintain
+
+   /**
+    * Recomputes the rollups of every month still in FoodOrder from the
+    * orders, in one transaction that holds off order changes until it
+    * commits.  Archived months are kept as they are.
+    *
+    * @throws java.sql.SQLException when the rollups cannot be rebuilt; they are then left unchanged
+    */
+   public void rebuild() throws SQLException {
+      try (Connection conn = PizzaStore.connect(this._url, this._user, this._passwd)) {
+         rebuild(conn);
+      }
+   }
+
+   /**
+    * As rebuild(), on a connection the caller already holds.
+    *
+    * @param conn a connection in autocommit mode
+    */
+   static void rebuild(Connection conn) throws SQLException {
+      conn.setAutoCommit(false);
+      try (Statement stmt = conn.createStatement()) {
+         for (String sql : REBUILD) {
+            stmt.execute(sql);
+         }
+         stmt.execute("ANALYZE SalesByStore, SalesByItem, SalesByHour");
+         conn.commit();
+      } catch (SQLException | RuntimeException e) {
+         conn.rollback();
+         throw e;
+      } finally {
+         conn.setAutoCommit(true);
+      }
+   }//end rebuild
+
+   /**
+    * Recomputes the rollups of every month still in FoodOrder and compares
+    * them with the stored ones, all from one snapshot, so orders placed
+    * meanwhile cannot show up as differences.
+    *
+    * @return every rollup row that differs from the recomputed one; empty
+    *         when the rollups are consistent
+    * @throws java.sql.SQLException when the database fails
+    */
+   public List<Mismatch> check() throws SQLException {
+      List<Mismatch> mismatches = new ArrayList<Mismatch>();
+      try (Connection conn = PizzaStore.connect(this._url, this._user, this._passwd)) {
+         conn.setAutoCommit(false);
+         conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+         conn.setReadOnly(true);
+         try {
+            try (Statement stmt = conn.createStatement()) {
+               stmt.execute(MONTH_BY_MONTH);
+            }
+            compare(conn, "SalesByStore", "storeID, month", "orders, revenue, completedOrders, completedRevenue",
+                    STORE_TOTALS, "month", mismatches);
+            compare(conn, "SalesByItem", "itemName, month",
+                    "orders, quantity, revenue, completedOrders, completedRevenue", ITEM_TOTALS, "month", mismatches);
+            compare(conn, "SalesByHour", "hour", "orders, revenue, completedOrders, completedRevenue",
+                    HOUR_TOTALS, "hour", mismatches);
+         } finally {
+            conn.rollback();
+         }
+      }
+      return mismatches;
+   }//end check
+
+   /*
+    * Lists the keys of one rollup whose stored figures, summed over slots,
+    * differ from the recomputed ones.  A key missing on one side counts as
+    * all zeros, so a row that was added to and taken back out again is not
+    * reported.
+    */
+   private static void compare(Connection conn, String table, String keys, String measures, String totals,
+                               String timeKey, List<Mismatch> mismatches) throws SQLException {
+      String[] keyList = keys.split(", ");
+      String[] measureList = measures.split(", ");
+      StringBuilder stored = new StringBuilder();
+      StringBuilder join = new StringBuilder();
+      StringBuilder key = new StringBuilder();
+      StringBuilder expected = new StringBuilder();
+      StringBuilder actual = new StringBuilder();
+      StringBuilder labels = new StringBuilder();
+      for (String k : keyList) {
+         join.append(join.length() == 0 ? "" : " AND ").append("e.").append(k).append(" = a.").append(k);
+         key.append(key.length() == 0 ? "" : " || ' ' || ").append("coalesce(e.").append(k).append(", a.").append(k).append(")::text");
+      }
+      for (String m : measureList) {
+         stored.append(", sum(").append(m).append(") AS ").append(m);
+         expected.append(expected.length() == 0 ? "" : ", ").append("coalesce(e.").append(m).append(", 0)");
+         actual.append(actual.length() == 0 ? "" : ", ").append("coalesce(a.").append(m).append(", 0)");
+         labels.append(labels.length() == 0 ? "" : ", ").append("'").append(m).append("'");
+      }
+      String sql =
+         "WITH e AS (SELECT * FROM (" + totals + ") t WHERE " + timeKey + " >= " + LIVE_FROM + "), " +
+         "a AS (SELECT " + keys + stored + " FROM " + table + " WHERE " + timeKey + " >= " + LIVE_FROM +
+               " GROUP BY " + keys + ") " +
+         "SELECT " + key + ", " + figures(labels, expected) + ", " + figures(labels, actual) + " " +
+         "FROM e FULL JOIN a ON " + join + " " +
+         "WHERE ROW(" + expected + ") IS DISTINCT FROM ROW(" + actual + ") ORDER BY 1";
+      try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+         while (rs.next()) {
+            mismatches.add(new Mismatch(table, rs.getString(1), rs.getString(2), rs.getString(3)));
+         }
+      }
+   }//end compare
+
+   // "orders=3 revenue=32.96 ...": the names and values zipped into one string.
+   private static String figures(CharSequence labels, CharSequence values) {
+      return "array_to_string(ARRAY(SELECT n || '=' || v FROM unnest(ARRAY[" + labels + "], ARRAY[" + values
+             + "]::text[]) AS f(n, v)), ' ')";
+   }
+
+   /**
+    * One rollup row that does not match the orders.
+    *
+    * @param table the rollup table
+    * @param key the row's key, e.g. "967 2024-05-01"
+    * @param expected the figures recomputed from the orders, zeros when the key has no orders
+    * @param actual the stored figures, zeros when the key has no row
+    */
+   public record Mismatch(String table, String key, String expected, String actual) {
+   }
+
+   /**
+    * Checks the rollups against the orders, or rebuilds them.  The database
+    * password is read from the PIZZASTORE_DB_PASSWORD environment variable
+    * (empty if unset).
+    *
+    * @param args <dbname> <port> <user> [check | rebuild]
+    */
+   public static void main(String[] args) throws Exception {
+      boolean check = args.length == 3 || (args.length == 4 && args[3].equals("check"));
+      boolean rebuild = args.length == 4 && args[3].equals("rebuild");
+      if (!check && !rebuild) {
+         System.err.println("Usage: java [-classpath <classpath>] " + SalesRollups.class.getName()
+                            + " <dbname> <port> <user> [check | rebuild]");
+         return;
+      }
+      String url = PizzaStore.url(args[0], args[1]);
+      SalesRollups rollups = new SalesRollups(url, args[2], PizzaStore.password());
+      try {
+         long start = System.nanoTime();
+         if (rebuild) {
+            rollups.rebuild();
+            System.out.printf("Rebuilt the sales rollups in %.2f s%n", (System.nanoTime() - start) / 1e9);
+            return;
+         }
+         List<Mismatch> mismatches = rollups.check();
+         for (Mismatch m : mismatches) {
+            System.out.println(m.table() + " " + m.key() + ": expected " + m.expected() + ", stored " + m.actual());
+         }
+         System.out.printf("%s in %.2f s%n",
+                           mismatches.isEmpty() ? "Sales rollups match the orders"
+                                                : mismatches.size() + " rollup rows differ; run with 'rebuild' to fix",
+                           (System.nanoTime() - start) / 1e9);
+         if (!mismatches.isEmpty()) {
+            System.exit(2);
+         }
+      } catch (SQLException e) {
+         System.err.println("Sales rollup maintenance failed: " + e.getMessage());
+         System.exit(1);
+      }
+   }//end main
+}//end SalesRollups
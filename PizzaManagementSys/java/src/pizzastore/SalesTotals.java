@@ -0,0 +1,28 @@
+package pizzastore;
+
+/**
+ * One line of a sales report, summed from the sales rollups.
+ *
+ * @param key what the line is for: a store ID, an item name, or an hour of
+ *        the day such as "18:00"
+ * @param orders orders placed; for an item, orders that include it
+ * @param quantity items sold, for item reports; 0 otherwise
+ * @param revenueCents revenue of those orders, or of the item, in cents
+ * @param completedOrders how many of the orders are complete
+ * @param completedRevenueCents revenue of the completed orders, in cents
+ */
+public record SalesTotals(String key, long orders, long quantity, long revenueCents,
+                          long completedOrders, long completedRevenueCents) {
+
+   /**
+    * Reads a row with key, orders, quantity, revenue, completedOrders and
+    * completedRevenue columns.
+    */
+   public static final RowMapper<SalesTotals> MAPPER = rs -> new SalesTotals(
+      rs.getString("key"),
+      rs.getLong("orders"),
+      rs.getLong("quantity"),
+      Money.toCents(rs.getBigDecimal("revenue")),
+      rs.getLong("completedOrders"),
+      Money.toCents(rs.getBigDecimal("completedRevenue")));
+}//end SalesTotals
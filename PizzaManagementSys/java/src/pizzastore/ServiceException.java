@@ -0,0 +1,43 @@
+package pizzastore;
+
+/**
+ * Thrown by PizzaService when a request is refused: the caller may not do
+ * it, what it names does not exist, or its input is invalid.  The message
+ * is meant for the user; the reason lets a client decide how to report it.
+ * Database failures are not wrapped and surface as SQLException.
+ */
+public class ServiceException extends Exception {
+
+   public enum Reason {
+      // the login and password do not match a user
+      INVALID_CREDENTIALS,
+      // the caller's role does not allow the request
+      FORBIDDEN,
+      // the order, item or user named by the request does not exist
+      NOT_FOUND,
+      // the request itself is malformed, e.g. an unknown item or a bad quantity
+      INVALID_REQUEST,
+      // the request clashes with existing data, e.g. a login that is taken
+      CONFLICT,
+      // the service is too busy to take the request now; it may be retried
+      UNAVAILABLE
+   }
+
+   private static final long serialVersionUID = 1L;
+
+   private final Reason _reason;
+
+   public ServiceException(Reason reason, String message) {
+      super(message);
+      this._reason = reason;
+   }
+
+   public ServiceException(Reason reason, String message, Throwable cause) {
+      super(message, cause);
+      this._reason = reason;
+   }
+
+   public Reason getReason() {
+      return this._reason;
+   }
+}//end ServiceException
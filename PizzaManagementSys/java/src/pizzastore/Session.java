@@ -0,0 +1,66 @@
+package pizzastore;
+
+/**
+ * An authenticated user of the system, as returned by PizzaStore.LogIn.
+ * The role is read once at login and kept here so privileged actions do
+ * not have to look it up again.  When a manager changes a user's login or
+ * role through updateUser, the SessionRegistry updates every open session
+ * of that user.
+ */
+public class Session {
+
+   private volatile String _login;
+   private volatile String _role;
+
+   Session(String login, String role) {
+      this._login = login;
+      this._role = normalizeRole(role);
+   }
+
+   /**
+    * @return the login of the signed-in user
+    */
+   public String getLogin() {
+      return this._login;
+   }
+
+   /**
+    * @return the role, trimmed and lower-cased, e.g. "customer"
+    */
+   public String getRole() {
+      return this._role;
+   }
+
+   public boolean isManager() {
+      return "manager".equals(this._role);
+   }
+
+   public boolean isDriver() {
+      return "driver".equals(this._role);
+   }
+
+   /**
+    * @return true for drivers and managers, who may see and update any order
+    */
+   public boolean isStaff() {
+      return isManager() || isDriver();
+   }
+
+   void setLogin(String login) {
+      this._login = login;
+   }
+
+   void setRole(String role) {
+      this._role = normalizeRole(role);
+   }
+
+   // Users.role is char(20), so values come back blank-padded.
+   static String normalizeRole(String role) {
+      return role == null ? "" : role.trim().toLowerCase();
+   }
+
+   @Override
+   public String toString() {
+      return this._login + " (" + this._role + ")";
+   }
+}//end Session
@@ -0,0 +1,77 @@
+package pizzastore;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks the open sessions of each login so that changes made by
+ * updateUser reach users who are already signed in.
+ */
+public class SessionRegistry {
+
+   private final Map<String, Set<Session>> _byLogin = new ConcurrentHashMap<String, Set<Session>>();
+
+   /**
+    * Creates and registers a session for a user who just logged in.
+    *
+    * @param login the user's login
+    * @param role the user's role as stored in Users
+    * @return the new session
+    */
+   public Session open(String login, String role) {
+      Session session = new Session(login, role);
+      this._byLogin.computeIfAbsent(login, k -> ConcurrentHashMap.newKeySet()).add(session);
+      return session;
+   }
+
+   /**
+    * Forgets a session when its user logs out.
+    */
+   public void close(Session session) {
+      this._byLogin.computeIfPresent(session.getLogin(), (login, sessions) -> {
+         sessions.remove(session);
+         return sessions.isEmpty() ? null : sessions;
+      });
+   }
+
+   /**
+    * Applies a role change to every open session of the given login.
+    */
+   public void updateRole(String login, String role) {
+      Set<Session> sessions = this._byLogin.get(login);
+      if (sessions != null) {
+         for (Session session : sessions) {
+            session.setRole(role);
+         }
+      }
+   }
+
+   /**
+    * Moves every open session of oldLogin over to newLogin.
+    */
+   public void rename(String oldLogin, String newLogin) {
+      Set<Session> sessions = this._byLogin.remove(oldLogin);
+      if (sessions == null) {
+         return;
+      }
+      for (Session session : sessions) {
+         session.setLogin(newLogin);
+      }
+      this._byLogin.merge(newLogin, sessions, (existing, moved) -> {
+         existing.addAll(moved);
+         return existing;
+      });
+   }
+
+   /**
+    * @return the number of open sessions
+    */
+   public int size() {
+      int count = 0;
+      for (Set<Session> sessions : this._byLogin.values()) {
+         count += sessions.size();
+      }
+      return count;
+   }
+}//end SessionRegistry
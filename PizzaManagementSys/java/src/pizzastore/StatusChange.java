@@ -0,0 +1,23 @@
+package pizzastore;
+
+/**
+ * What a bulk status update did to one of the orders it named.
+ *
+ * @param orderId the order ID as given
+ * @param outcome whether the order was changed, and if not why
+ * @param previousStatus the order's status before the update, or null when
+ *        the order does not exist
+ */
+public record StatusChange(int orderId, Outcome outcome, String previousStatus) {
+
+   public enum Outcome {
+      // the status was changed
+      UPDATED,
+      // the order already had the new status
+      UNCHANGED,
+      // the order's status was not the expected one, so it was left alone
+      CONFLICT,
+      // no order has this ID
+      NOT_FOUND
+   }
+}//end StatusChange
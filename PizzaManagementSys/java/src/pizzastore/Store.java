@@ -0,0 +1,45 @@
+package pizzastore;
+
+/**
+ * One row of the Store table.
+ *
+ * @param storeId the store ID
+ * @param address the street address
+ * @param city the city
+ * @param state the state
+ * @param isOpen the open status as stored, e.g. "yes"
+ * @param reviewScore the review score, or NaN when the store has no reviews
+ */
+public record Store(int storeId, String address, String city, String state, String isOpen, double reviewScore) {
+
+   /**
+    * Reads a row with the Store columns, e.g. from SELECT * FROM Store.
+    */
+   public static final RowMapper<Store> MAPPER = rs -> {
+      double reviewScore = rs.getDouble("reviewScore");
+      if (rs.wasNull()) {
+         reviewScore = Double.NaN;
+      }
+      return new Store(
+         rs.getInt("storeID"),
+         rs.getString("address"),
+         rs.getString("city"),
+         rs.getString("state"),
+         rs.getString("isOpen"),
+         reviewScore);
+   };
+
+   /**
+    * @return true if the open status reads "yes" (in any case)
+    */
+   public boolean open() {
+      return this.isOpen != null && this.isOpen.trim().equalsIgnoreCase("yes");
+   }
+
+   /**
+    * @return true if the store has a review score
+    */
+   public boolean hasReviews() {
+      return !Double.isNaN(this.reviewScore);
+   }
+}//end Store
@@ -0,0 +1,287 @@
+package pizzastore;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * In-process index of the Store table.  Customers look stores up far more
+ * often than stores change, so the table is read once into an immutable
+ * snapshot with buckets by city, state and open status and a
+ * score-sorted index; finding a store then runs without touching the
+ * database, and only the requested page of matches is shown.
+ *
+ * Works like MenuCache: writers call invalidate() after changing Store,
+ * the next reader loads a fresh snapshot, and a load that raced with an
+ * invalidation is never published.  Snapshots also expire after
+ * pizzastore.stores.ttlMillis so edits made outside this process are
+ * eventually picked up.
+ */
+public class StoreDirectory {
+
+   // how long a snapshot may be served before it is reloaded.
+   static final long TTL_MILLIS = Long.getLong("pizzastore.stores.ttlMillis", 60000L);
+
+   private static final String LOAD_QUERY =
+      "SELECT storeID, address, city, state, isOpen, reviewScore FROM Store ORDER BY storeID";
+
+   private final PizzaStore _esql;
+
+   private volatile Snapshot _snapshot = null;
+
+   // bumped by every invalidation; a load only publishes if it is unchanged.
+   private long _generation = 0;
+
+   public StoreDirectory(PizzaStore esql) {
+      this._esql = esql;
+   }
+
+   /**
+    * @return the current stores, loading them from the database if needed
+    * @throws java.sql.SQLException when the stores cannot be loaded
+    */
+   public Snapshot snapshot() throws SQLException {
+      Snapshot current = this._snapshot;
+      if (current != null && !current.isExpired()) {
+         return current;
+      }
+      long generation;
+      synchronized (this) {
+         current = this._snapshot;
+         if (current != null && !current.isExpired()) {
+            return current;
+         }
+         generation = this._generation;
+      }
+
+      Snapshot loaded = load();
+      synchronized (this) {
+         if (generation == this._generation) {
+            this._snapshot = loaded;
+         }
+      }
+      return loaded;
+   }//end snapshot
+
+   /**
+    * Drops the current snapshot; call after any write to Store.
+    */
+   public synchronized void invalidate() {
+      this._generation++;
+      this._snapshot = null;
+   }
+
+   private Snapshot load() throws SQLException {
+      return new Snapshot(this._esql.executeQueryForList(LOAD_QUERY, Store.MAPPER));
+   }
+
+   // the bucket key for a city or state: trimmed, any case.
+   static String normalize(String name) {
+      return name == null ? "" : name.trim().toLowerCase(Locale.ROOT);
+   }
+
+   /**
+    * Which stores to find.  Null fields do not filter.
+    */
+   public static class Filter {
+      public final String city;
+      public final String state;
+      public final Boolean open;
+      public final Double minReviewScore;
+
+      /**
+       * @param city only stores in this city; case and padding are ignored
+       * @param state only stores in this state; case and padding are ignored
+       * @param open only stores that are open (true) or closed (false)
+       * @param minReviewScore only stores reviewed at least this well;
+       *        stores with no reviews are left out
+       */
+      public Filter(String city, String state, Boolean open, Double minReviewScore) {
+         this.city = city;
+         this.state = state;
+         this.open = open;
+         this.minReviewScore = minReviewScore;
+      }
+
+      boolean matches(Store store) {
+         return (this.city == null || normalize(store.city()).equals(normalize(this.city)))
+             && (this.state == null || normalize(store.state()).equals(normalize(this.state)))
+             && (this.open == null || store.open() == this.open)
+             && (this.minReviewScore == null || (store.hasReviews() && store.reviewScore() >= this.minReviewScore));
+      }
+   }//end Filter
+
+   /**
+    * One page of matching stores.
+    *
+    * @param stores the stores on this page, by store ID
+    * @param offset how many matches come before this page
+    * @param total how many stores match in all
+    */
+   public record Page(List<Store> stores, int offset, int total) {
+
+      /**
+       * @return true if more matches follow this page
+       */
+      public boolean hasNext() {
+         return this.offset + this.stores.size() < this.total;
+      }
+   }
+
+   /**
+    * An immutable view of the stores at one point in time.
+    */
+   public static class Snapshot {
+
+      private final long _loadedAt = System.currentTimeMillis();
+
+      // stores by store ID.
+      private final List<Store> _stores;
+      private final Map<Integer, Store> _byId = new HashMap<Integer, Store>();
+
+      // buckets by normalized city and state, and by open status, each by store ID.
+      private final Map<String, List<Store>> _byCity = new HashMap<String, List<Store>>();
+      private final Map<String, List<Store>> _byState = new HashMap<String, List<Store>>();
+      private final List<Store> _open;
+      private final List<Store> _closed;
+
+      // reviewed stores, best first, with their scores alongside.
+      private final List<Store> _byScore;
+      private final double[] _sortedScores;
+
+      Snapshot(List<Store> stores) {
+         Store[] byId = stores.toArray(new Store[0]);
+         Arrays.sort(byId, Comparator.comparingInt(Store::storeId));
+         this._stores = Collections.unmodifiableList(Arrays.asList(byId));
+
+         List<Store> open = new ArrayList<Store>();
+         List<Store> closed = new ArrayList<Store>();
+         List<Store> reviewed = new ArrayList<Store>();
+         for (Store store : this._stores) {
+            this._byId.put(store.storeId(), store);
+            this._byCity.computeIfAbsent(normalize(store.city()), k -> new ArrayList<Store>()).add(store);
+            this._byState.computeIfAbsent(normalize(store.state()), k -> new ArrayList<Store>()).add(store);
+            (store.open() ? open : closed).add(store);
+            if (store.hasReviews()) {
+               reviewed.add(store);
+            }
+         }
+         freeze(this._byCity);
+         freeze(this._byState);
+         this._open = Collections.unmodifiableList(open);
+         this._closed = Collections.unmodifiableList(closed);
+
+         reviewed.sort(Comparator.comparingDouble(Store::reviewScore).reversed().thenComparingInt(Store::storeId));
+         this._byScore = Collections.unmodifiableList(reviewed);
+         this._sortedScores = new double[reviewed.size()];
+         for (int i = 0; i < reviewed.size(); i++) {
+            this._sortedScores[i] = reviewed.get(i).reviewScore();
+         }
+      }//end Snapshot
+
+      private static void freeze(Map<String, List<Store>> buckets) {
+         for (Map.Entry<String, List<Store>> bucket : buckets.entrySet()) {
+            bucket.setValue(Collections.unmodifiableList(bucket.getValue()));
+         }
+      }
+
+      boolean isExpired() {
+         return System.currentTimeMillis() - this._loadedAt > TTL_MILLIS;
+      }
+
+      /**
+       * @return every store by store ID
+       */
+      public List<Store> all() {
+         return this._stores;
+      }
+
+      /**
+       * @param storeId the store ID
+       * @return the store, or null if there is no such store
+       */
+      public Store get(int storeId) {
+         return this._byId.get(storeId);
+      }
+
+      /**
+       * @return every matching store by store ID
+       */
+      public List<Store> find(Filter filter) {
+         // start from the smallest index the filter can use, then check the rest
+         List<Store> candidates = this._stores;
+         boolean byScore = false;
+         if (filter.city != null) {
+            candidates = smaller(candidates, bucket(this._byCity, filter.city));
+         }
+         if (filter.state != null) {
+            candidates = smaller(candidates, bucket(this._byState, filter.state));
+         }
+         if (filter.open != null) {
+            candidates = smaller(candidates, filter.open ? this._open : this._closed);
+         }
+         if (filter.minReviewScore != null) {
+            List<Store> reviewed = this._byScore.subList(0, atLeast(filter.minReviewScore));
+            if (reviewed.size() < candidates.size()) {
+               candidates = reviewed;
+               byScore = true;
+            }
+         }
+
+         List<Store> matches = new ArrayList<Store>(candidates.size());
+         for (Store store : candidates) {
+            if (filter.matches(store)) {
+               matches.add(store);
+            }
+         }
+         if (byScore) {
+            matches.sort(Comparator.comparingInt(Store::storeId));
+         }
+         return matches;
+      }//end find
+
+      /**
+       * @param offset matches to skip
+       * @param limit the most stores to return
+       * @return one page of the matching stores, by store ID
+       */
+      public Page find(Filter filter, int offset, int limit) {
+         List<Store> matches = find(filter);
+         int from = Math.min(Math.max(offset, 0), matches.size());
+         int to = Math.min(from + Math.max(limit, 0), matches.size());
+         return new Page(Collections.unmodifiableList(new ArrayList<Store>(matches.subList(from, to))),
+                         from, matches.size());
+      }
+
+      private static List<Store> bucket(Map<String, List<Store>> buckets, String name) {
+         List<Store> bucket = buckets.get(normalize(name));
+         return bucket != null ? bucket : Collections.<Store>emptyList();
+      }
+
+      private static List<Store> smaller(List<Store> a, List<Store> b) {
+         return b.size() < a.size() ? b : a;
+      }
+
+      // how many reviewed stores score at least min.
+      private int atLeast(double min) {
+         // first index whose score is below min; scores are descending
+         int lo = 0;
+         int hi = this._sortedScores.length;
+         while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (this._sortedScores[mid] >= min) {
+               lo = mid + 1;
+            } else {
+               hi = mid;
+            }
+         }
+         return lo;
+      }//end atLeast
+   }//end Snapshot
+}//end StoreDirectory
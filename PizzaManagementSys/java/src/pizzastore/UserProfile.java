@@ -0,0 +1,29 @@
+package pizzastore;
+
+import java.util.List;
+
+/**
+ * A user as shown on their profile.  The password is deliberately not part
+ * of it.
+ *
+ * @param login the user's login
+ * @param role the role, trimmed and lower-cased
+ * @param favoriteItems the names of the user's favorite menu items, in name order
+ * @param phoneNum the phone number
+ */
+public record UserProfile(String login, String role, List<String> favoriteItems, String phoneNum) {
+
+   public UserProfile {
+      favoriteItems = List.copyOf(favoriteItems);
+   }
+
+   /**
+    * Reads a row with login, role and phoneNum columns and a favoriteItems
+    * array, as PizzaService selects them.
+    */
+   public static final RowMapper<UserProfile> MAPPER = rs -> new UserProfile(
+      rs.getString("login"),
+      Session.normalizeRole(rs.getString("role")),
+      List.of((String[]) rs.getArray("favoriteItems").getArray()),
+      rs.getString("phoneNum"));
+}//end UserProfile
@@ -0,0 +1,97 @@
+package pizzastore;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Order details cost a fixed number of statements, counted by the
+ * store's QueryMetrics, however many orders and lines they cover.
+ */
+class OrderDetailTest {
+
+   private static PizzaStore esql;
+   private static PizzaService service;
+   private static Session customer;
+   private static Session manager;
+
+   @BeforeAll
+   static void open() throws Exception {
+      TestDatabase.require();
+      esql = TestDatabase.open();
+      service = new PizzaService(esql);
+      customer = TestDatabase.logIn(service, "customer");
+      manager = TestDatabase.logIn(service, "manager");
+   }
+
+   @AfterAll
+   static void close() {
+      if (esql != null) {
+         esql.cleanup();
+      }
+   }
+
+   @Test
+   void oneOrderTakesTwoStatements() throws Exception {
+      OrderReceipt receipt = service.placeOrder(customer, new OrderRequest(
+         TestDatabase.openStore(esql), List.of(new OrderRequest.Line("Pepsi", 2),
+                                               new OrderRequest.Line("Cheese Pizza", 1))));
+
+      long before = TestDatabase.statements(esql);
+      OrderDetail detail = service.orderDetail(customer, receipt.orderId());
+      assertEquals(2, TestDatabase.statements(esql) - before);   // the order, then its lines
+
+      assertEquals(receipt.totalCents(), detail.order().totalCents());
+      assertEquals(List.of("Cheese Pizza", "Pepsi"), detail.lines().stream().map(OrderLine::itemName).toList());
+      assertNotNull(detail.item("Pepsi"));
+   }
+
+   @Test
+   void anyNumberOfOrdersTakesOneStatement() throws Exception {
+      for (int size : new int[] { 1, 10, 100 }) {
+         OrderColumns orders = service.recentOrders(manager, null, size);
+         assertEquals(size, orders.size());
+
+         long before = TestDatabase.statements(esql);
+         List<OrderDetail> details = service.orderDetails(orders);
+         assertEquals(1, TestDatabase.statements(esql) - before, size + " orders");
+
+         assertEquals(size, details.size());
+         for (int i = 0; i < size; i++) {
+            OrderDetail detail = details.get(i);
+            assertEquals(orders.orderId(i), detail.order().orderId());
+            assertFalse(detail.lines().isEmpty(), "order " + orders.orderId(i) + " has no lines");
+            for (OrderLine line : detail.lines()) {
+               assertEquals(detail.order().orderId(), line.orderId());
+               assertNotNull(detail.item(line.itemName()));
+            }
+         }
+      }
+   }//end anyNumberOfOrdersTakesOneStatement
+
+   @Test
+   void historyPagesDoNotGrowWithTheirSize() throws Exception {
+      long small = historyPage(5);
+      long large = historyPage(50);
+      assertEquals(small, large);
+   }
+
+   /*
+    * @return the statements it takes to read the first page of all
+    *         orders with their details
+    */
+   private static long historyPage(int pageSize) throws Exception {
+      long before = TestDatabase.statements(esql);
+      OrderHistoryPager pager = service.orderHistory(
+         manager, new OrderHistoryPager.Filter(null, null, null, null, null), pageSize);
+      List<OrderDetail> details = service.orderDetails(pager.first());
+      assertEquals(pageSize, details.size());
+      return TestDatabase.statements(esql) - before;
+   }
+}//end OrderDetailTest
@@ -0,0 +1,116 @@
+package pizzastore;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Order placement under concurrent customers: IDs come from the sequence,
+ * so clients never collide, and each order with all its lines is one
+ * statement.  The rates of one client and of several are printed for
+ * reference only, since a shared machine makes them too noisy to assert
+ * on; WorkloadSimulator measures how throughput scales.
+ *
+ *    -Dpizzastore.test.throughputMillis=3000   how long each run places orders
+ */
+class OrderThroughputTest {
+
+   static final long RUN_MILLIS = Long.getLong("pizzastore.test.throughputMillis", 3000L);
+
+   // clients in the concurrent run.
+   static final int CLIENTS = 4;
+
+   private static PizzaStore esql;
+   private static PizzaService service;
+   private static Session customer;
+   private static OrderRequest request;
+
+   @BeforeAll
+   static void open() throws Exception {
+      TestDatabase.require();
+      esql = TestDatabase.open();
+      service = new PizzaService(esql);
+      customer = TestDatabase.logIn(service, "customer");
+      request = new OrderRequest(TestDatabase.openStore(esql),
+                                 List.of(new OrderRequest.Line("Cheese Pizza", 1),
+                                         new OrderRequest.Line("Fries", 2),
+                                         new OrderRequest.Line("Pepsi", 3)));
+   }
+
+   @AfterAll
+   static void close() {
+      if (esql != null) {
+         esql.cleanup();
+      }
+   }
+
+   @Test
+   void oneStatementPerOrder() throws Exception {
+      long before = TestDatabase.statements(esql);
+      for (int i = 0; i < 20; i++) {
+         service.placeOrder(customer, request);
+      }
+      assertEquals(20, TestDatabase.statements(esql) - before);
+   }
+
+   @Test
+   void concurrentClientsNeverCollide() throws Exception {
+      Set<Integer> ids = ConcurrentHashMap.newKeySet();
+      place(1, ids);   // warms up the pool, the plans and the JIT
+      double one = place(1, ids);
+      double many = place(CLIENTS, ids);
+      System.out.printf("Placed %.0f orders/s from one client, %.0f from %d%n", one, many, CLIENTS);
+
+      // every order stored once, with all its lines
+      Integer[] placed = ids.toArray(new Integer[0]);
+      assertEquals(List.of(List.of(Integer.toString(placed.length), Integer.toString(placed.length * 3))),
+                   esql.executeQueryAndReturnResult(
+                      "SELECT count(DISTINCT orderID), count(*) FROM ItemsInOrder WHERE orderID = ANY(?::integer[])",
+                      (Object) placed));
+   }//end concurrentClientsNeverCollide
+
+   /*
+    * Places orders from a number of clients for RUN_MILLIS, adding their
+    * IDs to a set that must not have seen them.
+    *
+    * @return orders per second
+    */
+   private static double place(int clients, Set<Integer> ids) throws Exception {
+      ExecutorService pool = Executors.newFixedThreadPool(clients);
+      try {
+         long start = System.nanoTime();
+         long end = start + TimeUnit.MILLISECONDS.toNanos(RUN_MILLIS);
+         List<Future<Integer>> counts = new ArrayList<Future<Integer>>();
+         for (int c = 0; c < clients; c++) {
+            counts.add(pool.submit(() -> {
+               int count = 0;
+               while (System.nanoTime() < end) {
+                  int id = service.placeOrder(customer, request).orderId();
+                  assertTrue(ids.add(id), "order ID " + id + " handed out twice");
+                  count++;
+               }
+               return count;
+            }));
+         }
+         long total = 0;
+         for (Future<Integer> count : counts) {
+            total += count.get();
+         }
+         return total / ((System.nanoTime() - start) / 1e9);
+      } finally {
+         pool.shutdown();
+      }
+   }//end place
+}//end OrderThroughputTest
@@ -0,0 +1,115 @@
+package pizzastore;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * History pages and lookups of recent orders touch the same monthly
+ * partitions however many older months there are.  Each operation runs in
+ * a transaction that is rolled back, and the partitions it touched are
+ * counted from the locks it holds at the end.
+ */
+class PartitionPruningTest {
+
+   // older months added between the two measurements.
+   static final int OLDER_MONTHS = 60;
+
+   // runs of each operation; the median is compared, since the plan cache
+   // plans a statement generically once, touching every partition, to
+   // weigh it against the custom plans it keeps using.
+   static final int RUNS = 9;
+
+   private static PizzaStore esql;
+   private static PizzaService service;
+   private static Session customer;
+   private static Session manager;
+   private static int recentOrder;
+
+   @BeforeAll
+   static void open() throws Exception {
+      TestDatabase.require();
+      esql = TestDatabase.open();
+      service = new PizzaService(esql);
+      manager = TestDatabase.logIn(service, "manager");
+      // the busiest customer, whose first page lies in the last year
+      List<List<String>> busiest = esql.executeQueryAndReturnResult(
+         "SELECT u.login, u.password FROM Users u JOIN FoodOrder f ON f.login = u.login " +
+         "GROUP BY u.login, u.password ORDER BY count(*) DESC, u.login LIMIT 1");
+      customer = service.logIn(busiest.get(0).get(0).trim(), busiest.get(0).get(1).trim());
+      recentOrder = service.placeOrder(customer, new OrderRequest(
+         TestDatabase.openStore(esql), List.of(new OrderRequest.Line("Fries", 1)))).orderId();
+   }
+
+   @AfterAll
+   static void close() {
+      if (esql != null) {
+         esql.cleanup();
+      }
+   }
+
+   @Test
+   void costStaysFlatAsMonthsPileUp() throws Exception {
+      Map<String, Integer> before = measure();
+      for (int touched : before.values()) {
+         assertFalse(touched == 0, "nothing was read: " + before);
+      }
+
+      String oldest = esql.executeQueryAndReturnResult(
+         "SELECT to_char(min(orderTimestamp), 'YYYY-MM') FROM FoodOrder").get(0).get(0).trim();
+      YearMonth first = YearMonth.parse(oldest);
+      new OrderPartitions(TestDatabase.URL, TestDatabase.USER, TestDatabase.PASSWORD)
+         .create(first.minusMonths(OLDER_MONTHS), first.minusMonths(1));
+
+      assertEquals(before, measure());
+   }//end costStaysFlatAsMonthsPileUp
+
+   /*
+    * @return the median number of partitions each operation touches
+    */
+   private static Map<String, Integer> measure() throws Exception {
+      Map<String, Integer> touched = new LinkedHashMap<String, Integer>();
+      touched.put("history page", median(() -> {
+         OrderHistoryPager pager = service.orderHistory(
+            customer, new OrderHistoryPager.Filter(null, null, null, null, null), 10);
+         service.orderDetails(pager.first());
+      }));
+      touched.put("order", median(() -> service.orderDetail(customer, recentOrder)));
+      touched.put("status", median(() -> service.updateOrderStatus(manager, recentOrder, "complete")));
+      touched.put("bulk status", median(() -> service.updateOrderStatuses(
+         manager, List.of(recentOrder), null, "complete")));
+      return touched;
+   }
+
+   @FunctionalInterface
+   private interface Operation {
+      void run() throws Exception;
+   }
+
+   private static int median(Operation operation) throws Exception {
+      int[] counts = new int[RUNS];
+      for (int i = 0; i < RUNS; i++) {
+         esql.beginTransaction();
+         try {
+            operation.run();
+            counts[i] = Integer.parseInt(esql.executeQueryAndReturnResult(
+               "SELECT count(*) FROM pg_locks l JOIN pg_class c ON c.oid = l.relation " +
+               "WHERE l.pid = pg_backend_pid() AND c.relkind = 'r' " +
+               "AND c.relname ~ '^(foodorder|itemsinorder)_p'").get(0).get(0).trim());
+         } finally {
+            esql.rollbackTransaction();
+         }
+      }
+      Arrays.sort(counts);
+      return counts[RUNS / 2];
+   }//end median
+}//end PartitionPruningTest
@@ -0,0 +1,133 @@
+package pizzastore;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The sales rollups, kept up by each order and status change, agree with
+ * a full recompute by SalesRollups.check, and the reports move by exactly
+ * what was placed and completed.
+ */
+class SalesRollupsTest {
+
+   // clients and rounds of the concurrent test.
+   static final int CLIENTS = 4;
+   static final int ROUNDS = 25;
+
+   private static PizzaStore esql;
+   private static PizzaService service;
+   private static SalesRollups rollups;
+   private static Session customer;
+   private static Session manager;
+   private static int store;
+
+   @BeforeAll
+   static void open() throws Exception {
+      TestDatabase.require();
+      esql = TestDatabase.open();
+      service = new PizzaService(esql);
+      rollups = new SalesRollups(TestDatabase.URL, TestDatabase.USER, TestDatabase.PASSWORD);
+      customer = TestDatabase.logIn(service, "customer");
+      manager = TestDatabase.logIn(service, "manager");
+      store = TestDatabase.openStore(esql);
+   }
+
+   @AfterAll
+   static void close() {
+      if (esql != null) {
+         esql.cleanup();
+      }
+   }
+
+   @Test
+   void seededRollupsMatch() throws Exception {
+      assertEquals(List.of(), rollups.check());
+   }
+
+   @Test
+   void reportsFollowOrdersAndStatusChanges() throws Exception {
+      SalesTotals before = storeThisMonth();
+      OrderRequest request = new OrderRequest(store, List.of(new OrderRequest.Line("Pepperoni Pizza", 2),
+                                                             new OrderRequest.Line("Sprite", 1)));
+      List<Integer> placed = new ArrayList<Integer>();
+      long revenue = 0;
+      for (int i = 0; i < 3; i++) {
+         OrderReceipt receipt = service.placeOrder(customer, request);
+         placed.add(receipt.orderId());
+         revenue += receipt.totalCents();
+      }
+      service.updateOrderStatus(manager, placed.get(0), "incomplete", "complete");
+      service.updateOrderStatuses(manager, placed, null, "complete");
+      service.updateOrderStatus(manager, placed.get(2), "complete", "incomplete");
+
+      SalesTotals after = storeThisMonth();
+      assertEquals(before.orders() + 3, after.orders());
+      assertEquals(before.revenueCents() + revenue, after.revenueCents());
+      assertEquals(before.completedOrders() + 2, after.completedOrders());
+      assertEquals(before.completedRevenueCents() + revenue / 3 * 2, after.completedRevenueCents());
+
+      // orders from months back, found in the wider windows, move their own months
+      List<Integer> old = new ArrayList<Integer>();
+      for (List<String> row : esql.executeQueryAndReturnResult(
+              "SELECT orderID FROM FoodOrder WHERE orderTimestamp < now() - interval '60 days' " +
+              "ORDER BY orderID LIMIT 5")) {
+         old.add(Integer.parseInt(row.get(0).trim()));
+      }
+      service.updateOrderStatuses(manager, old, null, "incomplete");
+      service.updateOrderStatus(manager, old.get(0), "complete");
+      assertEquals(List.of(), rollups.check());
+   }//end reportsFollowOrdersAndStatusChanges
+
+   @Test
+   void concurrentChangesKeepRollupsConsistent() throws Exception {
+      OrderRequest request = new OrderRequest(store, List.of(new OrderRequest.Line("Fries", 1),
+                                                             new OrderRequest.Line("Cheese Pizza", 1)));
+      List<Integer> shared = new ArrayList<Integer>();
+      for (int i = 0; i < CLIENTS; i++) {
+         shared.add(service.placeOrder(customer, request).orderId());
+      }
+      ExecutorService pool = Executors.newFixedThreadPool(CLIENTS);
+      try {
+         List<Future<?>> clients = new ArrayList<Future<?>>();
+         for (int c = 0; c < CLIENTS; c++) {
+            int client = c;
+            clients.add(pool.submit(() -> {
+               for (int round = 0; round < ROUNDS; round++) {
+                  int own = service.placeOrder(customer, request).orderId();
+                  String status = (round + client) % 2 == 0 ? "complete" : "incomplete";
+                  service.updateOrderStatus(manager, own, "complete");
+                  service.updateOrderStatuses(manager, shared, null, status);
+                  service.updateOrderStatus(manager, shared.get(client), status);
+               }
+               return null;
+            }));
+         }
+         for (Future<?> client : clients) {
+            client.get();
+         }
+      } finally {
+         pool.shutdown();
+      }
+      assertEquals(List.of(), rollups.check());
+   }//end concurrentChangesKeepRollupsConsistent
+
+   private static SalesTotals storeThisMonth() throws Exception {
+      YearMonth now = YearMonth.now();
+      for (SalesTotals totals : service.salesByStore(manager, now, now, PizzaService.MAX_REPORT_STORES)) {
+         if (totals.key().equals(Integer.toString(store))) {
+            return totals;
+         }
+      }
+      return new SalesTotals(Integer.toString(store), 0, 0, 0, 0, 0);
+   }
+}//end SalesRollupsTest
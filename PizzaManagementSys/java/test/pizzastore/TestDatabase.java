@@ -0,0 +1,125 @@
+package pizzastore;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+import org.junit.jupiter.api.Assumptions;
+
+/**
+ * The database the tests run against: dropped and created again from
+ * sql/src the first time a test asks for it, seeded by DataGenerator with
+ * orders over the last year, and then shared by every test in the run.
+ * It is left in place afterwards, for looking at when a test fails.
+ *
+ * Settings, as system properties:
+ *
+ *    -Dpizzastore.test.db=pizzastore_test  (default; dropped and recreated)
+ *    -Dpizzastore.test.port=5433           (default)
+ *    -Dpizzastore.test.user=postgres       (default)
+ *    -Dpizzastore.test.password=           (default $PIZZASTORE_DB_PASSWORD, or empty)
+ *    -Dpizzastore.test.orders=20000        orders generated (default)
+ *
+ * The pizzastore.gen.* settings of DataGenerator apply too.  When no
+ * server answers, the tests that need one are skipped rather than failed.
+ */
+final class TestDatabase {
+
+   static final String DB = System.getProperty("pizzastore.test.db", "pizzastore_test");
+   static final String PORT = System.getProperty("pizzastore.test.port", "5433");
+   static final String USER = System.getProperty("pizzastore.test.user", "postgres");
+   static final String PASSWORD = System.getProperty("pizzastore.test.password", PizzaStore.password());
+   static final long ORDERS = Long.getLong("pizzastore.test.orders", 20000L);
+
+   // days of orders generated, ending today.
+   static final int DAYS = 365;
+
+   static final String URL = PizzaStore.url(DB, PORT);
+
+   // the schema scripts, from the Maven base directory.
+   private static final Path SQL = Paths.get("..", "sql", "src");
+
+   private static boolean _created;
+
+   private TestDatabase() {
+   }
+
+   /**
+    * Creates and seeds the database the first time it is called, and skips
+    * the calling test when there is no server.
+    */
+   static synchronized void require() throws Exception {
+      if (_created) {
+         return;
+      }
+      try (Connection conn = PizzaStore.connect(PizzaStore.url("postgres", PORT), USER, PASSWORD);
+           Statement stmt = conn.createStatement()) {
+         stmt.execute("DROP DATABASE IF EXISTS " + DB + " WITH (FORCE)");
+         stmt.execute("CREATE DATABASE " + DB);
+      } catch (SQLException e) {
+         Assumptions.abort("No PostgreSQL server for the tests on port " + PORT + ": " + e.getMessage());
+      }
+      try (Connection conn = PizzaStore.connect(URL, USER, PASSWORD);
+           Statement stmt = conn.createStatement()) {
+         stmt.execute(Files.readString(SQL.resolve("create_tables.sql")));
+         stmt.execute(Files.readString(SQL.resolve("create_indexes.sql")));
+      }
+
+      System.getProperties().putIfAbsent("pizzastore.gen.orders", Long.toString(ORDERS));
+      System.getProperties().putIfAbsent("pizzastore.gen.days", Integer.toString(DAYS));
+      System.getProperties().putIfAbsent("pizzastore.gen.endDate", LocalDate.now().toString());
+      DataGenerator generator = new DataGenerator();
+      try {
+         OrderPartitions partitions = new OrderPartitions(URL, USER, PASSWORD);
+         partitions.splitDefault();
+         YearMonth end = YearMonth.parse(System.getProperty("pizzastore.gen.endDate").substring(0, 7));
+         partitions.create(end.minusMonths(Integer.getInteger("pizzastore.gen.days") / 28 + 1), end);
+         new BulkLoader(URL, USER, PASSWORD, generator.sources()).load();
+         partitions.ensure();
+      } finally {
+         generator.close();
+      }
+      _created = true;
+   }//end require
+
+   /**
+    * @return a new PizzaStore on the test database; the caller cleans it up
+    */
+   static PizzaStore open() throws SQLException {
+      return new PizzaStore(DB, PORT, USER, PASSWORD);
+   }
+
+   /**
+    * Logs in as the first user with a role, e.g. customer or manager.
+    */
+   static Session logIn(PizzaService service, String role) throws Exception {
+      List<List<String>> rows = service.getStore().executeQueryAndReturnResult(
+         "SELECT login, password FROM Users WHERE trim(role) = ? ORDER BY login LIMIT 1", role);
+      return service.logIn(rows.get(0).get(0).trim(), rows.get(0).get(1).trim());
+   }
+
+   /**
+    * @return the statements a PizzaStore has run so far, from its QueryMetrics
+    */
+   static long statements(PizzaStore esql) {
+      long calls = 0;
+      for (QueryMetrics.Shape shape : esql.getMetrics().shapes()) {
+         calls += shape.getCalls();
+      }
+      return calls;
+   }
+
+   /**
+    * @return the ID of an open store
+    */
+   static int openStore(PizzaStore esql) throws SQLException {
+      return Integer.parseInt(esql.executeQueryAndReturnResult(
+         "SELECT storeID FROM Store WHERE trim(isOpen) = 'yes' ORDER BY storeID LIMIT 1").get(0).get(0).trim());
+   }
+}//end TestDatabase
@@ -1,8 +1,25 @@
-IF EXISTS DROP INDEX users_login; 
-IF EXISTS DROP INDEX foodorder_login; 
-IF EXISTS DROP INDEX foodorder_storeID; 
+DROP INDEX IF EXISTS users_login;
+DROP INDEX IF EXISTS foodorder_login;
+DROP INDEX IF EXISTS foodorder_storeID;
+DROP INDEX IF EXISTS foodorder_time_id;
+DROP INDEX IF EXISTS foodorder_login_time;
+DROP INDEX IF EXISTS foodorder_store_time;
+DROP INDEX IF EXISTS foodorder_status_time;
+DROP INDEX IF EXISTS favoriteitems_item;
 
 
 CREATE INDEX users_login ON Users(login);
-CREATE INDEX foodorder_login ON FoodOrder(login);
-CREATE INDEX foodorder_storeID ON FoodOrder(storeID);
+
+-- Order history and recent orders are read newest first by
+-- (orderTimestamp, orderID); these let each read walk an index from its
+-- starting key and stop after one page, with or without a login, store or
+-- status filter.  The leading-column indexes also serve plain login and
+-- storeID lookups.
+CREATE INDEX foodorder_time_id ON FoodOrder(orderTimestamp DESC, orderID DESC);
+CREATE INDEX foodorder_login_time ON FoodOrder(login, orderTimestamp DESC, orderID DESC);
+CREATE INDEX foodorder_store_time ON FoodOrder(storeID, orderTimestamp DESC, orderID DESC);
+CREATE INDEX foodorder_status_time ON FoodOrder(orderStatus, orderTimestamp DESC, orderID DESC);
+
+-- Who has an item among their favorites, by login, for telling them about
+-- a menu change; the primary key already serves one user's favorites.
+CREATE INDEX favoriteitems_item ON FavoriteItems(itemName, login);
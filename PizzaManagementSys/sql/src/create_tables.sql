@@ -3,11 +3,17 @@ DROP TABLE IF EXISTS Items CASCADE;
 DROP TABLE IF EXISTS FoodOrder CASCADE;
 DROP TABLE IF EXISTS Store CASCADE;
 DROP TABLE IF EXISTS ItemsInOrder CASCADE;
+DROP TABLE IF EXISTS FavoriteItems;
+DROP TABLE IF EXISTS foodorder_unsplit;
+DROP TABLE IF EXISTS itemsinorder_unsplit;
+DROP TABLE IF EXISTS itemsinorder_unstamped;
+DROP TABLE IF EXISTS SalesByStore;
+DROP TABLE IF EXISTS SalesByItem;
+DROP TABLE IF EXISTS SalesByHour;
 
 CREATE TABLE Users ( login varchar(50) NOT NULL,
                      password varchar(30) NOT NULL,
                      role char(20) NOT NULL,
-                     favoriteItems text,
                      phoneNum varchar(20) NOT NULL,
                      PRIMARY KEY(login)
 );
@@ -20,6 +26,17 @@ CREATE TABLE Items ( itemName varchar(50) NOT NULL,
                        PRIMARY KEY(itemName)
 );
 
+-- Each user's favorite menu items, one row per item.  Renaming a user or
+-- an item carries their favorites along; deleting either drops them.
+CREATE TABLE FavoriteItems ( login varchar(50) NOT NULL,
+                             itemName varchar(50) NOT NULL,
+                             PRIMARY KEY(login, itemName),
+                             FOREIGN KEY(login) REFERENCES Users(login)
+                             ON DELETE CASCADE ON UPDATE CASCADE,
+                             FOREIGN KEY(itemName) REFERENCES Items(itemName)
+                             ON DELETE CASCADE ON UPDATE CASCADE
+);
+
 CREATE TABLE Store ( storeID integer NOT NULL,
                            address varchar(50) NOT NULL,
                            city varchar(50) NOT NULL,
@@ -29,27 +46,93 @@ CREATE TABLE Store ( storeID integer NOT NULL,
                            PRIMARY KEY(storeID)
 );
 
+-- Orders are range partitioned by month on orderTimestamp, one table per
+-- month named foodorder_pYYYYMM, so time-bounded reads skip the months
+-- they do not need and old months can be archived whole.  A partitioned
+-- table's primary key must include the partition key; order IDs stay
+-- unique because they come from the sequence below.
+--
+-- The default partition (and ItemsInOrder's below) takes rows of any
+-- month so this schema can be loaded before the months exist.  Run
+-- OrderPartitions (scripts/partitions.sh) after loading: it moves those
+-- rows into monthly partitions, drops the default partitions and creates
+-- the coming months.
 CREATE TABLE FoodOrder ( orderID integer NOT NULL,
                            login varchar(50) NOT NULL, --places relationship
                            storeID integer NOT NULL, --placedAt relationship
                            totalPrice decimal(10,2) NOT NULL,
                            orderTimestamp timestamp NOT NULL,
                            orderStatus char(50),
-                           PRIMARY KEY(orderID),
+                           PRIMARY KEY(orderID, orderTimestamp),
                            FOREIGN KEY(login) REFERENCES Users(login)
                            ON DELETE CASCADE,
                            FOREIGN KEY(storeID) REFERENCES Store(storeID)
                            ON DELETE CASCADE
-);
+) PARTITION BY RANGE (orderTimestamp);
+
+CREATE TABLE foodorder_default PARTITION OF FoodOrder DEFAULT;
 
+-- order IDs come from a sequence so concurrent orders never collide
+CREATE SEQUENCE foodorder_orderid_seq OWNED BY FoodOrder.orderID;
+ALTER TABLE FoodOrder ALTER COLUMN orderID SET DEFAULT nextval('foodorder_orderid_seq');
 
 
+
+-- Lines are partitioned by the same months as their orders, so they carry
+-- the order's orderTimestamp: reading an order's lines visits only its
+-- month, and a month of lines is archived whole along with its orders.
+-- OrderPartitions keeps the two sets of partitions in step, named
+-- itemsinorder_pYYYYMM.
 CREATE TABLE ItemsInOrder ( orderID integer NOT NULL,
                            itemName varchar(50) NOT NULL,
                            quantity integer NOT NULL,
-                           PRIMARY KEY(orderID, itemName),
-                           FOREIGN KEY(orderID) REFERENCES FoodOrder(orderID) ON DELETE CASCADE,
+                           -- the item's price when the order was placed, so
+                           -- later menu changes do not rewrite old orders;
+                           -- null only for lines loaded without one
+                           unitPrice decimal(10,2),
+                           orderTimestamp timestamp NOT NULL,
+                           PRIMARY KEY(orderID, itemName, orderTimestamp),
+                           CONSTRAINT itemsinorder_order FOREIGN KEY(orderID, orderTimestamp)
+                           REFERENCES FoodOrder(orderID, orderTimestamp)
+                           ON DELETE CASCADE,
                            FOREIGN KEY(itemName) REFERENCES Items(itemName)
                            ON DELETE CASCADE
+) PARTITION BY RANGE (orderTimestamp);
+
+CREATE TABLE itemsinorder_default PARTITION OF ItemsInOrder DEFAULT;
+
+
+-- Sales rollups for manager reports, kept current by the statements that
+-- place orders and change their status (see SalesRollups).  Revenue is the
+-- sum of totalPrice, or of quantity * unitPrice for items; the completed
+-- columns count only orders whose status is complete.  Hour and item rows
+-- are split into slots so concurrent orders do not queue on one row lock;
+-- reports add the slots up.
+CREATE TABLE SalesByStore ( storeID integer NOT NULL,
+                            month date NOT NULL,
+                            orders bigint NOT NULL,
+                            revenue decimal(14,2) NOT NULL,
+                            completedOrders bigint NOT NULL,
+                            completedRevenue decimal(14,2) NOT NULL,
+                            PRIMARY KEY(storeID, month)
 );
 
+CREATE TABLE SalesByItem ( itemName varchar(50) NOT NULL,
+                           month date NOT NULL,
+                           slot smallint NOT NULL,
+                           orders bigint NOT NULL,
+                           quantity bigint NOT NULL,
+                           revenue decimal(14,2) NOT NULL,
+                           completedOrders bigint NOT NULL,
+                           completedRevenue decimal(14,2) NOT NULL,
+                           PRIMARY KEY(itemName, month, slot)
+);
+
+CREATE TABLE SalesByHour ( hour timestamp NOT NULL,
+                           slot smallint NOT NULL,
+                           orders bigint NOT NULL,
+                           revenue decimal(14,2) NOT NULL,
+                           completedOrders bigint NOT NULL,
+                           completedRevenue decimal(14,2) NOT NULL,
+                           PRIMARY KEY(hour, slot)
+);
@@ -5,6 +5,45 @@
 
 \copy Store FROM '/PizzaManagementSystem/PizzaManagementSys/data/store.csv' WITH DELIMITER ',' CSV HEADER;
 
+\copy FavoriteItems FROM '/PizzaManagementSystem/PizzaManagementSys/data/favoriteitems.csv' WITH DELIMITER ',' CSV HEADER;
+
 \copy FoodOrder FROM '/PizzaManagementSystem/PizzaManagementSys/data/foodorder.csv' WITH DELIMITER ',' CSV HEADER;
 
-\copy ItemsInOrder FROM '/PizzaManagementSystem/PizzaManagementSys/data/itemsinorder.csv' WITH DELIMITER ',' CSV HEADER;
+/* Continue order IDs after the highest loaded one */
+SELECT setval('foodorder_orderid_seq', COALESCE(MAX(orderID), 0) + 1, false) FROM FoodOrder;
+
+/* The bundled lines predate unit prices and carry no order time: stage
+   them, then store each with its order's time and the current menu price.
+   The outer joins make a line whose order or item is missing fail the load */
+CREATE TEMPORARY TABLE itemsinorder_unstamped ( orderID integer NOT NULL,
+                                                itemName varchar(50) NOT NULL,
+                                                quantity integer NOT NULL );
+
+\copy itemsinorder_unstamped FROM '/PizzaManagementSystem/PizzaManagementSys/data/itemsinorder.csv' WITH DELIMITER ',' CSV HEADER;
+
+INSERT INTO ItemsInOrder(orderID, itemName, quantity, unitPrice, orderTimestamp)
+SELECT l.orderID, l.itemName, l.quantity, i.price, f.orderTimestamp
+FROM itemsinorder_unstamped l LEFT JOIN Items i ON i.itemName = l.itemName
+LEFT JOIN FoodOrder f ON f.orderID = l.orderID;
+
+DROP TABLE itemsinorder_unstamped;
+
+/* Sum the loaded orders into the sales rollups (SalesRollups rebuild does the same) */
+INSERT INTO SalesByStore(storeID, month, orders, revenue, completedOrders, completedRevenue)
+SELECT storeID, date_trunc('month', orderTimestamp)::date, count(*), sum(totalPrice),
+       count(*) FILTER (WHERE orderStatus = 'complete'),
+       coalesce(sum(totalPrice) FILTER (WHERE orderStatus = 'complete'), 0)
+FROM FoodOrder GROUP BY 1, 2;
+
+INSERT INTO SalesByItem(itemName, month, slot, orders, quantity, revenue, completedOrders, completedRevenue)
+SELECT l.itemName, date_trunc('month', f.orderTimestamp)::date, 0, count(*), sum(l.quantity),
+       coalesce(sum(l.quantity * l.unitPrice), 0),
+       count(*) FILTER (WHERE f.orderStatus = 'complete'),
+       coalesce(sum(l.quantity * l.unitPrice) FILTER (WHERE f.orderStatus = 'complete'), 0)
+FROM ItemsInOrder l JOIN FoodOrder f ON f.orderID = l.orderID AND f.orderTimestamp = l.orderTimestamp GROUP BY 1, 2;
+
+INSERT INTO SalesByHour(hour, slot, orders, revenue, completedOrders, completedRevenue)
+SELECT date_trunc('hour', orderTimestamp), 0, count(*), sum(totalPrice),
+       count(*) FILTER (WHERE orderStatus = 'complete'),
+       coalesce(sum(totalPrice) FILTER (WHERE orderStatus = 'complete'), 0)
+FROM FoodOrder GROUP BY 1;